@@ -0,0 +1,89 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.looseboxes.websocket.server.broker.IndexedSubscriptionRegistry;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+/**
+ * Fan-out of a message published to the simple broker, to in-process subscribers
+ * of its destination. Each subscriber is a separate session. The client outbound
+ * channel only consumes the messages, so this measures the broker's own work.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar BrokerFanOutBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerFanOutBenchmark {
+
+    private static final String DESTINATION = "/topic/prices/item-0";
+
+    @Param({"1", "100", "10000"})
+    public int subscribers;
+
+    @Param({"default", "indexed"})
+    public String registry;
+
+    private SimpleBrokerMessageHandler broker;
+
+    private Message<byte[]> message;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws JsonProcessingException {
+
+        final MessageChannel clientOutboundChannel = (outbound, timeout) -> {
+            blackhole.consume(outbound);
+            return true;
+        };
+
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutboundChannel,
+                new ExecutorSubscribableChannel(), Collections.singletonList("/topic"));
+        if ("indexed".equals(registry)) {
+            broker.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+        }
+        broker.start();
+
+        for (int i = 0; i < subscribers; i++) {
+            broker.handleMessage(Messages.connect("session-" + i));
+            broker.handleMessage(Messages.subscribe("session-" + i, "sub-0", DESTINATION));
+        }
+
+        message = Messages.message(DESTINATION,
+                Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(Messages.websocketMessage(1)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public void publish() {
+        broker.handleMessage(message);
+    }
+}
@@ -0,0 +1,170 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.client.WebSocketClientHandler;
+import java.net.URI;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+/**
+ * Subscribe/unsubscribe churn in the {@link WebSocketClientHandler}, against a
+ * STOMP session which sends nothing, so this measures the handler's own
+ * bookkeeping, with a number of other subscriptions in place.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ClientSubscriptionChurnBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientSubscriptionChurnBenchmark {
+
+    /**
+     * Number of subscriptions which remain in place during the churn.
+     */
+    @Param({"10", "1000"})
+    public int subscriptions;
+
+    private WebSocketClientHandler clientHandler;
+
+    private final AtomicLong churnIds = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        clientHandler = new WebSocketClientHandler(new WebSocketStompClient(new NoopWebSocketClient()));
+        clientHandler.afterConnected(new NoopStompSession(), new StompHeaders());
+        for (int i = 0; i < subscriptions; i++) {
+            clientHandler.subscribeIfNotAlready("/topic/prices/item-" + i, clientHandler);
+        }
+    }
+
+    @Benchmark
+    public boolean subscribeUnsubscribe() {
+        final String destination = "/topic/churn/" + churnIds.incrementAndGet();
+        clientHandler.subscribeIfNotAlready(destination, clientHandler);
+        return clientHandler.unsubscribe(destination);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean subscribeUnsubscribeContended() {
+        return subscribeUnsubscribe();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean isSubscribedContended() {
+        return clientHandler.isSubscribed("/topic/prices/item-" + ThreadLocalRandom.current().nextInt(subscriptions));
+    }
+
+    private static final class NoopWebSocketClient implements WebSocketClient {
+        @Override
+        public ListenableFuture<WebSocketSession> doHandshake(WebSocketHandler handler, String uriTemplate, Object... uriVariables) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public ListenableFuture<WebSocketSession> doHandshake(WebSocketHandler handler, WebSocketHttpHeaders headers, URI uri) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class NoopStompSession implements StompSession {
+
+        private final AtomicLong subscriptionIds = new AtomicLong();
+
+        @Override
+        public String getSessionId() {
+            return "session-0";
+        }
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+        @Override
+        public void setAutoReceipt(boolean enabled) { }
+        @Override
+        public Receiptable send(String destination, Object payload) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public Receiptable send(StompHeaders headers, Object payload) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public Subscription subscribe(String destination, StompFrameHandler handler) {
+            final StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
+            return subscribe(headers, handler);
+        }
+        @Override
+        public Subscription subscribe(StompHeaders headers, StompFrameHandler handler) {
+            headers.setId(Long.toString(subscriptionIds.incrementAndGet()));
+            return new NoopSubscription(headers);
+        }
+        @Override
+        public Receiptable acknowledge(String messageId, boolean consumed) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public Receiptable acknowledge(StompHeaders headers, boolean consumed) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public void disconnect() { }
+        @Override
+        public void disconnect(StompHeaders headers) { }
+    }
+
+    private static final class NoopSubscription implements StompSession.Subscription {
+        private final StompHeaders headers;
+        private NoopSubscription(StompHeaders headers) {
+            this.headers = headers;
+        }
+        @Override
+        public String getSubscriptionId() {
+            return headers.getId();
+        }
+        @Override
+        public StompHeaders getSubscriptionHeaders() {
+            return headers;
+        }
+        @Override
+        public void unsubscribe() { }
+        @Override
+        public void unsubscribe(StompHeaders headers) { }
+        @Override
+        public String getReceiptId() {
+            return null;
+        }
+        @Override
+        public void addReceiptTask(Runnable runnable) { }
+        @Override
+        public void addReceiptLostTask(Runnable runnable) { }
+    }
+}
@@ -0,0 +1,165 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.server.AsyncWebsocketApplicationDestinationMessageInterceptor;
+import com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptor;
+import com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptorChain;
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketDestinationRouter;
+import com.looseboxes.websocket.server.controller.WebsocketMessageBatcher;
+import com.looseboxes.websocket.server.controller.WebsocketMessageController;
+import com.looseboxes.websocket.server.controller.WebsocketMessageDeduplicator;
+import com.looseboxes.websocket.server.controller.WebsocketMessageReceipts;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.presence.PresenceRegistry;
+import com.looseboxes.websocket.server.ratelimit.InboundRateLimiter;
+import com.looseboxes.websocket.server.replay.ReplayRegistry;
+import com.looseboxes.websocket.server.session.SessionOutboxRegistry;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.handler.DestinationPatternsMessageCondition;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * The {@link WebsocketMessageController} send path, from a message received at
+ * {@code /send/**} to the message being converted and sent to the broker
+ * channel, with and without an interceptor, retaining messages for replay,
+ * and detecting duplicates. When detecting duplicates, each message has a new
+ * id, so that none is dropped.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ControllerSendBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerSendBenchmark {
+
+    @Param({"none", "sync"})
+    public String interceptor;
+
+    @Param({"false", "true"})
+    public boolean replay;
+
+    @Param({"false", "true"})
+    public boolean dedup;
+
+    private long nextId;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    private WebsocketMessageBatcher messageBatcher;
+
+    private WebsocketMessageController controller;
+
+    private WebsocketMessage<Long, Object> message;
+
+    private SimpMessageHeaderAccessor headerAccessor;
+
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+
+        this.blackhole = blackhole;
+
+        final WebsocketProperties properties = new WebsocketProperties();
+        if (replay) {
+            properties.getReplay().setDestinations(new String[]{"/topic/"});
+        }
+        properties.getDeduplication().setEnabled(dedup);
+
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.initialize();
+
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if ("sync".equals(interceptor)) {
+            beanFactory.addBean("interceptor", (WebsocketApplicationDestinationMessageInterceptor)
+                    (path, accessor, websocketMessage) -> websocketMessage.sender(path));
+        }
+
+        final WebsocketApplicationDestinationMessageInterceptorChain interceptorChain =
+                new WebsocketApplicationDestinationMessageInterceptorChain(properties,
+                        beanFactory.getBeanProvider(WebsocketApplicationDestinationMessageInterceptor.class),
+                        beanFactory.getBeanProvider(AsyncWebsocketApplicationDestinationMessageInterceptor.class),
+                        taskScheduler, beanFactory.getBeanProvider(WebsocketMetrics.class));
+
+        final SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(new BrokerChannel());
+        final MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+        messageConverter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        messagingTemplate.setMessageConverter(messageConverter);
+
+        final BrokerChannel clientOutboundChannel = new BrokerChannel();
+        final ReplayRegistry replayRegistry = new ReplayRegistry(properties, messagingTemplate, clientOutboundChannel);
+
+        messageBatcher = new WebsocketMessageBatcher(properties, messagingTemplate, replayRegistry, taskScheduler);
+
+        controller = new WebsocketMessageController(messagingTemplate, new WebsocketDestinationRouter(properties),
+                interceptorChain, new SessionOutboxRegistry(properties), messageBatcher,
+                new WebsocketMessageDeduplicator(properties),
+                new PresenceRegistry(properties, messagingTemplate, taskScheduler), replayRegistry,
+                new InboundRateLimiter(properties, beanFactory.getBeanProvider(WebsocketMetrics.class)),
+                new WebsocketMessageReceipts(properties, clientOutboundChannel),
+                beanFactory.getBeanProvider(WebsocketMetrics.class));
+
+        message = Messages.websocketMessage(1);
+
+        headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headerAccessor.setSessionId("session-0");
+        headerAccessor.setSessionAttributes(new HashMap<>());
+        headerAccessor.setDestination("/app/send/prices/item-0");
+        headerAccessor.setHeader(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER, "/send/prices/item-0");
+    }
+
+    @TearDown
+    public void tearDown() {
+        messageBatcher.destroy();
+        taskScheduler.shutdown();
+    }
+
+    @Benchmark
+    public void send() {
+        if (dedup) {
+            message.setId(++nextId);
+        }
+        controller.sendMessage(message, headerAccessor);
+    }
+
+    /**
+     * Stands in for the broker channel, consuming each message sent to the broker,
+     * and for the client outbound channel, consuming each message replayed.
+     */
+    private final class BrokerChannel implements MessageChannel {
+        @Override
+        public boolean send(Message<?> message, long timeout) {
+            blackhole.consume(message);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.server.durable.SegmentedLog;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * The {@link SegmentedLog} of durable destinations, appending serialized messages of
+ * 1 and 100 items, with and without forcing each to disk, and reading them back.
+ * Segments appended to are deleted after each iteration, so that the log does not
+ * fill the disk.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar DurableLogBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurableLogBenchmark {
+
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int RECORDS_TO_READ = 10_000;
+
+    @Param({"1", "100"})
+    public int items;
+
+    private Path directory;
+
+    private SegmentedLog appendLog;
+
+    private SegmentedLog readLog;
+
+    private byte[] payload;
+
+    private long[] positions;
+
+    private int nextRead;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("durable-log-benchmark");
+        appendLog = new SegmentedLog(directory.resolve("append"), SEGMENT_SIZE);
+        readLog = new SegmentedLog(directory.resolve("read"), SEGMENT_SIZE);
+        payload = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(Messages.websocketMessage(items));
+        positions = new long[RECORDS_TO_READ];
+        for (int i = 0; i < RECORDS_TO_READ; i++) {
+            positions[i] = readLog.append("/user/reader/queue/abc", "application/json", null, payload, System.currentTimeMillis());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteAppended() {
+        appendLog.retain(appendLog.getEndPosition(), Long.MAX_VALUE, 0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        appendLog.close();
+        readLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long append() {
+        return appendLog.append("/user/abc/queue/def", "application/json", null, payload, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long appendAndForce() {
+        final long position = appendLog.append("/user/abc/queue/def", "application/json", null, payload, System.currentTimeMillis());
+        appendLog.force();
+        return position;
+    }
+
+    @Benchmark
+    public SegmentedLog.Record read() {
+        if (nextRead == RECORDS_TO_READ) {
+            nextRead = 0;
+        }
+        return readLog.read(positions[nextRead++]);
+    }
+}
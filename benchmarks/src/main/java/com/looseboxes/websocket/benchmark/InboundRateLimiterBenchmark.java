@@ -0,0 +1,107 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import com.looseboxes.websocket.server.ratelimit.InboundRateLimiter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * The {@link InboundRateLimiter} with 4 threads, each a session sending to the same
+ * destination, under limits high enough never to be exceeded, so that the cost of
+ * counting each frame is measured. With the limit per destination, the threads
+ * contend for one bucket.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar InboundRateLimiterBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class InboundRateLimiterBenchmark {
+
+    private static final String DESTINATION = "/app/send/prices/item-0";
+
+    @Param({"session", "session-sender-destination"})
+    public String limits;
+
+    private InboundRateLimiter rateLimiter;
+
+    @State(Scope.Thread)
+    public static class Session {
+
+        private static final AtomicInteger sessions = new AtomicInteger();
+
+        private Message<byte[]> connect;
+
+        private Message<byte[]> send;
+
+        @Setup
+        public void setUp(InboundRateLimiterBenchmark benchmark) {
+            final int session = sessions.incrementAndGet();
+            final Map<String, Object> sessionAttributes = new HashMap<>();
+            sessionAttributes.put("username", "sender-" + session);
+            connect = frame(SimpMessageType.CONNECT, "session-" + session, null, sessionAttributes);
+            send = frame(SimpMessageType.MESSAGE, "session-" + session, DESTINATION, sessionAttributes);
+            benchmark.rateLimiter.preSend(connect, null);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        final WebsocketProperties properties = new WebsocketProperties();
+        properties.setApplicationDestinationPrefixes(new String[]{"/app"});
+        final WebsocketProperties.RateLimit rateLimit = properties.getRateLimit();
+        rateLimit.setEnabled(true);
+        rateLimit.getSession().setRate(1e9);
+        if (limits.contains("sender")) {
+            rateLimit.getSender().setRate(1e9);
+        }
+        if (limits.contains("destination")) {
+            rateLimit.getDestinations().put("/app/send/prices", new WebsocketProperties.Limit(1e9, 0));
+        }
+        rateLimiter = new InboundRateLimiter(properties,
+                new StaticListableBeanFactory().getBeanProvider(WebsocketMetrics.class));
+    }
+
+    @Benchmark
+    public Message<?> send(Session session) {
+        return rateLimiter.preSend(session.send, null);
+    }
+
+    private static Message<byte[]> frame(SimpMessageType messageType, String sessionId,
+                                         String destination, Map<String, Object> sessionAttributes) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(messageType);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(sessionAttributes);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,72 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.server.controller.WebsocketMessageDeduplicator;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link WebsocketMessageDeduplicator} with 4 threads, for messages seen for
+ * the first time, which are remembered and evict the oldest once full, and for
+ * messages already seen.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar MessageDeduplicatorBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MessageDeduplicatorBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int maxEntries;
+
+    private WebsocketMessageDeduplicator deduplicator;
+
+    @State(Scope.Thread)
+    public static class Sender {
+
+        private static final AtomicLong senders = new AtomicLong();
+
+        private final WebsocketMessage<Long, Object> message =
+                Messages.websocketMessage(1).sender("sender-" + senders.incrementAndGet());
+
+        private long nextId;
+    }
+
+    @Setup
+    public void setUp() {
+        deduplicator = new WebsocketMessageDeduplicator(true, 60_000, maxEntries, 0);
+    }
+
+    @Benchmark
+    public boolean unique(Sender sender) {
+        sender.message.setId(++sender.nextId);
+        return deduplicator.isDuplicate(sender.message);
+    }
+
+    @Benchmark
+    public boolean duplicate(Sender sender) {
+        // Remembered by the first invocation
+        sender.message.setId(1L);
+        return deduplicator.isDuplicate(sender.message);
+    }
+}
@@ -0,0 +1,86 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.looseboxes.websocket.server.codec.PayloadCodecs;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.model.WebsocketMessageModule;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Jackson serialization and deserialization of {@link WebsocketMessage}, with
+ * the object mapper spring boot would configure, by data binding or with the
+ * streaming {@link WebsocketMessageModule}. Run with the gc profiler to compare
+ * the bytes allocated per operation ({@code gc.alloc.rate.norm}).
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar MessageSerdeBenchmark -prof gc
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSerdeBenchmark {
+
+    /**
+     * Number of items in the message content, 1 is typical and 1000 is large.
+     */
+    @Param({"1", "1000"})
+    public int items;
+
+    /**
+     * {@code databind} reads and writes json messages by reflection, {@code streaming}
+     * with the {@link WebsocketMessageModule}, and {@code cbor} and {@code smile} in
+     * those binary formats, with the {@link WebsocketMessageModule}.
+     */
+    @Param({"databind", "streaming", "cbor", "smile"})
+    public String codec;
+
+    private ObjectMapper objectMapper;
+
+    private WebsocketMessage<Long, Object> message;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (!"databind".equals(codec)) {
+            builder.modulesToInstall(new WebsocketMessageModule());
+        }
+        if ("cbor".equals(codec)) {
+            builder.factory(PayloadCodecs.jsonFactory(PayloadCodecs.APPLICATION_CBOR));
+        }else if ("smile".equals(codec)) {
+            builder.factory(PayloadCodecs.jsonFactory(PayloadCodecs.APPLICATION_SMILE));
+        }
+        objectMapper = builder.build();
+        message = Messages.websocketMessage(items);
+        json = objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public WebsocketMessage deserialize() throws IOException {
+        return objectMapper.readValue(json, WebsocketMessage.class);
+    }
+}
@@ -0,0 +1,72 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Builds the messages used by the benchmarks.
+ * @author chinomso ikwuagwu
+ */
+final class Messages {
+
+    private Messages() { }
+
+    /**
+     * The simple broker only sends messages to sessions which have connected.
+     */
+    static Message<byte[]> connect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    static Message<byte[]> unsubscribe(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    static Message<byte[]> message(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    /**
+     * @param items The number of items in the content. One item is typical of
+     *              a price or status update, while a thousand items is large.
+     * @return A message whose content is a list of the given number of items
+     */
+    static WebsocketMessage<Long, Object> websocketMessage(int items) {
+        final List<Map<String, Object>> content = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            final Map<String, Object> item = new LinkedHashMap<>();
+            item.put("symbol", "ITEM-" + i);
+            item.put("bid", 100.25 + i);
+            item.put("ask", 100.75 + i);
+            item.put("volume", 1000L * i);
+            item.put("status", "OPEN");
+            content.add(item);
+        }
+        return new WebsocketMessage<Long, Object>()
+                .id((long)items)
+                .sender("benchmark")
+                .content(content);
+    }
+}
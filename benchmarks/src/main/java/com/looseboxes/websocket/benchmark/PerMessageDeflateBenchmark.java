@@ -0,0 +1,138 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.model.WebsocketMessageModule;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * CPU per message against bytes on the wire, for a stream of price updates to one
+ * topic, compressed as the {@code permessage-deflate} websocket extension does: raw
+ * deflate at the default level, flushed at the end of each message, less the 4 byte
+ * tail which the extension strips.
+ *
+ * <p>
+ * The {@code wire} and {@code payload} counters are the bytes sent and the bytes
+ * before compression, so {@code wire / payload} is the fraction of bytes left on
+ * the wire. The payload is what a client receives, and is sent uncompressed when
+ * compression is {@code off}.
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar PerMessageDeflateBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerMessageDeflateBenchmark {
+
+    /**
+     * {@code off}, {@code context-takeover} to compress each message with the messages
+     * before it as a dictionary, or {@code no-context-takeover} to compress each on its own.
+     */
+    @Param({"off", "context-takeover", "no-context-takeover"})
+    public String compression;
+
+    /**
+     * Number of items in each message, 1 is typical and 100 is large.
+     */
+    @Param({"1", "100"})
+    public int items;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long payload;
+        public long wire;
+        @Setup(Level.Iteration)
+        public void reset() {
+            payload = 0;
+            wire = 0;
+        }
+    }
+
+    private static final int MESSAGES = 1024;
+
+    private byte[][] messages;
+
+    private int next;
+
+    private Deflater deflater;
+
+    private final byte[] output = new byte[64 * 1024];
+
+    @Setup
+    public void setUp() throws IOException {
+        final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new WebsocketMessageModule()).build();
+        messages = new byte[MESSAGES][];
+        for (int i = 0; i < MESSAGES; i++) {
+            final WebsocketMessage<Long, Object> message = Messages.websocketMessage(items);
+            message.setId((long)i);
+            // Prices move between messages
+            for (Object item : (Iterable<?>)message.getContent()) {
+                @SuppressWarnings("unchecked") final Map<String, Object> fields = (Map<String, Object>)item;
+                fields.put("bid", (Double)fields.get("bid") + (i % 17) * 0.25);
+                fields.put("ask", (Double)fields.get("ask") + (i % 13) * 0.25);
+                fields.put("volume", (Long)fields.get("volume") + i * 10L);
+            }
+            messages[i] = objectMapper.writeValueAsBytes(message);
+        }
+        deflater = "off".equals(compression) ? null : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (deflater != null) {
+            deflater.end();
+        }
+    }
+
+    @Benchmark
+    public int send(Bytes bytes) {
+        final byte[] message = messages[next];
+        next = (next + 1) % MESSAGES;
+        final int length = deflater == null ? message.length : deflate(message);
+        bytes.payload += message.length;
+        bytes.wire += length;
+        return length;
+    }
+
+    private int deflate(byte[] message) {
+        if ("no-context-takeover".equals(compression)) {
+            deflater.reset();
+        }
+        deflater.setInput(message);
+        int length = 0;
+        int written;
+        do {
+            written = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            length += written;
+        } while (written == output.length);
+        // The extension strips the 0x00 0x00 0xff 0xff which ends each flush
+        return length - 4;
+    }
+}
@@ -0,0 +1,131 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.looseboxes.websocket.server.broker.IndexedSubscriptionRegistry;
+import com.looseboxes.websocket.server.broker.ShardedBrokerMessageHandler;
+import com.looseboxes.websocket.server.broker.ShardedSubscriptionRegistry;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+/**
+ * Broadcasting by the {@link ShardedBrokerMessageHandler}, by number of shards, against
+ * the simple broker with the indexed registry ({@code shards=0}), which broadcasts on
+ * the publishing thread. Each operation publishes one message to each of 64
+ * destinations, and waits until every subscriber of each has been sent the message.
+ * The client outbound channel only counts the messages.
+ *
+ * <p>
+ * Shards scale with the cores available, up to the number of shards. Compare the
+ * scores for 1 to 16 shards on a machine with at least 16 cores.
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ShardedBrokerBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardedBrokerBenchmark {
+
+    private static final int DESTINATIONS = 64;
+
+    @Param({"0", "1", "2", "4", "8", "16"})
+    public int shards;
+
+    @Param({"100"})
+    public int subscribers;
+
+    private final LongAdder sent = new LongAdder();
+
+    private SimpleBrokerMessageHandler broker;
+
+    private Message<byte[]>[] messages;
+
+    private long expected;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws JsonProcessingException {
+
+        final MessageChannel clientOutboundChannel = (outbound, timeout) -> {
+            sent.increment();
+            return true;
+        };
+
+        if (shards > 0) {
+            broker = new ShardedBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutboundChannel,
+                    new ExecutorSubscribableChannel(), Collections.singletonList("/topic"),
+                    new ShardedSubscriptionRegistry(shards));
+        }else{
+            broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutboundChannel,
+                    new ExecutorSubscribableChannel(), Collections.singletonList("/topic"));
+            broker.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+        }
+        broker.start();
+
+        final byte[] payload = Jackson2ObjectMapperBuilder.json().build().writeValueAsBytes(Messages.websocketMessage(1));
+
+        for (int i = 0; i < subscribers; i++) {
+            broker.handleMessage(Messages.connect("session-" + i));
+        }
+
+        messages = new Message[DESTINATIONS];
+        for (int d = 0; d < DESTINATIONS; d++) {
+            final String destination = "/topic/prices/item-" + d;
+            for (int i = 0; i < subscribers; i++) {
+                broker.handleMessage(Messages.subscribe("session-" + i, "sub-" + d, destination));
+            }
+            messages[d] = Messages.message(destination, payload);
+        }
+
+        // Not counting the CONNECT_ACK frames
+        expected = sent.sum();
+
+        // Wait for the shards to register the subscriptions
+        publish();
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+        if (broker instanceof ShardedBrokerMessageHandler) {
+            ((ShardedBrokerMessageHandler)broker).destroy();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DESTINATIONS)
+    public void publish() {
+        expected += (long)DESTINATIONS * subscribers;
+        for (Message<byte[]> message : messages) {
+            broker.handleMessage(message);
+        }
+        while (sent.sum() < expected) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.looseboxes.websocket.benchmark;
+
+import com.looseboxes.websocket.server.broker.IndexedSubscriptionRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Compares spring's {@link DefaultSubscriptionRegistry} with the {@link IndexedSubscriptionRegistry}
+ * for publish lookups and subscribe/unsubscribe churn, with tens of thousands of subscriptions.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar SubscriptionRegistryBenchmark
+ * </pre>
+ * @author chinomso ikwuagwu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubscriptionRegistryBenchmark {
+
+    @Param({"default", "indexed"})
+    public String registry;
+
+    @Param({"1000", "50000"})
+    public int destinations;
+
+    /**
+     * Number of sessions subscribed to each destination.
+     */
+    @Param({"2"})
+    public int subscribersPerDestination;
+
+    /**
+     * Number of pattern subscriptions e.g {@code /topic/prices/*}.
+     */
+    @Param({"0", "10"})
+    public int patterns;
+
+    private SubscriptionRegistry subscriptionRegistry;
+
+    private Message<byte[]>[] publishMessages;
+
+    private final AtomicLong churnIds = new AtomicLong();
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        subscriptionRegistry = "indexed".equals(registry) ? new IndexedSubscriptionRegistry() : new DefaultSubscriptionRegistry();
+        publishMessages = new Message[destinations];
+        for (int i = 0; i < destinations; i++) {
+            final String destination = destination(i);
+            for (int j = 0; j < subscribersPerDestination; j++) {
+                subscriptionRegistry.registerSubscription(Messages.subscribe("session-" + j, "sub-" + i, destination));
+            }
+            publishMessages[i] = Messages.message(destination, new byte[0]);
+        }
+        for (int i = 0; i < patterns; i++) {
+            subscriptionRegistry.registerSubscription(Messages.subscribe("pattern-session-" + i, "sub", "/topic/prices/" + i + "/*"));
+        }
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> publishLookup() {
+        return subscriptionRegistry.findSubscriptions(publishMessages[ThreadLocalRandom.current().nextInt(destinations)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public MultiValueMap<String, String> publishLookupContended() {
+        return publishLookup();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void subscribeUnsubscribeChurn() {
+        final long id = churnIds.incrementAndGet();
+        final String sessionId = "churn-session-" + id;
+        final String subscriptionId = "churn-" + id;
+        subscriptionRegistry.registerSubscription(Messages.subscribe(sessionId, subscriptionId,
+                destination(ThreadLocalRandom.current().nextInt(destinations))));
+        subscriptionRegistry.unregisterSubscription(Messages.unsubscribe(sessionId, subscriptionId));
+    }
+
+    private static String destination(int i) {
+        return "/topic/prices/" + (i % 100) + "/item-" + i;
+    }
+}
@@ -0,0 +1,278 @@
+package com.looseboxes.websocket.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.looseboxes.websocket.client.WebSocketClientHandler;
+import com.looseboxes.websocket.client.config.WebsocketClientConfigurationSource;
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.io.PrintStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+/**
+ * Opens the configured number of STOMP sessions, each subscribed to one of the
+ * configured number of topics, then publishes to {@code /messaging/send/loadtest/*}
+ * at the configured rate, round robin across the sessions.
+ *
+ * <p>
+ * Reports the time taken to connect each session, and the latency from publish
+ * to receipt of each message by each subscriber, as percentiles. Latency is
+ * measured from when a message was due to be sent rather than when it was
+ * sent, so that the report is not flattered when the publisher falls behind.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class LoadGenerator implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final String PATH = "/loadtest/";
+
+    private final LoadTestProperties properties;
+
+    private final WebsocketProperties websocketProperties;
+
+    private final Environment environment;
+
+    private final ObjectMapper objectMapper;
+
+    private final Recorder latencies = new Recorder(3);
+
+    private final LongAdder received = new LongAdder();
+
+    private volatile boolean measuring;
+
+    public LoadGenerator(LoadTestProperties properties, WebsocketProperties websocketProperties,
+                         Environment environment, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.websocketProperties = websocketProperties;
+        this.environment = environment;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+
+        final String url = properties.getUrl() != null ? properties.getUrl() :
+                "ws://localhost:" + environment.getProperty("local.server.port") + WebsocketEndpoints.ENDPOINT;
+
+        log.info("Load testing {}, {}", url, properties);
+
+        final WebSocketStompClient stompClient = new WebsocketClientConfigurationSource() {
+            @Override
+            protected WebSocketStompClient configure(WebSocketStompClient stompClient) {
+                // The same object mapper as the server, so that timestamps can be read
+                final MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+                messageConverter.setObjectMapper(objectMapper);
+                stompClient.setMessageConverter(messageConverter);
+                return stompClient;
+            }
+        }.websocketStompClient();
+
+        final Histogram connectTimes = new Histogram(3);
+
+        final List<WebSocketClientHandler> handlers = connect(stompClient, url, connectTimes);
+
+        try {
+            if (handlers.isEmpty()) {
+                log.error("No session connected to: {}", url);
+                return;
+            }
+
+            Thread.sleep(properties.getSettleTime());
+
+            final Publisher publisher = new Publisher(handlers);
+
+            publisher.publishFor(TimeUnit.SECONDS.toNanos(properties.getWarmup()));
+
+            latencies.reset();
+            received.reset();
+            measuring = true;
+
+            final long sent = publisher.publishFor(TimeUnit.SECONDS.toNanos(properties.getDuration()));
+
+            Thread.sleep(properties.getSettleTime());
+            measuring = false;
+
+            report(System.out, handlers.size(), connectTimes, sent, latencies.getIntervalHistogram());
+
+        }finally{
+            handlers.forEach(WebSocketClientHandler::disconnect);
+            stompClient.stop();
+        }
+    }
+
+    private List<WebSocketClientHandler> connect(WebSocketStompClient stompClient, String url,
+                                                 Histogram connectTimes) throws InterruptedException {
+
+        final List<WebSocketClientHandler> handlers = Collections.synchronizedList(new ArrayList<>(properties.getSessions()));
+        final Semaphore permits = new Semaphore(properties.getConnectConcurrency());
+        final CountDownLatch done = new CountDownLatch(properties.getSessions());
+        final AtomicInteger failed = new AtomicInteger();
+        final StompFrameHandler frameHandler = new LatencyRecordingFrameHandler();
+
+        for (int i = 0; i < properties.getSessions(); i++) {
+
+            permits.acquire();
+
+            final String destination = WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC + PATH + (i % properties.getDestinations());
+            final WebSocketClientHandler handler = new WebSocketClientHandler(stompClient);
+            // Subscribed once connected. The connect future may complete before then.
+            handler.addAutoSubscription(destination, frameHandler);
+            final long startedAt = System.nanoTime();
+
+            handler.connect(url).addCallback(session -> {
+                synchronized (connectTimes) {
+                    connectTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+                }
+                handlers.add(handler);
+                permits.release();
+                done.countDown();
+            }, exception -> {
+                log.debug("Failed to connect", exception);
+                failed.incrementAndGet();
+                permits.release();
+                done.countDown();
+            });
+        }
+
+        done.await();
+
+        if (failed.get() > 0) {
+            log.warn("Failed to connect {} of {} sessions", failed.get(), properties.getSessions());
+        }
+
+        return handlers;
+    }
+
+    /**
+     * Publishes at the configured rate, from a single thread, round robin across the sessions.
+     */
+    private final class Publisher {
+
+        private final List<WebSocketClientHandler> handlers;
+
+        private final String sendPrefix;
+
+        private long sequence;
+
+        private Publisher(List<WebSocketClientHandler> handlers) {
+            this.handlers = new ArrayList<>(handlers);
+            this.sendPrefix = websocketProperties.getApplicationEndpointsForSuffix(WebsocketEndpoints.SEND + PATH)[0];
+        }
+
+        /**
+         * @return The number of messages sent
+         */
+        private long publishFor(long durationNanos) throws InterruptedException {
+
+            final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+            final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, properties.getRate());
+            final long startedAt = System.nanoTime();
+            final long[] sent = new long[1];
+
+            executor.scheduleAtFixedRate(() -> {
+                final long elapsed = Math.min(System.nanoTime() - startedAt, durationNanos);
+                final long due = elapsed / intervalNanos;
+                while (sent[0] < due) {
+                    // Latency is measured from when the message was due
+                    send(startedAt + sent[0] * intervalNanos);
+                    ++sent[0];
+                }
+            }, 0, 1, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+
+            return sent[0];
+        }
+
+        private void send(long dueAt) {
+            final long id = sequence++;
+            final WebSocketClientHandler handler = handlers.get((int)(id % handlers.size()));
+            final StompSession session = handler.getStompSessionOptional().orElse(null);
+            if (session == null || !session.isConnected()) {
+                return;
+            }
+            try {
+                session.send(sendPrefix + (id % properties.getDestinations()),
+                        new WebsocketMessage<Long, Long>().id(id).sender("loadtest").content(dueAt));
+            }catch(RuntimeException e) {
+                log.debug("Failed to send", e);
+            }
+        }
+    }
+
+    private final class LatencyRecordingFrameHandler implements StompFrameHandler {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return WebsocketMessage.class;
+        }
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            final long now = System.nanoTime();
+            if (!measuring || !(payload instanceof WebsocketMessage)) {
+                return;
+            }
+            final Object content = ((WebsocketMessage)payload).getContent();
+            if (content instanceof Number) {
+                latencies.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(now - ((Number)content).longValue())));
+                received.increment();
+            }
+        }
+    }
+
+    private void report(PrintStream out, int connected, Histogram connectTimes, long sent, Histogram latencies) {
+
+        final int subscribersPerDestination = connected / Math.max(1, properties.getDestinations());
+        final double seconds = properties.getDuration();
+
+        out.println();
+        out.println("Sessions connected:       " + connected + " of " + properties.getSessions());
+        out.println("Connect time (ms):        " + percentiles(connectTimes));
+        out.println("Messages sent:            " + sent + String.format(" (%.1f/s)", sent / seconds));
+        out.println("Messages received:        " + received.sum() + String.format(" (%.1f/s)", received.sum() / seconds)
+                + ", expected about " + (sent * subscribersPerDestination));
+        out.println("Publish to receive (ms):  " + percentiles(latencies));
+        out.println();
+    }
+
+    private String percentiles(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "no values";
+        }
+        return String.format("p50=%.3f, p90=%.3f, p99=%.3f, p99.9=%.3f, max=%.3f, count=%d",
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,34 @@
+package com.looseboxes.websocket.loadtest;
+
+import com.looseboxes.websocket.server.WebsocketServerLibBasePackageClass;
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import java.util.Collections;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+/**
+ * Starts this library in an embedded server on localhost, then runs the
+ * {@link LoadGenerator} against it, reports and exits. Any property of this
+ * library may be given, so that configurations can be compared e.g
+ *
+ * <pre>
+ * java -jar target/loadtest.jar --loadtest.sessions=5000 --loadtest.rate=2000 --looseboxes.websocket.broker.mode=indexed
+ * </pre>
+ *
+ * To run against a server started elsewhere, give its url e.g
+ * {@code --loadtest.url=ws://host:8080/ws}
+ * @author chinomso ikwuagwu
+ */
+@SpringBootApplication(scanBasePackageClasses = {WebsocketServerLibBasePackageClass.class, LoadTestApplication.class},
+        exclude = {SecurityAutoConfiguration.class})
+@EnableConfigurationProperties({WebsocketProperties.class, LoadTestProperties.class})
+public class LoadTestApplication {
+
+    public static void main(String[] args) {
+        final SpringApplication application = new SpringApplication(LoadTestApplication.class);
+        application.setDefaultProperties(Collections.singletonMap("server.port", "0"));
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+}
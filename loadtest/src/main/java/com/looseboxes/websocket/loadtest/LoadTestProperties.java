@@ -0,0 +1,130 @@
+package com.looseboxes.websocket.loadtest;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+@ConfigurationProperties(prefix = "loadtest", ignoreUnknownFields = false)
+public class LoadTestProperties {
+
+    /**
+     * The url of the websocket endpoint. When not set, the embedded server is used.
+     */
+    private String url;
+
+    /**
+     * Number of STOMP sessions to open.
+     */
+    private int sessions = 1000;
+
+    /**
+     * Maximum number of sessions being connected at any one time.
+     */
+    private int connectConcurrency = 100;
+
+    /**
+     * Number of topics. Each session subscribes to one topic, so each message
+     * is received by about sessions/destinations sessions.
+     */
+    private int destinations = 100;
+
+    /**
+     * Messages published per second, across all sessions.
+     */
+    private int rate = 1000;
+
+    /**
+     * Time, in seconds, to publish for.
+     */
+    private int duration = 30;
+
+    /**
+     * Time, in seconds, to publish for before measuring, so that the JIT has warmed up.
+     */
+    private int warmup = 5;
+
+    /**
+     * Time, in milliseconds, to wait for subscriptions to be registered before
+     * publishing, and for messages in flight to be received after publishing.
+     */
+    private long settleTime = 2000;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public void setSessions(int sessions) {
+        this.sessions = sessions;
+    }
+
+    public int getConnectConcurrency() {
+        return connectConcurrency;
+    }
+
+    public void setConnectConcurrency(int connectConcurrency) {
+        this.connectConcurrency = connectConcurrency;
+    }
+
+    public int getDestinations() {
+        return destinations;
+    }
+
+    public void setDestinations(int destinations) {
+        this.destinations = destinations;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+
+    public long getSettleTime() {
+        return settleTime;
+    }
+
+    public void setSettleTime(long settleTime) {
+        this.settleTime = settleTime;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTestProperties{" +
+                "url='" + url + '\'' +
+                ", sessions=" + sessions +
+                ", connectConcurrency=" + connectConcurrency +
+                ", destinations=" + destinations +
+                ", rate=" + rate +
+                ", duration=" + duration +
+                ", warmup=" + warmup +
+                ", settleTime=" + settleTime +
+                '}';
+    }
+}
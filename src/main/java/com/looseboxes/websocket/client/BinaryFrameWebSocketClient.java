@@ -0,0 +1,46 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.server.codec.BinaryFrameSessionDecorator;
+import java.net.URI;
+import org.springframework.lang.Nullable;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * Decorates each session with a {@link BinaryFrameSessionDecorator}, so that frames
+ * with binary payloads e.g CBOR, are sent in binary websocket messages.
+ * @author hp
+ */
+public class BinaryFrameWebSocketClient implements WebSocketClient {
+
+    private final WebSocketClient delegate;
+
+    public BinaryFrameWebSocketClient(WebSocketClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ListenableFuture<WebSocketSession> doHandshake(WebSocketHandler webSocketHandler,
+                                                          String uriTemplate, Object... uriVariables) {
+        return delegate.doHandshake(decorate(webSocketHandler), uriTemplate, uriVariables);
+    }
+
+    @Override
+    public ListenableFuture<WebSocketSession> doHandshake(WebSocketHandler webSocketHandler,
+                                                          @Nullable WebSocketHttpHeaders headers, URI uri) {
+        return delegate.doHandshake(decorate(webSocketHandler), headers, uri);
+    }
+
+    private WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(new BinaryFrameSessionDecorator(session));
+            }
+        };
+    }
+}
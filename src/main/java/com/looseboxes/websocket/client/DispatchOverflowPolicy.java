@@ -0,0 +1,22 @@
+package com.looseboxes.websocket.client;
+
+/**
+ * What a {@link StompFrameDispatcher} does with a frame received for a
+ * destination whose queue is full.
+ * @author hp
+ */
+public enum DispatchOverflowPolicy {
+    /**
+     * Wait for the queue to have room. Reading from the connection stops
+     * meanwhile, so that the server eventually applies its own policy.
+     */
+    BLOCK,
+    /**
+     * Discard the oldest queued frame, to make room for the frame.
+     */
+    DROP_OLDEST,
+    /**
+     * Discard the frame.
+     */
+    DROP_NEWEST
+}
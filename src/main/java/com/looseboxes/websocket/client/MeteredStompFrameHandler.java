@@ -0,0 +1,43 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.client.metrics.WebsocketClientMetrics;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.lang.reflect.Type;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+/**
+ * Records the time taken by the delegate to handle each message, and the
+ * delivery latency of each {@link WebsocketMessage}.
+ * @author hp
+ */
+class MeteredStompFrameHandler implements StompFrameHandler {
+
+    private final String destination;
+
+    private final StompFrameHandler delegate;
+
+    private final WebsocketClientMetrics metrics;
+
+    MeteredStompFrameHandler(String destination, StompFrameHandler delegate, WebsocketClientMetrics metrics) {
+        this.destination = destination;
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return delegate.getPayloadType(headers);
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        final long startedAt = System.nanoTime();
+        try {
+            delegate.handleFrame(headers, payload);
+        }finally{
+            metrics.onMessageHandled(destination, System.nanoTime() - startedAt,
+                    payload instanceof WebsocketMessage ? ((WebsocketMessage)payload).getTimestampMillis() : -1);
+        }
+    }
+}
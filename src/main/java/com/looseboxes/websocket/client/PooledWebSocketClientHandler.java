@@ -0,0 +1,377 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.client.metrics.WebsocketClientMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSession.Subscription;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+/**
+ * Opens a pool of STOMP sessions, each over its own connection, and spreads
+ * subscriptions across them by a hash of the destination, so that no one
+ * connection carries every subscription.
+ *
+ * <p>
+ * A destination is subscribed to on the session its hash selects, or if that
+ * session is not connected, on the next connected session. When a session drops,
+ * its destinations are moved to the other connected sessions, and when the
+ * session reconnects they are moved back. Sessions reconnect with the backoff
+ * of {@link WebSocketClientHandler#setReconnectBackoff(ReconnectBackoff)}.
+ * </p>
+ * <p>
+ * Offers the subscription methods of {@link WebSocketClientHandler}.
+ * </p>
+ * @author hp
+ */
+public class PooledWebSocketClientHandler implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledWebSocketClientHandler.class);
+
+    private final WebSocketStompClient client;
+
+    private final WebsocketClientMetrics metrics;
+
+    private final Shard [] shards;
+
+    // All guarded by this
+    private final Map<String, StompFrameHandler> autoSubscriptions = new LinkedHashMap<>();
+    private final Map<String, StompFrameHandler> subscriptions = new LinkedHashMap<>();
+    private final Map<String, Integer> shardsByDestination = new HashMap<>();
+
+    public PooledWebSocketClientHandler(WebSocketStompClient client, int sessions) {
+        this(client, sessions, WebsocketClientMetrics.NOOP, null);
+    }
+
+    /**
+     * @param client The client to connect with
+     * @param sessions The number of sessions to open
+     * @param metrics The metrics to record
+     * @param dispatcher Hands received frames to handlers on other threads. When
+     *                   {@code null}, handlers run on the thread reading from the connection.
+     */
+    public PooledWebSocketClientHandler(WebSocketStompClient client, int sessions,
+                                        WebsocketClientMetrics metrics, @Nullable StompFrameDispatcher dispatcher) {
+        if (sessions < 1) {
+            throw new IllegalArgumentException("Sessions must be at least 1, found: " + sessions);
+        }
+        this.client = client;
+        this.metrics = Objects.requireNonNull(metrics);
+        final WebsocketClientMetrics shardMetrics = new ShardMetrics(metrics);
+        // Shared, so that a destination moved to another session resumes where it left off
+        final ConcurrentMap<String, Long> lastSequences = new ConcurrentHashMap<>();
+        this.shards = new Shard[sessions];
+        for (int i = 0; i < sessions; i++) {
+            this.shards[i] = new Shard(client, shardMetrics, dispatcher, lastSequences);
+        }
+        if (dispatcher != null) {
+            metrics.monitor(dispatcher);
+        }
+    }
+
+    /**
+     * Connects each session of the pool which is not already connected.
+     * @param url The url of the websocket endpoint
+     * @return The future of each session being connected
+     */
+    public List<ListenableFuture<StompSession>> connect(String url) {
+        final List<ListenableFuture<StompSession>> result = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            if (!shard.isConnected() && !shard.isConnecting()) {
+                result.add(shard.connect(url));
+            }
+        }
+        return result;
+    }
+
+    public boolean isConnected() {
+        return getConnectedCount() > 0;
+    }
+
+    public int getConnectedCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            if (shard.isConnected()) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    public int getSessionCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return The handler of each session of the pool
+     */
+    public List<WebSocketClientHandler> getSessionHandlers() {
+        return Collections.unmodifiableList(Arrays.asList(shards));
+    }
+
+    public boolean disconnect() {
+        boolean result = false;
+        for (Shard shard : shards) {
+            result |= shard.disconnect();
+        }
+        return result;
+    }
+
+    /**
+     * Add to destinations which will be automatically subscribed to on each connect
+     * @param destination The destination to add
+     * @param stompFrameHandler
+     */
+    public void addAutoSubscription(String destination, StompFrameHandler stompFrameHandler) {
+        synchronized (this) {
+            autoSubscriptions.put(destination, stompFrameHandler);
+        }
+        rebalance();
+    }
+
+    public synchronized Map<String, Subscription> getSubscriptions() {
+        final Map<String, Subscription> result = new HashMap<>();
+        for (Shard shard : shards) {
+            result.putAll(shard.getSubscriptions());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public synchronized boolean isSubscribed(String destination) {
+        return shardsByDestination.containsKey(destination);
+    }
+
+    /**
+     * @param destination The destination subscribed to
+     * @return The index, in {@link #getSessionHandlers()}, of the session subscribed
+     * to the destination, or {@code null} if not subscribed
+     */
+    @Nullable
+    synchronized Integer getSessionIndex(String destination) {
+        return shardsByDestination.get(destination);
+    }
+
+    /**
+     * Subscribe to the given destination on the session its hash selects, and
+     * handle received messages with the specified {@link StompFrameHandler}.
+     * The destination is subscribed to again whenever it is moved to another session.
+     * @param destination the destination to subscribe to
+     * @param handler the handler for received messages
+     * @return {@code true} if the subscription request was sent, otherwise
+     * {@code false} e.g when no session is connected. The subscription is then
+     * sent when a session connects.
+     */
+    public boolean subscribeIfNotAlready(String destination, StompFrameHandler handler) {
+        synchronized (this) {
+            subscriptions.putIfAbsent(destination, handler);
+            final Integer index = shardsByDestination.get(destination);
+            if (index != null) {
+                return false;
+            }
+            return subscribe(destination, handler);
+        }
+    }
+
+    public synchronized Collection<String> unsubscribe() {
+        final List<String> result = new ArrayList<>();
+        subscriptions.clear();
+        new ArrayList<>(shardsByDestination.keySet()).forEach(destination -> {
+            if (this.unsubscribe(destination)) {
+                result.add(destination);
+            }
+        });
+        return result;
+    }
+
+    public synchronized boolean unsubscribe(String destination) {
+        subscriptions.remove(destination);
+        final Integer index = shardsByDestination.remove(destination);
+        if (index == null) {
+            return false;
+        }
+        final boolean success = shards[index].unsubscribe(destination);
+        metrics.onSubscriptionsChanged(shardsByDestination.size());
+        return success;
+    }
+
+    /**
+     * Moves each destination to the connected session its hash selects.
+     */
+    private synchronized void rebalance() {
+
+        final Map<String, StompFrameHandler> handlers = new LinkedHashMap<>(autoSubscriptions);
+        handlers.putAll(subscriptions);
+
+        for (Map.Entry<String, StompFrameHandler> entry : handlers.entrySet()) {
+
+            final String destination = entry.getKey();
+            final Integer current = shardsByDestination.get(destination);
+            final int target = select(destination);
+
+            if (current != null && current == target && shards[current].isSubscribed(destination)) {
+                continue;
+            }
+
+            if (current != null) {
+                shards[current].unsubscribe(destination);
+                shardsByDestination.remove(destination);
+            }
+
+            if (target != -1) {
+                subscribe(destination, entry.getValue());
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Rebalanced {} destinations across {} of {} sessions",
+                    shardsByDestination.size(), getConnectedCount(), shards.length);
+        }
+    }
+
+    private boolean subscribe(String destination, StompFrameHandler handler) {
+        final int target = select(destination);
+        if (target == -1 || !shards[target].subscribeIfNotAlready(destination, handler)) {
+            return false;
+        }
+        shardsByDestination.put(destination, target);
+        metrics.onSubscriptionsChanged(shardsByDestination.size());
+        return true;
+    }
+
+    /**
+     * @return The index of the session selected by the destination's hash, or of the
+     * next session which is connected, or {@code -1} if no session is connected
+     */
+    private int select(String destination) {
+        final int start = Math.floorMod(destination.hashCode(), shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            final int index = (start + i) % shards.length;
+            if (shards[index].isConnected()) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forget the session's destinations, so that they are moved to other sessions.
+     */
+    private synchronized void release(Shard shard) {
+        final Collection<String> destinations = shard.unsubscribe();
+        shardsByDestination.keySet().removeAll(destinations);
+    }
+
+    private final class Shard extends WebSocketClientHandler {
+
+        private Shard(WebSocketStompClient client, WebsocketClientMetrics metrics,
+                      @Nullable StompFrameDispatcher dispatcher, ConcurrentMap<String, Long> lastSequences) {
+            super(client, metrics, dispatcher, lastSequences);
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            release(this);
+            super.afterConnected(session, connectedHeaders);
+            rebalance();
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            super.handleTransportError(session, exception);
+            if (!isConnected()) {
+                release(this);
+                rebalance();
+            }
+        }
+    }
+
+    /**
+     * Subscriptions are counted by the pool, across its sessions.
+     */
+    private static final class ShardMetrics implements WebsocketClientMetrics {
+        private final WebsocketClientMetrics delegate;
+        private ShardMetrics(WebsocketClientMetrics delegate) {
+            this.delegate = delegate;
+        }
+        @Override
+        public boolean isEnabled() {
+            return delegate.isEnabled();
+        }
+        @Override
+        public void onMessageHandled(String destination, long nanos, long timestamp) {
+            delegate.onMessageHandled(destination, nanos, timestamp);
+        }
+        @Override
+        public void onConnectionLost() {
+            delegate.onConnectionLost();
+        }
+        @Override
+        public void onReconnectAttempt() {
+            delegate.onReconnectAttempt();
+        }
+        @Override
+        public void onReconnectFailed() {
+            delegate.onReconnectFailed();
+        }
+        @Override
+        public void onReconnected(long downtimeMillis) {
+            delegate.onReconnected(downtimeMillis);
+        }
+        @Override
+        public void onResubscribed(int count, long nanos) {
+            delegate.onResubscribed(count, nanos);
+        }
+        @Override
+        public void onSequenceGap(String destination, long missed) {
+            delegate.onSequenceGap(destination, missed);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        log.debug("#afterPropertiesSet()");
+        if (client instanceof InitializingBean) {
+            InitializingBean bean = (InitializingBean)client;
+            bean.afterPropertiesSet();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void destroy() throws Exception {
+        log.debug("#destroy()");
+
+        try{
+            this.unsubscribe();
+        }finally{
+            this.disconnect();
+        }
+
+        if(this.client.isRunning()) {
+            this.client.stop();
+        }
+
+        if (client instanceof DisposableBean) {
+            DisposableBean bean = (DisposableBean)client;
+            bean.destroy();
+        }
+    }
+}
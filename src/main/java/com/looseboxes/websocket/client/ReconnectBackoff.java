@@ -0,0 +1,92 @@
+package com.looseboxes.websocket.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter, for reconnecting after a connection is lost.
+ *
+ * <p>
+ * The delay before an attempt is chosen at random, between zero and the lesser of the
+ * maximum delay and the initial delay multiplied by the multiplier once per earlier
+ * attempt. So clients which lost their connections at the same time, e.g when a server
+ * restarts, spread their attempts out rather than reconnecting in lockstep.
+ * </p>
+ * @author hp
+ */
+public class ReconnectBackoff {
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    private final double multiplier;
+
+    private final int maxAttempts;
+
+    /**
+     * An initial delay of 1 second, doubling up to 30 seconds, without limiting attempts.
+     */
+    public ReconnectBackoff() {
+        this(1000, 30_000, 2.0, 0);
+    }
+
+    /**
+     * @param initialDelay The maximum delay, in milliseconds, before the first attempt
+     * @param maxDelay The maximum delay, in milliseconds, before any attempt
+     * @param multiplier The factor by which the maximum delay grows per attempt
+     * @param maxAttempts The number of attempts after which to give up, or zero to never give up
+     */
+    public ReconnectBackoff(long initialDelay, long maxDelay, double multiplier, int maxAttempts) {
+        if (initialDelay < 0 || maxDelay < initialDelay || multiplier < 1 || maxAttempts < 0) {
+            throw new IllegalArgumentException("Invalid backoff, initialDelay: " + initialDelay +
+                    ", maxDelay: " + maxDelay + ", multiplier: " + multiplier + ", maxAttempts: " + maxAttempts);
+        }
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param attempt The attempt, starting from 1
+     * @return The delay in milliseconds before the attempt
+     */
+    public long getDelay(int attempt) {
+        final double ceiling = Math.min(maxDelay, initialDelay * Math.pow(multiplier, Math.max(0, attempt - 1)));
+        return ThreadLocalRandom.current().nextLong((long)ceiling + 1);
+    }
+
+    /**
+     * @param attempt The attempt, starting from 1
+     * @return {@code true} if the attempt may be made
+     */
+    public boolean isAttemptAllowed(int attempt) {
+        return maxAttempts == 0 || attempt <= maxAttempts;
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "ReconnectBackoff{" +
+                "initialDelay=" + initialDelay +
+                ", maxDelay=" + maxDelay +
+                ", multiplier=" + multiplier +
+                ", maxAttempts=" + maxAttempts +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.client.metrics.WebsocketClientMetrics;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+/**
+ * Records the last {@link WebsocketHeaders#SEQUENCE sequence} received from the
+ * destination, so that a later subscription may resume from it, and records
+ * gaps in the sequence.
+ * @author hp
+ */
+class SequenceTrackingStompFrameHandler implements StompFrameHandler {
+
+    private final String destination;
+
+    private final StompFrameHandler delegate;
+
+    private final ConcurrentMap<String, Long> lastSequences;
+
+    private final WebsocketClientMetrics metrics;
+
+    SequenceTrackingStompFrameHandler(String destination, StompFrameHandler delegate,
+                                      ConcurrentMap<String, Long> lastSequences, WebsocketClientMetrics metrics) {
+        this.destination = destination;
+        this.delegate = delegate;
+        this.lastSequences = lastSequences;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return delegate.getPayloadType(headers);
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        final String value = headers.getFirst(WebsocketHeaders.SEQUENCE);
+        if (value != null) {
+            try {
+                final long sequence = Long.parseLong(value);
+                // Frames from a destination are handled one at a time. A frame received
+                // out of order neither moves the last sequence back, nor counts as a gap.
+                final Long last = lastSequences.get(destination);
+                lastSequences.merge(destination, sequence, Math::max);
+                if (last != null && sequence > last + 1) {
+                    metrics.onSequenceGap(destination, sequence - last - 1);
+                }
+            }catch(NumberFormatException ignored) { }
+        }
+        delegate.handleFrame(headers, payload);
+    }
+}
@@ -0,0 +1,278 @@
+package com.looseboxes.websocket.client;
+
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Hands frames received by a {@link WebSocketClientHandler} to its
+ * {@link StompFrameHandler}s on an executor, so that a slow handler does not
+ * stop frames being read from the connection.
+ *
+ * <p>
+ * Each destination has a bounded queue. Frames for a destination are handled
+ * one at a time, in the order received, while frames for different destinations
+ * are handled in parallel. When a queue is full the {@link DispatchOverflowPolicy}
+ * applies.
+ * </p>
+ * @author hp
+ */
+public class StompFrameDispatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(StompFrameDispatcher.class);
+
+    /**
+     * Maximum number of frames handled before yielding the thread to other destinations.
+     */
+    private static final int MAX_FRAMES_PER_DRAIN = 64;
+
+    private final Executor executor;
+
+    @Nullable private final ExecutorService ownExecutor;
+
+    private final int queueCapacity;
+
+    private final DispatchOverflowPolicy overflowPolicy;
+
+    private final ConcurrentMap<String, DestinationQueue> queues = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * @param threads Number of threads to handle frames on
+     * @param queueCapacity Maximum number of frames queued per destination
+     * @param overflowPolicy What to do with a frame for a destination whose queue is full
+     */
+    public StompFrameDispatcher(int threads, int queueCapacity, DispatchOverflowPolicy overflowPolicy) {
+        this(Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("websocketClientDispatch-")),
+                true, queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * @param executor The executor to handle frames on. Not shut down by this dispatcher.
+     * @param queueCapacity Maximum number of frames queued per destination
+     * @param overflowPolicy What to do with a frame for a destination whose queue is full
+     */
+    public StompFrameDispatcher(Executor executor, int queueCapacity, DispatchOverflowPolicy overflowPolicy) {
+        this(executor, false, queueCapacity, overflowPolicy);
+    }
+
+    private StompFrameDispatcher(Executor executor, boolean ownExecutor,
+                                 int queueCapacity, DispatchOverflowPolicy overflowPolicy) {
+        this.executor = Objects.requireNonNull(executor);
+        this.ownExecutor = ownExecutor ? (ExecutorService)executor : null;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    /**
+     * @param destination The destination subscribed to
+     * @param handler The handler of frames received from the destination
+     * @return A handler which queues frames, for the given handler to handle on this dispatcher's executor
+     */
+    public StompFrameHandler dispatching(String destination, StompFrameHandler handler) {
+        final DestinationQueue queue = new DestinationQueue(destination, handler);
+        queues.put(destination, queue);
+        return queue;
+    }
+
+    /**
+     * Frames already queued for the destination are still handled.
+     * @param destination The destination no longer subscribed to
+     */
+    public void remove(String destination) {
+        queues.remove(destination);
+    }
+
+    /**
+     * @return The number of frames queued, across all destinations
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * @return The number of frames queued for the destination with the most frames queued
+     */
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (DestinationQueue queue : queues.values()) {
+            max = Math.max(max, queue.size());
+        }
+        return max;
+    }
+
+    /**
+     * @param destination The destination subscribed to
+     * @return The number of frames queued for the destination
+     */
+    public int getQueueDepth(String destination) {
+        final DestinationQueue queue = queues.get(destination);
+        return queue == null ? 0 : queue.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public DispatchOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private static final class Frame {
+        private final StompHeaders headers;
+        private final Object payload;
+        private Frame(StompHeaders headers, Object payload) {
+            this.headers = headers;
+            this.payload = payload;
+        }
+    }
+
+    private final class DestinationQueue implements StompFrameHandler {
+
+        private final String destination;
+
+        private final StompFrameHandler delegate;
+
+        // All guarded by this
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private boolean draining;
+
+        private DestinationQueue(String destination, StompFrameHandler delegate) {
+            this.destination = destination;
+            this.delegate = delegate;
+        }
+
+        private synchronized int size() {
+            return frames.size();
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            // Payloads are still converted on the thread reading from the connection
+            return delegate.getPayloadType(headers);
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+
+            final boolean drain;
+
+            synchronized (this) {
+                while (frames.size() >= queueCapacity && !closed) {
+                    switch (overflowPolicy) {
+                        case DROP_NEWEST:
+                            dropped.increment();
+                            return;
+                        case DROP_OLDEST:
+                            frames.poll();
+                            queued.decrementAndGet();
+                            dropped.increment();
+                            break;
+                        case BLOCK:
+                        default:
+                            try {
+                                wait();
+                            }catch(InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                dropped.increment();
+                                return;
+                            }
+                    }
+                }
+                if (closed) {
+                    dropped.increment();
+                    return;
+                }
+                frames.add(new Frame(headers, payload));
+                queued.incrementAndGet();
+                drain = !draining;
+                draining = true;
+            }
+
+            if (drain) {
+                scheduleDrain();
+            }
+        }
+
+        private void scheduleDrain() {
+            try {
+                executor.execute(this::drain);
+            }catch(RejectedExecutionException e) {
+                log.warn("Failed to schedule handling of frames from: {}, {}", destination, e.toString());
+                synchronized (this) {
+                    draining = false;
+                    queued.addAndGet(-frames.size());
+                    dropped.add(frames.size());
+                    frames.clear();
+                    notifyAll();
+                }
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < MAX_FRAMES_PER_DRAIN; i++) {
+
+                final Frame frame;
+
+                synchronized (this) {
+                    frame = frames.poll();
+                    if (frame == null) {
+                        draining = false;
+                        return;
+                    }
+                    queued.decrementAndGet();
+                    if (overflowPolicy == DispatchOverflowPolicy.BLOCK) {
+                        notifyAll();
+                    }
+                }
+
+                try {
+                    delegate.handleFrame(frame.headers, frame.payload);
+                }catch(RuntimeException e) {
+                    log.warn("Failed to handle frame from: " + destination, e);
+                }
+            }
+
+            // Give other destinations a turn
+            scheduleDrain();
+        }
+
+        private synchronized void close() {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        queues.values().forEach(DestinationQueue::close);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+}
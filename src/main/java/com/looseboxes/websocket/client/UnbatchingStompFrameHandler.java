@@ -0,0 +1,52 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import org.springframework.core.ResolvableType;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+/**
+ * Passes each message of a batch, received as a single frame with a
+ * {@link WebsocketHeaders#BATCH_SIZE} header, to the delegate handler.
+ * Frames which are not batched are passed to the delegate as is.
+ * @author hp
+ */
+public class UnbatchingStompFrameHandler implements StompFrameHandler {
+
+    private final StompFrameHandler delegate;
+
+    public UnbatchingStompFrameHandler(StompFrameHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    public StompFrameHandler getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        final Type type = delegate.getPayloadType(headers);
+        if (isBatch(headers)) {
+            return ResolvableType.forArrayComponent(ResolvableType.forType(type)).getType();
+        }
+        return type;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        if (payload != null && isBatch(headers) && payload.getClass().isArray()) {
+            final int length = Array.getLength(payload);
+            for (int i = 0; i < length; i++) {
+                delegate.handleFrame(headers, Array.get(payload, i));
+            }
+        }else{
+            delegate.handleFrame(headers, payload);
+        }
+    }
+
+    private boolean isBatch(StompHeaders headers) {
+        return headers.containsKey(WebsocketHeaders.BATCH_SIZE);
+    }
+}
@@ -1,9 +1,17 @@
 package com.looseboxes.websocket.client;
 
+import com.looseboxes.websocket.client.metrics.WebsocketClientMetrics;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
 import com.looseboxes.websocket.server.model.WebsocketMessage;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +24,10 @@ import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSession.Subscription;
 import org.springframework.messaging.simp.stomp.StompSessionHandler;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.MimeType;
 import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHttpHeaders;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
 /**
@@ -33,15 +44,80 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
     
     private final Map<String, Subscription> subscriptionsByDestination;
 
+    /**
+     * The handler of each subscription, so that it may be subscribed to again on reconnect.
+     * Guarded by subscriptionsByDestination.
+     */
+    private final Map<String, StompFrameHandler> handlersByDestination = new LinkedHashMap<>();
+
     /**
      * Every time there is a connection, these destinations are automatically subscribed to
      */
     private final Map<String, StompFrameHandler> autoSubscriptions;
 
+    /**
+     * The last {@link WebsocketHeaders#SEQUENCE sequence} received, by destination
+     */
+    private final ConcurrentMap<String, Long> lastSequences;
+
     private final AtomicBoolean connecting = new AtomicBoolean();
 
+    private final WebsocketClientMetrics metrics;
+
+    @Nullable private final StompFrameDispatcher dispatcher;
+
+    private volatile WebsocketMessagePublisher publisher;
+
+    @Nullable private volatile ReconnectBackoff reconnectBackoff = new ReconnectBackoff();
+
+    @Nullable private volatile MimeType contentType;
+
+    /**
+     * The url last connected to, or {@code null} once disconnected by the application
+     */
+    @Nullable private volatile String url;
+
+    private final AtomicInteger reconnectAttempts = new AtomicInteger();
+
+    private volatile long connectionLostAt;
+
+    // A lost connection may be reported more than once
+    private final AtomicReference<StompSession> lostSession = new AtomicReference<>();
+
+    // Guarded by this
+    private ScheduledFuture<?> reconnectTask;
+
     public WebSocketClientHandler(WebSocketStompClient client) {
+        this(client, WebsocketClientMetrics.NOOP);
+    }
+
+    public WebSocketClientHandler(WebSocketStompClient client, WebsocketClientMetrics metrics) {
+        this(client, metrics, null);
+    }
+
+    /**
+     * @param client The client to connect with
+     * @param metrics The metrics to record
+     * @param dispatcher Hands received frames to handlers on other threads. When
+     *                   {@code null}, handlers run on the thread reading from the connection.
+     */
+    public WebSocketClientHandler(WebSocketStompClient client, WebsocketClientMetrics metrics,
+                                  @Nullable StompFrameDispatcher dispatcher) {
+        this(client, metrics, dispatcher, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param lastSequences The last sequence received by destination, shared by the sessions of a pool
+     */
+    WebSocketClientHandler(WebSocketStompClient client, WebsocketClientMetrics metrics,
+                           @Nullable StompFrameDispatcher dispatcher, ConcurrentMap<String, Long> lastSequences) {
         this.client = client;
+        this.lastSequences = Objects.requireNonNull(lastSequences);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.dispatcher = dispatcher;
+        if (dispatcher != null) {
+            metrics.monitor(dispatcher);
+        }
         this.autoSubscriptions = Collections.synchronizedMap(new HashMap<>());
         this.subscriptionsByDestination = Collections.synchronizedMap(new HashMap<>());
     }
@@ -54,9 +130,160 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
 
         log.debug("Connecting to: {}", url);
 
+        this.url = url;
+
+        // Replaces any pending attempt to reconnect
+        this.cancelReconnect();
+        reconnectAttempts.set(0);
+
+        setConnecting(true);
+
+        final ListenableFuture<StompSession> future = client.connect(url, (WebSocketHttpHeaders)null, connectHeaders(), this);
+
+        future.addCallback(session -> { }, exception -> {
+            log.debug("Failed to connect to: {}, {}", url, exception.toString());
+            setConnecting(false);
+            // Retried as a lost connection is, unless disconnected meanwhile
+            scheduleReconnect();
+        });
+
+        return future;
+    }
+
+    private StompHeaders connectHeaders() {
+        final StompHeaders headers = new StompHeaders();
+        final MimeType contentType = this.contentType;
+        if (contentType != null) {
+            headers.set(WebsocketHeaders.ACCEPT, contentType.toString());
+        }
+        return headers;
+    }
+
+    /**
+     * @param contentType The content type in which to receive and publish messages e.g
+     *                    {@link com.looseboxes.websocket.server.codec.PayloadCodecs#APPLICATION_CBOR application/cbor},
+     *                    or {@code null} for json. Applies from the next connection, and
+     *                    to the publisher created by default.
+     */
+    public void setContentType(@Nullable MimeType contentType) {
+        this.contentType = contentType;
+    }
+
+    @Nullable
+    public MimeType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @param reconnectBackoff The backoff between attempts to reconnect once a connection is lost,
+     *                         or the first attempt to connect fails, or {@code null} to not
+     *                         reconnect. Reconnecting requires the
+     *                         {@code WebSocketStompClient} to have a task scheduler.
+     */
+    public void setReconnectBackoff(@Nullable ReconnectBackoff reconnectBackoff) {
+        this.reconnectBackoff = reconnectBackoff;
+    }
+
+    @Nullable
+    public ReconnectBackoff getReconnectBackoff() {
+        return reconnectBackoff;
+    }
+
+    private void onConnectionLost() {
+        log.debug("Connection lost to: {}", url);
+        metrics.onConnectionLost();
+        connectionLostAt = System.currentTimeMillis();
+        reconnectAttempts.set(0);
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+
+        final ReconnectBackoff backoff = this.reconnectBackoff;
+        final TaskScheduler taskScheduler = client.getTaskScheduler();
+
+        if (url == null || backoff == null) {
+            return;
+        }
+
+        if (taskScheduler == null) {
+            log.warn("Not reconnecting to: {}, the stomp client has no task scheduler", url);
+            return;
+        }
+
+        final int attempt = reconnectAttempts.incrementAndGet();
+        if (!backoff.isAttemptAllowed(attempt)) {
+            log.warn("Giving up reconnecting to: {}, after {} attempts", url, attempt - 1);
+            return;
+        }
+
+        final long delay = backoff.getDelay(attempt);
+
+        log.debug("Reconnecting to: {} in {} millis, attempt: {}", url, delay, attempt);
+
+        synchronized (this) {
+            if (reconnectTask != null) {
+                reconnectTask.cancel(false);
+            }
+            reconnectTask = taskScheduler.schedule(this::reconnect, new Date(System.currentTimeMillis() + delay));
+        }
+    }
+
+    private void reconnect() {
+        final String url = this.url;
+        if (url == null || this.isConnected()) {
+            return;
+        }
+        metrics.onReconnectAttempt();
         setConnecting(true);
+        client.connect(url, (WebSocketHttpHeaders)null, connectHeaders(), this).addCallback(session -> { }, exception -> {
+            log.debug("Failed to reconnect to: {}, {}", url, exception.toString());
+            setConnecting(false);
+            metrics.onReconnectFailed();
+            scheduleReconnect();
+        });
+    }
+
+    private synchronized void cancelReconnect() {
+        if (reconnectTask != null) {
+            reconnectTask.cancel(false);
+            reconnectTask = null;
+        }
+    }
 
-        return client.connect(url, this);
+    /**
+     * Publish the message without waiting for it to be acknowledged.
+     * @param destination The destination e.g {@code /messaging/send/abc}
+     * @param message The message to publish
+     * @return The future of the message being acknowledged by the server
+     * @see WebsocketMessagePublisher
+     */
+    public CompletableFuture<Void> publish(String destination, WebsocketMessage message) {
+        final StompSession session = this.stompSession;
+        if (session == null || !session.isConnected()) {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Not connected"));
+            return future;
+        }
+        return getPublisher().publish(session, destination, message);
+    }
+
+    public WebsocketMessagePublisher getPublisher() {
+        if (publisher == null) {
+            synchronized (this) {
+                if (publisher == null) {
+                    publisher = new WebsocketMessagePublisher(client.getTaskScheduler(), contentType);
+                }
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * @param publisher The publisher to publish with e.g to size its in-flight window, or to batch
+     */
+    public void setPublisher(WebsocketMessagePublisher publisher) {
+        this.publisher = Objects.requireNonNull(publisher);
     }
 
     public boolean isConnecting() {
@@ -75,7 +302,17 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
         return stompSession != null && stompSession.isConnected();
     }
 
+    /**
+     * Disconnect, and stop reconnecting.
+     * @return {@code true} if a connected session was disconnected
+     */
     public boolean disconnect() {
+        this.url = null;
+        this.cancelReconnect();
+        return this.closeSession();
+    }
+
+    private boolean closeSession() {
         if(this.isConnected()) {
             try{
                 this.stompSession.disconnect();
@@ -110,16 +347,18 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
         log.debug("Websocket stomp session connected, session: {}", session.getSessionId());
 
         // Disconnects any existing stomp session, so we can assign this new session
-        this.disconnect();
+        this.closeSession();
 
         this.stompSession = session;
-        this.reSubscribe(session);
 
-        synchronized (autoSubscriptions) {
-            autoSubscriptions.forEach((destination, stompFrameHandler) -> {
-                this.subscribeIfNotAlready(destination, stompFrameHandler);
-            });
+        final long lostAt = connectionLostAt;
+        if (lostAt > 0) {
+            connectionLostAt = 0;
+            metrics.onReconnected(System.currentTimeMillis() - lostAt);
         }
+        reconnectAttempts.set(0);
+
+        this.reSubscribe(session);
     }
 
     /**
@@ -133,6 +372,16 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
         }
     }
 
+    /**
+     * @param destination The destination
+     * @return The last {@link WebsocketHeaders#SEQUENCE sequence} received from the
+     * destination, or {@code null} if none was received
+     */
+    @Nullable
+    public Long getLastSequence(String destination) {
+        return lastSequences.get(destination);
+    }
+
     public Map<String, Subscription> getSubscriptions() {
         synchronized (subscriptionsByDestination) {
             return Collections.unmodifiableMap(subscriptionsByDestination);
@@ -145,8 +394,34 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
         }
     }
     
+    /**
+     * Subscribes to the auto subscriptions, and to the destinations subscribed to
+     * over previous sessions. SUBSCRIBE frames are sent back to back, without
+     * waiting for each, nor holding up other callers of this handler.
+     */
     private void reSubscribe(StompSession session) {
-        unsubscribe().forEach(destination -> subscribeIfNotAlready(session, destination, this));
+
+        final long startedAt = System.nanoTime();
+
+        final Map<String, StompFrameHandler> handlers;
+
+        synchronized (subscriptionsByDestination) {
+            handlers = new LinkedHashMap<>(handlersByDestination);
+            synchronized (autoSubscriptions) {
+                autoSubscriptions.forEach(handlers::putIfAbsent);
+            }
+            // Belonged to the previous session
+            subscriptionsByDestination.clear();
+        }
+
+        int count = 0;
+        for (Map.Entry<String, StompFrameHandler> entry : handlers.entrySet()) {
+            if (this.subscribeIfNotAlready(session, entry.getKey(), entry.getValue())) {
+                ++count;
+            }
+        }
+
+        metrics.onResubscribed(count, System.nanoTime() - startedAt);
     }
     
     /**
@@ -166,20 +441,54 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
         
         boolean success = false;
         
-        if(this.isConnected()) {
+        if(this.isConnected() && !this.isSubscribed(destination)) {
+
+            final StompFrameHandler userHandler = handler == null ? this : handler;
+
+            StompFrameHandler frameHandler = userHandler;
+            if (metrics.isEnabled()) {
+                frameHandler = new MeteredStompFrameHandler(destination, frameHandler, metrics);
+            }
+
+            // Messages may be received in batches, see WebsocketMessageBatcher
+            frameHandler = new UnbatchingStompFrameHandler(frameHandler);
+
+            if (dispatcher != null) {
+                frameHandler = dispatcher.dispatching(destination, frameHandler);
+            }
+
+            frameHandler = new SequenceTrackingStompFrameHandler(destination, frameHandler, lastSequences, metrics);
+
+            final StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
 
-            synchronized (subscriptionsByDestination) {
-                if (!subscriptionsByDestination.containsKey(destination)) {
+            // Resume from the last message received, if the destination is replayed by the server
+            final Long lastSequence = lastSequences.get(destination);
+            if (lastSequence != null) {
+                headers.set(WebsocketHeaders.FROM_SEQUENCE, String.valueOf(lastSequence + 1));
+            }
+
+            // Not holding the lock while sending
+            Subscription subscription = session.subscribe(headers, frameHandler);
+
+            if (subscription != null) {
+
+                synchronized (subscriptionsByDestination) {
 
-                    Subscription subscription = session.subscribe(destination, handler == null ? this : handler);
+                    if (subscriptionsByDestination.putIfAbsent(destination, subscription) == null) {
 
-                    if (subscription != null) {
+                        handlersByDestination.put(destination, userHandler);
 
-                        subscriptionsByDestination.put(destination, subscription);
+                        metrics.onSubscriptionsChanged(subscriptionsByDestination.size());
 
                         success = true;
                     }
                 }
+
+                if (!success) {
+                    // Subscribed concurrently
+                    subscription.unsubscribe();
+                }
             }
         }
         
@@ -214,10 +523,25 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
 
             if (subscription != null) {
 
-                subscription.unsubscribe();
+                // Once the connection is lost, there is no subscription to end
+                if (this.isConnected()) {
+                    try {
+                        subscription.unsubscribe();
+                    }catch(IllegalStateException e) {
+                        log.debug("Failed to unsubscribe from: {}, {}", destination, e.toString());
+                    }
+                }
 
                 subscriptionsByDestination.remove(destination);
 
+                handlersByDestination.remove(destination);
+
+                if (dispatcher != null) {
+                    dispatcher.remove(destination);
+                }
+
+                metrics.onSubscriptionsChanged(subscriptionsByDestination.size());
+
                 success = true;
             }
         }
@@ -260,6 +584,10 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
     @Override
     public void handleTransportError(StompSession session, Throwable exception) {
         log.warn("Transport error", exception);
+        if (session == this.stompSession && !session.isConnected()
+                && lostSession.getAndSet(session) != session) {
+            this.onConnectionLost();
+        }
     }
 
     /** {@inheritDoc} */
@@ -276,7 +604,10 @@ public class WebSocketClientHandler implements StompSessionHandler, Initializing
     @Override
     public void destroy() throws Exception{
         log.debug("#destroy()");
-        
+
+        this.url = null;
+        this.cancelReconnect();
+
         if(this.isConnected()) {
             try{
                 this.unsubscribe();
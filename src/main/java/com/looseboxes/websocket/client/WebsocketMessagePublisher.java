@@ -0,0 +1,277 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.MimeType;
+
+/**
+ * Publishes {@link WebsocketMessage}s without waiting for each to be acknowledged.
+ *
+ * <p>
+ * Each frame requests a STOMP receipt. The future of each message completes when
+ * the receipt for its frame is received, or completes exceptionally with a
+ * {@link TimeoutException} when the receipt is not received within the client's
+ * receipt time limit. Futures complete on the thread reading from the connection.
+ * Receipts require the {@code WebSocketStompClient} to have a task scheduler, and the
+ * server to send receipts. Without a task scheduler, futures complete once frames are written.
+ * </p>
+ * <p>
+ * At most {@code maxInFlight} messages may await acknowledgement. When the window
+ * is full, the future completes exceptionally with a {@link RejectedExecutionException}
+ * at once. <b>Given a positive {@code maxBlock}, publishing instead blocks the calling
+ * thread for up to {@code maxBlock} milliseconds waiting for room in the window</b>, so
+ * it should then not be called from threads which must not block, such as the thread
+ * reading from the connection, on which futures complete.
+ * </p>
+ * <p>
+ * When {@code batchSize} is greater than 1, messages to destinations of the default
+ * controller e.g {@code /messaging/send/abc} are collected for up to {@code batchWindow}
+ * milliseconds, and sent as a single frame to the corresponding batch destination
+ * e.g {@code /messaging/send-batch/abc}.
+ * </p>
+ * @author hp
+ */
+public class WebsocketMessagePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(WebsocketMessagePublisher.class);
+
+    private static final String SEND_SEGMENT = WebsocketEndpoints.SEND + '/';
+
+    private static final class Batch {
+        private final StompSession session;
+        private final String destination;
+        // All guarded by this
+        private List<WebsocketMessage> messages = new ArrayList<>();
+        private List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private boolean retired;
+        private Batch(StompSession session, String destination) {
+            this.session = session;
+            this.destination = destination;
+        }
+    }
+
+    @Nullable private final TaskScheduler taskScheduler;
+
+    private final Semaphore inFlight;
+
+    private final int maxInFlight;
+
+    private final long maxBlock;
+
+    private final int batchSize;
+
+    private final long batchWindow;
+
+    @Nullable private final MimeType contentType;
+
+    private final AtomicLong receiptIds = new AtomicLong();
+
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * A window of 1000 messages, without blocking or batching.
+     * @param taskScheduler The task scheduler of the {@code WebSocketStompClient}
+     */
+    public WebsocketMessagePublisher(@Nullable TaskScheduler taskScheduler) {
+        this(taskScheduler, null);
+    }
+
+    /**
+     * A window of 1000 messages, without blocking or batching.
+     * @param taskScheduler The task scheduler of the {@code WebSocketStompClient}
+     * @param contentType The content type in which to send messages e.g {@code application/cbor},
+     *                    or {@code null} for json
+     */
+    public WebsocketMessagePublisher(@Nullable TaskScheduler taskScheduler, @Nullable MimeType contentType) {
+        this(taskScheduler, 1000, 0, 1, 0, contentType);
+    }
+
+    /**
+     * @param taskScheduler The task scheduler of the {@code WebSocketStompClient}
+     * @param maxInFlight Maximum number of messages awaiting acknowledgement
+     * @param maxBlock Maximum time, in milliseconds, to block the caller waiting for room
+     *                 in the window. Zero or less fails at once, without blocking.
+     * @param batchSize Maximum number of messages per frame. 1 disables batching.
+     * @param batchWindow Maximum time, in milliseconds, a message waits to be batched
+     */
+    public WebsocketMessagePublisher(@Nullable TaskScheduler taskScheduler,
+                                     int maxInFlight, long maxBlock, int batchSize, long batchWindow) {
+        this(taskScheduler, maxInFlight, maxBlock, batchSize, batchWindow, null);
+    }
+
+    /**
+     * @param taskScheduler The task scheduler of the {@code WebSocketStompClient}
+     * @param maxInFlight Maximum number of messages awaiting acknowledgement
+     * @param maxBlock Maximum time, in milliseconds, to block the caller waiting for room
+     *                 in the window. Zero or less fails at once, without blocking.
+     * @param batchSize Maximum number of messages per frame. 1 disables batching.
+     * @param batchWindow Maximum time, in milliseconds, a message waits to be batched
+     * @param contentType The content type in which to send messages e.g {@code application/cbor},
+     *                    or {@code null} for json
+     */
+    public WebsocketMessagePublisher(@Nullable TaskScheduler taskScheduler,
+                                     int maxInFlight, long maxBlock, int batchSize, long batchWindow,
+                                     @Nullable MimeType contentType) {
+        this.taskScheduler = taskScheduler;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.maxBlock = maxBlock;
+        this.batchSize = taskScheduler == null ? 1 : Math.max(1, batchSize);
+        this.batchWindow = batchWindow;
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return The number of messages awaiting acknowledgement
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * @param session The session to publish with
+     * @param destination The destination e.g {@code /messaging/send/abc}
+     * @param message The message to publish
+     * @return The future of the message being acknowledged by the server. Failed with a
+     * {@link RejectedExecutionException} when the window is full.
+     * @see #WebsocketMessagePublisher(TaskScheduler, int, long, int, long, MimeType) for
+     * when this method blocks
+     */
+    public CompletableFuture<Void> publish(StompSession session, String destination, WebsocketMessage message) {
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        try {
+            if (maxBlock <= 0 ? !inFlight.tryAcquire() : !inFlight.tryAcquire(maxBlock, TimeUnit.MILLISECONDS)) {
+                future.completeExceptionally(new RejectedExecutionException(
+                        maxInFlight + " messages in flight, the maximum"));
+                return future;
+            }
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        future.whenComplete((result, exception) -> inFlight.release());
+
+        final int sendAt = batchSize > 1 ? destination.indexOf(SEND_SEGMENT) : -1;
+
+        if (sendAt == -1) {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+            futures.add(future);
+            send(session, destination, message, null, futures);
+        }else{
+            add(session, destination.substring(0, sendAt) + WebsocketEndpoints.SEND_BATCH
+                    + destination.substring(sendAt + WebsocketEndpoints.SEND.length()), message, future);
+        }
+
+        return future;
+    }
+
+    private void add(StompSession session, String batchDestination, WebsocketMessage message, CompletableFuture<Void> future) {
+        while (true) {
+            boolean created = false;
+            Batch batch = batches.get(batchDestination);
+            if (batch == null || batch.session != session) {
+                final Batch candidate = new Batch(session, batchDestination);
+                if (batch == null ? batches.putIfAbsent(batchDestination, candidate) == null :
+                        batches.replace(batchDestination, batch, candidate)) {
+                    if (batch != null) {
+                        // The session changed e.g after reconnecting
+                        flush(batch);
+                    }
+                    batch = candidate;
+                    created = true;
+                }else{
+                    continue;
+                }
+            }
+            synchronized (batch) {
+                if (batch.retired) {
+                    // Flushed by its timer since we looked it up
+                    continue;
+                }
+                batch.messages.add(message);
+                batch.futures.add(future);
+                if (batch.messages.size() >= batchSize) {
+                    sendBatch(batch);
+                }
+            }
+            if (created) {
+                final Batch toFlush = batch;
+                taskScheduler.schedule(() -> flush(toFlush), new Date(System.currentTimeMillis() + batchWindow));
+            }
+            return;
+        }
+    }
+
+    private void flush(Batch batch) {
+        synchronized (batch) {
+            batch.retired = true;
+            batches.remove(batch.destination, batch);
+            sendBatch(batch);
+        }
+    }
+
+    private void sendBatch(Batch batch) {
+        final List<WebsocketMessage> messages = batch.messages;
+        final List<CompletableFuture<Void>> futures = batch.futures;
+        if (messages.isEmpty()) {
+            return;
+        }
+        batch.messages = new ArrayList<>();
+        batch.futures = new ArrayList<>();
+        send(batch.session, batch.destination, messages, String.valueOf(messages.size()), futures);
+    }
+
+    private void send(StompSession session, String destination, Object payload,
+                      @Nullable String batchSize, List<CompletableFuture<Void>> futures) {
+
+        final StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        if (contentType != null) {
+            headers.setContentType(contentType);
+        }
+        if (batchSize != null) {
+            headers.set(WebsocketHeaders.BATCH_SIZE, batchSize);
+        }
+        if (taskScheduler != null) {
+            headers.setReceipt("publish-" + receiptIds.incrementAndGet());
+        }
+
+        try {
+            final StompSession.Receiptable receiptable = session.send(headers, payload);
+            if (taskScheduler == null) {
+                futures.forEach(future -> future.complete(null));
+            }else{
+                receiptable.addReceiptTask(() -> futures.forEach(future -> future.complete(null)));
+                receiptable.addReceiptLostTask(() -> {
+                    final TimeoutException exception = new TimeoutException("No receipt for message(s) sent to: " + destination);
+                    futures.forEach(future -> future.completeExceptionally(exception));
+                });
+            }
+        }catch(RuntimeException e) {
+            log.debug("Failed to send to: {}, {}", destination, e.toString());
+            futures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package com.looseboxes.websocket.client.config;
 
+import com.looseboxes.websocket.client.BinaryFrameWebSocketClient;
+import com.looseboxes.websocket.server.codec.PayloadCodecs;
+import com.looseboxes.websocket.server.model.WebsocketMessageModule;
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.context.annotation.Bean;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.client.WebSocketClient;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
@@ -12,13 +21,31 @@ import org.springframework.web.socket.messaging.WebSocketStompClient;
 public class WebsocketClientConfigurationSource {
     
     @Bean public WebSocketStompClient websocketStompClient() {
-        WebSocketClient client = new StandardWebSocketClient();
+        // Sends frames with binary payloads e.g CBOR, in binary websocket messages
+        WebSocketClient client = new BinaryFrameWebSocketClient(new StandardWebSocketClient());
         WebSocketStompClient stompClient = new WebSocketStompClient(client);
+        // Required for receipts, see WebsocketMessagePublisher, and for heartbeats
+        stompClient.setTaskScheduler(this.taskScheduler());
         return this.configure(stompClient);
     }
 
+    protected TaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setThreadNamePrefix("websocketClientScheduler-");
+        taskScheduler.setDaemon(true);
+        taskScheduler.initialize();
+        return taskScheduler;
+    }
+
     protected WebSocketStompClient configure(WebSocketStompClient stompClient) {
-        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.getObjectMapper().registerModule(new WebsocketMessageModule());
+        // Json first, for messages without a content type. The binary converters
+        // only convert messages of their content type e.g application/cbor
+        List<MessageConverter> converters = new ArrayList<>();
+        converters.add(converter);
+        converters.addAll(PayloadCodecs.binaryMessageConverters());
+        stompClient.setMessageConverter(new CompositeMessageConverter(converters));
         return stompClient;
     }
 }
@@ -0,0 +1,168 @@
+package com.looseboxes.websocket.client.metrics;
+
+import com.looseboxes.websocket.client.StompFrameDispatcher;
+import com.looseboxes.websocket.server.metrics.DestinationTags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records client metrics with micrometer.
+ *
+ * <table>
+ *     <tr><td>websocket.client.subscriptions</td><td>Destinations subscribed to</td></tr>
+ *     <tr><td>websocket.client.message.duration</td><td>Time taken to handle received messages, by destination</td></tr>
+ *     <tr><td>websocket.client.delivery.latency</td><td>Time from a message's timestamp to its receipt</td></tr>
+ *     <tr><td>websocket.client.dispatch.queued</td><td>Frames queued by the {@link StompFrameDispatcher}</td></tr>
+ *     <tr><td>websocket.client.dispatch.queue.max</td><td>Frames queued for the destination with most frames queued</td></tr>
+ *     <tr><td>websocket.client.dispatch.dropped</td><td>Frames dropped by the {@link StompFrameDispatcher}</td></tr>
+ *     <tr><td>websocket.client.connection.lost</td><td>Connections lost</td></tr>
+ *     <tr><td>websocket.client.reconnect.attempts</td><td>Attempts to reconnect</td></tr>
+ *     <tr><td>websocket.client.reconnect.failures</td><td>Failed attempts to reconnect</td></tr>
+ *     <tr><td>websocket.client.reconnect.downtime</td><td>Time from a connection being lost to being connected again</td></tr>
+ *     <tr><td>websocket.client.resubscribe.duration</td><td>Time taken to subscribe on connecting</td></tr>
+ *     <tr><td>websocket.client.resubscribe.destinations</td><td>Destinations subscribed to on connecting</td></tr>
+ *     <tr><td>websocket.client.sequence.missed</td><td>Messages missed, going by their sequence, by destination</td></tr>
+ * </table>
+ *
+ * <p>
+ * Delivery latency is only as accurate as the agreement between the clocks
+ * of the publisher and this client.
+ * </p>
+ * @author hp
+ */
+public class MicrometerWebsocketClientMetrics implements WebsocketClientMetrics {
+
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    private final MeterRegistry registry;
+
+    private final DestinationTags<Timer> handled;
+
+    private final Timer deliveryLatency;
+
+    private final Counter connectionLost;
+
+    private final Counter reconnectAttempts;
+
+    private final Counter reconnectFailures;
+
+    private final Timer reconnectDowntime;
+
+    private final Timer resubscribeDuration;
+
+    private final DistributionSummary resubscribed;
+
+    private final DestinationTags<Counter> missed;
+
+    public MicrometerWebsocketClientMetrics(MeterRegistry registry) {
+        this(registry, 100);
+    }
+
+    /**
+     * @param registry The registry to record metrics with
+     * @param maxDestinationTags Maximum number of destinations tagged individually
+     */
+    public MicrometerWebsocketClientMetrics(MeterRegistry registry, int maxDestinationTags) {
+        this.registry = registry;
+        registry.gauge("websocket.client.subscriptions", subscriptions);
+        this.handled = new DestinationTags<>(maxDestinationTags, destination ->
+                Timer.builder("websocket.client.message.duration")
+                        .tag("destination", destination)
+                        .description("Time taken to handle received messages")
+                        .register(registry));
+        this.missed = new DestinationTags<>(maxDestinationTags, destination ->
+                Counter.builder("websocket.client.sequence.missed")
+                        .tag("destination", destination)
+                        .description("Messages missed, going by their sequence")
+                        .register(registry));
+        this.deliveryLatency = Timer.builder("websocket.client.delivery.latency")
+                .description("Time from a message's timestamp to its receipt")
+                .register(registry);
+        this.connectionLost = Counter.builder("websocket.client.connection.lost")
+                .description("Connections lost, rather than closed by the application")
+                .register(registry);
+        this.reconnectAttempts = Counter.builder("websocket.client.reconnect.attempts")
+                .description("Attempts to reconnect")
+                .register(registry);
+        this.reconnectFailures = Counter.builder("websocket.client.reconnect.failures")
+                .description("Failed attempts to reconnect")
+                .register(registry);
+        this.reconnectDowntime = Timer.builder("websocket.client.reconnect.downtime")
+                .description("Time from a connection being lost to being connected again")
+                .register(registry);
+        this.resubscribeDuration = Timer.builder("websocket.client.resubscribe.duration")
+                .description("Time taken to subscribe on connecting")
+                .register(registry);
+        this.resubscribed = DistributionSummary.builder("websocket.client.resubscribe.destinations")
+                .description("Destinations subscribed to on connecting")
+                .register(registry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void onSubscriptionsChanged(int count) {
+        subscriptions.set(count);
+    }
+
+    @Override
+    public void onMessageHandled(String destination, long nanos, long timestamp) {
+        handled.meter(destination).record(nanos, TimeUnit.NANOSECONDS);
+        if (timestamp >= 0) {
+            deliveryLatency.record(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void monitor(StompFrameDispatcher dispatcher) {
+        Gauge.builder("websocket.client.dispatch.queued", dispatcher, StompFrameDispatcher::getQueuedCount)
+                .description("Frames queued, across all destinations")
+                .register(registry);
+        Gauge.builder("websocket.client.dispatch.queue.max", dispatcher, StompFrameDispatcher::getMaxQueueDepth)
+                .description("Frames queued for the destination with most frames queued")
+                .register(registry);
+        FunctionCounter.builder("websocket.client.dispatch.dropped", dispatcher, StompFrameDispatcher::getDroppedCount)
+                .description("Frames dropped because their destination's queue was full")
+                .register(registry);
+    }
+
+    @Override
+    public void onConnectionLost() {
+        connectionLost.increment();
+    }
+
+    @Override
+    public void onReconnectAttempt() {
+        reconnectAttempts.increment();
+    }
+
+    @Override
+    public void onReconnectFailed() {
+        reconnectFailures.increment();
+    }
+
+    @Override
+    public void onReconnected(long downtimeMillis) {
+        reconnectDowntime.record(downtimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onResubscribed(int count, long nanos) {
+        resubscribeDuration.record(nanos, TimeUnit.NANOSECONDS);
+        resubscribed.record(count);
+    }
+
+    @Override
+    public void onSequenceGap(String destination, long missed) {
+        this.missed.meter(destination).increment(missed);
+    }
+}
@@ -0,0 +1,71 @@
+package com.looseboxes.websocket.client.metrics;
+
+import com.looseboxes.websocket.client.StompFrameDispatcher;
+
+/**
+ * Records metrics of a {@link com.looseboxes.websocket.client.WebSocketClientHandler}.
+ * Does nothing by default, so that micrometer need not be on the classpath.
+ * @see MicrometerWebsocketClientMetrics
+ * @author hp
+ */
+public interface WebsocketClientMetrics {
+
+    WebsocketClientMetrics NOOP = new WebsocketClientMetrics() { };
+
+    /**
+     * @return {@code true} if metrics are being recorded
+     */
+    default boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * @param count The number of destinations now subscribed to
+     */
+    default void onSubscriptionsChanged(int count) { }
+
+    /**
+     * A message received from the destination was handled.
+     * @param nanos The time taken to handle the message
+     * @param timestamp The timestamp of the message in epoch millis, or a negative number if not known
+     */
+    default void onMessageHandled(String destination, long nanos, long timestamp) { }
+
+    /**
+     * Record the queues of the dispatcher.
+     * @param dispatcher The dispatcher handing received frames to handlers
+     */
+    default void monitor(StompFrameDispatcher dispatcher) { }
+
+    /**
+     * The connection was lost, rather than closed by the application.
+     */
+    default void onConnectionLost() { }
+
+    /**
+     * An attempt to reconnect was started.
+     */
+    default void onReconnectAttempt() { }
+
+    /**
+     * An attempt to reconnect failed.
+     */
+    default void onReconnectFailed() { }
+
+    /**
+     * @param downtimeMillis The time from the connection being lost to being connected again
+     */
+    default void onReconnected(long downtimeMillis) { }
+
+    /**
+     * @param count The number of destinations subscribed to on connecting
+     * @param nanos The time taken to send the SUBSCRIBE frames
+     */
+    default void onResubscribed(int count, long nanos) { }
+
+    /**
+     * Messages were missed, going by the sequence of the messages received from the destination.
+     * @param missed The number of messages missed
+     */
+    default void onSequenceGap(String destination, long missed) { }
+}
@@ -0,0 +1,27 @@
+package com.looseboxes.websocket.server;
+
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.concurrent.CompletionStage;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+/**
+ * An asynchronous variant of {@link WebsocketApplicationDestinationMessageInterceptor},
+ * for interceptors which enrich, validate or look something up e.g in a database.
+ *
+ * <p>
+ * Asynchronous interceptors never run on the inbound channel thread, and each
+ * is allowed the configured {@code looseboxes.websocket.interceptors.timeout}.
+ * Messages from the same session are still sent in the order they were received.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public interface AsyncWebsocketApplicationDestinationMessageInterceptor {
+
+    /**
+     * @param path The path the message was sent to e.g {@code /abc/def}
+     * @param simpMessageHeaderAccessor The headers of the message
+     * @param websocketMessage The message
+     * @return A stage completed with the message to send, or with {@code null} to veto the message
+     */
+    CompletionStage<WebsocketMessage> intercept(String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor, WebsocketMessage websocketMessage);
+}
@@ -1,9 +1,12 @@
 package com.looseboxes.websocket.server;
 
 import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
 import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.presence.PresenceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
@@ -22,9 +25,14 @@ public class WebSocketEventListener {
 
     @Autowired private SimpMessageSendingOperations messagingTemplate;
 
+    @Autowired private ObjectProvider<WebsocketMetrics> metricsProvider;
+
+    @Autowired private PresenceRegistry presenceRegistry;
+
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         logger.debug("Received a new web socket connection");
+        metrics().onSessionConnected(StompHeaderAccessor.wrap(event.getMessage()).getSessionId());
         // We’re already broadcasting user join event in the addUser() method 
         // defined inside ChatController. So, we don’t need to do anything in 
         // the SessionConnected event.
@@ -34,6 +42,14 @@ public class WebSocketEventListener {
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
 
+        metrics().onSessionDisconnected(event.getSessionId());
+
+        if (presenceRegistry.isEnabled()) {
+            // Broadcast later, unless the user joins again within the grace period
+            presenceRegistry.leave(event.getSessionId());
+            return;
+        }
+
         // Extract the user’s name from the websocket session and broadcast a 
         // user leave event to all the connected clients.        
         //
@@ -48,4 +64,8 @@ public class WebSocketEventListener {
             messagingTemplate.convertAndSend(WebsocketEndpoints.PUBLIC, chatMessage);
         }
     }
+
+    private WebsocketMetrics metrics() {
+        return metricsProvider.getIfUnique(() -> WebsocketMetrics.NOOP);
+    }
 }
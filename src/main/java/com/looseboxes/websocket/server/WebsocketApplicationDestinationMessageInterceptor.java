@@ -3,7 +3,23 @@ package com.looseboxes.websocket.server;
 import com.looseboxes.websocket.server.model.WebsocketMessage;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 
+/**
+ * Intercepts messages sent to application destinations, before they are sent to the broker.
+ *
+ * <p>
+ * Any number of interceptors may be provided. They are applied in the order
+ * specified by {@link org.springframework.core.Ordered Ordered} or
+ * {@link org.springframework.core.annotation.Order @Order}.
+ * </p>
+ * @see AsyncWebsocketApplicationDestinationMessageInterceptor
+ */
 public interface WebsocketApplicationDestinationMessageInterceptor {
 
+    /**
+     * @param path The path the message was sent to e.g {@code /abc/def}
+     * @param simpMessageHeaderAccessor The headers of the message
+     * @param websocketMessage The message
+     * @return The message to send, or {@code null} to veto the message
+     */
     WebsocketMessage intercept(String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor, WebsocketMessage websocketMessage);
 }
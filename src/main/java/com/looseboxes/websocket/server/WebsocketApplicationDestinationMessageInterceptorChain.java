@@ -0,0 +1,299 @@
+package com.looseboxes.websocket.server;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the {@link WebsocketApplicationDestinationMessageInterceptor}s and
+ * {@link AsyncWebsocketApplicationDestinationMessageInterceptor}s, in order,
+ * to messages sent to application destinations.
+ *
+ * <p>
+ * When there are only synchronous interceptors and
+ * {@code looseboxes.websocket.interceptors.async} is not enabled, interceptors
+ * run inline on the inbound channel thread. Otherwise they run on a bounded
+ * executor, each interceptor subject to a timeout, while messages from the
+ * same session are still sent in the order they were received. Messages
+ * beyond the configured maximum pending are rejected rather than queued,
+ * so that the STOMP transport is never blocked. A message which timed out
+ * remains pending until its interceptor actually returns, so that interceptors
+ * which outlive their timeout still count against the maximum.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class WebsocketApplicationDestinationMessageInterceptorChain implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WebsocketApplicationDestinationMessageInterceptorChain.class);
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final List<Object> interceptors;
+
+    private final boolean inline;
+
+    private final long timeout;
+
+    private final TaskScheduler taskScheduler;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Semaphore pending;
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> tailsBySession;
+
+    private final WebsocketMetrics metrics;
+
+    public WebsocketApplicationDestinationMessageInterceptorChain(
+            WebsocketProperties properties,
+            ObjectProvider<WebsocketApplicationDestinationMessageInterceptor> interceptorProvider,
+            ObjectProvider<AsyncWebsocketApplicationDestinationMessageInterceptor> asyncInterceptorProvider,
+            @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler,
+            ObjectProvider<WebsocketMetrics> metricsProvider) {
+
+        final List<Object> all = new ArrayList<>();
+        interceptorProvider.forEach(all::add);
+        asyncInterceptorProvider.forEach(all::add);
+        AnnotationAwareOrderComparator.sort(all);
+
+        final WebsocketProperties.Interceptors config = properties.getInterceptors();
+
+        this.interceptors = all;
+        this.inline = !config.isAsync() && all.stream()
+                .noneMatch(interceptor -> interceptor instanceof AsyncWebsocketApplicationDestinationMessageInterceptor);
+        this.timeout = config.getTimeout();
+        this.taskScheduler = taskScheduler;
+        this.metrics = metricsProvider.getIfUnique(() -> WebsocketMetrics.NOOP);
+
+        if (inline || all.isEmpty()) {
+            this.executor = null;
+            this.pending = null;
+            this.tailsBySession = null;
+        }else{
+            this.executor = new ThreadPoolTaskExecutor();
+            this.executor.setCorePoolSize(config.getMaxConcurrency());
+            this.executor.setMaxPoolSize(config.getMaxConcurrency());
+            this.executor.setQueueCapacity(config.getMaxPending());
+            this.executor.setThreadNamePrefix("websocketInterceptor-");
+            this.executor.initialize();
+            this.pending = new Semaphore(config.getMaxPending());
+            this.tailsBySession = new ConcurrentHashMap<>();
+        }
+
+        log.debug("Interceptors: {}, inline: {}", interceptors, inline);
+    }
+
+    public boolean isEmpty() {
+        return interceptors.isEmpty();
+    }
+
+    /**
+     * Intercept the message and, unless it is vetoed, pass the resulting message to the consumer.
+     * @param path The path the message was sent to e.g {@code /abc/def}
+     * @param simpMessageHeaderAccessor The headers of the message
+     * @param message The message to intercept
+     * @param onAccepted Receives the intercepted message, unless the message was vetoed
+     */
+    public void intercept(String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor,
+                          WebsocketMessage message, Consumer<WebsocketMessage> onAccepted) {
+
+        if (interceptors.isEmpty()) {
+            onAccepted.accept(message);
+        }else if (inline) {
+            interceptInline(path, simpMessageHeaderAccessor, message, onAccepted);
+        }else{
+            interceptAsync(path, simpMessageHeaderAccessor, message, onAccepted);
+        }
+    }
+
+    private void interceptInline(String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor,
+                                 WebsocketMessage message, Consumer<WebsocketMessage> onAccepted) {
+        final long startedAt = System.nanoTime();
+        for (Object interceptor : interceptors) {
+            try {
+                message = ((WebsocketApplicationDestinationMessageInterceptor)interceptor)
+                        .intercept(path, simpMessageHeaderAccessor, message);
+            }catch(RuntimeException e) {
+                metrics.onIntercepted("failed", System.nanoTime() - startedAt);
+                throw e;
+            }
+            if (message == null) {
+                log.debug("Vetoed by {}, path: {}", interceptor, path);
+                metrics.onIntercepted("vetoed", System.nanoTime() - startedAt);
+                return;
+            }
+        }
+        metrics.onIntercepted("accepted", System.nanoTime() - startedAt);
+        onAccepted.accept(message);
+    }
+
+    private void interceptAsync(String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor,
+                                WebsocketMessage message, Consumer<WebsocketMessage> onAccepted) {
+
+        if (!pending.tryAcquire()) {
+            log.warn("Rejected, too many messages pending interception, path: {}", path);
+            metrics.onIntercepted("rejected", 0);
+            return;
+        }
+
+        final String sessionId = simpMessageHeaderAccessor.getSessionId();
+
+        if (sessionId == null) {
+            interceptAll(DONE, path, simpMessageHeaderAccessor, message, onAccepted);
+            return;
+        }
+
+        // Messages from the same session are intercepted one after the other. The tail
+        // is swapped in first, and the chain built after, outside of any map lock.
+        final CompletableFuture<Void> tail = new CompletableFuture<>();
+        CompletableFuture<Void> previous;
+        do {
+            previous = tailsBySession.get(sessionId);
+        }while(previous == null ? tailsBySession.putIfAbsent(sessionId, tail) != null :
+                !tailsBySession.replace(sessionId, previous, tail));
+
+        interceptAll(previous == null ? DONE : previous, path, simpMessageHeaderAccessor, message, onAccepted)
+                .whenComplete((result, exception) -> tail.complete(null));
+
+        tail.whenComplete((result, exception) -> tailsBySession.remove(sessionId, tail));
+    }
+
+    private CompletableFuture<Void> interceptAll(CompletableFuture<Void> previous,
+                                                 String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor,
+                                                 WebsocketMessage message, Consumer<WebsocketMessage> onAccepted) {
+
+        final long[] startedAt = new long[1];
+
+        // Completes when the last interceptor run actually returns, which may be after it timed out
+        final AtomicReference<CompletableFuture<Void>> lastRun = new AtomicReference<>(DONE);
+
+        CompletableFuture<WebsocketMessage> result = previous.thenApply(ignored -> {
+            // Excludes time spent waiting for earlier messages from the same session
+            startedAt[0] = System.nanoTime();
+            return message;
+        });
+
+        for (Object interceptor : interceptors) {
+            result = result.thenCompose(intercepted -> {
+                if (intercepted == null) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                final CompletableFuture<Void> run = new CompletableFuture<>();
+                lastRun.set(run);
+                return interceptOne(interceptor, path, simpMessageHeaderAccessor, intercepted, run);
+            });
+        }
+
+        return result.handle((intercepted, exception) -> {
+            try {
+                final long nanos = startedAt[0] == 0 ? 0 : System.nanoTime() - startedAt[0];
+                if (exception != null) {
+                    log.warn("Not sent, path: " + path + ", message: " + message, exception);
+                    metrics.onIntercepted("failed", nanos);
+                }else if (intercepted == null) {
+                    log.debug("Vetoed, path: {}, message: {}", path, message);
+                    metrics.onIntercepted("vetoed", nanos);
+                }else{
+                    metrics.onIntercepted("accepted", nanos);
+                    onAccepted.accept(intercepted);
+                }
+            }catch(RuntimeException e) {
+                log.warn("Failed to send, path: " + path + ", message: " + intercepted, e);
+            }finally{
+                lastRun.get().whenComplete((ignored, runException) -> pending.release());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @param run Completed when the interceptor returns, or its stage completes, whether or not it timed out
+     * @return The intercepted message, completed exceptionally if the interceptor timed out
+     */
+    private CompletableFuture<WebsocketMessage> interceptOne(Object interceptor,
+                                                             String path, SimpMessageHeaderAccessor simpMessageHeaderAccessor,
+                                                             WebsocketMessage message, CompletableFuture<Void> run) {
+
+        final CompletableFuture<WebsocketMessage> result = withTimeout(new CompletableFuture<>(), interceptor);
+
+        try {
+            executor.execute(() -> {
+                try {
+                    if (interceptor instanceof AsyncWebsocketApplicationDestinationMessageInterceptor) {
+                        final CompletionStage<WebsocketMessage> stage = ((AsyncWebsocketApplicationDestinationMessageInterceptor)interceptor)
+                                .intercept(path, simpMessageHeaderAccessor, message);
+                        if (stage == null) {
+                            result.complete(null);
+                            run.complete(null);
+                        }else{
+                            stage.whenComplete((intercepted, exception) -> {
+                                if (exception == null) {
+                                    result.complete(intercepted);
+                                }else{
+                                    result.completeExceptionally(exception);
+                                }
+                                run.complete(null);
+                            });
+                        }
+                    }else{
+                        try {
+                            result.complete(((WebsocketApplicationDestinationMessageInterceptor)interceptor)
+                                    .intercept(path, simpMessageHeaderAccessor, message));
+                        }finally{
+                            run.complete(null);
+                        }
+                    }
+                }catch(RuntimeException e) {
+                    result.completeExceptionally(e);
+                    run.complete(null);
+                }
+            });
+        }catch(RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            run.complete(null);
+        }
+
+        return result;
+    }
+
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, Object interceptor) {
+        if (timeout > 0) {
+            final ScheduledFuture<?> timer = taskScheduler.schedule(
+                    () -> future.completeExceptionally(new TimeoutException("Timed out after " + timeout + " millis: " + interceptor)),
+                    new Date(System.currentTimeMillis() + timeout));
+            future.whenComplete((result, exception) -> timer.cancel(false));
+        }
+        return future;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
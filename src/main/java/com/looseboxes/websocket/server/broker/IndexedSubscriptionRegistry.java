@@ -0,0 +1,376 @@
+package com.looseboxes.websocket.server.broker;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+/**
+ * A {@link org.springframework.messaging.simp.broker.SubscriptionRegistry} for
+ * large numbers of subscriptions, as an alternative to spring's
+ * {@link org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry}.
+ *
+ * <p>
+ * Subscriptions to plain destinations e.g {@code /topic/prices/abc} are
+ * indexed by destination, so a publish is a single lookup which returns a
+ * live view of the subscribers, without copying or pattern matching.
+ * Subscribe and unsubscribe only lock the hash bin of their destination, so
+ * churn on different destinations does not contend.
+ * </p>
+ * <p>
+ * Subscriptions to patterns are indexed in a trie of path segments, where a
+ * segment of {@code *} matches any one segment and a trailing {@code **}
+ * matches any number of segments, so matching costs O(depth). Other patterns
+ * e.g {@code /topic/abc*} or {@code /topic/**}{@code /abc} are matched with a
+ * {@link PathMatcher}. Pattern subscriptions are expected to be relatively
+ * few, so they are modified under a single lock, while lookups take no lock.
+ * </p>
+ * <p>
+ * Unlike the default registry, subscription selector headers are not supported.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class IndexedSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final String ANY_SEGMENT = "*";
+    private static final String ANY_REMAINDER = "**";
+
+    private static final MultiValueMap<String, String> EMPTY_MAP =
+            CollectionUtils.toMultiValueMap(Collections.<String, List<String>>emptyMap());
+
+    /**
+     * The subscription ids, by session id, of the subscribers to a destination or pattern.
+     */
+    private static final class Subscribers {
+
+        private final ConcurrentMap<String, List<String>> subscriptionIdsBySession = new ConcurrentHashMap<>();
+
+        private final MultiValueMap<String, String> view = CollectionUtils.toMultiValueMap(subscriptionIdsBySession);
+
+        private void add(String sessionId, String subscriptionId) {
+            subscriptionIdsBySession.computeIfAbsent(sessionId, k -> new CopyOnWriteArrayList<>()).add(subscriptionId);
+        }
+
+        private void remove(String sessionId, String subscriptionId) {
+            subscriptionIdsBySession.computeIfPresent(sessionId, (k, subscriptionIds) -> {
+                subscriptionIds.remove(subscriptionId);
+                return subscriptionIds.isEmpty() ? null : subscriptionIds;
+            });
+        }
+
+        private boolean isEmpty() {
+            return subscriptionIdsBySession.isEmpty();
+        }
+
+        private void addTo(MultiValueMap<String, String> result) {
+            subscriptionIdsBySession.forEach(result::addAll);
+        }
+    }
+
+    private static final class Node {
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private volatile Node anySegment;
+        private volatile Subscribers subscribers;
+        private volatile Subscribers remainderSubscribers;
+
+        private boolean isEmpty() {
+            return children.isEmpty() && anySegment == null && subscribers == null && remainderSubscribers == null;
+        }
+    }
+
+    private final ConcurrentMap<String, Subscribers> subscribersByDestination = new ConcurrentHashMap<>();
+
+    private final Node patternRoot = new Node();
+
+    private final ConcurrentMap<String, Subscribers> subscribersByOtherPattern = new ConcurrentHashMap<>();
+
+    private final Lock patternLock = new ReentrantLock();
+
+    private volatile int patternCount;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> destinationsBySession = new ConcurrentHashMap<>();
+
+    private final PathMatcher pathMatcher;
+
+    public IndexedSubscriptionRegistry() {
+        this(new AntPathMatcher());
+    }
+
+    /**
+     * @param pathMatcher Used to match patterns which are not indexed. The
+     *                    path separator is expected to be {@code /}
+     */
+    public IndexedSubscriptionRegistry(PathMatcher pathMatcher) {
+        this.pathMatcher = pathMatcher;
+    }
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+
+        final String previous = destinationsBySession
+                .computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+
+        if (previous != null) {
+            // Same subscription id re-used within the session
+            removeSubscriber(sessionId, subscriptionId, previous);
+        }
+
+        if (pathMatcher.isPattern(destination)) {
+            addPatternSubscriber(sessionId, subscriptionId, destination);
+        }else{
+            subscribersByDestination.compute(destination, (k, subscribers) -> {
+                if (subscribers == null) {
+                    subscribers = new Subscribers();
+                }
+                subscribers.add(sessionId, subscriptionId);
+                return subscribers;
+            });
+        }
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+
+        final Map<String, String> destinations = destinationsBySession.get(sessionId);
+
+        final String destination = destinations == null ? null : destinations.remove(subscriptionId);
+
+        if (destination != null) {
+            removeSubscriber(sessionId, subscriptionId, destination);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+
+        final Map<String, String> destinations = destinationsBySession.remove(sessionId);
+
+        if (destinations != null) {
+            destinations.forEach((subscriptionId, destination) -> removeSubscriber(sessionId, subscriptionId, destination));
+        }
+    }
+
+    /**
+     * The returned map may be a live view of the subscribers and must not be modified.
+     */
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+
+        final Subscribers subscribers = subscribersByDestination.get(destination);
+
+        if (patternCount == 0) {
+            return subscribers == null ? EMPTY_MAP : subscribers.view;
+        }
+
+        final MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+
+        if (subscribers != null) {
+            subscribers.addTo(result);
+        }
+
+        collectPatternSubscribers(patternRoot, destination, 1, result);
+
+        if (!subscribersByOtherPattern.isEmpty()) {
+            subscribersByOtherPattern.forEach((pattern, patternSubscribers) -> {
+                if (pathMatcher.match(pattern, destination)) {
+                    patternSubscribers.addTo(result);
+                }
+            });
+        }
+
+        return result;
+    }
+
+    public int getSubscriptionCount() {
+        int count = 0;
+        for (Map<String, String> destinations : destinationsBySession.values()) {
+            count += destinations.size();
+        }
+        return count;
+    }
+
+    private void removeSubscriber(String sessionId, String subscriptionId, String destination) {
+        if (pathMatcher.isPattern(destination)) {
+            removePatternSubscriber(sessionId, subscriptionId, destination);
+        }else{
+            subscribersByDestination.computeIfPresent(destination, (k, subscribers) -> {
+                subscribers.remove(sessionId, subscriptionId);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    private void collectPatternSubscribers(Node node, String destination, int start, MultiValueMap<String, String> result) {
+
+        final Subscribers remainderSubscribers = node.remainderSubscribers;
+        if (remainderSubscribers != null) {
+            remainderSubscribers.addTo(result);
+        }
+
+        if (start > destination.length()) {
+            final Subscribers subscribers = node.subscribers;
+            if (subscribers != null) {
+                subscribers.addTo(result);
+            }
+            return;
+        }
+
+        int end = destination.indexOf('/', start);
+        if (end == -1) {
+            end = destination.length();
+        }
+
+        if (!node.children.isEmpty()) {
+            final Node child = node.children.get(destination.substring(start, end));
+            if (child != null) {
+                collectPatternSubscribers(child, destination, end + 1, result);
+            }
+        }
+
+        final Node anySegment = node.anySegment;
+        if (anySegment != null && end > start) {
+            collectPatternSubscribers(anySegment, destination, end + 1, result);
+        }
+    }
+
+    private void addPatternSubscriber(String sessionId, String subscriptionId, String pattern) {
+        patternLock.lock();
+        try {
+            final String[] segments = indexableSegments(pattern);
+            if (segments == null) {
+                subscribersByOtherPattern.computeIfAbsent(pattern, k -> new Subscribers()).add(sessionId, subscriptionId);
+            }else{
+                Node node = patternRoot;
+                final int last = segments.length - 1;
+                for (int i = 0; i < last; i++) {
+                    node = child(node, segments[i]);
+                }
+                if (ANY_REMAINDER.equals(segments[last])) {
+                    if (node.remainderSubscribers == null) {
+                        node.remainderSubscribers = new Subscribers();
+                    }
+                    node.remainderSubscribers.add(sessionId, subscriptionId);
+                }else{
+                    node = child(node, segments[last]);
+                    if (node.subscribers == null) {
+                        node.subscribers = new Subscribers();
+                    }
+                    node.subscribers.add(sessionId, subscriptionId);
+                }
+            }
+            ++patternCount;
+        }finally{
+            patternLock.unlock();
+        }
+    }
+
+    private void removePatternSubscriber(String sessionId, String subscriptionId, String pattern) {
+        patternLock.lock();
+        try {
+            final String[] segments = indexableSegments(pattern);
+            if (segments == null) {
+                subscribersByOtherPattern.computeIfPresent(pattern, (k, subscribers) -> {
+                    subscribers.remove(sessionId, subscriptionId);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+            }else{
+                removePatternSubscriber(patternRoot, segments, 0, sessionId, subscriptionId);
+            }
+            --patternCount;
+        }finally{
+            patternLock.unlock();
+        }
+    }
+
+    private void removePatternSubscriber(Node node, String[] segments, int index, String sessionId, String subscriptionId) {
+
+        final String segment = segments[index];
+
+        if (index == segments.length - 1 && ANY_REMAINDER.equals(segment)) {
+            final Subscribers subscribers = node.remainderSubscribers;
+            if (subscribers != null) {
+                subscribers.remove(sessionId, subscriptionId);
+                if (subscribers.isEmpty()) {
+                    node.remainderSubscribers = null;
+                }
+            }
+            return;
+        }
+
+        final Node child = ANY_SEGMENT.equals(segment) ? node.anySegment : node.children.get(segment);
+        if (child == null) {
+            return;
+        }
+
+        if (index == segments.length - 1) {
+            final Subscribers subscribers = child.subscribers;
+            if (subscribers != null) {
+                subscribers.remove(sessionId, subscriptionId);
+                if (subscribers.isEmpty()) {
+                    child.subscribers = null;
+                }
+            }
+        }else{
+            removePatternSubscriber(child, segments, index + 1, sessionId, subscriptionId);
+        }
+
+        if (child.isEmpty()) {
+            if (ANY_SEGMENT.equals(segment)) {
+                node.anySegment = null;
+            }else{
+                node.children.remove(segment, child);
+            }
+        }
+    }
+
+    private Node child(Node node, String segment) {
+        if (ANY_SEGMENT.equals(segment)) {
+            if (node.anySegment == null) {
+                node.anySegment = new Node();
+            }
+            return node.anySegment;
+        }
+        return node.children.computeIfAbsent(segment, k -> new Node());
+    }
+
+    /**
+     * @return The segments of the pattern, or {@code null} if the pattern can not be indexed
+     */
+    private String[] indexableSegments(String pattern) {
+        if (!pattern.startsWith("/") || pattern.endsWith("/")) {
+            return null;
+        }
+        final String[] segments = pattern.substring(1).split("/");
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            if (segment.isEmpty()) {
+                return null;
+            }
+            if (ANY_SEGMENT.equals(segment) || (ANY_REMAINDER.equals(segment) && i == segments.length - 1)) {
+                continue;
+            }
+            if (pathMatcher.isPattern(segment)) {
+                return null;
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedSubscriptionRegistry[sessions=" + destinationsBySession.size() +
+                ", destinations=" + subscribersByDestination.size() + ", patterns=" + patternCount + "]";
+    }
+}
@@ -0,0 +1,18 @@
+package com.looseboxes.websocket.server.broker;
+
+/**
+ * What a {@link ShardedSubscriptionRegistry} does with a message for a shard whose
+ * queue is full. Subscribing and unsubscribing, which may not be lost, always wait.
+ * @author chinomso ikwuagwu
+ */
+public enum ShardOverflowPolicy {
+    /**
+     * Wait for the queue to have room, so that the sending thread is slowed to the
+     * pace of the shard.
+     */
+    BLOCK,
+    /**
+     * Discard the message.
+     */
+    DROP
+}
@@ -0,0 +1,147 @@
+package com.looseboxes.websocket.server.broker;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+/**
+ * The subscriptions of one shard of a {@link ShardedSubscriptionRegistry}: those to
+ * the shard's destinations, and every pattern subscription. Not thread safe, as only
+ * the shard's thread reads or modifies it.
+ * @author chinomso ikwuagwu
+ */
+final class ShardSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final MultiValueMap<String, String> EMPTY_MAP =
+            CollectionUtils.toMultiValueMap(Collections.<String, List<String>>emptyMap());
+
+    private final Map<String, MultiValueMap<String, String>> subscriptionsByDestination = new HashMap<>();
+
+    private final Map<String, MultiValueMap<String, String>> subscriptionsByPattern = new LinkedHashMap<>();
+
+    private final Map<String, Map<String, String>> destinationsBySession = new HashMap<>();
+
+    private final PathMatcher pathMatcher;
+
+    ShardSubscriptionRegistry(PathMatcher pathMatcher) {
+        this.pathMatcher = pathMatcher;
+    }
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+
+        final String previous = destinationsBySession
+                .computeIfAbsent(sessionId, k -> new HashMap<>())
+                .put(subscriptionId, destination);
+
+        if (previous != null) {
+            // Same subscription id re-used within the session
+            removeSubscriber(sessionId, subscriptionId, previous);
+        }
+
+        subscriptionsFor(destination)
+                .computeIfAbsent(destination, k -> new LinkedMultiValueMap<>())
+                .add(sessionId, subscriptionId);
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+
+        final Map<String, String> destinations = destinationsBySession.get(sessionId);
+
+        if (destinations == null) {
+            // Not subscribed via this shard
+            return;
+        }
+
+        final String destination = destinations.remove(subscriptionId);
+
+        if (destinations.isEmpty()) {
+            destinationsBySession.remove(sessionId);
+        }
+
+        if (destination != null) {
+            removeSubscriber(sessionId, subscriptionId, destination);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+
+        final Map<String, String> destinations = destinationsBySession.remove(sessionId);
+
+        if (destinations != null) {
+            destinations.forEach((subscriptionId, destination) -> removeSubscriber(sessionId, subscriptionId, destination));
+        }
+    }
+
+    /**
+     * The returned map may be a live view of the subscribers, which is only valid
+     * until the shard's thread modifies this registry.
+     */
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+
+        final MultiValueMap<String, String> subscriptions = subscriptionsByDestination.get(destination);
+
+        if (subscriptionsByPattern.isEmpty()) {
+            return subscriptions == null ? EMPTY_MAP : subscriptions;
+        }
+
+        final MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+
+        if (subscriptions != null) {
+            subscriptions.forEach(result::addAll);
+        }
+
+        subscriptionsByPattern.forEach((pattern, patternSubscriptions) -> {
+            if (pathMatcher.match(pattern, destination)) {
+                patternSubscriptions.forEach(result::addAll);
+            }
+        });
+
+        return result;
+    }
+
+    private void removeSubscriber(String sessionId, String subscriptionId, String destination) {
+
+        final Map<String, MultiValueMap<String, String>> subscriptionsFor = subscriptionsFor(destination);
+
+        final MultiValueMap<String, String> subscriptions = subscriptionsFor.get(destination);
+
+        if (subscriptions == null) {
+            return;
+        }
+
+        final List<String> subscriptionIds = subscriptions.get(sessionId);
+
+        if (subscriptionIds != null) {
+            subscriptionIds.remove(subscriptionId);
+            if (subscriptionIds.isEmpty()) {
+                subscriptions.remove(sessionId);
+            }
+        }
+
+        if (subscriptions.isEmpty()) {
+            subscriptionsFor.remove(destination);
+        }
+    }
+
+    private Map<String, MultiValueMap<String, String>> subscriptionsFor(String destination) {
+        return pathMatcher.isPattern(destination) ? subscriptionsByPattern : subscriptionsByDestination;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardSubscriptionRegistry[sessions=" + destinationsBySession.size() +
+                ", destinations=" + subscriptionsByDestination.size() + ", patterns=" + subscriptionsByPattern.size() + "]";
+    }
+}
@@ -0,0 +1,76 @@
+package com.looseboxes.websocket.server.broker;
+
+import java.util.Collection;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+
+/**
+ * A simple broker which partitions destinations over the single threaded shards of a
+ * {@link ShardedSubscriptionRegistry}, so that broadcasting scales across cores without
+ * contending for the subscriptions. Each message is sent to subscribers on the thread
+ * of its destination's shard, so messages to a destination are sent in the order they
+ * were received, while messages to destinations of other shards are sent in parallel.
+ *
+ * <p>
+ * Sessions, heartbeats and the acknowledgement of CONNECT and DISCONNECT frames are
+ * handled as by the simple broker, on the thread which sent the frame.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class ShardedBrokerMessageHandler extends SimpleBrokerMessageHandler implements DisposableBean {
+
+    private final ShardedSubscriptionRegistry shards;
+
+    public ShardedBrokerMessageHandler(SubscribableChannel clientInboundChannel, MessageChannel clientOutboundChannel,
+                                       SubscribableChannel brokerChannel, Collection<String> destinationPrefixes,
+                                       ShardedSubscriptionRegistry shards) {
+        super(clientInboundChannel, clientOutboundChannel, brokerChannel, destinationPrefixes);
+        this.shards = shards;
+        setSubscriptionRegistry(shards);
+    }
+
+    /**
+     * @param handler A simple broker, as configured by spring
+     * @param shards The shards
+     * @return A sharded broker, on the channels, and with the settings, of the given simple broker
+     */
+    public static ShardedBrokerMessageHandler of(SimpleBrokerMessageHandler handler, ShardedSubscriptionRegistry shards) {
+        final ShardedBrokerMessageHandler sharded = new ShardedBrokerMessageHandler(
+                handler.getClientInboundChannel(), handler.getClientOutboundChannel(),
+                handler.getBrokerChannel(), handler.getDestinationPrefixes(), shards);
+        sharded.setApplicationEventPublisher(handler.getApplicationEventPublisher());
+        sharded.setAutoStartup(handler.isAutoStartup());
+        sharded.setPreservePublishOrder(handler.isPreservePublishOrder());
+        sharded.setHeaderInitializer(handler.getHeaderInitializer());
+        sharded.setTaskScheduler(handler.getTaskScheduler());
+        sharded.setHeartbeatValue(handler.getHeartbeatValue());
+        return sharded;
+    }
+
+    public ShardedSubscriptionRegistry getShards() {
+        return shards;
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        final MessageHeaders headers = message.getHeaders();
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination != null && SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.MESSAGE &&
+                checkDestinationPrefix(destination)) {
+            shards.execute(destination, () -> super.handleMessageInternal(message));
+        }else{
+            super.handleMessageInternal(message);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        shards.shutdown();
+    }
+}
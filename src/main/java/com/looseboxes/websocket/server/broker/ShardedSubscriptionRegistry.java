@@ -0,0 +1,220 @@
+package com.looseboxes.websocket.server.broker;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Partitions destinations, by hash, over a number of shards, each a single thread
+ * which alone reads and modifies the subscriptions of its destinations, so that
+ * neither takes a lock. Used by the {@link ShardedBrokerMessageHandler}, which sends
+ * each message to subscribers on the thread of its destination's shard.
+ *
+ * <p>
+ * Subscribing and unsubscribing are queued to the shards, after the messages before
+ * them, so each shard sees the subscriptions and messages of a destination in the
+ * order they were received. A subscription to a pattern, which may match destinations
+ * of any shard, is added to every shard. As an UNSUBSCRIBE frame carries no destination,
+ * unsubscribing, and the end of a session, are also queued to every shard.
+ * </p>
+ * <p>
+ * Each shard's queue is bounded. When a shard's queue is full, the {@link ShardOverflowPolicy}
+ * applies to messages, while subscribing and unsubscribing wait for the queue to have room.
+ * </p>
+ * <p>
+ * Subscription selector headers are not supported.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class ShardedSubscriptionRegistry implements SubscriptionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedSubscriptionRegistry.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private final ThreadPoolTaskExecutor[] executors;
+
+    private final ShardSubscriptionRegistry[] registries;
+
+    private final PathMatcher pathMatcher;
+
+    private final ShardOverflowPolicy overflowPolicy;
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param shards The number of shards. Zero or less uses the number of available processors.
+     */
+    public ShardedSubscriptionRegistry(int shards) {
+        this(shards, DEFAULT_QUEUE_CAPACITY, ShardOverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param shards The number of shards. Zero or less uses the number of available processors.
+     * @param queueCapacity Maximum number of tasks queued per shard
+     * @param overflowPolicy What to do with a message for a shard whose queue is full
+     */
+    public ShardedSubscriptionRegistry(int shards, int queueCapacity, ShardOverflowPolicy overflowPolicy) {
+        this(shards, queueCapacity, overflowPolicy, new AntPathMatcher());
+    }
+
+    /**
+     * @param shards The number of shards. Zero or less uses the number of available processors.
+     * @param queueCapacity Maximum number of tasks queued per shard
+     * @param overflowPolicy What to do with a message for a shard whose queue is full
+     * @param pathMatcher Used to match pattern subscriptions. Shared by the shards, so must be thread safe.
+     */
+    public ShardedSubscriptionRegistry(int shards, int queueCapacity, ShardOverflowPolicy overflowPolicy,
+                                       PathMatcher pathMatcher) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive, found: " + queueCapacity);
+        }
+        final int count = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.executors = new ThreadPoolTaskExecutor[count];
+        this.registries = new ShardSubscriptionRegistry[count];
+        for (int i = 0; i < count; i++) {
+            final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(1);
+            executor.setMaxPoolSize(1);
+            executor.setQueueCapacity(queueCapacity);
+            // So that a full queue is handled by the caller, see execute(int, Runnable, boolean)
+            executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+            executor.setThreadNamePrefix("websocketBrokerShard-" + i + "-");
+            executor.initialize();
+            this.executors[i] = executor;
+            this.registries[i] = new ShardSubscriptionRegistry(pathMatcher);
+        }
+        this.pathMatcher = pathMatcher;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getShardCount() {
+        return executors.length;
+    }
+
+    /**
+     * @return The number of messages discarded, as their shard's queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @param destination The destination of a message or subscription
+     * @return The index of the shard which owns the destination
+     */
+    public int getShard(String destination) {
+        int hash = destination.hashCode();
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % executors.length;
+    }
+
+    /**
+     * Run the task, which sends a message, on the thread of the destination's shard, after the
+     * tasks queued before it. If the shard's queue is full, the {@link ShardOverflowPolicy} applies.
+     */
+    public void execute(String destination, Runnable task) {
+        execute(getShard(destination), task, overflowPolicy == ShardOverflowPolicy.DROP);
+    }
+
+    @Override
+    public void registerSubscription(Message<?> subscribeMessage) {
+        final String destination = SimpMessageHeaderAccessor.getDestination(subscribeMessage.getHeaders());
+        if (destination == null) {
+            return;
+        }
+        if (pathMatcher.isPattern(destination)) {
+            // May match the destinations of any shard
+            for (int i = 0; i < registries.length; i++) {
+                final ShardSubscriptionRegistry registry = registries[i];
+                execute(i, () -> registry.registerSubscription(subscribeMessage), false);
+            }
+        }else{
+            final int shard = getShard(destination);
+            final ShardSubscriptionRegistry registry = registries[shard];
+            execute(shard, () -> registry.registerSubscription(subscribeMessage), false);
+        }
+    }
+
+    @Override
+    public void unregisterSubscription(Message<?> unsubscribeMessage) {
+        // No destination, so not known which shard subscribed
+        for (int i = 0; i < registries.length; i++) {
+            final ShardSubscriptionRegistry registry = registries[i];
+            execute(i, () -> registry.unregisterSubscription(unsubscribeMessage), false);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        for (int i = 0; i < registries.length; i++) {
+            final ShardSubscriptionRegistry registry = registries[i];
+            execute(i, () -> registry.unregisterAllSubscriptions(sessionId), false);
+        }
+    }
+
+    /**
+     * Must be called on the thread of the shard of the message's destination, see
+     * {@link #execute(String, Runnable)}. The returned map may be a live view of the
+     * subscribers, which is only valid until the shard's next task.
+     */
+    @Override
+    public MultiValueMap<String, String> findSubscriptions(Message<?> message) {
+        final String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return registries[destination == null ? 0 : getShard(destination)].findSubscriptions(message);
+    }
+
+    public void shutdown() {
+        for (ThreadPoolTaskExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @param mayDrop {@code true} to discard the task if the shard's queue is full,
+     *                otherwise wait for the queue to have room
+     */
+    private void execute(int shard, Runnable task, boolean mayDrop) {
+        final Runnable guarded = () -> {
+            try {
+                task.run();
+            }catch(RuntimeException e) {
+                log.warn("Shard: " + shard + " failed to run task", e);
+            }
+        };
+        final ThreadPoolTaskExecutor executor = executors[shard];
+        try {
+            executor.execute(guarded);
+        }catch(RejectedExecutionException e) {
+            final ThreadPoolExecutor threadPool = executor.getThreadPoolExecutor();
+            if (threadPool.isShutdown()) {
+                log.debug("Shard: {} is shut down, discarding task", shard);
+            }else if (mayDrop) {
+                dropped.increment();
+                log.debug("Queue of shard: {} is full, discarding message", shard);
+            }else{
+                try {
+                    // The shard's thread is running, as its queue is full
+                    threadPool.getQueue().put(guarded);
+                }catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for the queue of shard: " + shard, ie);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedSubscriptionRegistry[shards=" + executors.length + "]";
+    }
+}
@@ -0,0 +1,61 @@
+package com.looseboxes.websocket.server.broker;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.replay.ReplayRegistry;
+import com.looseboxes.websocket.server.replay.ReplayingSubscriptionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Installs the subscription registry selected by {@code looseboxes.websocket.broker.mode}
+ * into the simple broker, which spring otherwise provides no means to configure, or
+ * replaces the simple broker with a {@link ShardedBrokerMessageHandler}.
+ * When replay is configured, the registry is decorated with a {@link ReplayingSubscriptionRegistry}.
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class SubscriptionRegistryPostProcessor implements BeanPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionRegistryPostProcessor.class);
+
+    // Resolved lazily, bean post processors are created before other beans
+    private final ObjectProvider<WebsocketProperties> propertiesProvider;
+
+    private final ObjectProvider<ReplayRegistry> replayRegistryProvider;
+
+    public SubscriptionRegistryPostProcessor(ObjectProvider<WebsocketProperties> propertiesProvider,
+                                             ObjectProvider<ReplayRegistry> replayRegistryProvider) {
+        this.propertiesProvider = propertiesProvider;
+        this.replayRegistryProvider = replayRegistryProvider;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof SimpleBrokerMessageHandler) {
+            SimpleBrokerMessageHandler handler = (SimpleBrokerMessageHandler)bean;
+            WebsocketProperties.Broker broker = propertiesProvider.getObject().getBroker();
+            if (broker.getMode() == WebsocketProperties.BrokerMode.INDEXED) {
+                log.info("Using {} for bean: {}", IndexedSubscriptionRegistry.class.getSimpleName(), beanName);
+                handler.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+            }else if (broker.getMode() == WebsocketProperties.BrokerMode.SHARDED) {
+                // Replaces the bean, before spring starts it, which subscribes it to the channels
+                ShardedSubscriptionRegistry shards = new ShardedSubscriptionRegistry(broker.getShards(),
+                        broker.getShardQueueCapacity(), broker.getShardOverflowPolicy());
+                log.info("Using {} with {} shards for bean: {}", ShardedBrokerMessageHandler.class.getSimpleName(),
+                        shards.getShardCount(), beanName);
+                handler = ShardedBrokerMessageHandler.of(handler, shards);
+            }
+            ReplayRegistry replayRegistry = replayRegistryProvider.getIfAvailable();
+            if (replayRegistry != null && replayRegistry.isEnabled()) {
+                log.info("Using {} for bean: {}", ReplayingSubscriptionRegistry.class.getSimpleName(), beanName);
+                handler.setSubscriptionRegistry(new ReplayingSubscriptionRegistry(handler.getSubscriptionRegistry(), replayRegistry));
+            }
+            return handler;
+        }
+        return bean;
+    }
+}
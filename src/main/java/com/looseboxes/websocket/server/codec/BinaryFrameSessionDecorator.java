@@ -0,0 +1,53 @@
+package com.looseboxes.websocket.server.codec;
+
+import java.io.IOException;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+/**
+ * Sends STOMP frames whose payload has a binary content type e.g CBOR, in binary
+ * websocket messages.
+ *
+ * <p>
+ * Spring's STOMP support, on both the server and the client, only sends frames in
+ * binary websocket messages when their content type is {@code application/octet-stream}.
+ * Other frames are sent as text, which would not survive binary payloads.
+ * </p>
+ * @see PayloadCodecs
+ * @author chinomso ikwuagwu
+ */
+public class BinaryFrameSessionDecorator extends WebSocketSessionDecorator {
+
+    private static final String CONTENT_TYPE_HEADER = "\ncontent-type:";
+
+    public BinaryFrameSessionDecorator(WebSocketSession session) {
+        super(session);
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (message instanceof TextMessage && isBinary((TextMessage)message)) {
+            super.sendMessage(new BinaryMessage(((TextMessage)message).asBytes(), message.isLast()));
+        }else{
+            super.sendMessage(message);
+        }
+    }
+
+    private static boolean isBinary(TextMessage message) {
+        final String frame = message.getPayload();
+        final int headersEnd = frame.indexOf("\n\n");
+        if (headersEnd == -1) {
+            return false;
+        }
+        final int start = frame.lastIndexOf(CONTENT_TYPE_HEADER, headersEnd);
+        if (start == -1) {
+            return false;
+        }
+        final int from = start + CONTENT_TYPE_HEADER.length();
+        final int end = frame.indexOf('\n', from);
+        return PayloadCodecs.isBinary(frame.substring(from, end));
+    }
+}
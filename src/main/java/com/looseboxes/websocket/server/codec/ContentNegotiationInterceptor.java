@@ -0,0 +1,252 @@
+package com.looseboxes.websocket.server.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompConversionException;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.session.AbstractSockJsSession;
+
+/**
+ * Delivers messages to each session in the content type it accepts.
+ *
+ * <p>
+ * A client declares the content types it accepts, in order of preference, with an
+ * {@link WebsocketHeaders#ACCEPT} header on its CONNECT frame e.g {@code accept:application/cbor}.
+ * Sessions which declare none, and SockJS sessions, which can not carry binary
+ * frames, accept json. Messages whose payload is json or a supported binary content
+ * type, see {@link PayloadCodecs}, are re-encoded for each session which accepts
+ * another. The payload of a message broadcast to many sessions is re-encoded once
+ * per content type.
+ * </p>
+ * <p>
+ * Registered on the client outbound channel only. Websocket handlers are decorated
+ * via {@link #decorate(WebSocketHandler)}, which reads the accept header of each
+ * session's CONNECT frame as it is received, whatever the broker, and sends binary
+ * payloads in binary frames.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class ContentNegotiationInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentNegotiationInterceptor.class);
+
+    private static final class Transcoded {
+        private final Object source;
+        private final byte[] payload;
+        private Transcoded(Object source, byte[] payload) {
+            this.source = source;
+            this.payload = payload;
+        }
+    }
+
+    private final List<MimeType> binaryMimeTypes = PayloadCodecs.getBinaryMimeTypes();
+
+    /**
+     * The binary content type accepted, by session id. Sessions which accept json are absent.
+     */
+    private final ConcurrentMap<String, MimeType> binarySessions = new ConcurrentHashMap<>();
+
+    /**
+     * Sessions which may accept a binary content type, whose CONNECT frame is yet to be received
+     */
+    private final Set<String> awaitingConnect = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The payload last re-encoded, by the content type it was re-encoded to
+     */
+    private final ConcurrentMap<MimeType, Transcoded> lastTranscoded = new ConcurrentHashMap<>();
+
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (WebSocketSessionDecorator.unwrap(session) instanceof AbstractSockJsSession) {
+                    super.afterConnectionEstablished(session);
+                }else{
+                    if (!binaryMimeTypes.isEmpty()) {
+                        awaitingConnect.add(session.getId());
+                    }
+                    super.afterConnectionEstablished(new BinaryFrameSessionDecorator(session));
+                }
+            }
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                // The first frame of a session is its CONNECT frame
+                if (!awaitingConnect.isEmpty() && awaitingConnect.remove(session.getId())) {
+                    onConnect(session.getId(), message);
+                }
+                super.handleMessage(session, message);
+            }
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                awaitingConnect.remove(session.getId());
+                binarySessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            return negotiate(message);
+        }
+
+        return message;
+    }
+
+    private void onConnect(String sessionId, WebSocketMessage<?> message) {
+        final ByteBuffer frame;
+        if (message instanceof TextMessage) {
+            frame = ByteBuffer.wrap(((TextMessage)message).getPayload().getBytes(StandardCharsets.UTF_8));
+        }else if (message instanceof BinaryMessage) {
+            frame = ((BinaryMessage)message).getPayload().duplicate();
+        }else{
+            return;
+        }
+        final List<Message<byte[]>> decoded;
+        try {
+            decoded = new StompDecoder().decode(frame);
+        }catch(StompConversionException e) {
+            // Left to the STOMP handler to reject
+            return;
+        }
+        for (Message<byte[]> connect : decoded) {
+            final StompCommand command = StompHeaderAccessor.wrap(connect).getCommand();
+            if (command == StompCommand.CONNECT || command == StompCommand.STOMP) {
+                final MimeType accepted = getAccepted(
+                        SimpMessageHeaderAccessor.getFirstNativeHeader(WebsocketHeaders.ACCEPT, connect.getHeaders()), sessionId);
+                if (accepted != null) {
+                    binarySessions.put(sessionId, accepted);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The first binary content type accepted, if preferred to json, otherwise {@code null}
+     */
+    @Nullable
+    private MimeType getAccepted(@Nullable String accept, String sessionId) {
+        if (accept == null) {
+            return null;
+        }
+        try {
+            for (MimeType mimeType : MimeTypeUtils.parseMimeTypes(accept)) {
+                if (PayloadCodecs.isJson(mimeType)) {
+                    return null;
+                }
+                for (MimeType binaryMimeType : binaryMimeTypes) {
+                    if (binaryMimeType.equalsTypeAndSubtype(mimeType)) {
+                        return binaryMimeType;
+                    }
+                }
+            }
+        }catch(InvalidMimeTypeException e) {
+            log.debug("Session: {}, invalid {} header: {}", sessionId, WebsocketHeaders.ACCEPT, accept);
+        }
+        return null;
+    }
+
+    private Message<?> negotiate(Message<?> message) {
+
+        final Object payload = message.getPayload();
+
+        final MimeType contentType = getContentType(message.getHeaders());
+
+        if (!(payload instanceof byte[]) || contentType == null) {
+            return message;
+        }
+
+        final boolean binary = !PayloadCodecs.isJson(contentType);
+
+        if (!binary && binarySessions.isEmpty()) {
+            return message;
+        }
+
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        final MimeType accepted = sessionId == null ? null : binarySessions.get(sessionId);
+
+        final MimeType target = accepted == null ? MimeTypeUtils.APPLICATION_JSON : accepted;
+
+        if (target.equalsTypeAndSubtype(contentType)) {
+            return message;
+        }
+
+        final JsonFactory from = PayloadCodecs.jsonFactory(contentType);
+
+        if (from == null) {
+            return message;
+        }
+
+        final byte[] transcoded;
+        try {
+            transcoded = transcode((byte[])payload, from, target);
+        }catch(IOException e) {
+            log.warn("Failed to convert message from: {} to: {}, session: {}, {}", contentType, target, sessionId, e.toString());
+            return message;
+        }
+
+        final MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(target);
+
+        return MessageBuilder.createMessage(transcoded, accessor.getMessageHeaders());
+    }
+
+    @Nullable
+    private static MimeType getContentType(MessageHeaders headers) {
+        final Object value = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (value instanceof MimeType) {
+            return (MimeType)value;
+        }
+        try {
+            return value instanceof String ? MimeTypeUtils.parseMimeType((String)value) : null;
+        }catch(InvalidMimeTypeException e) {
+            return null;
+        }
+    }
+
+    private byte[] transcode(byte[] payload, JsonFactory from, MimeType target) throws IOException {
+        final Transcoded last = lastTranscoded.get(target);
+        if (last != null && last.source == payload) {
+            return last.payload;
+        }
+        final byte[] result = PayloadCodecs.transcode(payload, from, PayloadCodecs.jsonFactory(target));
+        lastTranscoded.put(target, new Transcoded(payload, result));
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package com.looseboxes.websocket.server.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.looseboxes.websocket.server.model.WebsocketMessageModule;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * The content types in which payloads may be encoded: json, and the binary CBOR
+ * and Smile formats, when jackson's {@code jackson-dataformat-cbor} and
+ * {@code jackson-dataformat-smile} are on the classpath.
+ * @author chinomso ikwuagwu
+ */
+public final class PayloadCodecs {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    public static final MimeType APPLICATION_SMILE = new MimeType("application", "x-jackson-smile");
+
+    private static final boolean cborPresent = ClassUtils.isPresent(
+            "com.fasterxml.jackson.dataformat.cbor.CBORFactory", PayloadCodecs.class.getClassLoader());
+
+    private static final boolean smilePresent = ClassUtils.isPresent(
+            "com.fasterxml.jackson.dataformat.smile.SmileFactory", PayloadCodecs.class.getClassLoader());
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    // Loaded only when present
+    private static final class Cbor {
+        private static final JsonFactory factory = new CBORFactory();
+    }
+
+    private static final class Smile {
+        private static final JsonFactory factory = new SmileFactory();
+    }
+
+    private PayloadCodecs() { }
+
+    /**
+     * @return The binary content types supported, in order of preference
+     */
+    public static List<MimeType> getBinaryMimeTypes() {
+        final List<MimeType> result = new ArrayList<>(2);
+        if (cborPresent) {
+            result.add(APPLICATION_CBOR);
+        }
+        if (smilePresent) {
+            result.add(APPLICATION_SMILE);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @param contentType The content type, or the value of a {@code content-type} header
+     * @return {@code true} if the content type is a supported binary content type
+     */
+    public static boolean isBinary(@Nullable String contentType) {
+        return contentType != null &&
+                ((cborPresent && startsWithType(contentType, APPLICATION_CBOR)) ||
+                (smilePresent && startsWithType(contentType, APPLICATION_SMILE)));
+    }
+
+    private static boolean startsWithType(String contentType, MimeType mimeType) {
+        final int length = mimeType.getType().length() + 1 + mimeType.getSubtype().length();
+        return contentType.regionMatches(true, 0, mimeType.toString(), 0, length) &&
+                (contentType.length() == length || contentType.charAt(length) == ';');
+    }
+
+    /**
+     * @return A converter for each supported binary content type, which writes timestamps
+     * as ISO-8601 strings, see {@link #binaryMessageConverters(boolean)}
+     */
+    public static List<MessageConverter> binaryMessageConverters() {
+        return binaryMessageConverters(false);
+    }
+
+    /**
+     * @param timestampsAsEpochMillis {@code true} to write timestamps as epoch millis,
+     * see {@link WebsocketMessageModule}
+     * @return A converter for each supported binary content type. Each converts only
+     * messages whose content type it supports, so that messages without a content type
+     * are left to the json converter.
+     */
+    public static List<MessageConverter> binaryMessageConverters(boolean timestampsAsEpochMillis) {
+        final List<MimeType> mimeTypes = getBinaryMimeTypes();
+        final List<MessageConverter> result = new ArrayList<>(mimeTypes.size());
+        for (MimeType mimeType : mimeTypes) {
+            final MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(mimeType);
+            converter.setObjectMapper(Jackson2ObjectMapperBuilder.json()
+                    .factory(jsonFactory(mimeType))
+                    .modulesToInstall(new WebsocketMessageModule(timestampsAsEpochMillis))
+                    .build());
+            converter.setStrictContentTypeMatch(true);
+            result.add(converter);
+        }
+        return result;
+    }
+
+    /**
+     * @param mimeType The content type
+     * @return The factory of parsers and generators for the content type, or {@code null}
+     * if the content type is neither json nor a supported binary content type
+     */
+    @Nullable
+    public static JsonFactory jsonFactory(@Nullable MimeType mimeType) {
+        if (mimeType == null) {
+            return null;
+        }
+        if (isJson(mimeType)) {
+            return jsonFactory;
+        }
+        if (cborPresent && APPLICATION_CBOR.equalsTypeAndSubtype(mimeType)) {
+            return Cbor.factory;
+        }
+        if (smilePresent && APPLICATION_SMILE.equalsTypeAndSubtype(mimeType)) {
+            return Smile.factory;
+        }
+        return null;
+    }
+
+    public static boolean isJson(MimeType mimeType) {
+        return MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(mimeType) ||
+                ("application".equals(mimeType.getType()) && mimeType.getSubtype().endsWith("+json"));
+    }
+
+    /**
+     * Re-encode a payload, token by token, without binding it to objects.
+     * @param payload The payload to re-encode
+     * @param from The factory of the payload's encoding
+     * @param to The factory of the encoding to return
+     * @return The payload, re-encoded
+     */
+    public static byte[] transcode(byte[] payload, JsonFactory from, JsonFactory to) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 64);
+        try (JsonParser parser = from.createParser(payload);
+             JsonGenerator generator = to.createGenerator(out)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentEvent(parser);
+            }
+        }
+        return out.toByteArray();
+    }
+}
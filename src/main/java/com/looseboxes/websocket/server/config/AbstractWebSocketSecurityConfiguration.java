@@ -1,8 +1,15 @@
 package com.looseboxes.websocket.server.config;
 
 import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.security.AuthorizationDecisionCache;
+import com.looseboxes.websocket.server.security.CachingMessageSecurityMetadataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.security.config.annotation.web.messaging.MessageSecurityMetadataSourceRegistry;
 import org.springframework.security.config.annotation.web.socket.AbstractSecurityWebSocketMessageBrokerConfigurer;
+import org.springframework.security.messaging.access.intercept.ChannelSecurityInterceptor;
+import org.springframework.security.messaging.access.intercept.MessageSecurityMetadataSource;
 
 /**
  * @author hp
@@ -11,9 +18,50 @@ public abstract class AbstractWebSocketSecurityConfiguration
       extends AbstractSecurityWebSocketMessageBrokerConfigurer {
 
     private final WebsocketProperties websocketProperties;
+
+    @Nullable private final AuthorizationDecisionCache decisionCache;
     
     public AbstractWebSocketSecurityConfiguration(WebsocketProperties websocketProperties) {
         this.websocketProperties = websocketProperties;
+        final WebsocketProperties.Authorization authorization = websocketProperties.getAuthorization();
+        this.decisionCache = authorization.isCacheEnabled() ?
+                new AuthorizationDecisionCache(authorization.getCacheSize()) : null;
+    }
+
+    /**
+     * Caches the rules matched by each destination, so that repeat messages to a
+     * destination are not matched against the rules of {@link #configureInbound(MessageSecurityMetadataSourceRegistry)}
+     * again. Subclasses whose rules depend on more than the message type and destination
+     * should disable the cache.
+     */
+    @Override
+    @Bean
+    public MessageSecurityMetadataSource inboundMessageSecurityMetadataSource() {
+        final MessageSecurityMetadataSource source = super.inboundMessageSecurityMetadataSource();
+        final WebsocketProperties.Authorization authorization = websocketProperties.getAuthorization();
+        return authorization.isCacheEnabled() ?
+                new CachingMessageSecurityMetadataSource(source, authorization.getCacheSize()) : source;
+    }
+
+    /**
+     * Caches the access decisions for each destination, per session.
+     */
+    @Override
+    @Bean
+    public ChannelSecurityInterceptor inboundChannelSecurity(MessageSecurityMetadataSource messageSecurityMetadataSource) {
+        final ChannelSecurityInterceptor interceptor = super.inboundChannelSecurity(messageSecurityMetadataSource);
+        if (decisionCache != null) {
+            interceptor.setAccessDecisionManager(decisionCache.decorate(interceptor.getAccessDecisionManager()));
+        }
+        return interceptor;
+    }
+
+    @Override
+    protected void customizeClientInboundChannel(ChannelRegistration registration) {
+        if (decisionCache != null) {
+            // Forgets the decisions of each session on disconnect
+            registration.interceptors(decisionCache);
+        }
     }
     
     @Override
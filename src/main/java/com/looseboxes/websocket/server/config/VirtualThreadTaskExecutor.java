@@ -0,0 +1,146 @@
+package com.looseboxes.websocket.server.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+/**
+ * A {@link ThreadPoolTaskExecutor} which runs each task on its own virtual thread.
+ *
+ * <p>
+ * Spring's channel registrations only accept a {@link ThreadPoolTaskExecutor},
+ * hence we extend it. The underlying thread pool is still initialized, so that
+ * anything inspecting it keeps working, but tasks are never submitted to it. Its
+ * sizes, queue capacity and keep alive therefore have no effect.
+ * </p>
+ * <p>
+ * Virtual threads are looked up reflectively, so that this library still runs
+ * on JDKs which do not support them. Use {@link #isSupported()} to check.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class VirtualThreadTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private transient volatile ExecutorService virtualThreadExecutor;
+
+    public static boolean isSupported() {
+        ExecutorService executorService = newVirtualThreadPerTaskExecutor();
+        if (executorService == null) {
+            return false;
+        }
+        executorService.shutdown();
+        return true;
+    }
+
+    @Nullable
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)method.invoke(null);
+        }catch(ReflectiveOperationException | RuntimeException e) {
+            // Not available, or available only as a preview feature which is not enabled
+            return null;
+        }
+    }
+
+    @Override
+    protected ExecutorService initializeExecutor(
+            ThreadFactory threadFactory, RejectedExecutionHandler rejectedExecutionHandler) {
+        ExecutorService executorService = newVirtualThreadPerTaskExecutor();
+        if (executorService == null) {
+            throw new IllegalStateException("Virtual threads are not supported by this JDK");
+        }
+        this.virtualThreadExecutor = executorService;
+        return super.initializeExecutor(threadFactory, rejectedExecutionHandler);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            activeCount.incrementAndGet();
+            getVirtualThreadExecutor().execute(() -> {
+                try {
+                    task.run();
+                }finally{
+                    activeCount.decrementAndGet();
+                }
+            });
+        }catch(RejectedExecutionException e) {
+            activeCount.decrementAndGet();
+            throw new TaskRejectedException("Executor [" + virtualThreadExecutor + "] did not accept task: " + task, e);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        execute(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<?> submitListenable(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * @return The number of tasks currently running or waiting to run on a virtual thread
+     */
+    @Override
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    @Override
+    public void shutdown() {
+        ExecutorService executorService = this.virtualThreadExecutor;
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+        super.shutdown();
+    }
+
+    private ExecutorService getVirtualThreadExecutor() {
+        ExecutorService executorService = this.virtualThreadExecutor;
+        if (executorService == null) {
+            throw new IllegalStateException("VirtualThreadTaskExecutor not initialized");
+        }
+        return executorService;
+    }
+}
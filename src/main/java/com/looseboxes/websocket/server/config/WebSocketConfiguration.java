@@ -1,21 +1,109 @@
 package com.looseboxes.websocket.server.config;
 
+import com.looseboxes.websocket.server.codec.ContentNegotiationInterceptor;
+import com.looseboxes.websocket.server.codec.PayloadCodecs;
 import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.durable.DurableQueueRegistry;
+import com.looseboxes.websocket.server.metrics.DeliveryMetricsChannelInterceptor;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import com.looseboxes.websocket.server.model.WebsocketMessageModule;
+import com.looseboxes.websocket.server.ratelimit.InboundRateLimiter;
+import com.looseboxes.websocket.server.session.PerMessageDeflateFilter;
+import com.looseboxes.websocket.server.session.SendReceiptChannelInterceptor;
+import com.looseboxes.websocket.server.session.SessionOutboxRegistry;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
 import org.springframework.web.socket.config.annotation.*;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
 
 /**
  * @author chinomso ikwuagwu
  */
 @Configuration
 @EnableWebSocketMessageBroker // This enables the websocket server
-public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer {
+public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConfiguration.class);
     
     private final WebsocketProperties properties;
 
-    public WebSocketConfiguration(WebsocketProperties properties) {
+    private final SessionOutboxRegistry sessionOutboxRegistry;
+
+    private final WebsocketMetrics metrics;
+
+    private final InboundRateLimiter rateLimiter;
+
+    private final DurableQueueRegistry durableQueues;
+
+    private final MessageChannel clientOutboundChannel;
+
+    // Only created when binary payloads are supported
+    @Nullable private final ContentNegotiationInterceptor contentNegotiation;
+
+    // Only created when relaying to an external broker. We create these ourselves
+    // so that the connection pool can be sized, which means we must also dispose them.
+    private ConnectionProvider relayConnectionProvider;
+    private LoopResources relayLoopResources;
+
+    /**
+     * @param clientOutboundChannel Lazy, as the channel is configured by this configuration
+     */
+    public WebSocketConfiguration(WebsocketProperties properties, SessionOutboxRegistry sessionOutboxRegistry,
+                                  ObjectProvider<WebsocketMetrics> metricsProvider,
+                                  InboundRateLimiter rateLimiter, DurableQueueRegistry durableQueues,
+                                  @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
         this.properties = properties;
+        this.sessionOutboxRegistry = sessionOutboxRegistry;
+        this.metrics = metricsProvider.getIfUnique(() -> WebsocketMetrics.NOOP);
+        this.rateLimiter = rateLimiter;
+        this.durableQueues = durableQueues;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.contentNegotiation = properties.getCodec().isBinary() && !PayloadCodecs.getBinaryMimeTypes().isEmpty() ?
+                new ContentNegotiationInterceptor() : null;
+    }
+
+    /**
+     * Picked up by spring boot's object mapper, with which spring boot configures
+     * the json message converter of the broker.
+     */
+    @Bean
+    public static WebsocketMessageModule websocketMessageModule(WebsocketProperties properties) {
+        return new WebsocketMessageModule(properties.getCodec().isTimestampsAsEpochMillis());
+    }
+
+    /**
+     * Only enabled when the negotiation of compression differs from that of the
+     * servlet container, see {@code looseboxes.websocket.compression}.
+     */
+    @Bean
+    public FilterRegistrationBean<PerMessageDeflateFilter> perMessageDeflateFilter() {
+        final WebsocketProperties.Compression compression = properties.getCompression();
+        final PerMessageDeflateFilter filter = new PerMessageDeflateFilter(
+                compression.isEnabled(), compression.isContextTakeover());
+        final FilterRegistrationBean<PerMessageDeflateFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(WebsocketEndpoints.ENDPOINT, WebsocketEndpoints.ENDPOINT + "/*");
+        registration.setEnabled(filter.isRewriting());
+        return registration;
     }
 
     /**
@@ -56,21 +144,173 @@ public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer
 
         registry.setUserDestinationPrefix(properties.getUserDestinationPrefix());
 
-        // Enables a simple in-memory broker
+        // Left unconfigured, messages are sent to the broker on the calling thread
+        if (properties.getChannels().getBroker().isConfigured()) {
+            configureChannel(registry.configureBrokerChannel(), properties.getChannels().getBroker());
+        }
 
-        // Messages whose destination starts with the specified destination prefixes 
-        // should be routed to the message broker. The message broker broadcasts 
-        // messages to all the connected clients who are subscribed to a particular topic.
-        registry.enableSimpleBroker(WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC, WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_QUEUE);
-
-        //   Use this for enabling a Full featured broker like RabbitMQ
-
-        /*
-        registry.enableStompBrokerRelay(WebsocketEndpoints.MESSAGE_BROKER_DESTINATION)
-                .setRelayHost("localhost")
-                .setRelayPort(61613)
-                .setClientLogin("guest")
-                .setClientPasscode("guest");
-        */
+        // Messages sent by the application to durable destinations are persisted instead
+        if (durableQueues.isEnabled()) {
+            registry.configureBrokerChannel().interceptors(durableQueues);
+        }
+
+        if (properties.getBroker().getMode() == WebsocketProperties.BrokerMode.RELAY) {
+
+            // Use a full featured broker like RabbitMQ, so that messages are
+            // broadcast to the sockets connected to every node, not just this one.
+            configureBrokerRelay(registry.enableStompBrokerRelay(
+                    WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC, WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_QUEUE));
+        }else{
+
+            // Enables a simple in-memory broker. Its subscription registry, or for the
+            // sharded mode the broker itself, is replaced by the SubscriptionRegistryPostProcessor
+
+            // Messages whose destination starts with the specified destination prefixes 
+            // should be routed to the message broker. The message broker broadcasts 
+            // messages to all the connected clients who are subscribed to a particular topic.
+            registry.enableSimpleBroker(WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC, WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_QUEUE);
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registry) {
+
+        final WebsocketProperties.Transport transport = properties.getTransport();
+
+        registry.setSendTimeLimit(transport.getSendTimeLimit())
+                .setSendBufferSizeLimit(transport.getSendBufferSizeLimit())
+                .setMessageSizeLimit(transport.getMessageSizeLimit());
+
+        // Slow clients then fill their own outbox, where the overflow policy
+        // is applied, rather than holding up the thread sending to them.
+        if (sessionOutboxRegistry.isEnabled()) {
+            registry.addDecoratorFactory(sessionOutboxRegistry::decorate);
+        }
+
+        if (contentNegotiation != null) {
+            registry.addDecoratorFactory(contentNegotiation::decorate);
+        }
+    }
+
+    /**
+     * Adds converters for the binary content types, which only convert messages of
+     * their content type. Spring boot adds the json converter.
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        if (contentNegotiation != null) {
+            messageConverters.addAll(PayloadCodecs.binaryMessageConverters(properties.getCodec().isTimestampsAsEpochMillis()));
+        }
+        return true;
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureChannel(registration, properties.getChannels().getInbound());
+        // First, so that frames over a limit are neither receipted nor handled
+        if (rateLimiter.isEnabled()) {
+            registration.interceptors(rateLimiter);
+        }
+        // Receipts for SEND frames. When relaying, the relayed broker sends receipts for its destinations.
+        if (properties.getTransport().isSendReceipts()) {
+            registration.interceptors(properties.getBroker().getMode() == WebsocketProperties.BrokerMode.RELAY ?
+                    new SendReceiptChannelInterceptor(clientOutboundChannel,
+                            properties.getApplicationDestinationPrefixes(), properties.getUserDestinationPrefix(),
+                            WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC, WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_QUEUE) :
+                    new SendReceiptChannelInterceptor(clientOutboundChannel,
+                            properties.getApplicationDestinationPrefixes(), properties.getUserDestinationPrefix()));
+        }
+        // Last, so that only frames which passed every other interceptor are persisted
+        if (durableQueues.isEnabled()) {
+            registration.interceptors(durableQueues);
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureChannel(registration, properties.getChannels().getOutbound());
+        if (metrics != WebsocketMetrics.NOOP) {
+            registration.interceptors(new DeliveryMetricsChannelInterceptor(metrics));
+        }
+        if (contentNegotiation != null) {
+            registration.interceptors(contentNegotiation);
+        }
+    }
+
+    private void configureChannel(ChannelRegistration registration, WebsocketProperties.ChannelExecutor channelExecutor) {
+
+        if (channelExecutor.getMode() == WebsocketProperties.ExecutorMode.VIRTUAL) {
+            if (VirtualThreadTaskExecutor.isSupported()) {
+                // Each task runs on its own virtual thread, so there is no pool or queue to size
+                if (channelExecutor.isSizeConfigured()) {
+                    log.warn("Virtual threads are neither pooled nor queued, ignoring: core-pool-size, " +
+                            "max-pool-size, queue-capacity and keep-alive-seconds of: {}", channelExecutor);
+                }
+                registration.taskExecutor(new VirtualThreadTaskExecutor());
+                return;
+            }
+            log.warn("Virtual threads are not supported by this JDK, falling back to a thread pool");
+        }
+
+        final TaskExecutorRegistration taskExecutorRegistration = registration.taskExecutor();
+
+        if (channelExecutor.getCorePoolSize() != null) {
+            taskExecutorRegistration.corePoolSize(channelExecutor.getCorePoolSize());
+        }
+        if (channelExecutor.getMaxPoolSize() != null) {
+            taskExecutorRegistration.maxPoolSize(channelExecutor.getMaxPoolSize());
+        }
+        if (channelExecutor.getQueueCapacity() != null) {
+            taskExecutorRegistration.queueCapacity(channelExecutor.getQueueCapacity());
+        }
+        if (channelExecutor.getKeepAliveSeconds() != null) {
+            taskExecutorRegistration.keepAliveSeconds(channelExecutor.getKeepAliveSeconds());
+        }
+    }
+
+    private void configureBrokerRelay(StompBrokerRelayRegistration registration) {
+
+        final WebsocketProperties.Relay relay = properties.getBroker().getRelay();
+
+        log.info("Relaying messages to STOMP broker at {}:{}", relay.getHost(), relay.getPort());
+
+        registration.setRelayHost(relay.getHost())
+                .setRelayPort(relay.getPort())
+                .setClientLogin(relay.getClientLogin())
+                .setClientPasscode(relay.getClientPasscode())
+                .setSystemLogin(relay.getSystemLogin())
+                .setSystemPasscode(relay.getSystemPasscode())
+                .setSystemHeartbeatSendInterval(relay.getSystemHeartbeatSendInterval())
+                .setSystemHeartbeatReceiveInterval(relay.getSystemHeartbeatReceiveInterval());
+
+        if (relay.getVirtualHost() != null) {
+            registration.setVirtualHost(relay.getVirtualHost());
+        }
+
+        relayConnectionProvider = ConnectionProvider.builder("websocket-relay-pool")
+                .maxConnections(relay.getMaxConnections())
+                .pendingAcquireTimeout(Duration.ofMillis(relay.getAcquireTimeout()))
+                .build();
+
+        relayLoopResources = relay.getIoWorkerCount() > 0 ?
+                LoopResources.create("websocket-relay-loop", relay.getIoWorkerCount(), true) :
+                LoopResources.create("websocket-relay-loop");
+
+        TcpClient tcpClient = TcpClient.create(relayConnectionProvider)
+                .host(relay.getHost())
+                .port(relay.getPort())
+                .runOn(relayLoopResources, false);
+
+        registration.setTcpClient(new ReactorNettyTcpClient<>(tcpClient, new StompReactorNettyCodec()));
+    }
+
+    @Override
+    public void destroy() {
+        if (relayConnectionProvider != null) {
+            relayConnectionProvider.disposeLater().block(Duration.ofSeconds(5));
+        }
+        if (relayLoopResources != null) {
+            relayLoopResources.disposeLater().block(Duration.ofSeconds(5));
+        }
     }
 }
@@ -0,0 +1,57 @@
+package com.looseboxes.websocket.server.config;
+
+import com.looseboxes.websocket.server.metrics.MicrometerWebsocketMetrics;
+import com.looseboxes.websocket.server.metrics.WebsocketChannelMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Registers this library's metrics with the application's {@link MeterRegistry}.
+ *
+ * <p>
+ * Only active when micrometer is on the classpath, and only binds when the
+ * application provides a {@link MeterRegistry} bean (e.g via spring boot actuator).
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+public class WebsocketMetricsConfiguration {
+
+    @Bean
+    public MicrometerWebsocketMetrics websocketMetrics(WebsocketProperties properties) {
+        return new MicrometerWebsocketMetrics(properties.getMetrics().getMaxDestinationTags());
+    }
+
+    @Bean
+    public SmartInitializingSingleton websocketMetricsBinder(
+            ObjectProvider<MeterRegistry> meterRegistryProvider,
+            MicrometerWebsocketMetrics websocketMetrics,
+            @Qualifier("clientInboundChannelExecutor") TaskExecutor clientInboundChannelExecutor,
+            @Qualifier("clientOutboundChannelExecutor") TaskExecutor clientOutboundChannelExecutor,
+            @Qualifier("brokerChannelExecutor") TaskExecutor brokerChannelExecutor) {
+        return () -> meterRegistryProvider.ifUnique(meterRegistry -> {
+            WebsocketChannelMetrics channelMetrics = new WebsocketChannelMetrics();
+            addIfThreadPool(channelMetrics, "inbound", clientInboundChannelExecutor);
+            addIfThreadPool(channelMetrics, "outbound", clientOutboundChannelExecutor);
+            addIfThreadPool(channelMetrics, "broker", brokerChannelExecutor);
+            channelMetrics.bindTo(meterRegistry);
+            websocketMetrics.bindTo(meterRegistry);
+        });
+    }
+
+    // Spring declares the channel executors as TaskExecutor, though they are thread pools
+    private static void addIfThreadPool(WebsocketChannelMetrics channelMetrics, String channel, TaskExecutor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor) {
+            // Virtual threads are neither queued nor pooled
+            channelMetrics.add(channel, (ThreadPoolTaskExecutor)executor, !(executor instanceof VirtualThreadTaskExecutor));
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.looseboxes.websocket.server.config;
 
+import com.looseboxes.websocket.server.broker.ShardOverflowPolicy;
+import com.looseboxes.websocket.server.broker.ShardedSubscriptionRegistry;
+import com.looseboxes.websocket.server.ratelimit.RateLimitPolicy;
+import com.looseboxes.websocket.server.session.OverflowPolicy;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -14,6 +20,36 @@ public class WebsocketProperties {
     private String[] applicationDestinationPrefixes;
 
     private String userDestinationPrefix;
+
+    private final Broker broker = new Broker();
+
+    private final Channels channels = new Channels();
+
+    private final Routing routing = new Routing();
+
+    private final Interceptors interceptors = new Interceptors();
+
+    private final Transport transport = new Transport();
+
+    private final Batching batching = new Batching();
+
+    private final Metrics metrics = new Metrics();
+
+    private final Presence presence = new Presence();
+
+    private final Replay replay = new Replay();
+
+    private final Deduplication deduplication = new Deduplication();
+
+    private final Codec codec = new Codec();
+
+    private final Compression compression = new Compression();
+
+    private final Authorization authorization = new Authorization();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    private final Durable durable = new Durable();
     
     public String[] getApplicationEndpointsForSuffix(String suffix) {
         return getEndpointsForSuffix(applicationDestinationPrefixes, suffix);
@@ -59,12 +95,1365 @@ public class WebsocketProperties {
         this.userDestinationPrefix = userDestinationPrefix;
     }
 
+    public Broker getBroker() {
+        return broker;
+    }
+
+    public Channels getChannels() {
+        return channels;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public Interceptors getInterceptors() {
+        return interceptors;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public Batching getBatching() {
+        return batching;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Presence getPresence() {
+        return presence;
+    }
+
+    public Replay getReplay() {
+        return replay;
+    }
+
+    public Deduplication getDeduplication() {
+        return deduplication;
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Authorization getAuthorization() {
+        return authorization;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public Durable getDurable() {
+        return durable;
+    }
+
     @Override
     public String toString() {
         return "WebsocketProperties{" +
                 "allowedOrigins=" + Arrays.toString(allowedOrigins) +
                 ", applicationDestinationPrefixes=" + Arrays.toString(applicationDestinationPrefixes) +
                 ", userDestinationPrefix='" + userDestinationPrefix + '\'' +
+                ", broker=" + broker +
+                ", channels=" + channels +
+                ", routing=" + routing +
+                ", interceptors=" + interceptors +
+                ", transport=" + transport +
+                ", batching=" + batching +
+                ", metrics=" + metrics +
+                ", presence=" + presence +
+                ", replay=" + replay +
+                ", deduplication=" + deduplication +
+                ", codec=" + codec +
+                ", compression=" + compression +
+                ", authorization=" + authorization +
+                ", rateLimit=" + rateLimit +
+                ", durable=" + durable +
                 '}';
     }
+
+    public enum BrokerMode {
+        /**
+         * The simple in-memory broker. Messages are only broadcast to sockets
+         * connected to this node.
+         */
+        SIMPLE,
+        /**
+         * The simple in-memory broker, with an
+         * {@link com.looseboxes.websocket.server.broker.IndexedSubscriptionRegistry IndexedSubscriptionRegistry}
+         * for large numbers of subscriptions. Subscription selector headers are not supported.
+         */
+        INDEXED,
+        /**
+         * The simple in-memory broker, with destinations partitioned by hash over a
+         * number of single threaded shards, see
+         * {@link com.looseboxes.websocket.server.broker.ShardedBrokerMessageHandler ShardedBrokerMessageHandler},
+         * so that broadcasting scales across cores. Subscription selector headers are not supported.
+         */
+        SHARDED,
+        /**
+         * Relay messages to an external STOMP broker e.g RabbitMQ, so that
+         * messages are broadcast to sockets connected to every node.
+         */
+        RELAY
+    }
+
+    public static class Broker {
+
+        private BrokerMode mode = BrokerMode.SIMPLE;
+
+        private final Relay relay = new Relay();
+
+        /**
+         * Number of shards, each a thread, when the mode is {@code sharded}. Zero
+         * or less uses the number of available processors.
+         */
+        private int shards;
+
+        /**
+         * Maximum number of messages and subscription changes queued per shard.
+         */
+        private int shardQueueCapacity = ShardedSubscriptionRegistry.DEFAULT_QUEUE_CAPACITY;
+
+        /**
+         * What to do with a message for a shard whose queue is full. Subscription
+         * changes always wait for the queue to have room.
+         */
+        private ShardOverflowPolicy shardOverflowPolicy = ShardOverflowPolicy.BLOCK;
+
+        public BrokerMode getMode() {
+            return mode;
+        }
+
+        public void setMode(BrokerMode mode) {
+            this.mode = mode;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public int getShardQueueCapacity() {
+            return shardQueueCapacity;
+        }
+
+        public void setShardQueueCapacity(int shardQueueCapacity) {
+            this.shardQueueCapacity = shardQueueCapacity;
+        }
+
+        public ShardOverflowPolicy getShardOverflowPolicy() {
+            return shardOverflowPolicy;
+        }
+
+        public void setShardOverflowPolicy(ShardOverflowPolicy shardOverflowPolicy) {
+            this.shardOverflowPolicy = shardOverflowPolicy;
+        }
+
+        public Relay getRelay() {
+            return relay;
+        }
+
+        @Override
+        public String toString() {
+            return "Broker{" +
+                    "mode=" + mode +
+                    ", relay=" + relay +
+                    ", shards=" + shards +
+                    ", shardQueueCapacity=" + shardQueueCapacity +
+                    ", shardOverflowPolicy=" + shardOverflowPolicy +
+                    '}';
+        }
+    }
+
+    public static class Relay {
+
+        private String host = "localhost";
+
+        private int port = 61613;
+
+        private String virtualHost;
+
+        private String clientLogin = "guest";
+
+        private String clientPasscode = "guest";
+
+        private String systemLogin = "guest";
+
+        private String systemPasscode = "guest";
+
+        /**
+         * Interval, in milliseconds, at which the shared "system" connection
+         * sends heartbeats to the broker. Zero disables sending heartbeats.
+         */
+        private long systemHeartbeatSendInterval = 10000;
+
+        /**
+         * Interval, in milliseconds, at which the shared "system" connection
+         * expects heartbeats from the broker. Zero disables checking heartbeats.
+         */
+        private long systemHeartbeatReceiveInterval = 10000;
+
+        /**
+         * The maximum number of TCP connections to the broker. Every websocket
+         * session holds one connection, plus one for the "system" connection.
+         */
+        private int maxConnections = 10000;
+
+        /**
+         * Maximum time, in milliseconds, to wait for a free pooled connection.
+         */
+        private long acquireTimeout = 45000;
+
+        /**
+         * Number of netty event loop threads. Zero or less uses netty's default.
+         */
+        private int ioWorkerCount;
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getVirtualHost() {
+            return virtualHost;
+        }
+
+        public void setVirtualHost(String virtualHost) {
+            this.virtualHost = virtualHost;
+        }
+
+        public String getClientLogin() {
+            return clientLogin;
+        }
+
+        public void setClientLogin(String clientLogin) {
+            this.clientLogin = clientLogin;
+        }
+
+        public String getClientPasscode() {
+            return clientPasscode;
+        }
+
+        public void setClientPasscode(String clientPasscode) {
+            this.clientPasscode = clientPasscode;
+        }
+
+        public String getSystemLogin() {
+            return systemLogin;
+        }
+
+        public void setSystemLogin(String systemLogin) {
+            this.systemLogin = systemLogin;
+        }
+
+        public String getSystemPasscode() {
+            return systemPasscode;
+        }
+
+        public void setSystemPasscode(String systemPasscode) {
+            this.systemPasscode = systemPasscode;
+        }
+
+        public long getSystemHeartbeatSendInterval() {
+            return systemHeartbeatSendInterval;
+        }
+
+        public void setSystemHeartbeatSendInterval(long systemHeartbeatSendInterval) {
+            this.systemHeartbeatSendInterval = systemHeartbeatSendInterval;
+        }
+
+        public long getSystemHeartbeatReceiveInterval() {
+            return systemHeartbeatReceiveInterval;
+        }
+
+        public void setSystemHeartbeatReceiveInterval(long systemHeartbeatReceiveInterval) {
+            this.systemHeartbeatReceiveInterval = systemHeartbeatReceiveInterval;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public long getAcquireTimeout() {
+            return acquireTimeout;
+        }
+
+        public void setAcquireTimeout(long acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+        }
+
+        public int getIoWorkerCount() {
+            return ioWorkerCount;
+        }
+
+        public void setIoWorkerCount(int ioWorkerCount) {
+            this.ioWorkerCount = ioWorkerCount;
+        }
+
+        @Override
+        public String toString() {
+            // Credentials are deliberately left out
+            return "Relay{" +
+                    "host='" + host + '\'' +
+                    ", port=" + port +
+                    ", virtualHost='" + virtualHost + '\'' +
+                    ", systemHeartbeatSendInterval=" + systemHeartbeatSendInterval +
+                    ", systemHeartbeatReceiveInterval=" + systemHeartbeatReceiveInterval +
+                    ", maxConnections=" + maxConnections +
+                    ", acquireTimeout=" + acquireTimeout +
+                    ", ioWorkerCount=" + ioWorkerCount +
+                    '}';
+        }
+    }
+
+    public enum ExecutorMode {
+        /**
+         * Handle messages on a bounded pool of platform threads.
+         */
+        POOL,
+        /**
+         * Handle each message on its own virtual thread. Requires a JDK which
+         * supports virtual threads, otherwise falls back to {@link #POOL}.
+         */
+        VIRTUAL
+    }
+
+    public static class Channels {
+
+        /**
+         * Executor for messages received from websocket clients.
+         */
+        private final ChannelExecutor inbound = new ChannelExecutor();
+
+        /**
+         * Executor for messages sent to websocket clients.
+         */
+        private final ChannelExecutor outbound = new ChannelExecutor();
+
+        /**
+         * Executor for messages sent to the broker from within the application.
+         * When nothing is configured here, messages are sent to the broker on
+         * the calling thread.
+         */
+        private final ChannelExecutor broker = new ChannelExecutor();
+
+        public ChannelExecutor getInbound() {
+            return inbound;
+        }
+
+        public ChannelExecutor getOutbound() {
+            return outbound;
+        }
+
+        public ChannelExecutor getBroker() {
+            return broker;
+        }
+
+        @Override
+        public String toString() {
+            return "Channels{" +
+                    "inbound=" + inbound +
+                    ", outbound=" + outbound +
+                    ", broker=" + broker +
+                    '}';
+        }
+    }
+
+    /**
+     * Sizing of a message channel's executor. Values left unset retain spring's defaults.
+     */
+    public static class ChannelExecutor {
+
+        private ExecutorMode mode = ExecutorMode.POOL;
+
+        private Integer corePoolSize;
+
+        private Integer maxPoolSize;
+
+        private Integer queueCapacity;
+
+        private Integer keepAliveSeconds;
+
+        public boolean isConfigured() {
+            return mode != ExecutorMode.POOL || isSizeConfigured();
+        }
+
+        /**
+         * @return {@code true} if any of the pool sizes, queue capacity or keep alive is set
+         */
+        public boolean isSizeConfigured() {
+            return corePoolSize != null || maxPoolSize != null
+                    || queueCapacity != null || keepAliveSeconds != null;
+        }
+
+        public ExecutorMode getMode() {
+            return mode;
+        }
+
+        public void setMode(ExecutorMode mode) {
+            this.mode = mode;
+        }
+
+        public Integer getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(Integer corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        public Integer getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(Integer maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        public Integer getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(Integer queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Integer getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public void setKeepAliveSeconds(Integer keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return "ChannelExecutor{" +
+                    "mode=" + mode +
+                    ", corePoolSize=" + corePoolSize +
+                    ", maxPoolSize=" + maxPoolSize +
+                    ", queueCapacity=" + queueCapacity +
+                    ", keepAliveSeconds=" + keepAliveSeconds +
+                    '}';
+        }
+    }
+
+    public static class Routing {
+
+        /**
+         * Paths, relative to the send endpoint, to which messages may be sent.
+         * A segment of {@code *} matches any one segment, while a trailing
+         * {@code **} matches any number of segments.
+         */
+        private String[] allowedDestinations = {"/**"};
+
+        /**
+         * Maximum number of resolved routes to cache. Once full, the least recently
+         * looked up routes are evicted. Rejected destinations are never cached.
+         */
+        private int cacheSize = 4096;
+
+        public String[] getAllowedDestinations() {
+            return allowedDestinations;
+        }
+
+        public void setAllowedDestinations(String[] allowedDestinations) {
+            this.allowedDestinations = allowedDestinations;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Routing{" +
+                    "allowedDestinations=" + Arrays.toString(allowedDestinations) +
+                    ", cacheSize=" + cacheSize +
+                    '}';
+        }
+    }
+
+    public static class Interceptors {
+
+        /**
+         * When {@code true}, interceptors run off the inbound channel thread.
+         * Asynchronous interceptors are always run off the inbound channel thread.
+         */
+        private boolean async;
+
+        /**
+         * Maximum number of threads running interceptors.
+         */
+        private int maxConcurrency = 8;
+
+        /**
+         * Maximum number of messages being intercepted at any one time. Further
+         * messages are rejected rather than queued without bound.
+         */
+        private int maxPending = 10000;
+
+        /**
+         * Time, in milliseconds, allowed each interceptor. A message whose
+         * interceptor times out is not sent.
+         */
+        private long timeout = 5000;
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public String toString() {
+            return "Interceptors{" +
+                    "async=" + async +
+                    ", maxConcurrency=" + maxConcurrency +
+                    ", maxPending=" + maxPending +
+                    ", timeout=" + timeout +
+                    '}';
+        }
+    }
+
+    public static class Transport {
+
+        /**
+         * Maximum time, in milliseconds, allowed to send a message to a client.
+         * Beyond this the client is disconnected.
+         */
+        private int sendTimeLimit = 10 * 1000;
+
+        /**
+         * Maximum number of bytes buffered for sending to a client.
+         */
+        private int sendBufferSizeLimit = 512 * 1024;
+
+        /**
+         * Maximum size, in bytes, of a message received from a client.
+         */
+        private int messageSizeLimit = 64 * 1024;
+
+        /**
+         * What to do with messages for clients whose send buffer is full. When
+         * neither this nor any overflow policies are set, clients whose send
+         * buffer is full are disconnected by spring.
+         */
+        private OverflowPolicy overflowPolicy;
+
+        /**
+         * Overflow policies by destination prefix e.g {@code "[/topic/prices]": conflate}.
+         * The longest matching prefix applies.
+         */
+        private Map<String, OverflowPolicy> overflowPolicies = new LinkedHashMap<>();
+
+        /**
+         * Number of threads which write buffered messages to clients. Zero
+         * or less uses the number of available processors.
+         */
+        private int writerThreads;
+
+        /**
+         * When {@code true}, a RECEIPT frame is sent for each SEND frame which
+         * requests one, once the frame is handled, or for frames to the default
+         * controller, once their messages are accepted. Spring's simple broker only
+         * sends receipts for DISCONNECT frames.
+         */
+        private boolean sendReceipts;
+
+        public boolean isOverflowPolicyConfigured() {
+            return overflowPolicy != null || !overflowPolicies.isEmpty();
+        }
+
+        public int getSendTimeLimit() {
+            return sendTimeLimit;
+        }
+
+        public void setSendTimeLimit(int sendTimeLimit) {
+            this.sendTimeLimit = sendTimeLimit;
+        }
+
+        public int getSendBufferSizeLimit() {
+            return sendBufferSizeLimit;
+        }
+
+        public void setSendBufferSizeLimit(int sendBufferSizeLimit) {
+            this.sendBufferSizeLimit = sendBufferSizeLimit;
+        }
+
+        public int getMessageSizeLimit() {
+            return messageSizeLimit;
+        }
+
+        public void setMessageSizeLimit(int messageSizeLimit) {
+            this.messageSizeLimit = messageSizeLimit;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public Map<String, OverflowPolicy> getOverflowPolicies() {
+            return overflowPolicies;
+        }
+
+        public void setOverflowPolicies(Map<String, OverflowPolicy> overflowPolicies) {
+            this.overflowPolicies = overflowPolicies;
+        }
+
+        public int getWriterThreads() {
+            return writerThreads;
+        }
+
+        public void setWriterThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+        }
+
+        public boolean isSendReceipts() {
+            return sendReceipts;
+        }
+
+        public void setSendReceipts(boolean sendReceipts) {
+            this.sendReceipts = sendReceipts;
+        }
+
+        @Override
+        public String toString() {
+            return "Transport{" +
+                    "sendTimeLimit=" + sendTimeLimit +
+                    ", sendBufferSizeLimit=" + sendBufferSizeLimit +
+                    ", messageSizeLimit=" + messageSizeLimit +
+                    ", overflowPolicy=" + overflowPolicy +
+                    ", overflowPolicies=" + overflowPolicies +
+                    ", writerThreads=" + writerThreads +
+                    ", sendReceipts=" + sendReceipts +
+                    '}';
+        }
+    }
+
+    public static class Batching {
+
+        /**
+         * When {@code true}, messages routed by the default controller are
+         * collected per destination and sent to subscribers as an array.
+         */
+        private boolean enabled;
+
+        /**
+         * Maximum time, in milliseconds, a message waits to be batched.
+         */
+        private long window = 10;
+
+        /**
+         * Maximum number of messages in a batch. A full batch is sent immediately.
+         */
+        private int maxSize = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindow() {
+            return window;
+        }
+
+        public void setWindow(long window) {
+            this.window = window;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Batching{" +
+                    "enabled=" + enabled +
+                    ", window=" + window +
+                    ", maxSize=" + maxSize +
+                    '}';
+        }
+    }
+
+    public static class Metrics {
+
+        /**
+         * Maximum number of destinations tagged individually. Messages to
+         * further destinations are tagged {@code other}.
+         */
+        private int maxDestinationTags = 100;
+
+        public int getMaxDestinationTags() {
+            return maxDestinationTags;
+        }
+
+        public void setMaxDestinationTags(int maxDestinationTags) {
+            this.maxDestinationTags = maxDestinationTags;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "maxDestinationTags=" + maxDestinationTags +
+                    '}';
+        }
+    }
+
+    public static class Presence {
+
+        /**
+         * When {@code true}, users joining and leaving are tracked by the
+         * {@link com.looseboxes.websocket.server.presence.PresenceRegistry PresenceRegistry},
+         * and broadcast periodically, in batches. Otherwise each join and leave
+         * is broadcast as it happens, in a message of its own, as clients of
+         * {@code /topic/public} expect by default.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time, in milliseconds, between broadcasts of users who joined or left.
+         */
+        private long interval = 1000;
+
+        /**
+         * Time, in milliseconds, a user whose last session closed has to reconnect,
+         * before the user is broadcast as having left.
+         */
+        private long gracePeriod = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        public void setInterval(long interval) {
+            this.interval = interval;
+        }
+
+        public long getGracePeriod() {
+            return gracePeriod;
+        }
+
+        public void setGracePeriod(long gracePeriod) {
+            this.gracePeriod = gracePeriod;
+        }
+
+        @Override
+        public String toString() {
+            return "Presence{" +
+                    "enabled=" + enabled +
+                    ", interval=" + interval +
+                    ", gracePeriod=" + gracePeriod +
+                    '}';
+        }
+    }
+
+    public static class Replay {
+
+        /**
+         * Prefixes of the destinations whose recent messages are retained for replay
+         * e.g {@code /topic/prices/}. Replay is disabled when empty.
+         */
+        private String[] destinations = {};
+
+        /**
+         * Maximum number of messages retained per destination.
+         */
+        private int maxMessages = 1024;
+
+        /**
+         * Maximum number of payload bytes retained per destination.
+         */
+        private int capacity = 1024 * 1024;
+
+        /**
+         * When {@code true}, retained payloads are held outside the heap.
+         */
+        private boolean direct;
+
+        /**
+         * Maximum number of destinations replayed. Messages to further destinations are not retained.
+         */
+        private int maxDestinations = 1000;
+
+        public String[] getDestinations() {
+            return destinations;
+        }
+
+        public void setDestinations(String[] destinations) {
+            this.destinations = destinations;
+        }
+
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public boolean isDirect() {
+            return direct;
+        }
+
+        public void setDirect(boolean direct) {
+            this.direct = direct;
+        }
+
+        public int getMaxDestinations() {
+            return maxDestinations;
+        }
+
+        public void setMaxDestinations(int maxDestinations) {
+            this.maxDestinations = maxDestinations;
+        }
+
+        @Override
+        public String toString() {
+            return "Replay{" +
+                    "destinations=" + Arrays.toString(destinations) +
+                    ", maxMessages=" + maxMessages +
+                    ", capacity=" + capacity +
+                    ", direct=" + direct +
+                    ", maxDestinations=" + maxDestinations +
+                    '}';
+        }
+    }
+
+    public static class Deduplication {
+
+        /**
+         * When {@code true}, messages to the default controller with the same sender
+         * and id as a recent message are dropped.
+         */
+        private boolean enabled;
+
+        /**
+         * Time, in milliseconds, a message is remembered for.
+         */
+        private long window = 60 * 1000;
+
+        /**
+         * Maximum number of messages remembered. The oldest are forgotten first.
+         */
+        private int maxEntries = 100_000;
+
+        /**
+         * Number of independently locked stripes. Zero or less uses 4 times
+         * the number of available processors.
+         */
+        private int stripes;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindow() {
+            return window;
+        }
+
+        public void setWindow(long window) {
+            this.window = window;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public String toString() {
+            return "Deduplication{" +
+                    "enabled=" + enabled +
+                    ", window=" + window +
+                    ", maxEntries=" + maxEntries +
+                    ", stripes=" + stripes +
+                    '}';
+        }
+    }
+
+    public static class Codec {
+
+        /**
+         * When {@code true}, and jackson's CBOR or Smile data formats are on the classpath,
+         * messages may be sent in those binary formats, and are delivered to each session
+         * in the content type it accepts. Disabled by default, so that outbound messages are
+         * not inspected unless binary formats are wanted.
+         */
+        private boolean binary = false;
+
+        /**
+         * When {@code true}, the timestamps of messages are written as numbers, in epoch millis,
+         * which are cheaper to write and read. Otherwise they are written as ISO-8601 strings.
+         * Only enable once every peer reads epoch millis e.g by registering the
+         * {@link com.looseboxes.websocket.server.model.WebsocketMessageModule WebsocketMessageModule}.
+         */
+        private boolean timestampsAsEpochMillis = false;
+
+        public boolean isBinary() {
+            return binary;
+        }
+
+        public void setBinary(boolean binary) {
+            this.binary = binary;
+        }
+
+        public boolean isTimestampsAsEpochMillis() {
+            return timestampsAsEpochMillis;
+        }
+
+        public void setTimestampsAsEpochMillis(boolean timestampsAsEpochMillis) {
+            this.timestampsAsEpochMillis = timestampsAsEpochMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Codec{" +
+                    "binary=" + binary +
+                    ", timestampsAsEpochMillis=" + timestampsAsEpochMillis +
+                    '}';
+        }
+    }
+
+    public static class Compression {
+
+        /**
+         * When {@code true}, messages are compressed with the {@code permessage-deflate}
+         * websocket extension, for clients which offer it, as servlet containers do by default.
+         */
+        private boolean enabled = true;
+
+        /**
+         * When {@code true}, each message is compressed with the messages before it as a
+         * dictionary, which compresses small, similar messages much better, at the cost of
+         * up to 32KB per connection, per direction, kept between messages.
+         */
+        private boolean contextTakeover = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isContextTakeover() {
+            return contextTakeover;
+        }
+
+        public void setContextTakeover(boolean contextTakeover) {
+            this.contextTakeover = contextTakeover;
+        }
+
+        @Override
+        public String toString() {
+            return "Compression{" +
+                    "enabled=" + enabled +
+                    ", contextTakeover=" + contextTakeover +
+                    '}';
+        }
+    }
+
+    public static class Authorization {
+
+        /**
+         * When {@code true}, the security rules matched by, and the access decisions for,
+         * each destination are cached, so that repeat messages to a destination are neither
+         * matched nor evaluated again. Only valid for rules which depend on no more than the
+         * message type and the destination. Decisions are only cached for expressions which
+         * depend on no more than the principal e.g {@code permitAll} or {@code hasRole}.
+         */
+        private boolean cacheEnabled = false;
+
+        /**
+         * Maximum number of destinations to cache, per message type, and per session.
+         */
+        private int cacheSize = 1024;
+
+        public boolean isCacheEnabled() {
+            return cacheEnabled;
+        }
+
+        public void setCacheEnabled(boolean cacheEnabled) {
+            this.cacheEnabled = cacheEnabled;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Authorization{" +
+                    "cacheEnabled=" + cacheEnabled +
+                    ", cacheSize=" + cacheSize +
+                    '}';
+        }
+    }
+
+    public static class RateLimit {
+
+        /**
+         * When {@code true}, SEND frames from clients over the limits below are dropped
+         * or rejected, before they are handled.
+         */
+        private boolean enabled = false;
+
+        /**
+         * What to do with frames over a limit.
+         */
+        private RateLimitPolicy policy = RateLimitPolicy.DROP;
+
+        /**
+         * Limit per session.
+         */
+        private final Limit session = new Limit(100, 200);
+
+        /**
+         * Limit per sender, across the sender's sessions. The sender is the name of
+         * the session's authenticated user, or else the session.
+         */
+        private final Limit sender = new Limit();
+
+        /**
+         * Limits by destination prefix, across all sessions, e.g
+         * {@code "[/messaging/send/prices]": {rate: 1000}}. The longest matching prefix applies.
+         */
+        private Map<String, Limit> destinations = new LinkedHashMap<>();
+
+        /**
+         * Maximum number of senders limited at once. Senders which have not sent
+         * recently are forgotten first, while those beyond the maximum share one limit.
+         */
+        private int maxSenders = 100_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public RateLimitPolicy getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(RateLimitPolicy policy) {
+            this.policy = policy;
+        }
+
+        public Limit getSession() {
+            return session;
+        }
+
+        public Limit getSender() {
+            return sender;
+        }
+
+        public Map<String, Limit> getDestinations() {
+            return destinations;
+        }
+
+        public void setDestinations(Map<String, Limit> destinations) {
+            this.destinations = destinations;
+        }
+
+        public int getMaxSenders() {
+            return maxSenders;
+        }
+
+        public void setMaxSenders(int maxSenders) {
+            this.maxSenders = maxSenders;
+        }
+
+        @Override
+        public String toString() {
+            return "RateLimit{" +
+                    "enabled=" + enabled +
+                    ", policy=" + policy +
+                    ", session=" + session +
+                    ", sender=" + sender +
+                    ", destinations=" + destinations +
+                    ", maxSenders=" + maxSenders +
+                    '}';
+        }
+    }
+
+    public static class Limit {
+
+        /**
+         * Messages per second. Zero or less for no limit.
+         */
+        private double rate;
+
+        /**
+         * Messages which may be sent at once, after sending none for a while. Zero or
+         * less for one second's worth of the rate.
+         */
+        private int burst;
+
+        public Limit() { }
+
+        public Limit(double rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+
+        public boolean isLimited() {
+            return rate > 0;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        @Override
+        public String toString() {
+            return "Limit{" +
+                    "rate=" + rate +
+                    ", burst=" + burst +
+                    '}';
+        }
+    }
+
+    public static class Durable {
+
+        /**
+         * When {@code true}, messages to the destinations below are persisted, and delivered
+         * to users when they subscribe again, see
+         * {@link com.looseboxes.websocket.server.durable.DurableQueueRegistry DurableQueueRegistry}.
+         */
+        private boolean enabled = false;
+
+        /**
+         * The directory of the log of messages, and of the users' read cursors.
+         */
+        private String directory = "websocket-durable";
+
+        /**
+         * Prefixes of the durable destinations e.g {@code /queue/}. Applies both to shared
+         * queues e.g {@code /queue/abc}, and to user queues e.g {@code /user/{username}/queue/abc}.
+         */
+        private String[] destinations = {"/queue/"};
+
+        /**
+         * Size, in bytes, of each file of the log. Also the maximum size of a message.
+         */
+        private int segmentSize = 64 * 1024 * 1024;
+
+        /**
+         * Maximum number of bytes retained. The oldest files are deleted first, whether
+         * or not their messages have been read.
+         */
+        private long maxBytes = 1024L * 1024 * 1024;
+
+        /**
+         * Time, in milliseconds, messages are retained for, whether or not they have been read.
+         */
+        private long retention = 7L * 24 * 60 * 60 * 1000;
+
+        /**
+         * Time, in milliseconds, between writing messages and read cursors to disk.
+         */
+        private long flushInterval = 1000;
+
+        /**
+         * Time, in milliseconds, between deleting files of the log which are no longer needed.
+         */
+        private long compactionInterval = 60 * 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public String[] getDestinations() {
+            return destinations;
+        }
+
+        public void setDestinations(String[] destinations) {
+            this.destinations = destinations;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public long getRetention() {
+            return retention;
+        }
+
+        public void setRetention(long retention) {
+            this.retention = retention;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public long getCompactionInterval() {
+            return compactionInterval;
+        }
+
+        public void setCompactionInterval(long compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+
+        @Override
+        public String toString() {
+            return "Durable{" +
+                    "enabled=" + enabled +
+                    ", directory='" + directory + '\'' +
+                    ", destinations=" + Arrays.toString(destinations) +
+                    ", segmentSize=" + segmentSize +
+                    ", maxBytes=" + maxBytes +
+                    ", retention=" + retention +
+                    ", flushInterval=" + flushInterval +
+                    ", compactionInterval=" + compactionInterval +
+                    '}';
+        }
+    }
 }
@@ -0,0 +1,258 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes messages sent to {@link WebsocketEndpoints#SEND} to the corresponding
+ * {@link WebsocketEndpoints#MESSAGE_BROKER_DESTINATION_TOPIC} destination.
+ *
+ * <p>
+ * The allowed destinations are compiled once into a trie of path segments,
+ * so matching a path of any depth costs O(depth). Resolved routes are cached
+ * by the destination they were looked up with, so sends to hot topics neither
+ * match nor allocate. Rejected destinations are not cached, so that clients
+ * sending to many disallowed destinations cannot fill the cache.
+ * </p>
+ * <p>
+ * The cache is bounded by a clock: once full, routes not looked up since the
+ * clock's hand last passed them are evicted to make room for new routes, while
+ * looking up a cached route only marks it as referenced.
+ * </p>
+ * For example, {@code /send/abc/def} is routed to {@code /topic/abc/def}
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class WebsocketDestinationRouter {
+
+    public static final class Route {
+
+        private final String path;
+        private final String destination;
+
+        private Route(String path, String destination) {
+            this.path = path;
+            this.destination = destination;
+        }
+
+        /**
+         * @return The path relative to the send endpoint e.g {@code /abc/def}
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The broker destination e.g {@code /topic/abc/def}
+         */
+        public String getDestination() {
+            return destination;
+        }
+
+        @Override
+        public String toString() {
+            return "Route{" + "path=" + path + ", destination=" + destination + '}';
+        }
+    }
+
+    private static final class CachedRoute {
+        private final String lookupDestination;
+        private final Route route;
+        // Set on each lookup, cleared as the clock's hand passes
+        private volatile boolean referenced;
+        private CachedRoute(String lookupDestination, Route route) {
+            this.lookupDestination = lookupDestination;
+            this.route = route;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Node anySegment;
+        private boolean end;
+        private boolean anyRemainder;
+    }
+
+    private static final Route REJECTED = new Route(null, null);
+
+    private static final String ANY_SEGMENT = "*";
+    private static final String ANY_REMAINDER = "**";
+
+    private final Node root;
+
+    private final ConcurrentMap<String, CachedRoute> routesByLookupDestination;
+
+    private final int cacheSize;
+
+    // The clock, guarded by itself
+    private final CachedRoute[] clock;
+    private int clockSize;
+    private int clockHand;
+
+    @Autowired
+    public WebsocketDestinationRouter(WebsocketProperties properties) {
+        this(properties.getRouting().getAllowedDestinations(), properties.getRouting().getCacheSize());
+    }
+
+    public WebsocketDestinationRouter(String[] allowedDestinations, int cacheSize) {
+        this.root = compile(allowedDestinations);
+        this.cacheSize = Math.max(0, cacheSize);
+        this.routesByLookupDestination = new ConcurrentHashMap<>(Math.min(this.cacheSize, 1024));
+        this.clock = new CachedRoute[this.cacheSize];
+    }
+
+    /**
+     * @param lookupDestination The destination, without the application destination
+     *                          prefix, to which the message was sent e.g {@code /send/abc/def}
+     * @return The route for the destination or {@code null} if the destination is not allowed
+     */
+    @Nullable
+    public Route route(String lookupDestination) {
+
+        final CachedRoute cached = routesByLookupDestination.get(lookupDestination);
+
+        if (cached != null) {
+            if (!cached.referenced) {
+                cached.referenced = true;
+            }
+            return cached.route;
+        }
+
+        final Route route = resolve(lookupDestination);
+
+        if (route == REJECTED) {
+            return null;
+        }
+
+        if (cacheSize > 0) {
+            cache(new CachedRoute(lookupDestination, route));
+        }
+
+        return route;
+    }
+
+    /**
+     * @return The number of routes cached
+     */
+    public int getCachedCount() {
+        return routesByLookupDestination.size();
+    }
+
+    private void cache(CachedRoute cachedRoute) {
+        synchronized (clock) {
+            if (routesByLookupDestination.containsKey(cachedRoute.lookupDestination)) {
+                return;
+            }
+            if (clockSize < clock.length) {
+                clock[clockSize++] = cachedRoute;
+            }else{
+                // Within two turns, as each pass clears the referenced mark
+                while (clock[clockHand].referenced) {
+                    clock[clockHand].referenced = false;
+                    clockHand = (clockHand + 1) % clock.length;
+                }
+                routesByLookupDestination.remove(clock[clockHand].lookupDestination);
+                clock[clockHand] = cachedRoute;
+                clockHand = (clockHand + 1) % clock.length;
+            }
+            routesByLookupDestination.put(cachedRoute.lookupDestination, cachedRoute);
+        }
+    }
+
+    private Route resolve(String lookupDestination) {
+
+        if (!lookupDestination.startsWith(WebsocketEndpoints.SEND + '/')) {
+            return REJECTED;
+        }
+
+        final String path = lookupDestination.substring(WebsocketEndpoints.SEND.length());
+
+        // Empty segments e.g '/abc//def' or '/abc/' are never routed
+        if (path.length() < 2 || path.endsWith("/") || path.contains("//")) {
+            return REJECTED;
+        }
+
+        if (!matches(root, path, 1)) {
+            return REJECTED;
+        }
+
+        return new Route(path.intern(), (WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC + path).intern());
+    }
+
+    /**
+     * @param node The node to match from
+     * @param path The path to match e.g {@code /abc/def}
+     * @param start The index of the first character of the next segment to match
+     * @return {@code true} if the path, from the start index, matches the node
+     */
+    private boolean matches(Node node, String path, int start) {
+
+        if (node.anyRemainder) {
+            return true;
+        }
+
+        if (start > path.length()) {
+            return node.end;
+        }
+
+        int end = path.indexOf('/', start);
+        if (end == -1) {
+            end = path.length();
+        }
+
+        Node child = node.children.get(path.substring(start, end));
+
+        if (child != null && matches(child, path, end + 1)) {
+            return true;
+        }
+
+        return node.anySegment != null && matches(node.anySegment, path, end + 1);
+    }
+
+    private static Node compile(String[] allowedDestinations) {
+
+        final Node root = new Node();
+
+        for (String allowedDestination : allowedDestinations) {
+
+            if (!allowedDestination.startsWith("/")) {
+                throw new IllegalArgumentException("Allowed destination must start with '/', found: " + allowedDestination);
+            }
+
+            final String[] segments = allowedDestination.substring(1).split("/");
+
+            Node node = root;
+
+            for (int i = 0; i < segments.length; i++) {
+
+                final String segment = segments[i];
+
+                if (ANY_REMAINDER.equals(segment)) {
+                    if (i != segments.length - 1) {
+                        throw new IllegalArgumentException("'**' is only supported as the last segment, found: " + allowedDestination);
+                    }
+                    node.anyRemainder = true;
+                }else if (ANY_SEGMENT.equals(segment)) {
+                    if (node.anySegment == null) {
+                        node.anySegment = new Node();
+                    }
+                    node = node.anySegment;
+                }else if (segment.isEmpty()) {
+                    throw new IllegalArgumentException("Empty segment in allowed destination: " + allowedDestination);
+                }else{
+                    node = node.children.computeIfAbsent(segment, k -> new Node());
+                }
+            }
+
+            node.end = true;
+        }
+
+        return root;
+    }
+}
@@ -7,6 +7,7 @@ public final class WebsocketEndpoints {
     private WebsocketEndpoints(){ }
     public static final String ENDPOINT = "/ws";
     public static final String SEND = "/send";
+    public static final String SEND_BATCH = "/send-batch";
     public static final String JOIN = "/join";
     public static final String MESSAGE_BROKER_DESTINATION_TOPIC = "/topic";
     public static final String MESSAGE_BROKER_DESTINATION_QUEUE = "/queue";
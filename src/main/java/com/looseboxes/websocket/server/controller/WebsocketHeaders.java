@@ -0,0 +1,42 @@
+package com.looseboxes.websocket.server.controller;
+
+/**
+ * Names of the STOMP headers added to messages by this library.
+ * @author chinomso ikwuagwu
+ */
+public final class WebsocketHeaders {
+    private WebsocketHeaders(){ }
+    /**
+     * The key by which pending messages to a conflated destination are replaced.
+     * Set to the id of the {@link com.looseboxes.websocket.server.model.WebsocketMessage}.
+     */
+    public static final String CONFLATION_KEY = "conflation-key";
+    /**
+     * Present on messages whose payload is an array of messages, batched by the
+     * {@link WebsocketMessageBatcher}. The value is the number of messages in the batch.
+     */
+    public static final String BATCH_SIZE = "batch-size";
+    /**
+     * Present on messages to destinations configured for replay. The value increases
+     * by one per message to the destination, see {@link com.looseboxes.websocket.server.replay.ReplayRegistry ReplayRegistry}.
+     */
+    public static final String SEQUENCE = "seq";
+    /**
+     * Set on a SUBSCRIBE frame, to a destination configured for replay, to first receive
+     * the retained messages from the given {@link #SEQUENCE sequence}.
+     */
+    public static final String FROM_SEQUENCE = "from-seq";
+    /**
+     * Present on messages to durable destinations. The value is the position of the message
+     * in the log of durable messages, which increases with each message, see
+     * {@link com.looseboxes.websocket.server.durable.DurableQueueRegistry DurableQueueRegistry}.
+     * A message delivered again, after the server restarts, has the same position.
+     */
+    public static final String OFFSET = "offset";
+    /**
+     * Set on a CONNECT frame to the content types, in order of preference, in which the
+     * client accepts messages e.g {@code application/cbor}, see
+     * {@link com.looseboxes.websocket.server.codec.ContentNegotiationInterceptor ContentNegotiationInterceptor}.
+     */
+    public static final String ACCEPT = "accept";
+}
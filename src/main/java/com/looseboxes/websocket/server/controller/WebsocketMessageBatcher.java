@@ -0,0 +1,154 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.replay.ReplayRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects messages per destination, for up to the configured window or
+ * maximum size, and sends them to the broker as a single message whose
+ * payload is an array of the collected messages, with a
+ * {@link WebsocketHeaders#BATCH_SIZE} header. Subscribers then receive
+ * one frame per batch rather than one frame per message.
+ *
+ * <p>
+ * A batch of one is sent as a plain message, without the header.
+ * Messages to a destination are sent in the order they were added.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class WebsocketMessageBatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(WebsocketMessageBatcher.class);
+
+    private static final class Batch {
+        private final String destination;
+        // All guarded by this
+        private List<WebsocketMessage> messages;
+        private boolean retired;
+        private Batch(String destination, int maxSize) {
+            this.destination = destination;
+            this.messages = new ArrayList<>(Math.min(maxSize, 16));
+        }
+    }
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    private final ReplayRegistry replayRegistry;
+
+    private final TaskScheduler taskScheduler;
+
+    private final boolean enabled;
+
+    private final long window;
+
+    private final int maxSize;
+
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    public WebsocketMessageBatcher(WebsocketProperties properties,
+                                   SimpMessageSendingOperations messagingTemplate,
+                                   ReplayRegistry replayRegistry,
+                                   @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        final WebsocketProperties.Batching batching = properties.getBatching();
+        this.messagingTemplate = messagingTemplate;
+        this.replayRegistry = replayRegistry;
+        this.taskScheduler = taskScheduler;
+        this.enabled = batching.isEnabled();
+        this.window = batching.getWindow();
+        this.maxSize = Math.max(1, batching.getMaxSize());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Add the message to the batch for the destination. The batch is sent when
+     * full, or when the window which started with its first message elapses.
+     * @param destination The broker destination e.g {@code /topic/abc}
+     * @param message The message to add
+     */
+    public void add(String destination, WebsocketMessage message) {
+        while (true) {
+            boolean created = false;
+            Batch batch = batches.get(destination);
+            if (batch == null) {
+                final Batch candidate = new Batch(destination, maxSize);
+                batch = batches.putIfAbsent(destination, candidate);
+                if (batch == null) {
+                    batch = candidate;
+                    created = true;
+                }
+            }
+            synchronized (batch) {
+                if (batch.retired) {
+                    // Flushed by its timer since we looked it up
+                    continue;
+                }
+                batch.messages.add(message);
+                if (batch.messages.size() >= maxSize) {
+                    send(batch.destination, take(batch));
+                }
+            }
+            if (created) {
+                final Batch toFlush = batch;
+                taskScheduler.schedule(() -> flush(toFlush), new Date(System.currentTimeMillis() + window));
+            }
+            return;
+        }
+    }
+
+    private void flush(Batch batch) {
+        try {
+            synchronized (batch) {
+                batch.retired = true;
+                batches.remove(batch.destination, batch);
+                send(batch.destination, take(batch));
+            }
+        }catch(RuntimeException e) {
+            log.warn("Failed to send batch to: " + batch.destination, e);
+        }
+    }
+
+    private List<WebsocketMessage> take(Batch batch) {
+        final List<WebsocketMessage> messages = batch.messages;
+        batch.messages = new ArrayList<>(Math.min(maxSize, 16));
+        return messages;
+    }
+
+    private void send(String destination, List<WebsocketMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        final Object payload = messages.size() == 1 ? messages.get(0) : messages;
+        final Map<String, Object> headers = messages.size() == 1 ? null :
+                Collections.singletonMap(WebsocketHeaders.BATCH_SIZE, String.valueOf(messages.size()));
+        if (replayRegistry.isEnabled()) {
+            // Sequenced per batch, and retained for replay, if the destination is configured for replay
+            replayRegistry.convertAndSend(destination, payload, headers, null);
+        }else{
+            messagingTemplate.convertAndSend(destination, payload, headers);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        batches.values().forEach(this::flush);
+    }
+}
@@ -1,18 +1,27 @@
 package com.looseboxes.websocket.server.controller;
 
-import com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptor;
+import com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptorChain;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
 import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.presence.PresenceRegistry;
+import com.looseboxes.websocket.server.ratelimit.InboundRateLimiter;
+import com.looseboxes.websocket.server.replay.ReplayRegistry;
+import com.looseboxes.websocket.server.session.SessionOutboxRegistry;
+import java.util.Collections;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.handler.DestinationPatternsMessageCondition;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Controller;
-import reactor.util.annotation.Nullable;
 
 /**
  * @author chinomso ikwuagwu
@@ -23,47 +32,170 @@ public class WebsocketMessageController {
     private final Logger log = LoggerFactory.getLogger(WebsocketMessageController.class);
 
     private final SimpMessageSendingOperations messagingTemplate;
-    @Nullable private final WebsocketApplicationDestinationMessageInterceptor websocketApplicationDestinationMessageInterceptor;
+    private final WebsocketDestinationRouter websocketDestinationRouter;
+    private final WebsocketApplicationDestinationMessageInterceptorChain interceptorChain;
+    private final SessionOutboxRegistry sessionOutboxRegistry;
+    private final WebsocketMessageBatcher messageBatcher;
+    private final WebsocketMessageDeduplicator deduplicator;
+    private final PresenceRegistry presenceRegistry;
+    private final ReplayRegistry replayRegistry;
+    private final InboundRateLimiter rateLimiter;
+    private final WebsocketMessageReceipts receipts;
+    private final WebsocketMetrics metrics;
 
     public WebsocketMessageController(SimpMessageSendingOperations messagingTemplate,
-                                      @Autowired(required=false) WebsocketApplicationDestinationMessageInterceptor websocketApplicationDestinationMessageInterceptor) {
+                                      WebsocketDestinationRouter websocketDestinationRouter,
+                                      WebsocketApplicationDestinationMessageInterceptorChain interceptorChain,
+                                      SessionOutboxRegistry sessionOutboxRegistry,
+                                      WebsocketMessageBatcher messageBatcher,
+                                      WebsocketMessageDeduplicator deduplicator,
+                                      PresenceRegistry presenceRegistry,
+                                      ReplayRegistry replayRegistry,
+                                      InboundRateLimiter rateLimiter,
+                                      WebsocketMessageReceipts receipts,
+                                      ObjectProvider<WebsocketMetrics> metricsProvider) {
         this.messagingTemplate = messagingTemplate;
-        this.websocketApplicationDestinationMessageInterceptor = websocketApplicationDestinationMessageInterceptor;
+        this.websocketDestinationRouter = websocketDestinationRouter;
+        this.interceptorChain = interceptorChain;
+        this.sessionOutboxRegistry = sessionOutboxRegistry;
+        this.messageBatcher = messageBatcher;
+        this.deduplicator = deduplicator;
+        this.presenceRegistry = presenceRegistry;
+        this.replayRegistry = replayRegistry;
+        this.rateLimiter = rateLimiter;
+        this.receipts = receipts;
+        this.metrics = metricsProvider.getIfUnique(() -> WebsocketMetrics.NOOP);
     }
 
-    // This did not catch '/abc/def', that is why we added the next method with /{path0}/{path1}
-    @MessageMapping(WebsocketEndpoints.SEND + "/{path}")
+    /**
+     * Routes messages sent to {@code /send/**} e.g {@code /send/abc/def} to
+     * the corresponding topic e.g {@code /topic/abc/def}, if the destination
+     * is allowed by the {@link WebsocketDestinationRouter}. The frame is
+     * receipted, if it requests a receipt, once the message is accepted.
+     */
+    @MessageMapping(WebsocketEndpoints.SEND + "/**")
     public void sendMessage(@Payload WebsocketMessage message,
-                            SimpMessageHeaderAccessor simpMessageHeaderAccessor,
-                            @DestinationVariable String path) {
+                            SimpMessageHeaderAccessor simpMessageHeaderAccessor) {
 
-        path = "/" + path;
+        final String lookupDestination = (String)simpMessageHeaderAccessor
+                .getHeader(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER);
 
-        send(message, simpMessageHeaderAccessor, path);
+        final WebsocketDestinationRouter.Route route = lookupDestination == null ? null : websocketDestinationRouter.route(lookupDestination);
+
+        if (route == null) {
+            log.debug("Not routed, destination: {}", simpMessageHeaderAccessor.getDestination());
+            return;
+        }
+
+        send(message, simpMessageHeaderAccessor, route, receipts.onAccepted(simpMessageHeaderAccessor, 1));
     }
 
-    @MessageMapping(WebsocketEndpoints.SEND + "/{path0}/{path1}")
-    public void sendMessage(@Payload WebsocketMessage message,
-                            SimpMessageHeaderAccessor simpMessageHeaderAccessor,
-                            @DestinationVariable String path0,
-                            @DestinationVariable String path1) {
+    /**
+     * Routes each message of a batch sent to {@code /send-batch/**} as if it were
+     * sent to the corresponding {@code /send/**} destination, so that a client
+     * publishing at a high rate may send many messages per frame. The frame is
+     * receipted, if it requests a receipt, once every message is accepted.
+     */
+    @MessageMapping(WebsocketEndpoints.SEND_BATCH + "/**")
+    public void sendMessages(@Payload WebsocketMessage[] messages,
+                             SimpMessageHeaderAccessor simpMessageHeaderAccessor) {
+
+        final String lookupDestination = (String)simpMessageHeaderAccessor
+                .getHeader(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER);
+
+        final WebsocketDestinationRouter.Route route = lookupDestination == null ? null : websocketDestinationRouter.route(
+                WebsocketEndpoints.SEND + lookupDestination.substring(WebsocketEndpoints.SEND_BATCH.length()));
+
+        if (route == null) {
+            log.debug("Not routed, destination: {}", simpMessageHeaderAccessor.getDestination());
+            return;
+        }
 
-        final String path = "/" + path0 + '/' + path1;
+        // Messages beyond the batch size declared by the frame were not counted against rate limits
+        final int permitted = rateLimiter.getPermitted(simpMessageHeaderAccessor.getMessageHeaders());
+        if (messages.length > permitted) {
+            log.debug("Over declared batch size: {}, dropped: {}", permitted, messages.length - permitted);
+            metrics.onThrottled("batch", messages.length - permitted);
+        }
+
+        // Not receipted if any message was dropped
+        final Runnable onAccepted = receipts.onAccepted(simpMessageHeaderAccessor, messages.length);
 
-        send(message, simpMessageHeaderAccessor, path);
+        for (int i = 0; i < Math.min(messages.length, permitted); i++) {
+            send(messages[i], simpMessageHeaderAccessor, route, onAccepted);
+        }
     }
 
-    private void send(WebsocketMessage message, SimpMessageHeaderAccessor simpMessageHeaderAccessor, String path) {
+    private void send(WebsocketMessage message, SimpMessageHeaderAccessor simpMessageHeaderAccessor,
+                      WebsocketDestinationRouter.Route route, @Nullable Runnable onAccepted) {
+
+        final String path = route.getPath();
 
         if(log.isTraceEnabled()) {
             log.trace("Path: {}, headers: {}, message: {}", path, simpMessageHeaderAccessor.getSessionAttributes(), message);
         }
 
-        if(websocketApplicationDestinationMessageInterceptor != null) {
-            message = websocketApplicationDestinationMessageInterceptor.intercept(path, simpMessageHeaderAccessor, message);
+        final String destination = route.getDestination();
+
+        // Before interceptors and the broker, so that a retried message costs neither
+        if (deduplicator.isDuplicate(message)) {
+            log.debug("Duplicate, destination: {}, message: {}", destination, message);
+            metrics.onDuplicate(destination);
+            // Accepted when first sent
+            if (onAccepted != null) {
+                onAccepted.run();
+            }
+            return;
         }
 
-        messagingTemplate.convertAndSend(WebsocketEndpoints.MESSAGE_BROKER_DESTINATION_TOPIC + path, message);
+        final boolean conflated = sessionOutboxRegistry.isConflated(destination);
+
+        interceptorChain.intercept(path, simpMessageHeaderAccessor, message, intercepted -> {
+            metrics.onPublished(destination);
+            if (conflated) {
+                // Only the latest message per id is sent to clients which are behind.
+                // Not batched, as a pending batch would be replaced by the next batch.
+                sendConflated(destination, intercepted);
+            }else if (messageBatcher.isEnabled()) {
+                messageBatcher.add(destination, intercepted);
+            }else{
+                convertAndSend(destination, intercepted, null);
+            }
+            if (onAccepted != null) {
+                onAccepted.run();
+            }
+        });
+    }
+
+    private void sendConflated(String destination, WebsocketMessage message) {
+        if (message.getId() != null) {
+            convertAndSend(destination, message,
+                    Collections.singletonMap(WebsocketHeaders.CONFLATION_KEY, String.valueOf(message.getId())));
+        }else{
+            convertAndSend(destination, message, null);
+        }
+    }
+
+    private void convertAndSend(String destination, WebsocketMessage message, @Nullable Map<String, Object> headers) {
+        final MessagePostProcessor postProcessor = metrics.isEnabled() ? withTimestamp(message) : null;
+        if (replayRegistry.isEnabled()) {
+            // Sequenced, and retained for replay, if the destination is configured for replay
+            replayRegistry.convertAndSend(destination, message, headers, postProcessor);
+        }else{
+            messagingTemplate.convertAndSend(destination, message, headers, postProcessor);
+        }
+    }
+
+    /**
+     * Carries the timestamp of the message to the client outbound channel, where
+     * delivery latency is recorded. Not sent to clients.
+     */
+    @Nullable
+    private static MessagePostProcessor withTimestamp(WebsocketMessage message) {
+        final long timestamp = message.getTimestampMillis();
+        return timestamp < 0 ? null : toSend -> MessageBuilder.fromMessage(toSend)
+                .setHeader(WebsocketMetrics.TIMESTAMP_HEADER, timestamp)
+                .build();
     }
 
     @MessageMapping(WebsocketEndpoints.JOIN)
@@ -75,6 +207,15 @@ public class WebsocketMessageController {
 
         // Add username in web socket session
         headerAccessor.getSessionAttributes().put("username", message.getSender());
+
+        if (presenceRegistry.isEnabled()) {
+            // Broadcast later, together with other users who joined or left.
+            // Returning null sends nothing now.
+            if (message.getSender() != null) {
+                presenceRegistry.join(headerAccessor.getSessionId(), message.getSender());
+            }
+            return null;
+        }
         
         // By sending the message to a public topic, we are broadcasting the
         // user join event. This way, we don’t need to do anything in the 
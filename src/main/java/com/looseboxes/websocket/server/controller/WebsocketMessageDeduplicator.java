@@ -0,0 +1,225 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects messages sent more than once e.g by clients which retried after a
+ * timeout, by the {@link WebsocketMessage#getSender() sender} and
+ * {@link WebsocketMessage#getId() id} of each message. Messages without an id
+ * are never duplicates.
+ *
+ * <p>
+ * Each (sender, id) is remembered as a 64 bit fingerprint for the configured window,
+ * or until the configured maximum number of entries is reached, whichever is sooner,
+ * after which the oldest are forgotten. Entries are spread across stripes, each with
+ * its own lock. A stripe holds its fingerprints in arrays of primitives: a ring in
+ * the order they were added, and an open addressing hash table, so remembering a
+ * message allocates nothing, and costs about 32 bytes. Distinct messages are taken
+ * for duplicates only if their fingerprints collide, which with 100 thousand entries
+ * remembered is less likely than 1 in a billion.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class WebsocketMessageDeduplicator {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final class Stripe {
+
+        // Fingerprints, 0 for an empty slot
+        private final long[] table;
+        private final int tableMask;
+
+        // Fingerprints in the order they were added, and when they were added
+        private final long[] fingerprints;
+        private final long[] addedAt;
+        private int head;
+        private int size;
+
+        private Stripe(int capacity) {
+            // At most half full
+            final int tableSize = ceilingPowerOfTwo(capacity * 2);
+            this.table = new long[tableSize];
+            this.tableMask = tableSize - 1;
+            this.fingerprints = new long[capacity];
+            this.addedAt = new long[capacity];
+        }
+
+        /**
+         * @return {@code true} if the fingerprint was present, otherwise add it and return {@code false}
+         */
+        private boolean addIfAbsent(long fingerprint, long now, long expiredBefore) {
+
+            while (size > 0 && addedAt[head] < expiredBefore) {
+                removeOldest();
+            }
+
+            int index = (int)fingerprint & tableMask;
+            while (table[index] != 0) {
+                if (table[index] == fingerprint) {
+                    return true;
+                }
+                index = (index + 1) & tableMask;
+            }
+
+            if (size == fingerprints.length) {
+                removeOldest();
+                // The removal may have shifted entries into the probed slots
+                index = (int)fingerprint & tableMask;
+                while (table[index] != 0) {
+                    index = (index + 1) & tableMask;
+                }
+            }
+
+            table[index] = fingerprint;
+
+            final int tail = (head + size) % fingerprints.length;
+            fingerprints[tail] = fingerprint;
+            addedAt[tail] = now;
+            ++size;
+
+            return false;
+        }
+
+        private void removeOldest() {
+            remove(fingerprints[head]);
+            head = (head + 1) % fingerprints.length;
+            --size;
+        }
+
+        /**
+         * Linear probing removal, shifting back later entries of the probe sequence.
+         */
+        private void remove(long fingerprint) {
+            int index = (int)fingerprint & tableMask;
+            while (table[index] != fingerprint) {
+                if (table[index] == 0) {
+                    return;
+                }
+                index = (index + 1) & tableMask;
+            }
+            table[index] = 0;
+            int next = index;
+            while (true) {
+                next = (next + 1) & tableMask;
+                final long candidate = table[next];
+                if (candidate == 0) {
+                    return;
+                }
+                final int home = (int)candidate & tableMask;
+                // Move the candidate into the gap, unless its home lies cyclically in (index, next]
+                final boolean homeBetween = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+                if (!homeBetween) {
+                    table[index] = candidate;
+                    table[next] = 0;
+                    index = next;
+                }
+            }
+        }
+    }
+
+    private final boolean enabled;
+
+    private final long window;
+
+    @Nullable private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    @Autowired
+    public WebsocketMessageDeduplicator(WebsocketProperties properties) {
+        this(properties.getDeduplication().isEnabled(), properties.getDeduplication().getWindow(),
+                properties.getDeduplication().getMaxEntries(), properties.getDeduplication().getStripes());
+    }
+
+    /**
+     * @param enabled {@code true} to detect duplicates
+     * @param window Time, in milliseconds, a message is remembered for
+     * @param maxEntries Maximum number of messages remembered
+     * @param stripes Number of stripes, rounded up to a power of 2. Zero or less
+     *                uses 4 times the number of available processors.
+     */
+    public WebsocketMessageDeduplicator(boolean enabled, long window, int maxEntries, int stripes) {
+        this.enabled = enabled;
+        this.window = window;
+        if (enabled) {
+            final int requested = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors() * 4;
+            final int count = Math.min(ceilingPowerOfTwo(requested), Integer.highestOneBit(Math.max(1, maxEntries)));
+            final int capacity = Math.max(1, (maxEntries + count - 1) / count);
+            this.stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                this.stripes[i] = new Stripe(capacity);
+            }
+            this.stripeMask = count - 1;
+        }else{
+            this.stripes = null;
+            this.stripeMask = 0;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Remember the message, if it has an id, unless it was already remembered.
+     * @param message The message
+     * @return {@code true} if the message was already remembered
+     */
+    public boolean isDuplicate(WebsocketMessage<?, ?> message) {
+        final Object id = message.getId();
+        if (!enabled || id == null) {
+            return false;
+        }
+        final long fingerprint = fingerprint(message.getSender(), id);
+        final Stripe stripe = stripes[(int)(fingerprint >>> 40) & stripeMask];
+        final long now = System.currentTimeMillis();
+        synchronized (stripe) {
+            return stripe.addIfAbsent(fingerprint, now, now - window);
+        }
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static long fingerprint(@Nullable String sender, Object id) {
+        long hash = FNV_OFFSET_BASIS;
+        if (sender != null) {
+            for (int i = 0; i < sender.length(); i++) {
+                hash = (hash ^ sender.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Separates the sender from the id, and a null sender from an empty one
+        hash = (hash ^ (sender == null ? 0x10000 : 0x10001)) * FNV_PRIME;
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            hash = (hash ^ ((Number)id).longValue()) * FNV_PRIME;
+        }else{
+            final String value = id.toString();
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        hash = mix(hash);
+        // 0 marks an empty slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so that every bit of the hash depends on every bit of the input
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
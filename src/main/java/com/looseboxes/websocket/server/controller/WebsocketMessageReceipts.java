@@ -0,0 +1,84 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.session.SendReceiptChannelInterceptor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Receipts SEND frames to the {@link WebsocketMessageController}, once every
+ * message of the frame is accepted, when {@code looseboxes.websocket.transport.send-receipts}
+ * is enabled.
+ *
+ * <p>
+ * A frame is accepted later than its controller method returns, when interceptors
+ * run asynchronously, or not at all, when it is not routed, rejected, vetoed, or over
+ * its declared batch size. Such frames are not receipted, so that clients awaiting
+ * the receipt time out, rather than take the frame for delivered. No ERROR frame is
+ * sent, as that would close the connection.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class WebsocketMessageReceipts {
+
+    private static final Logger log = LoggerFactory.getLogger(WebsocketMessageReceipts.class);
+
+    private final boolean enabled;
+
+    private final MessageChannel clientOutboundChannel;
+
+    public WebsocketMessageReceipts(WebsocketProperties properties,
+                                    @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.enabled = properties.getTransport().isSendReceipts();
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param simpMessageHeaderAccessor The headers of the SEND frame
+     * @param messages The number of messages the frame carries
+     * @return To be run once for each message of the frame which is accepted. Sends the
+     * receipt when the last is accepted. {@code null} if no receipt is to be sent.
+     */
+    @Nullable
+    public Runnable onAccepted(SimpMessageHeaderAccessor simpMessageHeaderAccessor, int messages) {
+        if (!enabled) {
+            return null;
+        }
+        final String receipt = simpMessageHeaderAccessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_RECEIPT_HEADER);
+        if (receipt == null) {
+            return null;
+        }
+        final String sessionId = simpMessageHeaderAccessor.getSessionId();
+        if (messages < 1) {
+            send(receipt, sessionId);
+            return null;
+        }
+        final AtomicInteger pending = new AtomicInteger(messages);
+        return () -> {
+            if (pending.decrementAndGet() == 0) {
+                send(receipt, sessionId);
+            }
+        };
+    }
+
+    private void send(String receipt, @Nullable String sessionId) {
+        try {
+            clientOutboundChannel.send(SendReceiptChannelInterceptor.createReceipt(receipt, sessionId));
+        }catch(RuntimeException e) {
+            log.debug("Failed to send receipt: {} to session: {}, {}", receipt, sessionId, e.toString());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.looseboxes.websocket.server.durable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.lang.Nullable;
+
+/**
+ * The positions, in the {@link SegmentedLog}, of the messages retained for one durable
+ * destination, and the subscriptions to it on this node.
+ *
+ * <p>
+ * Not thread safe. Callers synchronize on the queue, which also orders the delivery
+ * of its messages, see {@link DurableQueueRegistry}.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+final class DurableQueue {
+
+    static final class Subscriber {
+
+        private final String sessionId;
+        private final String subscriptionId;
+        /**
+         * The destination as subscribed to e.g {@code /user/queue/abc}
+         */
+        private final String destination;
+        @Nullable private final String user;
+
+        Subscriber(String sessionId, String subscriptionId, String destination, @Nullable String user) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.destination = destination;
+            this.user = user;
+        }
+
+        String getSessionId() {
+            return sessionId;
+        }
+
+        String getSubscriptionId() {
+            return subscriptionId;
+        }
+
+        String getDestination() {
+            return destination;
+        }
+
+        @Nullable
+        String getUser() {
+            return user;
+        }
+    }
+
+    private final String destination;
+
+    /**
+     * The user whose queue this is, or {@code null} if the queue is shared by its subscribers
+     */
+    @Nullable private final String user;
+
+    // Ascending. The first retained is at head.
+    private long[] positions = new long[8];
+    private int head;
+    private int tail;
+
+    private final List<Subscriber> subscribers = new ArrayList<>(2);
+
+    /**
+     * Set once the queue is removed from its registry, after which it may not be used
+     */
+    private boolean removed;
+
+    DurableQueue(String destination, @Nullable String user) {
+        this.destination = destination;
+        this.user = user;
+    }
+
+    String getDestination() {
+        return destination;
+    }
+
+    @Nullable
+    String getUser() {
+        return user;
+    }
+
+    void add(long position) {
+        if (tail == positions.length) {
+            if (head > positions.length / 2) {
+                System.arraycopy(positions, head, positions, 0, tail - head);
+            }else{
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                System.arraycopy(positions, head, positions, 0, tail - head);
+            }
+            tail -= head;
+            head = 0;
+        }
+        positions[tail++] = position;
+    }
+
+    /**
+     * @return The index of the first position at or after the given position
+     */
+    int indexOf(long position) {
+        final int index = Arrays.binarySearch(positions, head, tail, position);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * @return The position at the index, which is from {@link #indexOf(long)} up to {@link #end()}
+     */
+    long get(int index) {
+        return positions[index];
+    }
+
+    int end() {
+        return tail;
+    }
+
+    /**
+     * @return The first position at or after the given position, or -1 if none
+     */
+    long getFrom(long position) {
+        final int index = indexOf(position);
+        return index < tail ? positions[index] : -1;
+    }
+
+    /**
+     * Forget the positions before the given position, whose messages are no longer retained.
+     */
+    void trim(long start) {
+        head = indexOf(start);
+        if (head == tail) {
+            head = tail = 0;
+        }
+    }
+
+    int size() {
+        return tail - head;
+    }
+
+    List<Subscriber> getSubscribers() {
+        return subscribers;
+    }
+
+    void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    void unsubscribe(String sessionId, @Nullable String subscriptionId) {
+        subscribers.removeIf(subscriber -> subscriber.sessionId.equals(sessionId)
+                && (subscriptionId == null || subscriber.subscriptionId.equals(subscriptionId)));
+    }
+
+    boolean isRemoved() {
+        return removed;
+    }
+
+    void remove() {
+        removed = true;
+    }
+}
@@ -0,0 +1,570 @@
+package com.looseboxes.websocket.server.durable;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import com.looseboxes.websocket.server.session.SendReceiptChannelInterceptor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+/**
+ * Persists the messages to the destinations configured via {@code looseboxes.websocket.durable},
+ * in a {@link SegmentedLog}, and delivers them to subscribers from there, so that messages
+ * to users who are offline, or sent before the server restarted, are delivered when the
+ * users subscribe again.
+ *
+ * <p>
+ * Intercepts the client inbound channel and the broker channel. Messages to durable
+ * destinations are appended to the log instead of being sent to subscribers by the broker,
+ * then sent to the subscriptions to the destination on this node. SEND frames requesting a
+ * receipt are receipted once appended. Durable destinations are either:
+ * </p>
+ * <ul>
+ *     <li>
+ *         User queues e.g {@code /user/{username}/queue/abc}, subscribed to by the user as
+ *         {@code /user/queue/abc}. A message is delivered to each of the user's sessions.
+ *     </li>
+ *     <li>
+ *         Shared queues e.g {@code /queue/abc}. A message is delivered to each subscriber.
+ *         Users who subscribed before receive the messages they missed, new subscribers
+ *         only receive messages sent after they first subscribed.
+ *     </li>
+ * </ul>
+ * <p>
+ * The position of the next message each user is to read, per destination, is kept in
+ * {@link ReadCursors}. A message is read once sent to the client outbound channel. The
+ * user is the session's principal. Subscriptions to shared queues without a principal
+ * receive messages as they are sent, but no messages they missed. The log retains messages until every user to read them has, or until they
+ * are too old or too many, see {@link #compact()}. Pattern subscriptions are not supported.
+ * </p>
+ * <p>
+ * Messages to a destination are appended and sent one at a time, and subscriptions
+ * registered between messages, so that no message falls between those read from the log
+ * and those sent live. Only supported with the simple broker. The log is not shared with
+ * other nodes.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class DurableQueueRegistry implements ChannelInterceptor, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DurableQueueRegistry.class);
+
+    private static final String CURSORS_FILE = "cursors";
+
+    private final MessageChannel clientOutboundChannel;
+
+    private final boolean enabled;
+
+    private final String[] destinationPrefixes;
+
+    private final String userDestinationPrefix;
+
+    private final long maxBytes;
+
+    private final long retention;
+
+    @Nullable private final SegmentedLog messageLog;
+
+    @Nullable private final ReadCursors cursors;
+
+    @Nullable private final ThreadPoolTaskScheduler taskScheduler;
+
+    private final ConcurrentMap<String, DurableQueue> queues = new ConcurrentHashMap<>();
+
+    // Queue by subscription id, by session id
+    private final ConcurrentMap<String, ConcurrentMap<String, DurableQueue>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Sessions without a principal. Spring names the user of such a session by its id,
+     * so messages to their user destinations are left to the broker.
+     */
+    private final Set<String> anonymousSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param clientOutboundChannel Lazy, as the channel is created after the broker
+     */
+    public DurableQueueRegistry(WebsocketProperties properties,
+                                @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        final WebsocketProperties.Durable durable = properties.getDurable();
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.destinationPrefixes = durable.getDestinations();
+        final String userPrefix = properties.getUserDestinationPrefix() == null ? "/user/" : properties.getUserDestinationPrefix();
+        this.userDestinationPrefix = userPrefix.endsWith("/") ? userPrefix : userPrefix + '/';
+        this.maxBytes = durable.getMaxBytes();
+        this.retention = durable.getRetention();
+        if (durable.isEnabled() && properties.getBroker().getMode() == WebsocketProperties.BrokerMode.RELAY) {
+            log.warn("Durable destinations are not supported when relaying to an external broker, destinations: {}",
+                    String.join(", ", destinationPrefixes));
+            this.enabled = false;
+        }else{
+            this.enabled = durable.isEnabled() && destinationPrefixes.length > 0;
+        }
+
+        if (!enabled) {
+            this.messageLog = null;
+            this.cursors = null;
+            this.taskScheduler = null;
+            return;
+        }
+
+        final Path directory = Paths.get(durable.getDirectory());
+        try {
+            this.messageLog = new SegmentedLog(directory, durable.getSegmentSize());
+            this.cursors = new ReadCursors(directory.resolve(CURSORS_FILE), messageLog.getEndPosition());
+        }catch(IOException e) {
+            throw new UncheckedIOException("Failed to open durable destinations at: " + directory.toAbsolutePath(), e);
+        }
+
+        load();
+
+        // Our own, as forcing files to disk may take a while
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setThreadNamePrefix("websocketDurable-");
+        taskScheduler.setDaemon(true);
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::flush, durable.getFlushInterval());
+        taskScheduler.scheduleWithFixedDelay(this::compact, durable.getCompactionInterval());
+    }
+
+    private void load() {
+        long position = messageLog.getStartPosition();
+        SegmentedLog.Record record;
+        while ((record = messageLog.read(position, false)) != null) {
+            getQueue(record.getKey()).add(record.getPosition());
+            position = record.getNext();
+        }
+        log.info("Loaded {} durable destinations", queues.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The number of destinations with messages retained or subscriptions
+     */
+    public int getQueueCount() {
+        return queues.size();
+    }
+
+    /**
+     * @return The number of messages retained for the destination e.g {@code /user/abc/queue/def}
+     */
+    public int getRetainedCount(String destination) {
+        final DurableQueue queue = queues.get(destination);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private DurableQueue getQueue(String destination) {
+        return queues.computeIfAbsent(destination, k -> new DurableQueue(k, getUser(k)));
+    }
+
+    /**
+     * @return The user of a user queue e.g {@code abc} of {@code /user/abc/queue/def},
+     * or {@code null} if the destination is a shared queue
+     */
+    @Nullable
+    private String getUser(String destination) {
+        if (!destination.startsWith(userDestinationPrefix)) {
+            return null;
+        }
+        final int end = destination.indexOf('/', userDestinationPrefix.length());
+        return end == -1 ? null : destination.substring(userDestinationPrefix.length(), end);
+    }
+
+    private boolean isDurable(String destination) {
+        for (String prefix : destinationPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param destination The destination of a message e.g {@code /user/abc/queue/def}
+     * @return The durable destination of the message, or {@code null} if the message is not durable
+     */
+    @Nullable
+    private String getMessageDestination(String destination) {
+        if (!destination.startsWith(userDestinationPrefix)) {
+            return isDurable(destination) ? destination : null;
+        }
+        final String user = getUser(destination);
+        if (user == null || user.isEmpty() || anonymousSessions.contains(user)) {
+            return null;
+        }
+        return isDurable(destination.substring(userDestinationPrefix.length() + user.length())) ? destination : null;
+    }
+
+    /**
+     * @param destination The destination subscribed to e.g {@code /user/queue/def}
+     * @return The durable destination subscribed to e.g {@code /user/abc/queue/def},
+     * or {@code null} if the subscription is not durable
+     */
+    @Nullable
+    private String getSubscriptionDestination(String destination, @Nullable String user) {
+        if (!destination.startsWith(userDestinationPrefix)) {
+            return isDurable(destination) ? destination : null;
+        }
+        if (user == null) {
+            return null;
+        }
+        final String queueDestination = destination.substring(userDestinationPrefix.length() - 1);
+        return isDurable(queueDestination) ? userDestinationPrefix + user + queueDestination : null;
+    }
+
+    /**
+     * Only the authenticated principal, as the name a session joined with is chosen by the client.
+     * Subscriptions of sessions without one to user destinations are left to the broker.
+     */
+    @Nullable
+    private String getUser(MessageHeaders headers) {
+        final Principal principal = SimpMessageHeaderAccessor.getUser(headers);
+        return principal == null ? null : principal.getName();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+
+        if (!enabled) {
+            return message;
+        }
+
+        final MessageHeaders headers = message.getHeaders();
+        final SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        if (messageType == null
+                // Resolved by spring from a user destination, which is either durable and handled
+                // before being resolved, or not durable
+                || SimpMessageHeaderAccessor.getFirstNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, headers) != null) {
+            return message;
+        }
+
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+        switch (messageType) {
+            case MESSAGE:
+                return append(message) ? consumed(message) : message;
+            case CONNECT:
+                if (SimpMessageHeaderAccessor.getUser(headers) == null && sessionId != null) {
+                    anonymousSessions.add(sessionId);
+                }
+                return message;
+            case SUBSCRIBE:
+                subscribe(headers, sessionId);
+                return message;
+            case UNSUBSCRIBE:
+                unsubscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers));
+                return message;
+            case DISCONNECT:
+                if (sessionId != null) {
+                    anonymousSessions.remove(sessionId);
+                    unsubscribe(sessionId, null);
+                }
+                return message;
+            default:
+                return message;
+        }
+    }
+
+    /**
+     * A message sent on is not sent to subscribers by the brokers, which ignore messages of
+     * type {@link SimpMessageType#OTHER}. A message not sent on at all would fail the send
+     * of senders such as the {@code SimpMessagingTemplate}.
+     */
+    private Message<?> consumed(Message<?> message) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setHeader(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER, SimpMessageType.OTHER);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    /**
+     * @return {@code true} if the message was to a durable destination, and so appended
+     * to the log and delivered from there
+     */
+    private boolean append(Message<?> message) {
+
+        final MessageHeaders headers = message.getHeaders();
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null) {
+            return false;
+        }
+
+        final String durableDestination = getMessageDestination(destination);
+        if (durableDestination == null) {
+            return false;
+        }
+
+        final byte[] payload;
+        if (message.getPayload() instanceof byte[]) {
+            payload = (byte[])message.getPayload();
+        }else if (message.getPayload() instanceof String) {
+            payload = ((String)message.getPayload()).getBytes(StandardCharsets.UTF_8);
+        }else{
+            log.debug("Not durable, payload of type: {}, to: {}", message.getPayload().getClass().getName(), destination);
+            return false;
+        }
+
+        final Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        final String batchSize = SimpMessageHeaderAccessor.getFirstNativeHeader(WebsocketHeaders.BATCH_SIZE, headers);
+
+        while (true) {
+            final DurableQueue queue = getQueue(durableDestination);
+            synchronized (queue) {
+                if (queue.isRemoved()) {
+                    // Compacted since we looked it up
+                    continue;
+                }
+                final long position = messageLog.append(durableDestination,
+                        contentType == null ? null : contentType.toString(), batchSize, payload, System.currentTimeMillis());
+                queue.add(position);
+                final SegmentedLog.Record record = messageLog.read(position);
+                for (DurableQueue.Subscriber subscriber : queue.getSubscribers()) {
+                    send(record, subscriber);
+                    if (subscriber.getUser() != null) {
+                        cursors.set(durableDestination, subscriber.getUser(), record.getNext());
+                    }
+                }
+            }
+            break;
+        }
+
+        // Receipted once appended, as the message is no longer sent to the broker
+        final String receipt = SimpMessageHeaderAccessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_RECEIPT_HEADER, headers);
+        if (receipt != null) {
+            final String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+            try {
+                clientOutboundChannel.send(SendReceiptChannelInterceptor.createReceipt(receipt, sessionId));
+            }catch(RuntimeException e) {
+                log.debug("Failed to send receipt: {} to session: {}, {}", receipt, sessionId, e.toString());
+            }
+        }
+
+        return true;
+    }
+
+    private void subscribe(MessageHeaders headers, @Nullable String sessionId) {
+
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        final String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        if (destination == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+
+        final String user = getUser(headers);
+        final String durableDestination = getSubscriptionDestination(destination, user);
+        if (durableDestination == null) {
+            return;
+        }
+
+        final DurableQueue.Subscriber subscriber = new DurableQueue.Subscriber(sessionId, subscriptionId, destination, user);
+
+        while (true) {
+            final DurableQueue queue = getQueue(durableDestination);
+            synchronized (queue) {
+                if (queue.isRemoved()) {
+                    continue;
+                }
+                if (user != null) {
+                    replay(queue, subscriber);
+                }
+                queue.subscribe(subscriber);
+                subscriptions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(subscriptionId, queue);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Send the messages the subscriber's user has not read. Callers synchronize on the queue.
+     */
+    private void replay(DurableQueue queue, DurableQueue.Subscriber subscriber) {
+
+        final String destination = queue.getDestination();
+        final Long cursor = cursors.get(destination, subscriber.getUser());
+
+        if (cursor == null && queue.getUser() == null) {
+            // New subscribers to shared queues read from now on
+            cursors.set(destination, subscriber.getUser(), messageLog.getEndPosition());
+            return;
+        }
+
+        long next = cursor == null ? 0 : cursor;
+        int count = 0;
+        for (int i = queue.indexOf(next); i < queue.end(); i++) {
+            final long position = queue.get(i);
+            final SegmentedLog.Record record = messageLog.read(position);
+            if (record == null || record.getPosition() != position) {
+                // No longer retained
+                continue;
+            }
+            send(record, subscriber);
+            next = record.getNext();
+            ++count;
+        }
+
+        if (count > 0) {
+            cursors.set(destination, subscriber.getUser(), next);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Delivered {} retained messages of: {}, to: {}, session: {}",
+                    count, destination, subscriber.getUser(), subscriber.getSessionId());
+        }
+    }
+
+    private void send(SegmentedLog.Record record, DurableQueue.Subscriber subscriber) {
+
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(subscriber.getSessionId());
+        accessor.setSubscriptionId(subscriber.getSubscriptionId());
+        accessor.setDestination(subscriber.getDestination());
+        if (record.getContentType() != null) {
+            accessor.setContentType(MimeType.valueOf(record.getContentType()));
+        }
+        accessor.setNativeHeader(WebsocketHeaders.OFFSET, String.valueOf(record.getPosition()));
+        if (record.getBatchSize() != null) {
+            accessor.setNativeHeader(WebsocketHeaders.BATCH_SIZE, record.getBatchSize());
+        }
+        accessor.setLeaveMutable(true);
+
+        try {
+            clientOutboundChannel.send(MessageBuilder.createMessage(record.getPayload(), accessor.getMessageHeaders()));
+        }catch(RuntimeException e) {
+            log.debug("Failed to send message at: {}, to session: {}, {}",
+                    record.getPosition(), subscriber.getSessionId(), e.toString());
+        }
+    }
+
+    /**
+     * @param subscriptionId The subscription to remove, or {@code null} for all of the session's
+     */
+    private void unsubscribe(@Nullable String sessionId, @Nullable String subscriptionId) {
+        if (sessionId == null) {
+            return;
+        }
+        final Map<String, DurableQueue> sessionSubscriptions = subscriptionId == null ?
+                subscriptions.remove(sessionId) : subscriptions.get(sessionId);
+        if (sessionSubscriptions == null) {
+            return;
+        }
+        if (subscriptionId == null) {
+            for (DurableQueue queue : sessionSubscriptions.values()) {
+                synchronized (queue) {
+                    queue.unsubscribe(sessionId, null);
+                }
+            }
+        }else{
+            final DurableQueue queue = sessionSubscriptions.remove(subscriptionId);
+            if (queue != null) {
+                synchronized (queue) {
+                    queue.unsubscribe(sessionId, subscriptionId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the segments of the log whose messages have been read by every user to read
+     * them, or which are older than the retention, or exceed the maximum size of the log.
+     * Messages to user queues are to be read by the user. Messages to shared queues are
+     * to be read by the users who subscribed to the queue before.
+     */
+    void compact() {
+
+        long neededFrom = messageLog.getEndPosition();
+
+        for (DurableQueue queue : queues.values()) {
+            synchronized (queue) {
+                final long from;
+                if (queue.getUser() != null) {
+                    final Long cursor = cursors.get(queue.getDestination(), queue.getUser());
+                    from = queue.getFrom(cursor == null ? 0 : cursor);
+                }else{
+                    long minCursor = Long.MAX_VALUE;
+                    for (Long cursor : cursors.getAll(queue.getDestination()).values()) {
+                        minCursor = Math.min(minCursor, cursor);
+                    }
+                    from = minCursor == Long.MAX_VALUE ? -1 : queue.getFrom(minCursor);
+                }
+                if (from != -1) {
+                    neededFrom = Math.min(neededFrom, from);
+                }
+            }
+        }
+
+        final long start = messageLog.retain(neededFrom, maxBytes, System.currentTimeMillis() - retention);
+
+        int removed = 0;
+        for (DurableQueue queue : queues.values()) {
+            synchronized (queue) {
+                queue.trim(start);
+                if (queue.size() == 0 && queue.getSubscribers().isEmpty()) {
+                    queue.remove();
+                    queues.remove(queue.getDestination(), queue);
+                    if (queue.getUser() != null) {
+                        // Nothing left for the user to read. A user without a cursor reads from the start.
+                        cursors.remove(queue.getDestination());
+                    }
+                    ++removed;
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Compacted durable destinations, log from: {} to: {}, in {} segments, {} destinations removed",
+                    start, messageLog.getEndPosition(), messageLog.getSegmentCount(), removed);
+        }
+    }
+
+    /**
+     * Write the messages appended to the storage device, and save the read cursors.
+     */
+    void flush() {
+        messageLog.force();
+        try {
+            cursors.save();
+        }catch(IOException | RuntimeException e) {
+            log.warn("Failed to save read cursors, {}", e.toString());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (taskScheduler != null) {
+            taskScheduler.shutdown();
+            flush();
+            messageLog.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.looseboxes.websocket.server.durable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+/**
+ * The position in a {@link SegmentedLog} of the next message each user is to read,
+ * per durable destination.
+ *
+ * <p>
+ * Saved to a file by {@link #save()}, which replaces the file whole, so that
+ * positions are either those of the previous save or of this one. Positions
+ * changed since the last save are lost if the process exits, in which case
+ * the messages read since are delivered again.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class ReadCursors {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadCursors.class);
+
+    private static final int VERSION = 1;
+
+    private final Path file;
+
+    // Position by user, by destination
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> positions = new ConcurrentHashMap<>();
+
+    private volatile boolean changed;
+
+    /**
+     * @param file The file to which positions are saved, and from which they are loaded
+     * @param endPosition Positions past this, which were not appended before the process
+     *                    exited, are moved back to it
+     */
+    public ReadCursors(Path file, long endPosition) throws IOException {
+        this.file = file;
+        load(endPosition);
+    }
+
+    private void load(long endPosition) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version: " + version + " of: " + file);
+            }
+            while (in.readBoolean()) {
+                final String destination = in.readUTF();
+                final String user = in.readUTF();
+                final long position = in.readLong();
+                positions.computeIfAbsent(destination, k -> new ConcurrentHashMap<>())
+                        .put(user, Math.min(position, endPosition));
+                ++count;
+            }
+        }catch(NoSuchFileException e) {
+            log.debug("No read cursors saved at: {}", file);
+        }
+        log.debug("Loaded {} read cursors from: {}", count, file);
+    }
+
+    /**
+     * @return The position of the next message the user is to read from the destination,
+     * or {@code null} if the user has not read from the destination
+     */
+    @Nullable
+    public Long get(String destination, String user) {
+        final Map<String, Long> users = positions.get(destination);
+        return users == null ? null : users.get(user);
+    }
+
+    /**
+     * @return The positions of the users who read from the destination, by user
+     */
+    public Map<String, Long> getAll(String destination) {
+        final Map<String, Long> users = positions.get(destination);
+        return users == null ? Collections.emptyMap() : Collections.unmodifiableMap(users);
+    }
+
+    /**
+     * @param destination The durable destination
+     * @param user The name of the user
+     * @param position The position of the next message the user is to read
+     */
+    public void set(String destination, String user, long position) {
+        positions.computeIfAbsent(destination, k -> new ConcurrentHashMap<>()).put(user, position);
+        changed = true;
+    }
+
+    public void remove(String destination) {
+        if (positions.remove(destination) != null) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Save the positions to the file, if changed since last saved.
+     */
+    public synchronized void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+        // Positions changed while saving are saved next time
+        changed = false;
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            for (Map.Entry<String, ConcurrentMap<String, Long>> destination : positions.entrySet()) {
+                for (Map.Entry<String, Long> user : destination.getValue().entrySet()) {
+                    out.writeBoolean(true);
+                    out.writeUTF(destination.getKey());
+                    out.writeUTF(user.getKey());
+                    out.writeLong(user.getValue());
+                }
+            }
+            out.writeBoolean(false);
+        }catch(IOException e) {
+            changed = true;
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,489 @@
+package com.looseboxes.websocket.server.durable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+/**
+ * An append-only log of serialized messages, in memory-mapped segment files of
+ * a fixed size.
+ *
+ * <p>
+ * Each record is addressed by its position, the number of bytes appended to the log
+ * before it, which never decreases, so that a reader needs only remember the position
+ * of the next record to read. Segment files are named by the position of their first
+ * record. A new segment is started when a record does not fit in the current one, and
+ * the oldest segments are deleted whole, see {@link #retain(long, long, long)}.
+ * </p>
+ * <p>
+ * A record is written to the mapped file, so it survives the process exiting once
+ * appended, but only survives the machine failing after {@link #force()}. A record is
+ * made up of:
+ * </p>
+ * <pre>
+ * int    length of what follows the checksum, written last so that 0 marks the end
+ * int    CRC32 of what follows
+ * long   timestamp, in milliseconds
+ * short  length of the key, then the key in UTF-8
+ * byte   length of the content type, then the content type, 0 for none
+ * byte   length of the batch size, then the batch size, 0 for none
+ * bytes  payload, the rest of the record
+ * </pre>
+ * <p>
+ * On opening, the segments are scanned and the log ends at the first record which is
+ * incomplete or fails its checksum. Thread safe.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class SegmentedLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedLog.class);
+
+    private static final String SUFFIX = ".log";
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    // timestamp, key length, content type length and batch size length
+    private static final int MIN_BODY_LENGTH = 8 + 2 + 1 + 1;
+
+    public static final class Record {
+
+        private final long position;
+        private final long next;
+        private final long timestamp;
+        private final String key;
+        @Nullable private final String contentType;
+        @Nullable private final String batchSize;
+        private final byte[] payload;
+
+        private Record(long position, long next, long timestamp, String key,
+                       @Nullable String contentType, @Nullable String batchSize, byte[] payload) {
+            this.position = position;
+            this.next = next;
+            this.timestamp = timestamp;
+            this.key = key;
+            this.contentType = contentType;
+            this.batchSize = batchSize;
+            this.payload = payload;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * @return The position of the record after this one
+         */
+        public long getNext() {
+            return next;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        @Nullable
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Nullable
+        public String getBatchSize() {
+            return batchSize;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long base;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        /**
+         * Bytes used by records
+         */
+        private int size;
+        /**
+         * The timestamp of the newest record
+         */
+        private long lastTimestamp;
+
+        private Segment(long base, Path path, MappedByteBuffer buffer) {
+            this.base = base;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private long end() {
+            return base + size;
+        }
+    }
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final CRC32 crc = new CRC32();
+
+    // By base position. All guarded by this
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment current;
+    /**
+     * The position up to which records have been forced to the storage device
+     */
+    private long forced;
+    private boolean closed;
+
+    /**
+     * @param directory The directory of the segment files, created if it does not exist
+     * @param segmentSize The size, in bytes, of each segment file
+     */
+    public SegmentedLog(Path directory, int segmentSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        open();
+    }
+
+    private void open() throws IOException {
+
+        final List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                }catch(NumberFormatException e) {
+                    log.warn("Ignoring file which is not a segment: {}", file);
+                }
+            }
+        }
+        bases.sort(null);
+
+        for (int i = 0; i < bases.size(); i++) {
+            final long base = bases.get(i);
+            final Segment segment = map(base, Math.max(segmentSize, (int)Files.size(segmentPath(base))));
+            recover(segment);
+            segments.put(base, segment);
+            current = segment;
+            if (i < bases.size() - 1 && segment.end() != bases.get(i + 1)) {
+                // The rest of the log can not be reached from here
+                log.warn("Segment {} ends at {}, before the next segment, discarding the segments after it",
+                        segment.path, segment.end());
+                for (int j = i + 1; j < bases.size(); j++) {
+                    Files.deleteIfExists(segmentPath(bases.get(j)));
+                }
+                break;
+            }
+        }
+
+        if (current == null) {
+            current = map(0, segmentSize);
+            segments.put(0L, current);
+        }
+
+        forced = getEndPosition();
+
+        log.info("Opened log: {}, from position: {} to: {}, in {} segments",
+                directory, getStartPosition(), getEndPosition(), segments.size());
+    }
+
+    private Segment map(long base, int size) throws IOException {
+        final Path path = segmentPath(base);
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping remains valid after the channel is closed
+            return new Segment(base, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d", base) + SUFFIX);
+    }
+
+    private void recover(Segment segment) {
+        final MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_LENGTH + MIN_BODY_LENGTH <= buffer.capacity()) {
+            final int length = buffer.getInt(offset);
+            if (length < MIN_BODY_LENGTH || offset + HEADER_LENGTH + length > buffer.capacity()) {
+                break;
+            }
+            if (checksum(buffer, offset + HEADER_LENGTH, length) != buffer.getInt(offset + 4)) {
+                log.warn("Checksum failed for record at: {}, truncating segment: {}", segment.base + offset, segment.path);
+                break;
+            }
+            segment.lastTimestamp = buffer.getLong(offset + HEADER_LENGTH);
+            offset += HEADER_LENGTH + length;
+        }
+        segment.size = offset;
+        // So that records of a torn write are not mistaken for valid ones later
+        for (int i = offset; i < Math.min(offset + HEADER_LENGTH, buffer.capacity()); i++) {
+            buffer.put(i, (byte)0);
+        }
+        if (segment.lastTimestamp == 0) {
+            segment.lastTimestamp = System.currentTimeMillis();
+        }
+    }
+
+    private int checksum(MappedByteBuffer buffer, int offset, int length) {
+        final ByteBuffer body = buffer.duplicate();
+        body.limit(offset + length);
+        body.position(offset);
+        crc.reset();
+        crc.update(body);
+        return (int)crc.getValue();
+    }
+
+    /**
+     * @return The position of the oldest record retained
+     */
+    public synchronized long getStartPosition() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return The position of the next record to be appended
+     */
+    public synchronized long getEndPosition() {
+        return current.end();
+    }
+
+    /**
+     * @return The number of bytes used by records retained
+     */
+    public synchronized long getSize() {
+        return getEndPosition() - getStartPosition();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return The position of the record appended
+     * @throws IllegalArgumentException If the record is larger than a segment
+     */
+    public synchronized long append(String key, @Nullable String contentType, @Nullable String batchSize,
+                                    byte[] payload, long timestamp) {
+
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] contentTypeBytes = contentType == null ? null : contentType.getBytes(StandardCharsets.US_ASCII);
+        final byte[] batchSizeBytes = batchSize == null ? null : batchSize.getBytes(StandardCharsets.US_ASCII);
+
+        final int length = MIN_BODY_LENGTH + keyBytes.length
+                + (contentTypeBytes == null ? 0 : contentTypeBytes.length)
+                + (batchSizeBytes == null ? 0 : batchSizeBytes.length)
+                + payload.length;
+
+        if (keyBytes.length > Short.MAX_VALUE
+                || (contentTypeBytes != null && contentTypeBytes.length > Byte.MAX_VALUE)
+                || (batchSizeBytes != null && batchSizeBytes.length > Byte.MAX_VALUE)
+                || HEADER_LENGTH + length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes, to: " + key +
+                    ", does not fit in a segment of " + segmentSize + " bytes");
+        }
+
+        if (closed) {
+            throw new IllegalStateException("Log is closed: " + directory);
+        }
+
+        if (current.size + HEADER_LENGTH + length > current.buffer.capacity()) {
+            roll();
+        }
+
+        final Segment segment = current;
+        final MappedByteBuffer buffer = segment.buffer;
+        final int offset = segment.size;
+
+        buffer.position(offset + HEADER_LENGTH);
+        buffer.putLong(timestamp);
+        buffer.putShort((short)keyBytes.length);
+        buffer.put(keyBytes);
+        putShortString(buffer, contentTypeBytes);
+        putShortString(buffer, batchSizeBytes);
+        buffer.put(payload);
+
+        buffer.putInt(offset + 4, checksum(buffer, offset + HEADER_LENGTH, length));
+        // Last, so that a partly written record is not read
+        buffer.putInt(offset, length);
+
+        segment.size = offset + HEADER_LENGTH + length;
+        segment.lastTimestamp = timestamp;
+
+        return segment.base + offset;
+    }
+
+    private void putShortString(MappedByteBuffer buffer, @Nullable byte[] bytes) {
+        if (bytes == null) {
+            buffer.put((byte)0);
+        }else{
+            buffer.put((byte)bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private void roll() {
+        final long base = current.end();
+        try {
+            current = map(base, segmentSize);
+        }catch(IOException e) {
+            throw new UncheckedIOException("Failed to create segment at: " + base + ", in: " + directory, e);
+        }
+        segments.put(base, current);
+        log.debug("Started segment: {}", current.path);
+    }
+
+    /**
+     * @see #read(long, boolean)
+     */
+    @Nullable
+    public Record read(long position) {
+        return read(position, true);
+    }
+
+    /**
+     * @param position The position of a record, or of the end of the log
+     * @param payload {@code false} to read the record without its payload, which is then empty
+     * @return The record at the position or, if the position is before the oldest record
+     * retained, the oldest record. {@code null} if there is no record at or after the position.
+     */
+    @Nullable
+    public synchronized Record read(long position, boolean payload) {
+
+        if (closed) {
+            return null;
+        }
+
+        Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+        if (entry == null) {
+            entry = segments.firstEntry();
+            position = entry.getKey();
+        }
+
+        Segment segment = entry.getValue();
+        if (position >= segment.end()) {
+            entry = segments.higherEntry(entry.getKey());
+            if (entry == null) {
+                return null;
+            }
+            segment = entry.getValue();
+            position = segment.base;
+            if (segment.size == 0) {
+                return null;
+            }
+        }
+
+        final MappedByteBuffer buffer = segment.buffer;
+        final int offset = (int)(position - segment.base);
+        final int length = buffer.getInt(offset);
+
+        buffer.position(offset + HEADER_LENGTH);
+        final long timestamp = buffer.getLong();
+        final byte[] keyBytes = new byte[buffer.getShort()];
+        buffer.get(keyBytes);
+        final String contentType = getShortString(buffer);
+        final String batchSize = getShortString(buffer);
+        final byte[] payloadBytes = payload ? new byte[offset + HEADER_LENGTH + length - buffer.position()] : EMPTY_PAYLOAD;
+        buffer.get(payloadBytes);
+
+        return new Record(position, position + HEADER_LENGTH + length, timestamp,
+                new String(keyBytes, StandardCharsets.UTF_8), contentType, batchSize, payloadBytes);
+    }
+
+    @Nullable
+    private String getShortString(MappedByteBuffer buffer) {
+        final int length = buffer.get();
+        if (length == 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Delete the oldest segments, other than the one being appended to, which either
+     * end at or before the given position, are older than the given time, or must be
+     * deleted for the log to fit in the given number of bytes.
+     * @param neededFrom The position of the oldest record which may still be read
+     * @param maxBytes The maximum number of bytes of records to retain
+     * @param minTimestamp Segments whose newest record is older than this are deleted
+     * @return The position of the oldest record retained
+     */
+    public synchronized long retain(long neededFrom, long maxBytes, long minTimestamp) {
+        while (segments.size() > 1) {
+            final Segment oldest = segments.firstEntry().getValue();
+            if (oldest.end() > neededFrom && oldest.lastTimestamp >= minTimestamp && getSize() <= maxBytes) {
+                break;
+            }
+            segments.remove(oldest.base);
+            try {
+                // A mapped file may be deleted. Its pages are released once the buffer is collected.
+                Files.deleteIfExists(oldest.path);
+                log.debug("Deleted segment: {}", oldest.path);
+            }catch(IOException e) {
+                log.warn("Failed to delete segment: {}, {}", oldest.path, e.toString());
+            }
+        }
+        return getStartPosition();
+    }
+
+    /**
+     * Write the records appended since last forced to the storage device.
+     * Appending is not blocked while writing.
+     */
+    public void force() {
+        final List<MappedByteBuffer> buffers;
+        synchronized (this) {
+            if (closed || forced == getEndPosition()) {
+                return;
+            }
+            final Long from = segments.floorKey(forced);
+            buffers = new ArrayList<>();
+            for (Segment segment : (from == null ? segments : segments.tailMap(from, true)).values()) {
+                buffers.add(segment.buffer);
+            }
+            forced = getEndPosition();
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Write the records appended since last forced to the storage device, in every
+     * segment they were appended to, then close the log.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            force();
+            closed = true;
+        }
+    }
+}
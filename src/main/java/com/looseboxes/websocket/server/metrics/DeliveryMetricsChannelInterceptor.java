@@ -0,0 +1,34 @@
+package com.looseboxes.websocket.server.metrics;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+/**
+ * Records messages sent to clients, once handled on the client outbound channel.
+ * @author chinomso ikwuagwu
+ */
+public class DeliveryMetricsChannelInterceptor implements ExecutorChannelInterceptor {
+
+    private final WebsocketMetrics metrics;
+
+    public DeliveryMetricsChannelInterceptor(WebsocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return;
+        }
+        final String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return;
+        }
+        final Object timestamp = message.getHeaders().get(WebsocketMetrics.TIMESTAMP_HEADER);
+        metrics.onDelivered(destination, timestamp instanceof Long ? (Long)timestamp : -1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.looseboxes.websocket.server.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Bounds the number of distinct destination tags, and so the number of meters,
+ * by giving the first destinations seen their own tag, and all other
+ * destinations the tag {@value #OTHER}. Meters are cached by destination.
+ *
+ * @param <M> The type of meter
+ * @author chinomso ikwuagwu
+ */
+public final class DestinationTags<M> {
+
+    public static final String OTHER = "other";
+
+    private final int maxTags;
+
+    private final Function<String, M> meterFactory;
+
+    private final ConcurrentMap<String, M> metersByDestination = new ConcurrentHashMap<>();
+
+    private volatile M other;
+
+    /**
+     * @param maxTags The maximum number of destinations given their own tag
+     * @param meterFactory Creates the meter for a destination tag
+     */
+    public DestinationTags(int maxTags, Function<String, M> meterFactory) {
+        this.maxTags = maxTags;
+        this.meterFactory = meterFactory;
+    }
+
+    public M meter(String destination) {
+        final M meter = metersByDestination.get(destination);
+        if (meter != null) {
+            return meter;
+        }
+        if (metersByDestination.size() >= maxTags) {
+            return other();
+        }
+        // May briefly exceed the maximum by the number of concurrent callers
+        return metersByDestination.computeIfAbsent(destination, meterFactory);
+    }
+
+    private M other() {
+        M result = other;
+        if (result == null) {
+            result = other = meterFactory.apply(OTHER);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+package com.looseboxes.websocket.server.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records this library's server side metrics with micrometer, once bound to a {@link MeterRegistry}.
+ *
+ * <table>
+ *     <tr><td>websocket.messages.published</td><td>Messages published, by destination</td></tr>
+ *     <tr><td>websocket.messages.duplicates</td><td>Messages dropped as duplicates, by destination</td></tr>
+ *     <tr><td>websocket.messages.throttled</td><td>Messages from clients over a rate limit, by limit</td></tr>
+ *     <tr><td>websocket.messages.delivered</td><td>Messages sent to clients, by destination</td></tr>
+ *     <tr><td>websocket.messages.delivery.latency</td><td>Time from a message's timestamp to its being sent to a client</td></tr>
+ *     <tr><td>websocket.interceptor.duration</td><td>Time taken by interceptors, by outcome</td></tr>
+ *     <tr><td>websocket.sessions.active</td><td>Sessions connected</td></tr>
+ *     <tr><td>websocket.sessions.connected</td><td>Sessions which have connected</td></tr>
+ *     <tr><td>websocket.sessions.disconnected</td><td>Sessions which have disconnected</td></tr>
+ * </table>
+ *
+ * <p>
+ * The number of destination tags is bounded by {@link DestinationTags}.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class MicrometerWebsocketMetrics implements WebsocketMetrics, MeterBinder {
+
+    private final int maxDestinationTags;
+
+    // Spring may publish a disconnect event more than once per session
+    private final Set<String> activeSessions = ConcurrentHashMap.newKeySet();
+
+    private volatile MeterRegistry registry;
+
+    private DestinationTags<Counter> published;
+    private DestinationTags<Counter> duplicates;
+    private DestinationTags<Counter> delivered;
+    private Counter throttledBySession;
+    private Counter throttledBySender;
+    private Counter throttledByDestination;
+    private Counter throttledByBatch;
+    private Timer deliveryLatency;
+    private Timer accepted;
+    private Timer vetoed;
+    private Timer failed;
+    private Timer rejected;
+    private Counter connected;
+    private Counter disconnected;
+
+    public MicrometerWebsocketMetrics(int maxDestinationTags) {
+        this.maxDestinationTags = maxDestinationTags;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        published = new DestinationTags<>(maxDestinationTags, destination ->
+                Counter.builder("websocket.messages.published")
+                        .tag("destination", destination)
+                        .description("Messages published")
+                        .register(registry));
+
+        duplicates = new DestinationTags<>(maxDestinationTags, destination ->
+                Counter.builder("websocket.messages.duplicates")
+                        .tag("destination", destination)
+                        .description("Messages dropped as duplicates")
+                        .register(registry));
+
+        delivered = new DestinationTags<>(maxDestinationTags, destination ->
+                Counter.builder("websocket.messages.delivered")
+                        .tag("destination", destination)
+                        .description("Messages sent to clients")
+                        .register(registry));
+
+        throttledBySession = throttledCounter(registry, "session");
+        throttledBySender = throttledCounter(registry, "sender");
+        throttledByDestination = throttledCounter(registry, "destination");
+        throttledByBatch = throttledCounter(registry, "batch");
+
+        deliveryLatency = Timer.builder("websocket.messages.delivery.latency")
+                .description("Time from a message's timestamp to its being sent to a client")
+                .register(registry);
+
+        accepted = interceptorTimer(registry, "accepted");
+        vetoed = interceptorTimer(registry, "vetoed");
+        failed = interceptorTimer(registry, "failed");
+        rejected = interceptorTimer(registry, "rejected");
+
+        Gauge.builder("websocket.sessions.active", activeSessions, Set::size)
+                .description("Sessions connected")
+                .register(registry);
+
+        connected = Counter.builder("websocket.sessions.connected")
+                .description("Sessions which have connected")
+                .register(registry);
+
+        disconnected = Counter.builder("websocket.sessions.disconnected")
+                .description("Sessions which have disconnected")
+                .register(registry);
+
+        // Publishes the meters above to other threads
+        this.registry = registry;
+    }
+
+    private static Counter throttledCounter(MeterRegistry registry, String limit) {
+        return Counter.builder("websocket.messages.throttled")
+                .tag("limit", limit)
+                .description("Messages from clients over a rate limit")
+                .register(registry);
+    }
+
+    private static Timer interceptorTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("websocket.interceptor.duration")
+                .tag("outcome", outcome)
+                .description("Time taken by interceptors")
+                .register(registry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return registry != null;
+    }
+
+    @Override
+    public void onPublished(String destination) {
+        if (registry != null) {
+            published.meter(destination).increment();
+        }
+    }
+
+    @Override
+    public void onDuplicate(String destination) {
+        if (registry != null) {
+            duplicates.meter(destination).increment();
+        }
+    }
+
+    @Override
+    public void onThrottled(String limit, int messages) {
+        if (registry == null) {
+            return;
+        }
+        final Counter counter;
+        switch (limit) {
+            case "session": counter = throttledBySession; break;
+            case "sender": counter = throttledBySender; break;
+            case "destination": counter = throttledByDestination; break;
+            default: counter = throttledByBatch;
+        }
+        counter.increment(messages);
+    }
+
+    @Override
+    public void onDelivered(String destination, long timestamp) {
+        if (registry != null) {
+            delivered.meter(destination).increment();
+            if (timestamp >= 0) {
+                deliveryLatency.record(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void onIntercepted(String outcome, long nanos) {
+        if (registry == null) {
+            return;
+        }
+        final Timer timer;
+        switch (outcome) {
+            case "accepted": timer = accepted; break;
+            case "vetoed": timer = vetoed; break;
+            case "rejected": timer = rejected; break;
+            default: timer = failed;
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onSessionConnected(String sessionId) {
+        if (activeSessions.add(sessionId) && registry != null) {
+            connected.increment();
+        }
+    }
+
+    @Override
+    public void onSessionDisconnected(String sessionId) {
+        if (activeSessions.remove(sessionId) && registry != null) {
+            disconnected.increment();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.looseboxes.websocket.server.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Queue depth, active count and pool size gauges for the executors of the
+ * inbound, outbound and broker message channels.
+ *
+ * <p>
+ * A growing inbound queue is the usual sign that message handling, for example
+ * a blocking {@link com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptor},
+ * is starving the inbound channel.
+ * </p>
+ * <p>
+ * Executors which are not pooled, e.g those running each task on its own virtual
+ * thread, only have the active count gauge, as they neither queue nor pool.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketChannelMetrics implements MeterBinder {
+
+    private final Map<String, ThreadPoolTaskExecutor> executorsByChannel = new LinkedHashMap<>();
+
+    private final Set<String> unpooledChannels = new HashSet<>();
+
+    public WebsocketChannelMetrics add(String channel, ThreadPoolTaskExecutor executor) {
+        return add(channel, executor, true);
+    }
+
+    /**
+     * @param channel The name of the channel e.g {@code inbound}
+     * @param executor The executor of the channel
+     * @param pooled {@code false} if the executor neither queues tasks nor pools threads
+     * @return This instance
+     */
+    public WebsocketChannelMetrics add(String channel, ThreadPoolTaskExecutor executor, boolean pooled) {
+        executorsByChannel.put(channel, executor);
+        if (!pooled) {
+            unpooledChannels.add(channel);
+        }
+        return this;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        executorsByChannel.forEach((channel, executor) -> {
+
+            Gauge.builder("websocket.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .tag("channel", channel)
+                    .description("Number of messages being handled")
+                    .register(registry);
+
+            if (unpooledChannels.contains(channel)) {
+                return;
+            }
+
+            Gauge.builder("websocket.channel.queue.size", executor, WebsocketChannelMetrics::queueSize)
+                    .tag("channel", channel)
+                    .description("Number of messages waiting to be handled")
+                    .register(registry);
+
+            Gauge.builder("websocket.channel.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                    .tag("channel", channel)
+                    .description("Number of threads in the pool")
+                    .register(registry);
+        });
+    }
+
+    private static double queueSize(ThreadPoolTaskExecutor executor) {
+        ThreadPoolExecutor threadPoolExecutor = threadPoolExecutor(executor);
+        return threadPoolExecutor == null ? Double.NaN : threadPoolExecutor.getQueue().size();
+    }
+
+    @Nullable
+    private static ThreadPoolExecutor threadPoolExecutor(ThreadPoolTaskExecutor executor) {
+        try {
+            return executor.getThreadPoolExecutor();
+        }catch(IllegalStateException notInitializedOrShutdown) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.looseboxes.websocket.server.metrics;
+
+/**
+ * Records this library's server side metrics. Does nothing by default, so
+ * that micrometer need not be on the classpath.
+ * @see MicrometerWebsocketMetrics
+ * @author chinomso ikwuagwu
+ */
+public interface WebsocketMetrics {
+
+    WebsocketMetrics NOOP = new WebsocketMetrics() { };
+
+    /**
+     * The name of the message header which carries the
+     * {@link com.looseboxes.websocket.server.model.WebsocketMessage#getTimestamp() timestamp}
+     * of a published message, in epoch millis, to the client outbound channel.
+     * This is not a STOMP header, so it is not sent to clients.
+     */
+    String TIMESTAMP_HEADER = "websocketMessageTimestamp";
+
+    /**
+     * @return {@code true} if metrics are being recorded
+     */
+    default boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * A message was published to the destination, by the default controller.
+     */
+    default void onPublished(String destination) { }
+
+    /**
+     * A message to the destination was dropped by the default controller, as a duplicate.
+     */
+    default void onDuplicate(String destination) { }
+
+    /**
+     * Messages from a client were dropped or rejected, as over a rate limit.
+     * @param limit One of {@code session}, {@code sender}, {@code destination} or {@code batch}
+     * @param messages The number of messages
+     */
+    default void onThrottled(String limit, int messages) { }
+
+    /**
+     * A message to the destination was sent to a client.
+     * @param timestamp The timestamp of the message in epoch millis, or a negative number if not known
+     */
+    default void onDelivered(String destination, long timestamp) { }
+
+    /**
+     * A message was intercepted.
+     * @param outcome One of {@code accepted}, {@code vetoed}, {@code failed} or {@code rejected}
+     * @param nanos The time taken by the interceptors
+     */
+    default void onIntercepted(String outcome, long nanos) { }
+
+    default void onSessionConnected(String sessionId) { }
+
+    default void onSessionDisconnected(String sessionId) { }
+}
@@ -1,9 +1,12 @@
 package com.looseboxes.websocket.server.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.time.Instant;
 import java.util.Objects;
 
 /**
+ * The timestamp is held in epoch millis, so that creating a message allocates
+ * no {@link Instant}. See {@link WebsocketMessageModule} for the JSON representation.
  * @author chinomso ikwuagwu
  * @param <ID_TYPE> The type of the id
  * @param <CONTENT_TYPE> The type of the content
@@ -20,7 +23,10 @@ public class WebsocketMessage<ID_TYPE, CONTENT_TYPE>{
     private ID_TYPE id;
     private MessageType type = MessageType.INFO;
     private String sender;
-    private Instant timestamp = Instant.now();
+    /**
+     * Epoch millis, or a negative number if not known
+     */
+    private long timestamp = System.currentTimeMillis();
     private CONTENT_TYPE content;
     
     public WebsocketMessage<ID_TYPE, CONTENT_TYPE> id(ID_TYPE id) {
@@ -67,11 +73,32 @@ public class WebsocketMessage<ID_TYPE, CONTENT_TYPE>{
         return this;
     }
     
+    /**
+     * @return The timestamp, or {@code null} if not known. Allocates an {@link Instant}, see {@link #getTimestampMillis()}
+     */
     public Instant getTimestamp() {
-        return timestamp;
+        return timestamp < 0 ? null : Instant.ofEpochMilli(timestamp);
     }
 
     public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp == null ? -1 : timestamp.toEpochMilli();
+    }
+
+    public WebsocketMessage<ID_TYPE, CONTENT_TYPE> timestampMillis(long timestamp) {
+        setTimestampMillis(timestamp);
+        return this;
+    }
+
+    /**
+     * @return The timestamp in epoch millis, or a negative number if not known
+     */
+    @JsonIgnore
+    public long getTimestampMillis() {
+        return timestamp;
+    }
+
+    @JsonIgnore
+    public void setTimestampMillis(long timestamp) {
         this.timestamp = timestamp;
     }
 
@@ -115,6 +142,6 @@ public class WebsocketMessage<ID_TYPE, CONTENT_TYPE>{
 
     @Override
     public String toString() {
-        return "WebsocketMessage{" + "id=" + id + ", type=" + type + ", sender=" + sender + ", timestamp=" + timestamp + ", content=" + content + '}';
+        return "WebsocketMessage{" + "id=" + id + ", type=" + type + ", sender=" + sender + ", timestamp=" + getTimestamp() + ", content=" + content + '}';
     }
 }
@@ -0,0 +1,167 @@
+package com.looseboxes.websocket.server.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads a {@link WebsocketMessage} with Jackson's streaming API. The content, and an
+ * id of a declared type other than {@code Object}, are read by data binding, for the
+ * type parameters of the declared type e.g {@code WebsocketMessage<String, Item>}.
+ * When the type of the id is not declared, whole numbers are read as {@code Long}s.
+ * @see WebsocketMessageModule
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageDeserializer extends StdDeserializer<WebsocketMessage> implements ContextualDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    // Null to read ids of undeclared type without data binding
+    private final JsonDeserializer<Object> idDeserializer;
+
+    private final JsonDeserializer<Object> contentDeserializer;
+
+    public WebsocketMessageDeserializer() {
+        this(null, null);
+    }
+
+    private WebsocketMessageDeserializer(JsonDeserializer<Object> idDeserializer, JsonDeserializer<Object> contentDeserializer) {
+        super(WebsocketMessage.class);
+        this.idDeserializer = idDeserializer;
+        this.contentDeserializer = contentDeserializer;
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property) throws JsonMappingException {
+
+        JavaType type = ctxt.getContextualType();
+        if (type == null && property != null) {
+            type = property.getType();
+        }
+
+        final JavaType idType = type == null ? null : type.containedType(0);
+        final JavaType contentType = type == null ? null : type.containedType(1);
+
+        final JsonDeserializer<Object> idDeserializer = isUndeclared(idType) ? null :
+                ctxt.findContextualValueDeserializer(idType, property);
+
+        final JsonDeserializer<Object> contentDeserializer = ctxt.findContextualValueDeserializer(
+                contentType == null ? ctxt.constructType(Object.class) : contentType, property);
+
+        return new WebsocketMessageDeserializer(idDeserializer, contentDeserializer);
+    }
+
+    private static boolean isUndeclared(JavaType type) {
+        if (type == null) {
+            return true;
+        }
+        final Class<?> rawClass = type.getRawClass();
+        return rawClass == Object.class || rawClass == Serializable.class || rawClass == Number.class;
+    }
+
+    @Override
+    public WebsocketMessage deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+
+        String name;
+        if (p.isExpectedStartObjectToken()) {
+            name = p.nextFieldName();
+        }else if (p.hasToken(JsonToken.FIELD_NAME)) {
+            name = p.getCurrentName();
+        }else{
+            return (WebsocketMessage)ctxt.handleUnexpectedToken(WebsocketMessage.class, p);
+        }
+
+        final WebsocketMessage<Object, Object> message = new WebsocketMessage<>();
+
+        for (; name != null; name = p.nextFieldName()) {
+
+            final JsonToken token = p.nextToken();
+
+            switch (name) {
+                case "id":
+                    message.setId(token == JsonToken.VALUE_NULL ? null : readId(p, ctxt, token));
+                    break;
+                case "type":
+                    message.setType(token == JsonToken.VALUE_NULL ? null : readType(p, ctxt));
+                    break;
+                case "sender":
+                    message.setSender(token == JsonToken.VALUE_NULL ? null : p.getValueAsString());
+                    break;
+                case "timestamp":
+                    message.setTimestampMillis(readTimestamp(p, ctxt, token));
+                    break;
+                case "content":
+                    message.setContent(token == JsonToken.VALUE_NULL ?
+                            contentDeserializer(ctxt).getNullValue(ctxt) : contentDeserializer(ctxt).deserialize(p, ctxt));
+                    break;
+                default:
+                    ctxt.handleUnknownProperty(p, this, WebsocketMessage.class, name);
+            }
+        }
+
+        return message;
+    }
+
+    private Object readId(JsonParser p, DeserializationContext ctxt, JsonToken token) throws IOException {
+        if (idDeserializer != null) {
+            return idDeserializer.deserialize(p, ctxt);
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return p.getNumberType() == JsonParser.NumberType.BIG_INTEGER ? p.getBigIntegerValue() : Long.valueOf(p.getLongValue());
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        return ctxt.readValue(p, Object.class);
+    }
+
+    private static WebsocketMessage.MessageType readType(JsonParser p, DeserializationContext ctxt) throws IOException {
+        final String text = p.getText();
+        try {
+            return WebsocketMessage.MessageType.valueOf(text);
+        }catch(IllegalArgumentException e) {
+            return (WebsocketMessage.MessageType)ctxt.handleWeirdStringValue(
+                    WebsocketMessage.MessageType.class, text, "not one of the message types");
+        }
+    }
+
+    private static long readTimestamp(JsonParser p, DeserializationContext ctxt, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                return p.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                // Epoch seconds, as written for an Instant by jackson's JavaTimeModule
+                return (long)(p.getDoubleValue() * 1000);
+            case VALUE_STRING:
+                final String text = p.getText();
+                try {
+                    return Instant.parse(text).toEpochMilli();
+                }catch(DateTimeParseException e) {
+                    final Object value = ctxt.handleWeirdStringValue(Instant.class, text, "not an ISO-8601 instant");
+                    return value instanceof Instant ? ((Instant)value).toEpochMilli() : -1;
+                }
+            case VALUE_NULL:
+                return -1;
+            default:
+                return (Long)ctxt.handleUnexpectedToken(long.class, p);
+        }
+    }
+
+    /**
+     * When not contextualized e.g when called directly
+     */
+    private JsonDeserializer<Object> contentDeserializer(DeserializationContext ctxt) throws IOException {
+        return contentDeserializer != null ? contentDeserializer :
+                ctxt.findRootValueDeserializer(ctxt.constructType(Object.class));
+    }
+}
@@ -0,0 +1,74 @@
+package com.looseboxes.websocket.server.model;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.Serializers;
+
+/**
+ * Reads and writes {@link WebsocketMessage}s with Jackson's streaming API, rather
+ * than by reflection, see {@link WebsocketMessageSerializer} and {@link WebsocketMessageDeserializer}.
+ * Only the content of a message is read and written by data binding.
+ *
+ * <p>
+ * The timestamp is written as an ISO-8601 string, as spring boot's object mapper
+ * writes it without this module, or, when opted into, as a number in epoch millis,
+ * which is cheaper to write and read. A timestamp is read from a number in epoch
+ * millis, a decimal number in epoch seconds, or an ISO-8601 string, whichever way
+ * it was written.
+ * </p>
+ * <p>
+ * Subclasses of {@link WebsocketMessage} are left to data binding, as they may add properties.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean timestampsAsEpochMillis;
+
+    /**
+     * Writes timestamps as ISO-8601 strings
+     */
+    public WebsocketMessageModule() {
+        this(false);
+    }
+
+    /**
+     * @param timestampsAsEpochMillis {@code true} to write timestamps as numbers in
+     * epoch millis, {@code false} to write them as ISO-8601 strings
+     */
+    public WebsocketMessageModule(boolean timestampsAsEpochMillis) {
+        super(WebsocketMessageModule.class.getSimpleName());
+        this.timestampsAsEpochMillis = timestampsAsEpochMillis;
+    }
+
+    public boolean isTimestampsAsEpochMillis() {
+        return timestampsAsEpochMillis;
+    }
+
+    @Override
+    public void setupModule(SetupContext context) {
+        super.setupModule(context);
+        final WebsocketMessageSerializer serializer = timestampsAsEpochMillis ?
+                WebsocketMessageSerializer.EPOCH_MILLIS : WebsocketMessageSerializer.INSTANCE;
+        context.addSerializers(new Serializers.Base() {
+            @Override
+            public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc) {
+                return type.getRawClass() == WebsocketMessage.class ? serializer : null;
+            }
+        });
+        context.addDeserializers(new Deserializers.Base() {
+            @Override
+            public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc) {
+                return type.getRawClass() == WebsocketMessage.class ? new WebsocketMessageDeserializer() : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.looseboxes.websocket.server.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Writes a {@link WebsocketMessage} with Jackson's streaming API. Properties
+ * which are {@code null} are not written. The content is written by data binding.
+ * The timestamp is written as an ISO-8601 string, unless written as epoch millis.
+ * @see WebsocketMessageModule
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageSerializer extends StdSerializer<WebsocketMessage> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Writes timestamps as ISO-8601 strings
+     */
+    public static final WebsocketMessageSerializer INSTANCE = new WebsocketMessageSerializer();
+
+    /**
+     * Writes timestamps as numbers, in epoch millis
+     */
+    public static final WebsocketMessageSerializer EPOCH_MILLIS = new WebsocketMessageSerializer(true);
+
+    static final SerializedString ID = new SerializedString("id");
+    static final SerializedString TYPE = new SerializedString("type");
+    static final SerializedString SENDER = new SerializedString("sender");
+    static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+    static final SerializedString CONTENT = new SerializedString("content");
+
+    private final boolean timestampsAsEpochMillis;
+
+    public WebsocketMessageSerializer() {
+        this(false);
+    }
+
+    public WebsocketMessageSerializer(boolean timestampsAsEpochMillis) {
+        super(WebsocketMessage.class);
+        this.timestampsAsEpochMillis = timestampsAsEpochMillis;
+    }
+
+    @Override
+    public void serialize(WebsocketMessage message, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+        gen.writeStartObject(message);
+
+        final Object id = message.getId();
+        if (id != null) {
+            gen.writeFieldName(ID);
+            if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+                gen.writeNumber(((Number)id).longValue());
+            }else if (id instanceof String) {
+                gen.writeString((String)id);
+            }else{
+                provider.defaultSerializeValue(id, gen);
+            }
+        }
+
+        if (message.getType() != null) {
+            gen.writeFieldName(TYPE);
+            gen.writeString(message.getType().name());
+        }
+
+        if (message.getSender() != null) {
+            gen.writeFieldName(SENDER);
+            gen.writeString(message.getSender());
+        }
+
+        if (message.getTimestampMillis() >= 0) {
+            gen.writeFieldName(TIMESTAMP);
+            if (timestampsAsEpochMillis) {
+                gen.writeNumber(message.getTimestampMillis());
+            }else{
+                gen.writeString(Instant.ofEpochMilli(message.getTimestampMillis()).toString());
+            }
+        }
+
+        final Object content = message.getContent();
+        if (content != null) {
+            gen.writeFieldName(CONTENT);
+            provider.defaultSerializeValue(content, gen);
+        }
+
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,212 @@
+package com.looseboxes.websocket.server.presence;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks which users are online on this node, by websocket session.
+ *
+ * <p>
+ * When {@code looseboxes.websocket.presence.enabled}, which it is not by default,
+ * users who joined or left are not broadcast as it happens. Rather, at each
+ * configured interval, the users whose presence changed since the last broadcast
+ * are sent to {@link WebsocketEndpoints#PUBLIC} as a single batch of JOIN and LEAVE
+ * messages, with a {@link WebsocketHeaders#BATCH_SIZE} header, in the same way as
+ * the {@link com.looseboxes.websocket.server.controller.WebsocketMessageBatcher WebsocketMessageBatcher}.
+ * </p>
+ * <p>
+ * A user whose last session closes is only broadcast as having left once the
+ * configured grace period elapses without the user joining again. So a user whose
+ * connection flaps is not broadcast at all, nor is a user who joins and leaves
+ * between broadcasts. Presence is not shared with other nodes.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class PresenceRegistry implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private static final class UserPresence {
+        // All guarded by the users map, via compute
+        private int sessions;
+        private long leftAt;
+        private boolean announced;
+    }
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    private final boolean enabled;
+
+    private final long gracePeriod;
+
+    private final ConcurrentMap<String, UserPresence> users = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, String> usersBySession = new ConcurrentHashMap<>();
+
+    /**
+     * Users whose presence may have changed since the last broadcast.
+     */
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    @Nullable private final ScheduledFuture<?> broadcasts;
+
+    public PresenceRegistry(WebsocketProperties properties,
+                            SimpMessageSendingOperations messagingTemplate,
+                            @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        final WebsocketProperties.Presence presence = properties.getPresence();
+        this.messagingTemplate = messagingTemplate;
+        this.enabled = presence.isEnabled();
+        this.gracePeriod = presence.getGracePeriod();
+        this.broadcasts = enabled ? taskScheduler.scheduleWithFixedDelay(this::broadcast, presence.getInterval()) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param username The name of the user
+     * @return {@code true} if the user has a session, or the user's last session
+     * closed within the grace period
+     */
+    public boolean isOnline(String username) {
+        return users.containsKey(username);
+    }
+
+    /**
+     * @return The number of users online, as defined by {@link #isOnline(String)}
+     */
+    public int getOnlineCount() {
+        return users.size();
+    }
+
+    /**
+     * @return A live, unmodifiable view of the users online, as defined by {@link #isOnline(String)}
+     */
+    public Set<String> getOnlineUsers() {
+        return Collections.unmodifiableSet(users.keySet());
+    }
+
+    /**
+     * @param sessionId The id of the websocket session
+     * @return The name of the user who joined with the session, or {@code null} if none did
+     */
+    @Nullable
+    public String getUsername(String sessionId) {
+        return usersBySession.get(sessionId);
+    }
+
+    /**
+     * @param sessionId The id of the websocket session the user joined with
+     * @param username The name of the user
+     */
+    public void join(String sessionId, String username) {
+        final String previous = usersBySession.put(sessionId, username);
+        if (username.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            // The session joined again with a different name
+            sessionClosed(previous);
+        }
+        users.compute(username, (name, presence) -> {
+            if (presence == null) {
+                presence = new UserPresence();
+            }
+            ++presence.sessions;
+            return presence;
+        });
+        changed.add(username);
+    }
+
+    /**
+     * @param sessionId The id of the websocket session which closed. May be called
+     *                  more than once for a session, or for sessions which never joined.
+     */
+    public void leave(String sessionId) {
+        final String username = usersBySession.remove(sessionId);
+        if (username != null) {
+            sessionClosed(username);
+        }
+    }
+
+    private void sessionClosed(String username) {
+        users.computeIfPresent(username, (name, presence) -> {
+            if (--presence.sessions == 0) {
+                presence.leftAt = System.currentTimeMillis();
+            }
+            return presence;
+        });
+        changed.add(username);
+    }
+
+    private void broadcast() {
+        try {
+            final long now = System.currentTimeMillis();
+            final List<WebsocketMessage> messages = new ArrayList<>();
+            // A snapshot, as users within the grace period are added back
+            for (String username : changed.toArray(new String[0])) {
+                changed.remove(username);
+                users.computeIfPresent(username, (name, presence) -> {
+                    if (presence.sessions > 0) {
+                        if (!presence.announced) {
+                            presence.announced = true;
+                            messages.add(new WebsocketMessage().type(WebsocketMessage.MessageType.JOIN).sender(name));
+                        }
+                        return presence;
+                    }
+                    if (now - presence.leftAt < gracePeriod) {
+                        // May yet reconnect
+                        changed.add(name);
+                        return presence;
+                    }
+                    if (presence.announced) {
+                        messages.add(new WebsocketMessage().type(WebsocketMessage.MessageType.LEAVE).sender(name));
+                    }
+                    return null;
+                });
+            }
+            send(messages);
+        }catch(RuntimeException e) {
+            log.warn("Failed to broadcast presence", e);
+        }
+    }
+
+    private void send(List<WebsocketMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        log.debug("Broadcasting presence of {} users", messages.size());
+        if (messages.size() == 1) {
+            messagingTemplate.convertAndSend(WebsocketEndpoints.PUBLIC, messages.get(0));
+        }else{
+            messagingTemplate.convertAndSend(WebsocketEndpoints.PUBLIC, messages,
+                    Collections.singletonMap(WebsocketHeaders.BATCH_SIZE, String.valueOf(messages.size())));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (broadcasts != null) {
+            broadcasts.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.looseboxes.websocket.server.ratelimit;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import java.security.Principal;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the rate of SEND frames from clients, per session, per sender and per
+ * destination prefix, with a {@link TokenBucket} for each. Registered on the client
+ * inbound channel, when enabled via {@code looseboxes.websocket.rate-limit}, so that
+ * frames over a limit are dropped, or rejected with an ERROR frame, before they are
+ * decoded, handled or fanned out by the broker.
+ *
+ * <p>
+ * The sender of a frame is the name of the session's authenticated user, or else the
+ * session, as the name given when a session joins is chosen by the client. Once the
+ * maximum number of senders are limited, further senders share one limit, until senders
+ * who have not sent recently are forgotten. Limits per destination prefix apply across all sessions,
+ * the longest matching prefix applying. A frame to a {@code /send-batch} destination
+ * costs one token per message, as declared by its {@link WebsocketHeaders#BATCH_SIZE}
+ * header, see {@link #getPermitted(MessageHeaders)}. Limits are checked in the above
+ * order, so that a frame over one limit has been counted against the limits before it.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class InboundRateLimiter implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundRateLimiter.class);
+
+    /**
+     * Maximum number of sender buckets examined for eviction, per sender not yet limited
+     */
+    private static final int EVICTION_SCAN = 32;
+
+    private final boolean enabled;
+
+    private final RateLimitPolicy policy;
+
+    @Nullable private final WebsocketProperties.Limit sessionLimit;
+
+    @Nullable private final WebsocketProperties.Limit senderLimit;
+
+    private final int maxSenders;
+
+    private final String[] destinationPrefixes;
+
+    private final TokenBucket[] destinationBuckets;
+
+    private final String[] batchDestinationPrefixes;
+
+    private final WebsocketMetrics metrics;
+
+    private final ConcurrentMap<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, TokenBucket> senderBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * Shared by the senders beyond the maximum, so that they are limited too
+     */
+    @Nullable private final TokenBucket overflowBucket;
+
+    /**
+     * Resumes the scan for buckets to evict where the last scan stopped. Guarded by itself.
+     */
+    private Iterator<TokenBucket> evictionScan;
+
+    public InboundRateLimiter(WebsocketProperties properties, ObjectProvider<WebsocketMetrics> metricsProvider) {
+
+        final WebsocketProperties.RateLimit rateLimit = properties.getRateLimit();
+
+        this.enabled = rateLimit.isEnabled();
+        this.policy = rateLimit.getPolicy();
+        this.sessionLimit = rateLimit.getSession().isLimited() ? rateLimit.getSession() : null;
+        this.senderLimit = rateLimit.getSender().isLimited() ? rateLimit.getSender() : null;
+        this.maxSenders = rateLimit.getMaxSenders();
+
+        // Longest prefixes first, so that the first match is the longest match
+        final List<Map.Entry<String, WebsocketProperties.Limit>> entries = rateLimit.getDestinations().entrySet().stream()
+                .filter(entry -> entry.getValue().isLimited())
+                .sorted(Comparator.comparing((Map.Entry<String, WebsocketProperties.Limit> entry) -> entry.getKey().length()).reversed())
+                .collect(Collectors.toList());
+        final long now = System.nanoTime();
+        this.destinationPrefixes = new String[entries.size()];
+        this.destinationBuckets = new TokenBucket[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            this.destinationPrefixes[i] = entries.get(i).getKey();
+            this.destinationBuckets[i] = newBucket(entries.get(i).getValue(), now);
+        }
+
+        this.overflowBucket = senderLimit == null ? null : newBucket(senderLimit, now);
+        this.evictionScan = senderBuckets.values().iterator();
+
+        final String[] applicationPrefixes = properties.getApplicationDestinationPrefixes();
+        this.batchDestinationPrefixes = applicationPrefixes == null ? new String[0] :
+                properties.getApplicationEndpointsForSuffix(WebsocketEndpoints.SEND_BATCH + "/");
+
+        this.metrics = metricsProvider.getIfUnique(() -> WebsocketMetrics.NOOP);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+
+        final MessageHeaders headers = message.getHeaders();
+        final SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+        if (sessionId == null) {
+            return message;
+        }
+
+        if (messageType == SimpMessageType.CONNECT) {
+            // Frames of a session are sent to this channel in order, so a session's
+            // bucket is never created after its DISCONNECT.
+            if (sessionLimit != null) {
+                sessionBuckets.put(sessionId, newBucket(sessionLimit, System.nanoTime()));
+            }
+            return message;
+        }
+
+        if (messageType == SimpMessageType.DISCONNECT) {
+            sessionBuckets.remove(sessionId);
+            if (SimpMessageHeaderAccessor.getUser(headers) == null) {
+                // Limited as its own sender
+                senderBuckets.remove(sessionId);
+            }
+            return message;
+        }
+
+        if (messageType != SimpMessageType.MESSAGE) {
+            return message;
+        }
+
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+
+        if (destination == null) {
+            return message;
+        }
+
+        final int permits = getPermitted(headers);
+        final long now = System.nanoTime();
+        final String limit = getLimitExceeded(headers, sessionId, destination, permits, now);
+
+        if (limit == null) {
+            return message;
+        }
+
+        log.debug("Over {} rate limit, session: {}, destination: {}", limit, sessionId, destination);
+
+        metrics.onThrottled(limit, permits);
+
+        if (policy == RateLimitPolicy.ERROR) {
+            // Sent to the client as an ERROR frame
+            throw new MessageDeliveryException(message, "Rate limit exceeded: " + limit);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param headers The headers of a SEND frame
+     * @return The number of messages the frame was counted as, against the rate limits: the
+     * {@link WebsocketHeaders#BATCH_SIZE batch size} of frames to {@code /send-batch}, otherwise 1.
+     * The default controller drops the messages of a batch beyond this number.
+     */
+    public int getPermitted(MessageHeaders headers) {
+        if (!enabled) {
+            return Integer.MAX_VALUE;
+        }
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !isBatchDestination(destination)) {
+            return 1;
+        }
+        final String batchSize = NativeMessageHeaderAccessor.getFirstNativeHeader(WebsocketHeaders.BATCH_SIZE, headers);
+        if (batchSize == null) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(batchSize));
+        }catch(NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * @return The name of the limit exceeded, one of {@code session}, {@code sender} or
+     * {@code destination}, or {@code null} if the tokens were acquired
+     */
+    @Nullable
+    private String getLimitExceeded(MessageHeaders headers, String sessionId, String destination, int permits, long now) {
+
+        final TokenBucket sessionBucket = sessionLimit == null ? null : sessionBuckets.get(sessionId);
+        if (sessionBucket != null && !sessionBucket.tryAcquire(permits, now)) {
+            return "session";
+        }
+
+        final TokenBucket senderBucket = senderLimit == null ? null : getSenderBucket(headers, sessionId, now);
+        if (senderBucket != null && !senderBucket.tryAcquire(permits, now)) {
+            return "sender";
+        }
+
+        for (int i = 0; i < destinationPrefixes.length; i++) {
+            if (destination.startsWith(destinationPrefixes[i])) {
+                return destinationBuckets[i].tryAcquire(permits, now) ? null : "destination";
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The bucket of the sender of the message or, if the maximum number of senders
+     * have buckets which are not full, the bucket shared by the senders beyond the maximum
+     */
+    private TokenBucket getSenderBucket(MessageHeaders headers, String sessionId, long now) {
+
+        final String sender = getSender(headers, sessionId);
+
+        TokenBucket bucket = senderBuckets.get(sender);
+
+        if (bucket == null) {
+            if (senderBuckets.size() >= maxSenders && !evict(now)) {
+                return overflowBucket;
+            }
+            final TokenBucket created = newBucket(senderLimit, now);
+            bucket = senderBuckets.putIfAbsent(sender, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Remove full buckets, examining at most {@link #EVICTION_SCAN} buckets, from where the
+     * last call stopped, so that a new sender costs bounded time however many are limited.
+     * A full bucket behaves as a new bucket would.
+     * @return {@code true} if a bucket was removed
+     */
+    private boolean evict(long now) {
+        boolean evicted = false;
+        synchronized (this) {
+            for (int i = 0; i < EVICTION_SCAN; i++) {
+                if (!evictionScan.hasNext()) {
+                    evictionScan = senderBuckets.values().iterator();
+                    if (!evictionScan.hasNext()) {
+                        break;
+                    }
+                }
+                if (evictionScan.next().isFull(now)) {
+                    evictionScan.remove();
+                    evicted = true;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Only the authenticated user, as the name a session joined with is chosen by the client.
+     */
+    private static String getSender(MessageHeaders headers, String sessionId) {
+        final Principal user = SimpMessageHeaderAccessor.getUser(headers);
+        return user != null && user.getName() != null ? user.getName() : sessionId;
+    }
+
+    private boolean isBatchDestination(String destination) {
+        for (String prefix : batchDestinationPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TokenBucket newBucket(WebsocketProperties.Limit limit, long now) {
+        return new TokenBucket(limit.getRate(), limit.getBurst() > 0 ? limit.getBurst() : (int)Math.ceil(limit.getRate()), now);
+    }
+}
@@ -0,0 +1,17 @@
+package com.looseboxes.websocket.server.ratelimit;
+
+/**
+ * What to do with a message from a client which exceeded a rate limit.
+ * @author chinomso ikwuagwu
+ */
+public enum RateLimitPolicy {
+    /**
+     * Drop the message. No receipt is sent for it.
+     */
+    DROP,
+    /**
+     * Send the client an ERROR frame, after which the client is disconnected,
+     * as required by STOMP.
+     */
+    ERROR
+}
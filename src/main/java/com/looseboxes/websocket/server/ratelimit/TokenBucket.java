@@ -0,0 +1,72 @@
+package com.looseboxes.websocket.server.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free token bucket, as the generic cell rate algorithm. Rather than a count
+ * of tokens, refilled over time, the bucket holds the time at which it will be full,
+ * so that acquiring tokens is a single compare and set, and nothing need refill it.
+ *
+ * <p>
+ * Times are those of {@link System#nanoTime()}. A request for more tokens than the
+ * burst succeeds only when the bucket is full, and leaves it in debt.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public final class TokenBucket {
+
+    /**
+     * Nanos per token
+     */
+    private final long interval;
+
+    /**
+     * Nanos to refill the whole burst
+     */
+    private final long tolerance;
+
+    private final AtomicLong fullAt;
+
+    /**
+     * @param rate Tokens per second
+     * @param burst Maximum tokens held
+     * @param now The current time, in nanos
+     */
+    public TokenBucket(double rate, int burst, long now) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive, found: " + rate);
+        }
+        this.interval = Math.max(1, (long)(1_000_000_000d / rate));
+        this.tolerance = interval * Math.max(1, burst);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @param tokens The number of tokens to acquire
+     * @param now The current time, in nanos
+     * @return {@code true} if the tokens were acquired, otherwise {@code false}, having acquired none
+     */
+    public boolean tryAcquire(int tokens, long now) {
+        final long cost = interval * tokens;
+        while (true) {
+            final long current = fullAt.get();
+            final boolean full = current - now <= 0;
+            final long next = (full ? now : current) + cost;
+            if (!full && next - now > tolerance) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param now The current time, in nanos
+     * @return {@code true} if the bucket holds the whole burst, so that it may be
+     * discarded and later replaced by a new bucket, with no change in behaviour
+     */
+    public boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
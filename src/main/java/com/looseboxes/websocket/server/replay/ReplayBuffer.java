@@ -0,0 +1,228 @@
+package com.looseboxes.websocket.server.replay;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+
+/**
+ * A bounded ring of the serialized messages most recently sent to one destination,
+ * by sequence number.
+ *
+ * <p>
+ * Payloads are copied into a single buffer of fixed capacity, which may be allocated
+ * outside the heap, so that retained messages add neither objects for the garbage
+ * collector to trace, nor to the heap. The oldest messages are evicted when either
+ * the maximum number of messages or the capacity in bytes is reached.
+ * </p>
+ * <p>
+ * Not thread safe. Callers synchronize on the buffer, which also orders the
+ * sending of messages to its destination, see {@link ReplayRegistry}.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class ReplayBuffer {
+
+    public static final class Entry {
+
+        private final long sequence;
+        private final byte[] payload;
+        @Nullable private final MimeType contentType;
+        @Nullable private final String batchSize;
+
+        private Entry(long sequence, byte[] payload, @Nullable MimeType contentType, @Nullable String batchSize) {
+            this.sequence = sequence;
+            this.payload = payload;
+            this.contentType = contentType;
+            this.batchSize = batchSize;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        @Nullable
+        public MimeType getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return The {@link com.looseboxes.websocket.server.controller.WebsocketHeaders#BATCH_SIZE batch size}
+         * of the message, or {@code null} if the message is not a batch
+         */
+        @Nullable
+        public String getBatchSize() {
+            return batchSize;
+        }
+    }
+
+    private final ByteBuffer data;
+
+    // By sequence modulo the maximum number of messages
+    private final int[] offsets;
+    private final int[] lengths;
+    private final MimeType[] contentTypes;
+    private final String[] batchSizes;
+
+    /**
+     * The sequence of the oldest message retained
+     */
+    private long firstSequence = 1;
+
+    /**
+     * The sequence of the next message
+     */
+    private long nextSequence = 1;
+
+    private int writePosition;
+
+    /**
+     * @param maxMessages Maximum number of messages retained
+     * @param capacity Maximum number of payload bytes retained
+     * @param direct {@code true} to allocate the payload buffer outside the heap
+     */
+    public ReplayBuffer(int maxMessages, int capacity, boolean direct) {
+        if (maxMessages < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Maximum messages and capacity must be at least 1, found: " +
+                    maxMessages + " and " + capacity);
+        }
+        this.data = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        this.offsets = new int[maxMessages];
+        this.lengths = new int[maxMessages];
+        this.contentTypes = new MimeType[maxMessages];
+        this.batchSizes = new String[maxMessages];
+    }
+
+    /**
+     * @return The sequence the next message appended will have
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * @return The sequence of the oldest message retained. Equal to the
+     * next sequence when no message is retained.
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public int size() {
+        return (int)(nextSequence - firstSequence);
+    }
+
+    /**
+     * Append a message, evicting the oldest messages as required. A message larger
+     * than the capacity is not retained, nor are the messages before it, as a replay
+     * must not skip any message.
+     * @param payload The serialized message
+     * @param contentType The content type of the payload
+     * @param batchSize The batch size, if the payload is a batch of messages
+     * @return The sequence of the message
+     */
+    public long append(byte[] payload, @Nullable MimeType contentType, @Nullable String batchSize) {
+
+        final long sequence = nextSequence++;
+
+        final int length = payload.length;
+
+        if (length > data.capacity()) {
+            clear();
+            return sequence;
+        }
+
+        if (size() - 1 == offsets.length) {
+            evictOldest();
+        }
+
+        if (writePosition + length > data.capacity()) {
+            // Wrap around. The messages ahead of the write position are the oldest.
+            while (size() > 1 && offsets[slot(firstSequence)] >= writePosition) {
+                evictOldest();
+            }
+            writePosition = 0;
+        }
+
+        while (size() > 1 && overlaps(firstSequence, writePosition, length)) {
+            evictOldest();
+        }
+
+        final int slot = slot(sequence);
+        offsets[slot] = writePosition;
+        lengths[slot] = length;
+        contentTypes[slot] = contentType;
+        batchSizes[slot] = batchSize;
+
+        data.position(writePosition);
+        data.put(payload);
+        writePosition += length;
+
+        return sequence;
+    }
+
+    /**
+     * @param fromSequence The sequence of the first message to return
+     * @return Copies of the retained messages, from the given sequence or the oldest
+     * retained, whichever is later
+     */
+    public List<Entry> getFrom(long fromSequence) {
+
+        final long from = Math.max(fromSequence, firstSequence);
+
+        if (from >= nextSequence) {
+            return Collections.emptyList();
+        }
+
+        final List<Entry> result = new ArrayList<>((int)(nextSequence - from));
+
+        for (long sequence = from; sequence < nextSequence; sequence++) {
+            final int slot = slot(sequence);
+            final byte[] payload = new byte[lengths[slot]];
+            data.position(offsets[slot]);
+            data.get(payload);
+            result.add(new Entry(sequence, payload, contentTypes[slot], batchSizes[slot]));
+        }
+
+        return result;
+    }
+
+    private boolean overlaps(long sequence, int offset, int length) {
+        final int slot = slot(sequence);
+        // An empty message is taken to occupy its offset, so that it is evicted before the message after it
+        return offsets[slot] < offset + length && offset < offsets[slot] + Math.max(1, lengths[slot]);
+    }
+
+    private void evictOldest() {
+        final int slot = slot(firstSequence++);
+        contentTypes[slot] = null;
+        batchSizes[slot] = null;
+    }
+
+    private void clear() {
+        while (firstSequence < nextSequence) {
+            evictOldest();
+        }
+        writePosition = 0;
+    }
+
+    private int slot(long sequence) {
+        return (int)(sequence % offsets.length);
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayBuffer{" +
+                "firstSequence=" + firstSequence +
+                ", nextSequence=" + nextSequence +
+                ", capacity=" + data.capacity() +
+                ", direct=" + data.isDirect() +
+                '}';
+    }
+}
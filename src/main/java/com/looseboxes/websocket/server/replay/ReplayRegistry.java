@@ -0,0 +1,198 @@
+package com.looseboxes.websocket.server.replay;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+/**
+ * Retains the messages most recently sent to the destinations configured via
+ * {@code looseboxes.websocket.replay}, in a {@link ReplayBuffer} per destination,
+ * so that a client which subscribes with a {@link WebsocketHeaders#FROM_SEQUENCE}
+ * header receives the messages it missed, before live messages.
+ *
+ * <p>
+ * Each message sent to such a destination through {@link #convertAndSend(String, Object, Map, MessagePostProcessor)}
+ * is given a {@link WebsocketHeaders#SEQUENCE} header, which increases by one per
+ * message to the destination. Messages to a destination are sent one at a time,
+ * and a subscription is registered with the broker between messages, see
+ * {@link ReplayingSubscriptionRegistry}, so that no message falls between the replay
+ * and live messages. When the broker channel has an executor, a message may be
+ * received both replayed and live.
+ * </p>
+ * <p>
+ * Only supported with the simple broker. Sequences start again from 1 when the node
+ * restarts, and are not shared with other nodes.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class ReplayRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayRegistry.class);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    private final MessageChannel clientOutboundChannel;
+
+    private final boolean enabled;
+
+    private final String[] destinationPrefixes;
+
+    private final int maxDestinations;
+
+    private final int maxMessages;
+
+    private final int capacity;
+
+    private final boolean direct;
+
+    private final ConcurrentMap<String, ReplayBuffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * @param messagingTemplate Lazy, as the template is created after the broker
+     * @param clientOutboundChannel Lazy, as the channel is created after the broker
+     */
+    public ReplayRegistry(WebsocketProperties properties,
+                          @Lazy SimpMessageSendingOperations messagingTemplate,
+                          @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        final WebsocketProperties.Replay replay = properties.getReplay();
+        this.messagingTemplate = messagingTemplate;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.destinationPrefixes = replay.getDestinations();
+        if (destinationPrefixes.length > 0 && properties.getBroker().getMode() == WebsocketProperties.BrokerMode.RELAY) {
+            log.warn("Replay is not supported when relaying to an external broker, destinations: {}",
+                    String.join(", ", destinationPrefixes));
+            this.enabled = false;
+        }else{
+            this.enabled = destinationPrefixes.length > 0;
+        }
+        this.maxDestinations = replay.getMaxDestinations();
+        this.maxMessages = replay.getMaxMessages();
+        this.capacity = replay.getCapacity();
+        this.direct = replay.isDirect();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param destination The broker destination e.g {@code /topic/abc}
+     * @return The buffer of the destination, created if the destination is configured
+     * for replay, or {@code null} if it is not
+     */
+    @Nullable
+    public ReplayBuffer getBuffer(String destination) {
+        if (!enabled) {
+            return null;
+        }
+        final ReplayBuffer buffer = buffers.get(destination);
+        if (buffer != null || !isReplayed(destination)) {
+            return buffer;
+        }
+        if (buffers.size() >= maxDestinations) {
+            log.debug("Not replaying: {}, already replaying {} destinations", destination, maxDestinations);
+            return null;
+        }
+        return buffers.computeIfAbsent(destination, k -> new ReplayBuffer(maxMessages, capacity, direct));
+    }
+
+    private boolean isReplayed(String destination) {
+        for (String prefix : destinationPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Send the payload to the destination, with a sequence header if the destination
+     * is configured for replay, and retain the serialized message for replay.
+     * Otherwise, send the payload as is.
+     * @see SimpMessageSendingOperations#convertAndSend(Object, Object, Map, MessagePostProcessor)
+     */
+    public void convertAndSend(String destination, Object payload,
+                               @Nullable Map<String, Object> headers, @Nullable MessagePostProcessor postProcessor) {
+
+        final ReplayBuffer buffer = getBuffer(destination);
+
+        if (buffer == null) {
+            messagingTemplate.convertAndSend(destination, payload, headers, postProcessor);
+            return;
+        }
+
+        synchronized (buffer) {
+
+            final Map<String, Object> sequenced = headers == null ? new HashMap<>(4) : new HashMap<>(headers);
+            sequenced.put(WebsocketHeaders.SEQUENCE, String.valueOf(buffer.getNextSequence()));
+
+            messagingTemplate.convertAndSend(destination, payload, sequenced, message -> {
+                final Message<?> toSend = postProcessor == null ? message : postProcessor.postProcessMessage(message);
+                if (toSend.getPayload() instanceof byte[]) {
+                    final MessageHeaders messageHeaders = toSend.getHeaders();
+                    final Object contentType = messageHeaders.get(MessageHeaders.CONTENT_TYPE);
+                    buffer.append((byte[])toSend.getPayload(),
+                            contentType instanceof MimeType ? (MimeType)contentType : null,
+                            headers == null ? null : (String)headers.get(WebsocketHeaders.BATCH_SIZE));
+                }
+                return toSend;
+            });
+        }
+    }
+
+    /**
+     * Send the retained messages of the destination, from the given sequence, to the subscription.
+     * Callers synchronize on the buffer.
+     * @return The number of messages sent
+     */
+    int replay(ReplayBuffer buffer, String destination, long fromSequence,
+               String sessionId, String subscriptionId) {
+
+        final List<ReplayBuffer.Entry> entries = buffer.getFrom(fromSequence);
+
+        for (ReplayBuffer.Entry entry : entries) {
+
+            final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId(subscriptionId);
+            accessor.setDestination(destination);
+            if (entry.getContentType() != null) {
+                accessor.setContentType(entry.getContentType());
+            }
+            accessor.setNativeHeader(WebsocketHeaders.SEQUENCE, String.valueOf(entry.getSequence()));
+            if (entry.getBatchSize() != null) {
+                accessor.setNativeHeader(WebsocketHeaders.BATCH_SIZE, entry.getBatchSize());
+            }
+            accessor.setLeaveMutable(true);
+
+            clientOutboundChannel.send(MessageBuilder.createMessage(entry.getPayload(), accessor.getMessageHeaders()));
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Replayed {} messages to: {}, from: {}, session: {}",
+                    entries.size(), destination, fromSequence, sessionId);
+        }
+
+        return entries.size();
+    }
+}
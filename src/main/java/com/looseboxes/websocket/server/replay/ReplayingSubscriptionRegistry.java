@@ -0,0 +1,89 @@
+package com.looseboxes.websocket.server.replay;
+
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Decorates the subscription registry of the simple broker, so that a subscription
+ * with a {@link WebsocketHeaders#FROM_SEQUENCE} header to a destination configured
+ * for replay, is sent the messages retained from that sequence.
+ *
+ * <p>
+ * The subscription is registered, and the messages replayed, while holding the
+ * destination's {@link ReplayBuffer}, which is also held while sending messages to
+ * the destination. So the replayed messages are sent before any live message, and
+ * no message is sent between them.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class ReplayingSubscriptionRegistry implements SubscriptionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayingSubscriptionRegistry.class);
+
+    private final SubscriptionRegistry delegate;
+
+    private final ReplayRegistry replayRegistry;
+
+    public ReplayingSubscriptionRegistry(SubscriptionRegistry delegate, ReplayRegistry replayRegistry) {
+        this.delegate = delegate;
+        this.replayRegistry = replayRegistry;
+    }
+
+    public SubscriptionRegistry getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void registerSubscription(Message<?> subscribeMessage) {
+
+        final MessageHeaders headers = subscribeMessage.getHeaders();
+        final String fromSequence = NativeMessageHeaderAccessor.getFirstNativeHeader(WebsocketHeaders.FROM_SEQUENCE, headers);
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        final String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+
+        final ReplayBuffer buffer = fromSequence == null || destination == null || sessionId == null ||
+                subscriptionId == null ? null : replayRegistry.getBuffer(destination);
+
+        if (buffer == null) {
+            delegate.registerSubscription(subscribeMessage);
+            return;
+        }
+
+        final long from;
+        try {
+            from = Long.parseLong(fromSequence);
+        }catch(NumberFormatException e) {
+            log.debug("Invalid header {}: {}, session: {}", WebsocketHeaders.FROM_SEQUENCE, fromSequence, sessionId);
+            delegate.registerSubscription(subscribeMessage);
+            return;
+        }
+
+        synchronized (buffer) {
+            delegate.registerSubscription(subscribeMessage);
+            replayRegistry.replay(buffer, destination, from, sessionId, subscriptionId);
+        }
+    }
+
+    @Override
+    public void unregisterSubscription(Message<?> unsubscribeMessage) {
+        delegate.unregisterSubscription(unsubscribeMessage);
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        delegate.unregisterAllSubscriptions(sessionId);
+    }
+
+    @Override
+    public MultiValueMap<String, String> findSubscriptions(Message<?> message) {
+        return delegate.findSubscriptions(message);
+    }
+}
@@ -0,0 +1,210 @@
+package com.looseboxes.websocket.server.security;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Caches the access decisions of SEND and SUBSCRIBE frames, per session, by the
+ * principal of the session, the message type and the destination, so that repeat
+ * frames to a destination are neither matched nor evaluated again.
+ *
+ * <p>
+ * The decisions of a session are cached from its CONNECT frame, and forgotten on
+ * its DISCONNECT, or once the session is authenticated as another principal. At most
+ * the configured number of destinations are cached per session and message type.
+ * Only decisions whose every attribute is one of the expressions {@code permitAll},
+ * {@code denyAll}, {@code authenticated}, {@code fullyAuthenticated}, {@code hasRole},
+ * {@code hasAnyRole}, {@code hasAuthority} or {@code hasAnyAuthority} are cached, as
+ * these depend on no more than the principal. Decisions of any other expression are
+ * made every time.
+ * </p>
+ * <p>
+ * Registered on the client inbound channel, to read the CONNECT and DISCONNECT
+ * frames. Decisions are made via {@link #decorate(AccessDecisionManager)}.
+ * </p>
+ * @see CachingMessageSecurityMetadataSource
+ * @author chinomso ikwuagwu
+ */
+public class AuthorizationDecisionCache implements ChannelInterceptor {
+
+    private static final class Decisions {
+
+        private final Authentication authentication;
+
+        private final ConcurrentMap<String, Boolean> send = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<String, Boolean> subscribe = new ConcurrentHashMap<>();
+
+        private Decisions(Authentication authentication) {
+            this.authentication = authentication;
+        }
+    }
+
+    private static final Decisions UNDECIDED = new Decisions(null);
+
+    private static final String QUOTED = "'[^']*'";
+
+    /**
+     * Expressions which depend on no more than the principal
+     */
+    private static final Pattern CACHEABLE_EXPRESSION = Pattern.compile(
+            "permitAll|denyAll|authenticated|fullyAuthenticated" +
+            "|has(Any)?(Role|Authority)\\(\\s*" + QUOTED + "(\\s*,\\s*" + QUOTED + ")*\\s*\\)");
+
+    private final int cacheSize;
+
+    private final ConcurrentMap<String, Decisions> decisionsBySession = new ConcurrentHashMap<>();
+
+    /**
+     * @param cacheSize Maximum number of destinations cached per session and message type
+     */
+    public AuthorizationDecisionCache(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getSessionCount() {
+        return decisionsBySession.size();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        final MessageHeaders headers = message.getHeaders();
+        final SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId != null) {
+            if (messageType == SimpMessageType.CONNECT) {
+                decisionsBySession.put(sessionId, UNDECIDED);
+            }else if (messageType == SimpMessageType.DISCONNECT) {
+                decisionsBySession.remove(sessionId);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * @param delegate Makes the decisions which are not cached
+     * @return A decision manager which caches the decisions of the delegate
+     */
+    public AccessDecisionManager decorate(AccessDecisionManager delegate) {
+        return new AccessDecisionManager() {
+            @Override
+            public void decide(Authentication authentication, Object object, Collection<ConfigAttribute> configAttributes)
+                    throws AccessDeniedException, InsufficientAuthenticationException {
+                AuthorizationDecisionCache.this.decide(delegate, authentication, object, configAttributes);
+            }
+            @Override
+            public boolean supports(ConfigAttribute attribute) {
+                return delegate.supports(attribute);
+            }
+            @Override
+            public boolean supports(Class<?> clazz) {
+                return delegate.supports(clazz);
+            }
+        };
+    }
+
+    private void decide(AccessDecisionManager delegate, Authentication authentication,
+                        Object object, Collection<ConfigAttribute> configAttributes) {
+
+        final ConcurrentMap<String, Boolean> decisionsByDestination = getDecisions(authentication, object);
+
+        if (decisionsByDestination == null) {
+            delegate.decide(authentication, object, configAttributes);
+            return;
+        }
+
+        final String destination = SimpMessageHeaderAccessor.getDestination(((Message<?>)object).getHeaders());
+
+        final Boolean granted = decisionsByDestination.get(destination);
+
+        if (granted == null) {
+            if (!isCacheable(configAttributes)) {
+                delegate.decide(authentication, object, configAttributes);
+                return;
+            }
+            try {
+                delegate.decide(authentication, object, configAttributes);
+            }catch(AccessDeniedException e) {
+                cache(decisionsByDestination, destination, Boolean.FALSE);
+                throw e;
+            }
+            cache(decisionsByDestination, destination, Boolean.TRUE);
+        }else if (!granted) {
+            throw new AccessDeniedException("Access is denied");
+        }
+    }
+
+    /**
+     * @return The cached decisions for the message type, of the session which sent the
+     * message, or {@code null} if the decision for the message may not be cached
+     */
+    private ConcurrentMap<String, Boolean> getDecisions(Authentication authentication, Object object) {
+
+        if (!(object instanceof Message) || authentication == null) {
+            return null;
+        }
+
+        final MessageHeaders headers = ((Message<?>)object).getHeaders();
+        final SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+        if (sessionId == null || SimpMessageHeaderAccessor.getDestination(headers) == null ||
+                (messageType != SimpMessageType.MESSAGE && messageType != SimpMessageType.SUBSCRIBE)) {
+            return null;
+        }
+
+        Decisions decisions = decisionsBySession.get(sessionId);
+
+        if (decisions == null) {
+            // Not connected, or already disconnected
+            return null;
+        }
+
+        if (decisions.authentication != authentication) {
+            final Decisions replacement = new Decisions(authentication);
+            // Not if disconnected meanwhile
+            decisions = decisionsBySession.replace(sessionId, decisions, replacement) ?
+                    replacement : decisionsBySession.get(sessionId);
+            if (decisions == null || decisions.authentication != authentication) {
+                return null;
+            }
+        }
+
+        return messageType == SimpMessageType.MESSAGE ? decisions.send : decisions.subscribe;
+    }
+
+    /**
+     * Only checked before a decision is cached, as the attributes of a destination do not change.
+     * Message expression attributes return their expression from {@code toString()}.
+     */
+    static boolean isCacheable(Collection<ConfigAttribute> configAttributes) {
+        if (configAttributes == null || configAttributes.isEmpty()) {
+            return false;
+        }
+        for (ConfigAttribute attribute : configAttributes) {
+            if (attribute == null || !CACHEABLE_EXPRESSION.matcher(String.valueOf(attribute).trim()).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void cache(ConcurrentMap<String, Boolean> decisionsByDestination, String destination, Boolean granted) {
+        if (decisionsByDestination.size() < cacheSize) {
+            decisionsByDestination.putIfAbsent(destination, granted);
+        }
+    }
+}
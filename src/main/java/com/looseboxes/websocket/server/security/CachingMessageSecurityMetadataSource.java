@@ -0,0 +1,82 @@
+package com.looseboxes.websocket.server.security;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.messaging.access.intercept.MessageSecurityMetadataSource;
+
+/**
+ * Caches the security attributes of SEND and SUBSCRIBE frames, by message type and
+ * destination, so that repeat frames to a destination are not matched against
+ * each rule again.
+ *
+ * <p>
+ * Only valid when the rules depend on no more than the message type and destination,
+ * as the rules of {@code simpDestMatchers}, {@code simpTypeMatchers} and
+ * {@code anyMessage} do. Once the configured number of destinations is cached,
+ * further destinations are matched every time.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class CachingMessageSecurityMetadataSource implements MessageSecurityMetadataSource {
+
+    private final MessageSecurityMetadataSource delegate;
+
+    private final int cacheSize;
+
+    private final Map<SimpMessageType, ConcurrentMap<String, Collection<ConfigAttribute>>> attributesByType;
+
+    public CachingMessageSecurityMetadataSource(MessageSecurityMetadataSource delegate, int cacheSize) {
+        this.delegate = delegate;
+        this.cacheSize = cacheSize;
+        this.attributesByType = new EnumMap<>(SimpMessageType.class);
+        this.attributesByType.put(SimpMessageType.MESSAGE, new ConcurrentHashMap<>());
+        this.attributesByType.put(SimpMessageType.SUBSCRIBE, new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public Collection<ConfigAttribute> getAttributes(Object object) throws IllegalArgumentException {
+
+        if (!(object instanceof Message)) {
+            return delegate.getAttributes(object);
+        }
+
+        final MessageHeaders headers = ((Message<?>)object).getHeaders();
+        final SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        final String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        final ConcurrentMap<String, Collection<ConfigAttribute>> attributesByDestination =
+                messageType == null ? null : attributesByType.get(messageType);
+
+        if (destination == null || attributesByDestination == null) {
+            return delegate.getAttributes(object);
+        }
+
+        Collection<ConfigAttribute> attributes = attributesByDestination.get(destination);
+
+        if (attributes == null) {
+            attributes = delegate.getAttributes(object);
+            if (attributes != null && attributesByDestination.size() < cacheSize) {
+                attributesByDestination.putIfAbsent(destination, attributes);
+            }
+        }
+
+        return attributes;
+    }
+
+    @Override
+    public Collection<ConfigAttribute> getAllConfigAttributes() {
+        return delegate.getAllConfigAttributes();
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+}
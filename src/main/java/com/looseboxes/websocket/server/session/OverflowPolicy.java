@@ -0,0 +1,28 @@
+package com.looseboxes.websocket.server.session;
+
+/**
+ * What to do with a message for a client whose send buffer is full.
+ * @author chinomso ikwuagwu
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the oldest buffered messages, to make room for the new message.
+     */
+    DROP_OLDEST,
+    /**
+     * Drop the new message.
+     */
+    DROP_NEWEST,
+    /**
+     * Replace any buffered message to the same destination, having the same
+     * {@link com.looseboxes.websocket.server.controller.WebsocketHeaders#CONFLATION_KEY conflation key},
+     * with the new message, so that only the latest is sent. This applies whenever
+     * messages are buffered, not only when the buffer is full. When the buffer
+     * is full, the oldest buffered messages are dropped.
+     */
+    CONFLATE,
+    /**
+     * Disconnect the client.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,133 @@
+package com.looseboxes.websocket.server.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Controls the negotiation of the {@code permessage-deflate} websocket extension
+ * (RFC 7692), by rewriting the extensions offered in each handshake request.
+ *
+ * <p>
+ * Servlet containers negotiate {@code permessage-deflate} themselves, whenever a
+ * client offers it, so the offer is rewritten before the container reads it. When
+ * disabled, the offer is removed. Without context takeover, both sides are asked
+ * to compress each message on its own, rather than with the messages before it
+ * as a dictionary. That compresses less, but does not keep a sliding window of up
+ * to 32KB per direction for each connection between messages.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class PerMessageDeflateFilter extends OncePerRequestFilter {
+
+    public static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    private final boolean enabled;
+
+    private final boolean contextTakeover;
+
+    /**
+     * @param enabled {@code false} to not negotiate {@code permessage-deflate}
+     * @param contextTakeover {@code false} to compress each message on its own
+     */
+    public PerMessageDeflateFilter(boolean enabled, boolean contextTakeover) {
+        this.enabled = enabled;
+        this.contextTakeover = contextTakeover;
+    }
+
+    /**
+     * @return {@code true} if offers are rewritten, {@code false} if containers
+     * negotiate as they would by default
+     */
+    public boolean isRewriting() {
+        return !enabled || !contextTakeover;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !isRewriting() || request.getHeader(EXTENSIONS_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        final List<String> offers = new ArrayList<>();
+        final Enumeration<String> headers = request.getHeaders(EXTENSIONS_HEADER);
+        while (headers.hasMoreElements()) {
+            final String header = rewrite(headers.nextElement());
+            if (header != null) {
+                offers.add(header);
+            }
+        }
+
+        filterChain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ?
+                        (offers.isEmpty() ? null : String.join(", ", offers)) : super.getHeader(name);
+            }
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ?
+                        Collections.enumeration(offers) : super.getHeaders(name);
+            }
+        }, response);
+    }
+
+    /**
+     * @param header A {@code Sec-WebSocket-Extensions} header e.g
+     *               {@code permessage-deflate; client_max_window_bits, x-webkit-deflate-frame}
+     * @return The header, with {@code permessage-deflate} offers removed or amended,
+     * or {@code null} if no offers remain
+     */
+    @Nullable
+    String rewrite(String header) {
+        final StringBuilder result = new StringBuilder(header.length() + 64);
+        for (String offer : header.split(",")) {
+            offer = offer.trim();
+            if (offer.isEmpty()) {
+                continue;
+            }
+            final int end = offer.indexOf(';');
+            final String name = (end == -1 ? offer : offer.substring(0, end)).trim();
+            if (PERMESSAGE_DEFLATE.equalsIgnoreCase(name)) {
+                if (!enabled) {
+                    continue;
+                }
+                if (!contextTakeover) {
+                    offer = withParameter(withParameter(offer, SERVER_NO_CONTEXT_TAKEOVER), CLIENT_NO_CONTEXT_TAKEOVER);
+                }
+            }
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(offer);
+        }
+        return result.length() == 0 ? null : result.toString();
+    }
+
+    private static String withParameter(String offer, String parameter) {
+        for (String part : offer.split(";")) {
+            if (part.trim().equalsIgnoreCase(parameter)) {
+                return offer;
+            }
+        }
+        return offer + "; " + parameter;
+    }
+}
@@ -0,0 +1,150 @@
+package com.looseboxes.websocket.server.session;
+
+import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.handler.invocation.AbstractMethodMessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * Sends a RECEIPT frame to the client, for each SEND frame from the client which
+ * requested one, once the frame is handled. Spring's simple broker only sends
+ * receipts for DISCONNECT frames.
+ *
+ * <p>
+ * Every handler subscribed to the inbound channel is handed each frame, so the
+ * receipt is sent after the handler of the frame's destination: the annotated
+ * controllers for application destinations, the user destination handler for user
+ * destinations, and otherwise the broker. Frames whose handler fails are not receipted.
+ * </p>
+ * <p>
+ * Frames to the {@link WebsocketEndpoints#SEND} and {@link WebsocketEndpoints#SEND_BATCH}
+ * application destinations are skipped, as the controller may yet drop them after
+ * returning. It receipts them once their messages are accepted.
+ * </p>
+ * <p>
+ * Frames to the given relayed destination prefixes are skipped, as their receipts
+ * are sent by the relayed broker.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+public class SendReceiptChannelInterceptor implements ExecutorChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SendReceiptChannelInterceptor.class);
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private static final String SEND_PREFIX = WebsocketEndpoints.SEND + '/';
+
+    private static final String SEND_BATCH_PREFIX = WebsocketEndpoints.SEND_BATCH + '/';
+
+    private final MessageChannel clientOutboundChannel;
+
+    private final String[] applicationDestinationPrefixes;
+
+    @Nullable private final String userDestinationPrefix;
+
+    private final String[] relayedDestinationPrefixes;
+
+    /**
+     * @param clientOutboundChannel The channel of messages to clients
+     * @param applicationDestinationPrefixes Prefixes of destinations handled by annotated controllers
+     * @param userDestinationPrefix Prefix of user destinations, or {@code null} if none
+     * @param relayedDestinationPrefixes Prefixes of destinations relayed to an external broker
+     */
+    public SendReceiptChannelInterceptor(MessageChannel clientOutboundChannel,
+                                         String[] applicationDestinationPrefixes,
+                                         @Nullable String userDestinationPrefix,
+                                         String... relayedDestinationPrefixes) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.applicationDestinationPrefixes = applicationDestinationPrefixes;
+        this.userDestinationPrefix = userDestinationPrefix;
+        this.relayedDestinationPrefixes = relayedDestinationPrefixes;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, @Nullable Exception ex) {
+
+        if (ex != null) {
+            return;
+        }
+
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return;
+        }
+
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            accessor = StompHeaderAccessor.wrap(message);
+        }
+        if (accessor.getCommand() != StompCommand.SEND) {
+            return;
+        }
+
+        final String receipt = accessor.getReceipt();
+        if (receipt == null || !isHandlerOf(handler, accessor.getDestination())) {
+            return;
+        }
+
+        try {
+            clientOutboundChannel.send(createReceipt(receipt, accessor.getSessionId()));
+        }catch(RuntimeException e) {
+            log.debug("Failed to send receipt: {} to session: {}, {}", receipt, accessor.getSessionId(), e.toString());
+        }
+    }
+
+    /**
+     * @param receipt The receipt requested by the client
+     * @param sessionId The id of the client's session
+     * @return A RECEIPT frame to send to the client
+     */
+    public static Message<byte[]> createReceipt(String receipt, @Nullable String sessionId) {
+        final StompHeaderAccessor receiptAccessor = StompHeaderAccessor.create(StompCommand.RECEIPT);
+        receiptAccessor.setReceiptId(receipt);
+        receiptAccessor.setSessionId(sessionId);
+        receiptAccessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(EMPTY_PAYLOAD, receiptAccessor.getMessageHeaders());
+    }
+
+    private boolean isHandlerOf(MessageHandler handler, @Nullable String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : applicationDestinationPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return handler instanceof AbstractMethodMessageHandler && !isReceiptedByController(destination, prefix.length());
+            }
+        }
+        if (userDestinationPrefix != null && destination.startsWith(userDestinationPrefix)) {
+            return handler instanceof UserDestinationMessageHandler;
+        }
+        return handler instanceof AbstractBrokerMessageHandler && !startsWithAny(destination, relayedDestinationPrefixes);
+    }
+
+    private static boolean isReceiptedByController(String destination, int prefixLength) {
+        // The prefix may or may not end with a slash
+        final int from = destination.startsWith("/", prefixLength) ? prefixLength : prefixLength - 1;
+        return from >= 0 && (destination.startsWith(SEND_PREFIX, from) || destination.startsWith(SEND_BATCH_PREFIX, from));
+    }
+
+    private static boolean startsWithAny(String destination, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
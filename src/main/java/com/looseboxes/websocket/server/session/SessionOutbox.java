@@ -0,0 +1,272 @@
+package com.looseboxes.websocket.server.session;
+
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+/**
+ * Buffers messages for a client, and writes them to the client on one of the
+ * {@link SessionOutboxRegistry}'s writer threads, so that the thread sending
+ * the message never blocks on a slow client.
+ *
+ * <p>
+ * The number of bytes buffered is accounted for. When a message would exceed
+ * the send buffer size limit, the {@link OverflowPolicy} for the message's
+ * destination is applied. Frames other than MESSAGE frames are always buffered.
+ * Writes exceeding the send time limit are ended by the registry's timer, see
+ * {@link #checkSendTimeLimit(long)}.
+ * </p>
+ * <p>
+ * For destinations whose policy is {@link OverflowPolicy#CONFLATE}, a message
+ * replaces any pending message with the same conflation key, so that a client
+ * which is behind receives only the latest value per key.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+class SessionOutbox extends WebSocketSessionDecorator {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionOutbox.class);
+
+    /**
+     * Maximum number of frames written before yielding the writer thread to other sessions.
+     */
+    private static final int MAX_WRITES_PER_DRAIN = 64;
+
+    private static final class Frame {
+        private WebSocketMessage<?> message;
+        private int size;
+        private final String destination;
+        private final String key;
+        private Frame(WebSocketMessage<?> message, String destination, String key) {
+            this.message = message;
+            this.size = message.getPayloadLength();
+            this.destination = destination;
+            this.key = key;
+        }
+    }
+
+    private final SessionOutboxRegistry registry;
+
+    // All guarded by this
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final Map<String, Frame> conflatableFramesByKey = new HashMap<>();
+    private long bufferedBytes;
+    private boolean draining;
+
+    private volatile long writeStartedAt;
+    private volatile boolean closing;
+
+    SessionOutbox(WebSocketSession delegate, SessionOutboxRegistry registry) {
+        super(delegate);
+        this.registry = registry;
+    }
+
+    /**
+     * @return The number of bytes buffered, including any message being written
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+
+        if (closing || !isOpen()) {
+            return;
+        }
+
+        final String destination = StompFrames.header(message, "destination");
+        final OverflowPolicy policy = destination == null ? null : registry.getOverflowPolicy(destination);
+        final Frame frame = new Frame(message, destination,
+                policy == OverflowPolicy.CONFLATE ? conflationKey(message, destination) : null);
+
+        boolean disconnect = false;
+        boolean drain = false;
+
+        synchronized (this) {
+
+            if (policy == OverflowPolicy.CONFLATE && replaceConflatableFrame(frame)) {
+                return;
+            }
+
+            if (policy != null && bufferedBytes + frame.size > registry.getSendBufferSizeLimit()) {
+                switch (policy) {
+                    case DROP_NEWEST:
+                        registry.onDropped(1);
+                        return;
+                    case DROP_OLDEST:
+                    case CONFLATE:
+                        dropOldestMessages(frame.size);
+                        break;
+                    case DISCONNECT:
+                    default:
+                        // Disconnect below, outside this lock
+                        disconnect = true;
+                }
+            }
+
+            if (!disconnect) {
+                frames.add(frame);
+                if (policy == OverflowPolicy.CONFLATE) {
+                    conflatableFramesByKey.put(frame.key, frame);
+                }
+                bufferedBytes += frame.size;
+                drain = !draining;
+                draining = true;
+            }
+        }
+
+        if (disconnect) {
+            disconnect("Send buffer size limit exceeded");
+        }else if (drain) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Messages carrying a {@link WebsocketHeaders#CONFLATION_KEY} are conflated with
+     * pending messages to the same destination having the same key. Other messages
+     * are conflated with any pending message to the same destination.
+     */
+    private String conflationKey(WebSocketMessage<?> message, String destination) {
+        final String key = StompFrames.header(message, WebsocketHeaders.CONFLATION_KEY);
+        return key == null ? destination : destination + '\n' + key;
+    }
+
+    private boolean replaceConflatableFrame(Frame frame) {
+        final Frame pending = conflatableFramesByKey.get(frame.key);
+        if (pending == null) {
+            return false;
+        }
+        bufferedBytes += frame.size - pending.size;
+        pending.message = frame.message;
+        pending.size = frame.size;
+        registry.onConflated();
+        return true;
+    }
+
+    private void dropOldestMessages(int required) {
+        final long limit = registry.getSendBufferSizeLimit();
+        int dropped = 0;
+        final Iterator<Frame> iterator = frames.iterator();
+        while (bufferedBytes + required > limit && iterator.hasNext()) {
+            final Frame frame = iterator.next();
+            if (frame.destination == null) {
+                continue;
+            }
+            iterator.remove();
+            if (frame.key != null) {
+                conflatableFramesByKey.remove(frame.key, frame);
+            }
+            bufferedBytes -= frame.size;
+            ++dropped;
+        }
+        if (dropped > 0) {
+            registry.onDropped(dropped);
+        }
+    }
+
+    private void scheduleDrain() {
+        try {
+            registry.execute(this::drain);
+        }catch(RejectedExecutionException e) {
+            log.warn("Failed to schedule writing to session: {}, {}", getId(), e.toString());
+            synchronized (this) {
+                draining = false;
+            }
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_WRITES_PER_DRAIN; i++) {
+
+            final WebSocketMessage<?> message;
+            final int size;
+
+            synchronized (this) {
+                final Frame frame = closing ? null : frames.poll();
+                if (frame == null) {
+                    draining = false;
+                    return;
+                }
+                if (frame.key != null) {
+                    conflatableFramesByKey.remove(frame.key, frame);
+                }
+                message = frame.message;
+                size = frame.size;
+            }
+
+            writeStartedAt = System.currentTimeMillis();
+            try {
+                getDelegate().sendMessage(message);
+            }catch(IOException | RuntimeException e) {
+                log.debug("Failed to write to session: {}, {}", getId(), e.toString());
+                disconnect("Write failed");
+            }finally{
+                writeStartedAt = 0;
+                synchronized (this) {
+                    bufferedBytes -= size;
+                }
+            }
+        }
+
+        // Give other sessions a turn
+        scheduleDrain();
+    }
+
+    /**
+     * Disconnects the session if the write in progress started more than the send
+     * time limit before now. Called by the registry's timer, not the writer thread,
+     * as the writer thread is the one blocked.
+     * @param now The current time in epoch millis
+     */
+    void checkSendTimeLimit(long now) {
+        final long startedAt = writeStartedAt;
+        if (startedAt > 0 && !closing && now - startedAt > registry.getSendTimeLimit()) {
+            disconnect("Send time limit exceeded");
+        }
+    }
+
+    private void disconnect(String reason) {
+        // Once, though both the timer and the failed write may disconnect
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("{}, disconnecting session: {}", reason, getId());
+        }
+        try {
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            registry.onDisconnected();
+        }catch(IOException | RuntimeException e) {
+            log.debug("Failed to close session: {}, {}", getId(), e.toString());
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        synchronized (this) {
+            closing = true;
+            for (Frame frame : frames) {
+                bufferedBytes -= frame.size;
+            }
+            frames.clear();
+            conflatableFramesByKey.clear();
+        }
+        super.close(status);
+    }
+}
@@ -0,0 +1,230 @@
+package com.looseboxes.websocket.server.session;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * Decorates each websocket session with a {@link SessionOutbox}, when overflow
+ * policies are configured via {@code looseboxes.websocket.transport}.
+ *
+ * <p>
+ * Writes to clients block a writer thread. So that stalled clients cannot pin every
+ * writer, a timer checks each session's write in progress, every quarter of the send
+ * time limit, and disconnects sessions whose write has exceeded the limit.
+ * </p>
+ * @author chinomso ikwuagwu
+ */
+@Component
+public class SessionOutboxRegistry implements DisposableBean {
+
+    private final boolean enabled;
+
+    private final int sendTimeLimit;
+
+    private final int sendBufferSizeLimit;
+
+    @Nullable private final OverflowPolicy defaultOverflowPolicy;
+
+    private final String[] destinationPrefixes;
+
+    private final OverflowPolicy[] overflowPolicies;
+
+    private final ConcurrentMap<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+    private final ThreadPoolTaskExecutor writerExecutor;
+
+    // Enforces the send time limit on writes in progress
+    private final ThreadPoolTaskScheduler sendTimeLimitScheduler;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    public SessionOutboxRegistry(WebsocketProperties properties) {
+
+        final WebsocketProperties.Transport transport = properties.getTransport();
+
+        this.enabled = transport.isOverflowPolicyConfigured();
+        this.sendTimeLimit = transport.getSendTimeLimit();
+        this.sendBufferSizeLimit = transport.getSendBufferSizeLimit();
+        this.defaultOverflowPolicy = transport.getOverflowPolicy();
+
+        // Longest prefixes first, so that the first match is the longest match
+        final List<Map.Entry<String, OverflowPolicy>> entries = transport.getOverflowPolicies().entrySet().stream()
+                .sorted(Comparator.comparing((Map.Entry<String, OverflowPolicy> entry) -> entry.getKey().length()).reversed())
+                .collect(Collectors.toList());
+        this.destinationPrefixes = new String[entries.size()];
+        this.overflowPolicies = new OverflowPolicy[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            this.destinationPrefixes[i] = entries.get(i).getKey();
+            this.overflowPolicies[i] = entries.get(i).getValue();
+        }
+
+        if (enabled) {
+            final int writerThreads = transport.getWriterThreads() > 0 ?
+                    transport.getWriterThreads() : Runtime.getRuntime().availableProcessors();
+            this.writerExecutor = new ThreadPoolTaskExecutor();
+            this.writerExecutor.setCorePoolSize(writerThreads);
+            this.writerExecutor.setMaxPoolSize(writerThreads);
+            this.writerExecutor.setThreadNamePrefix("websocketSessionWriter-");
+            this.writerExecutor.initialize();
+            this.sendTimeLimitScheduler = new ThreadPoolTaskScheduler();
+            this.sendTimeLimitScheduler.setThreadNamePrefix("websocketSendTimeLimit-");
+            this.sendTimeLimitScheduler.initialize();
+            this.sendTimeLimitScheduler.scheduleAtFixedRate(this::enforceSendTimeLimit, Math.max(1, sendTimeLimit / 4));
+        }else{
+            this.writerExecutor = null;
+            this.sendTimeLimitScheduler = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                final SessionOutbox outbox = new SessionOutbox(session, SessionOutboxRegistry.this);
+                outboxes.put(session.getId(), outbox);
+                super.afterConnectionEstablished(outbox);
+            }
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                super.handleMessage(outboxOrSession(session), message);
+            }
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(outboxOrSession(session), exception);
+            }
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                final SessionOutbox outbox = outboxes.remove(session.getId());
+                super.afterConnectionClosed(outbox == null ? session : outbox, closeStatus);
+            }
+        };
+    }
+
+    private WebSocketSession outboxOrSession(WebSocketSession session) {
+        final SessionOutbox outbox = outboxes.get(session.getId());
+        return outbox == null ? session : outbox;
+    }
+
+    /**
+     * @param sessionId The id of the websocket session
+     * @return The number of bytes buffered for the session, or zero if the session is not known
+     */
+    public long getBufferedBytes(String sessionId) {
+        final SessionOutbox outbox = outboxes.get(sessionId);
+        return outbox == null ? 0 : outbox.getBufferedBytes();
+    }
+
+    public long getTotalBufferedBytes() {
+        long total = 0;
+        for (SessionOutbox outbox : outboxes.values()) {
+            total += outbox.getBufferedBytes();
+        }
+        return total;
+    }
+
+    public int getSessionCount() {
+        return outboxes.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getConflatedCount() {
+        return conflated.sum();
+    }
+
+    public long getDisconnectedCount() {
+        return disconnected.sum();
+    }
+
+    /**
+     * @param destination The destination of a message
+     * @return {@code true} if pending messages to the destination are replaced by newer messages
+     * @see OverflowPolicy#CONFLATE
+     */
+    public boolean isConflated(String destination) {
+        return enabled && getOverflowPolicy(destination) == OverflowPolicy.CONFLATE;
+    }
+
+    /**
+     * @param destination The destination of a message
+     * @return The policy of the longest matching destination prefix, otherwise the default
+     * policy, otherwise {@link OverflowPolicy#DISCONNECT} as spring would
+     */
+    OverflowPolicy getOverflowPolicy(String destination) {
+        for (int i = 0; i < destinationPrefixes.length; i++) {
+            if (destination.startsWith(destinationPrefixes[i])) {
+                return overflowPolicies[i];
+            }
+        }
+        return defaultOverflowPolicy == null ? OverflowPolicy.DISCONNECT : defaultOverflowPolicy;
+    }
+
+    int getSendTimeLimit() {
+        return sendTimeLimit;
+    }
+
+    /**
+     * Disconnects sessions whose write in progress has exceeded the send time limit.
+     * Closing the session fails the blocked write, freeing its writer thread.
+     */
+    void enforceSendTimeLimit() {
+        final long now = System.currentTimeMillis();
+        for (SessionOutbox outbox : outboxes.values()) {
+            outbox.checkSendTimeLimit(now);
+        }
+    }
+
+    int getSendBufferSizeLimit() {
+        return sendBufferSizeLimit;
+    }
+
+    void execute(Runnable task) {
+        writerExecutor.execute(task);
+    }
+
+    void onDropped(int count) {
+        dropped.add(count);
+    }
+
+    void onConflated() {
+        conflated.increment();
+    }
+
+    void onDisconnected() {
+        disconnected.increment();
+    }
+
+    @Override
+    public void destroy() {
+        if (sendTimeLimitScheduler != null) {
+            sendTimeLimitScheduler.shutdown();
+        }
+        if (writerExecutor != null) {
+            writerExecutor.shutdown();
+        }
+    }
+}
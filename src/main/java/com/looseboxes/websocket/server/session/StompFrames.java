@@ -0,0 +1,118 @@
+package com.looseboxes.websocket.server.session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+/**
+ * Reads headers of encoded STOMP MESSAGE frames, without decoding the whole frame.
+ * @author chinomso ikwuagwu
+ */
+final class StompFrames {
+
+    private static final String MESSAGE_COMMAND = "MESSAGE\n";
+
+    private StompFrames() { }
+
+    /**
+     * Matches the header in place, so that only its value is copied.
+     * @param message The encoded STOMP frame
+     * @param name The name of the header to return
+     * @return The value of the first header with the given name, if the frame is a
+     * MESSAGE frame having the header, otherwise {@code null}
+     */
+    @Nullable
+    static String header(WebSocketMessage<?> message, String name) {
+        if (message instanceof TextMessage) {
+            return header(((TextMessage)message).getPayload(), name);
+        }
+        if (message instanceof BinaryMessage) {
+            return header(((BinaryMessage)message).getPayload(), name);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String header(String frame, String name) {
+        if (!frame.startsWith(MESSAGE_COMMAND)) {
+            return null;
+        }
+        final int length = frame.length();
+        int from = MESSAGE_COMMAND.length();
+        // Each header line, up to the blank line ending the header section
+        while (from < length && frame.charAt(from) != '\n') {
+            int end = frame.indexOf('\n', from);
+            if (end == -1) {
+                end = length;
+            }
+            if (end - from > name.length() && frame.charAt(from + name.length()) == ':' && frame.startsWith(name, from)) {
+                return unescape(frame.substring(from + name.length() + 1, end));
+            }
+            from = end + 1;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String header(ByteBuffer frame, String name) {
+        final int limit = frame.limit();
+        if (!startsWith(frame, frame.position(), MESSAGE_COMMAND)) {
+            return null;
+        }
+        int from = frame.position() + MESSAGE_COMMAND.length();
+        // Each header line, up to the blank line ending the header section
+        while (from < limit && frame.get(from) != '\n') {
+            int end = from;
+            while (end < limit && frame.get(end) != '\n') {
+                ++end;
+            }
+            if (end - from > name.length() && frame.get(from + name.length()) == ':' && startsWith(frame, from, name)) {
+                final int valueFrom = from + name.length() + 1;
+                final byte[] value = new byte[end - valueFrom];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = frame.get(valueFrom + i);
+                }
+                return unescape(new String(value, StandardCharsets.UTF_8));
+            }
+            from = end + 1;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(ByteBuffer frame, int from, String prefix) {
+        if (frame.limit() - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (frame.get(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+        final StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                final char next = value.charAt(++i);
+                switch (next) {
+                    case 'c': builder.append(':'); break;
+                    case 'n': builder.append('\n'); break;
+                    case 'r': builder.append('\r'); break;
+                    default: builder.append(next);
+                }
+            }else{
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
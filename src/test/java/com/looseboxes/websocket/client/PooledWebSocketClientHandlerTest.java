@@ -0,0 +1,165 @@
+package com.looseboxes.websocket.client;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.ConnectionLostException;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class PooledWebSocketClientHandlerTest {
+
+    private static final int SESSIONS = 3;
+
+    private static final List<String> DESTINATIONS = IntStream.range(0, 30)
+            .mapToObj(i -> "/topic/" + i).collect(Collectors.toList());
+
+    private final TestStompClient client = new TestStompClient();
+
+    private final PooledWebSocketClientHandler pool = new PooledWebSocketClientHandler(client, SESSIONS);
+
+    private final TestStompSession[] sessions = new TestStompSession[SESSIONS];
+
+    private final StompFrameHandler frameHandler = new StompFrameHandler() {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return String.class;
+        }
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) { }
+    };
+
+    @Test
+    public void subscribeIfNotAlready_givenAllConnected_shouldSubscribeOnTheSessionTheHashSelects() {
+        connect(0, 1, 2);
+
+        subscribeAll();
+
+        for (int i = 0; i < SESSIONS; i++) {
+            assertFalse(destinationsSelecting(i).isEmpty());
+            assertEquals(destinationsSelecting(i), sessions[i].getDestinations("SUBSCRIBE"));
+        }
+        for (String destination : DESTINATIONS) {
+            assertEquals(selected(destination), pool.getSessionIndex(destination));
+            assertTrue(pool.isSubscribed(destination));
+        }
+        assertEquals(DESTINATIONS.size(), pool.getSubscriptions().size());
+        // Subscribed once only
+        assertFalse(pool.subscribeIfNotAlready(DESTINATIONS.get(0), frameHandler));
+    }
+
+    @Test
+    public void subscribeIfNotAlready_givenSelectedSessionNotConnected_shouldFallBackToTheNextConnected() {
+        connect(0, 1);
+
+        subscribeAll();
+
+        final List<String> expectedOnSession0 = new ArrayList<>(destinationsSelecting(0));
+        expectedOnSession0.addAll(destinationsSelecting(2));
+        assertEquals(sorted(expectedOnSession0), sorted(sessions[0].getDestinations("SUBSCRIBE")));
+        assertEquals(destinationsSelecting(1), sessions[1].getDestinations("SUBSCRIBE"));
+        for (String destination : destinationsSelecting(2)) {
+            assertEquals(0, pool.getSessionIndex(destination));
+        }
+    }
+
+    @Test
+    public void subscribeIfNotAlready_givenNoneConnected_shouldSubscribeOnceASessionConnects() {
+        for (String destination : DESTINATIONS) {
+            assertFalse(pool.subscribeIfNotAlready(destination, frameHandler));
+            assertNull(pool.getSessionIndex(destination));
+        }
+
+        connect(1);
+
+        assertEquals(sorted(DESTINATIONS), sorted(sessions[1].getDestinations("SUBSCRIBE")));
+        for (String destination : DESTINATIONS) {
+            assertEquals(1, pool.getSessionIndex(destination));
+        }
+    }
+
+    @Test
+    public void handleTransportError_givenSessionDropped_shouldMoveItsDestinationsToTheNextConnected() {
+        connect(0, 1, 2);
+        subscribeAll();
+
+        drop(1);
+
+        assertFalse(pool.getSessionHandlers().get(1).isConnected());
+        assertTrue(pool.getSessionHandlers().get(1).getSubscriptions().isEmpty());
+        final List<String> moved = destinationsSelecting(1);
+        final List<String> expectedOnSession2 = new ArrayList<>(destinationsSelecting(2));
+        expectedOnSession2.addAll(moved);
+        assertEquals(expectedOnSession2, sessions[2].getDestinations("SUBSCRIBE"));
+        for (String destination : moved) {
+            assertEquals(2, pool.getSessionIndex(destination));
+        }
+        // Destinations on the sessions still connected were not moved
+        assertEquals(destinationsSelecting(0), sessions[0].getDestinations("SUBSCRIBE"));
+        assertTrue(sessions[0].getDestinations("UNSUBSCRIBE").isEmpty());
+        assertTrue(sessions[2].getDestinations("UNSUBSCRIBE").isEmpty());
+        assertEquals(DESTINATIONS.size(), pool.getSubscriptions().size());
+    }
+
+    @Test
+    public void afterConnected_givenDroppedSessionReconnected_shouldMoveItsDestinationsBack() {
+        connect(0, 1, 2);
+        subscribeAll();
+        drop(1);
+
+        // Reconnected over a new connection
+        final TestStompSession reconnected = new TestStompSession("session-1b");
+        pool.getSessionHandlers().get(1).afterConnected(reconnected, new StompHeaders());
+
+        final List<String> movedBack = destinationsSelecting(1);
+        assertEquals(movedBack, reconnected.getDestinations("SUBSCRIBE"));
+        assertEquals(movedBack, sessions[2].getDestinations("UNSUBSCRIBE"));
+        for (String destination : DESTINATIONS) {
+            assertEquals(selected(destination), pool.getSessionIndex(destination));
+        }
+        assertEquals(sorted(destinationsSelecting(2)), sorted(pool.getSessionHandlers().get(2).getSubscriptions().keySet()));
+        assertEquals(sorted(movedBack), sorted(pool.getSessionHandlers().get(1).getSubscriptions().keySet()));
+    }
+
+    private void connect(int... indices) {
+        pool.connect("ws://localhost/stomp");
+        // One attempt per session, in order
+        for (int index : indices) {
+            sessions[index] = new TestStompSession("session-" + index);
+            client.getAttempt(index).connected(sessions[index]);
+        }
+    }
+
+    private void drop(int index) {
+        sessions[index].setConnected(false);
+        pool.getSessionHandlers().get(index).handleTransportError(sessions[index], new ConnectionLostException("Expected"));
+    }
+
+    private void subscribeAll() {
+        DESTINATIONS.forEach(destination -> assertTrue(pool.subscribeIfNotAlready(destination, frameHandler)));
+    }
+
+    private static int selected(String destination) {
+        return Math.floorMod(destination.hashCode(), SESSIONS);
+    }
+
+    private static List<String> destinationsSelecting(int index) {
+        return DESTINATIONS.stream().filter(destination -> selected(destination) == index).collect(Collectors.toList());
+    }
+
+    private static List<String> sorted(Collection<String> destinations) {
+        return destinations.stream().sorted().collect(Collectors.toList());
+    }
+}
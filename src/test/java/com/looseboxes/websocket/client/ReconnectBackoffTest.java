@@ -0,0 +1,59 @@
+package com.looseboxes.websocket.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class ReconnectBackoffTest {
+
+    @Test
+    public void getDelay_shouldStayWithinTheCeilingOfEachAttempt() {
+        final ReconnectBackoff backoff = new ReconnectBackoff(100, 1000, 2.0, 0);
+        final long[] ceilings = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= ceilings.length; attempt++) {
+            for (int i = 0; i < 1000; i++) {
+                final long delay = backoff.getDelay(attempt);
+                assertTrue(delay >= 0 && delay <= ceilings[attempt - 1], "Attempt: " + attempt + ", delay: " + delay);
+            }
+        }
+        // Large attempts neither overflow nor exceed the maximum
+        final long delay = backoff.getDelay(Integer.MAX_VALUE);
+        assertTrue(delay >= 0 && delay <= 1000);
+    }
+
+    @Test
+    public void getDelay_shouldSpreadDelaysFromZeroToTheCeiling() {
+        final ReconnectBackoff backoff = new ReconnectBackoff(1000, 1000, 1.0, 0);
+        boolean low = false, high = false;
+        for (int i = 0; i < 1000 && !(low && high); i++) {
+            final long delay = backoff.getDelay(1);
+            low |= delay < 250;
+            high |= delay > 750;
+        }
+        assertTrue(low && high);
+    }
+
+    @Test
+    public void isAttemptAllowed_shouldAllowUpToMaxAttempts() {
+        final ReconnectBackoff limited = new ReconnectBackoff(100, 1000, 2.0, 3);
+        assertTrue(limited.isAttemptAllowed(1));
+        assertTrue(limited.isAttemptAllowed(3));
+        assertFalse(limited.isAttemptAllowed(4));
+
+        final ReconnectBackoff unlimited = new ReconnectBackoff();
+        assertTrue(unlimited.isAttemptAllowed(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void constructor_givenInvalidArguments_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectBackoff(-1, 1000, 2.0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectBackoff(1000, 100, 2.0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectBackoff(100, 1000, 0.5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ReconnectBackoff(100, 1000, 2.0, -1));
+    }
+}
@@ -0,0 +1,83 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.client.metrics.WebsocketClientMetrics;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class SequenceTrackingStompFrameHandlerTest {
+
+    private final List<Object> handled = new ArrayList<>();
+
+    private final List<Long> gaps = new ArrayList<>();
+
+    private final ConcurrentMap<String, Long> lastSequences = new ConcurrentHashMap<>();
+
+    private final StompFrameHandler handler = new SequenceTrackingStompFrameHandler("/topic/abc", new StompFrameHandler() {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return String.class;
+        }
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            handled.add(payload);
+        }
+    }, lastSequences, new WebsocketClientMetrics() {
+        @Override
+        public void onSequenceGap(String destination, long missed) {
+            gaps.add(missed);
+        }
+    });
+
+    @Test
+    public void handleFrame_givenFramesInOrder_shouldTrackTheLastSequenceAndCountGaps() {
+        receive("1", "2", "5", null, "x", "6");
+
+        assertEquals(Arrays.asList("1", "2", "5", null, "x", "6"), handled);
+        assertEquals(6L, lastSequences.get("/topic/abc"));
+        assertEquals(Collections.singletonList(2L), gaps);
+    }
+
+    @Test
+    public void handleFrame_givenFramesOutOfOrder_shouldNotMoveTheLastSequenceBack() {
+        receive("1", "4", "2", "3", "5");
+
+        assertEquals(Arrays.asList("1", "4", "2", "3", "5"), handled);
+        assertEquals(5L, lastSequences.get("/topic/abc"));
+        // Only 2 and 3 were missed, when 4 arrived. Their late arrival, and 5 after 4, are not gaps.
+        assertEquals(Collections.singletonList(2L), gaps);
+    }
+
+    @Test
+    public void handleFrame_givenFrameOlderThanTheLastSequence_shouldKeepTheLastSequence() {
+        lastSequences.put("/topic/abc", 10L);
+
+        receive("7", "11");
+
+        assertEquals(11L, lastSequences.get("/topic/abc"));
+        assertEquals(Collections.emptyList(), gaps);
+    }
+
+    private void receive(String... sequences) {
+        for (String sequence : sequences) {
+            final StompHeaders headers = new StompHeaders();
+            if (sequence != null) {
+                headers.set(WebsocketHeaders.SEQUENCE, sequence);
+            }
+            handler.handleFrame(headers, sequence);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.looseboxes.websocket.client;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class StompFrameDispatcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    /**
+     * Records the payloads it handles. Handling the first frame waits until released.
+     */
+    private static final class RecordingHandler implements StompFrameHandler {
+
+        private final List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released;
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile int maxActive;
+
+        private RecordingHandler(boolean blockFirst) {
+            this.released = new CountDownLatch(blockFirst ? 1 : 0);
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return String.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            maxActive = Math.max(maxActive, active.incrementAndGet());
+            started.countDown();
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(payload);
+            active.decrementAndGet();
+        }
+
+        private void awaitStarted() throws InterruptedException {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+
+        private void release() {
+            released.countDown();
+        }
+
+        private List<Object> awaitHandled(int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (handled.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // Any more would have been handled by now
+            Thread.sleep(50);
+            synchronized (handled) {
+                return new ArrayList<>(handled);
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void handleFrame_givenOneDestination_shouldHandleFramesOneAtATimeInOrder() throws Exception {
+        final StompFrameDispatcher dispatcher = new StompFrameDispatcher(executor, 1000, DispatchOverflowPolicy.BLOCK);
+        final RecordingHandler handler = new RecordingHandler(false);
+        final StompFrameHandler dispatching = dispatcher.dispatching("/topic/abc", handler);
+
+        final List<Object> sent = IntStream.range(0, 500).mapToObj(String::valueOf).collect(Collectors.toList());
+        sent.forEach(payload -> dispatching.handleFrame(new StompHeaders(), payload));
+
+        assertEquals(sent, handler.awaitHandled(sent.size()));
+        assertEquals(1, handler.maxActive);
+        assertEquals(0, dispatcher.getQueuedCount());
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void handleFrame_givenSlowDestination_shouldStillHandleOtherDestinations() throws Exception {
+        final StompFrameDispatcher dispatcher = new StompFrameDispatcher(executor, 10, DispatchOverflowPolicy.BLOCK);
+        final RecordingHandler slow = new RecordingHandler(true);
+        final RecordingHandler fast = new RecordingHandler(false);
+        final StompFrameHandler slowDispatching = dispatcher.dispatching("/topic/slow", slow);
+        final StompFrameHandler fastDispatching = dispatcher.dispatching("/topic/fast", fast);
+
+        slowDispatching.handleFrame(new StompHeaders(), "s0");
+        slow.awaitStarted();
+        slowDispatching.handleFrame(new StompHeaders(), "s1");
+        fastDispatching.handleFrame(new StompHeaders(), "f0");
+        fastDispatching.handleFrame(new StompHeaders(), "f1");
+
+        assertEquals(Arrays.asList("f0", "f1"), fast.awaitHandled(2));
+        assertEquals(Collections.emptyList(), slow.handled);
+        assertEquals(1, dispatcher.getQueueDepth("/topic/slow"));
+        assertEquals(1, dispatcher.getMaxQueueDepth());
+
+        slow.release();
+
+        assertEquals(Arrays.asList("s0", "s1"), slow.awaitHandled(2));
+    }
+
+    @Test
+    public void handleFrame_givenDropNewestAndQueueFull_shouldDiscardTheFrame() throws Exception {
+        final List<Object> handled = overflow(DispatchOverflowPolicy.DROP_NEWEST);
+        assertEquals(Arrays.asList("0", "1", "2"), handled);
+    }
+
+    @Test
+    public void handleFrame_givenDropOldestAndQueueFull_shouldDiscardTheOldestQueuedFrame() throws Exception {
+        final List<Object> handled = overflow(DispatchOverflowPolicy.DROP_OLDEST);
+        assertEquals(Arrays.asList("0", "3", "4"), handled);
+    }
+
+    /**
+     * While the first of 5 frames is being handled, the other 4 are received by a queue of capacity 2
+     * @return The frames handled
+     */
+    private List<Object> overflow(DispatchOverflowPolicy overflowPolicy) throws InterruptedException {
+        final StompFrameDispatcher dispatcher = new StompFrameDispatcher(executor, 2, overflowPolicy);
+        final RecordingHandler handler = new RecordingHandler(true);
+        final StompFrameHandler dispatching = dispatcher.dispatching("/topic/abc", handler);
+
+        dispatching.handleFrame(new StompHeaders(), "0");
+        handler.awaitStarted();
+        for (int i = 1; i < 5; i++) {
+            dispatching.handleFrame(new StompHeaders(), String.valueOf(i));
+        }
+
+        assertEquals(2, dispatcher.getQueuedCount());
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        handler.release();
+
+        final List<Object> handled = handler.awaitHandled(3);
+        assertEquals(0, dispatcher.getQueuedCount());
+        assertEquals(2, dispatcher.getDroppedCount());
+        return handled;
+    }
+
+    @Test
+    public void handleFrame_givenBlockAndQueueFull_shouldWaitForRoom() throws Exception {
+        final StompFrameDispatcher dispatcher = new StompFrameDispatcher(executor, 1, DispatchOverflowPolicy.BLOCK);
+        final RecordingHandler handler = new RecordingHandler(true);
+        final StompFrameHandler dispatching = dispatcher.dispatching("/topic/abc", handler);
+
+        dispatching.handleFrame(new StompHeaders(), "0");
+        handler.awaitStarted();
+        dispatching.handleFrame(new StompHeaders(), "1");
+
+        final Thread reader = new Thread(() -> dispatching.handleFrame(new StompHeaders(), "2"));
+        reader.start();
+        reader.join(200);
+        assertTrue(reader.isAlive());
+
+        handler.release();
+
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertEquals(Arrays.asList("0", "1", "2"), handler.awaitHandled(3));
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void destroy_givenReaderBlockedOnAFullQueue_shouldReleaseIt() throws Exception {
+        final StompFrameDispatcher dispatcher = new StompFrameDispatcher(2, 1, DispatchOverflowPolicy.BLOCK);
+        final RecordingHandler handler = new RecordingHandler(true);
+        final StompFrameHandler dispatching = dispatcher.dispatching("/topic/abc", handler);
+
+        dispatching.handleFrame(new StompHeaders(), "0");
+        handler.awaitStarted();
+        dispatching.handleFrame(new StompHeaders(), "1");
+
+        final Thread reader = new Thread(() -> dispatching.handleFrame(new StompHeaders(), "2"));
+        reader.start();
+        reader.join(200);
+        assertTrue(reader.isAlive());
+
+        dispatcher.destroy();
+
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        // Frames received once closed are dropped too
+        dispatching.handleFrame(new StompHeaders(), "3");
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        handler.release();
+    }
+}
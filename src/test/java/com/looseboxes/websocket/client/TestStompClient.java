@@ -0,0 +1,80 @@
+package com.looseboxes.websocket.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandler;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+/**
+ * Records each attempt to connect, instead of connecting, for the test to complete.
+ * @author chinomso ikwuagwu
+ */
+class TestStompClient extends WebSocketStompClient {
+
+    static final class Attempt {
+
+        private final StompSessionHandler handler;
+        private final SettableListenableFuture<StompSession> future = new SettableListenableFuture<>();
+
+        private Attempt(StompSessionHandler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * As if the session was connected
+         */
+        void connected(StompSession session) {
+            handler.afterConnected(session, new StompHeaders());
+            future.set(session);
+        }
+
+        /**
+         * As if connecting failed
+         */
+        void failed() {
+            future.setException(new IllegalStateException("Connection refused"));
+        }
+    }
+
+    private final List<Attempt> attempts = new ArrayList<>();
+
+    TestStompClient() {
+        super(new WebSocketClient() {
+            @Override
+            public ListenableFuture<WebSocketSession> doHandshake(WebSocketHandler handler, String uriTemplate, Object... uriVariables) {
+                throw new UnsupportedOperationException();
+            }
+            @Override
+            public ListenableFuture<WebSocketSession> doHandshake(WebSocketHandler handler, @Nullable WebSocketHttpHeaders headers, URI uri) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @Override
+    public synchronized ListenableFuture<StompSession> connect(String url, @Nullable WebSocketHttpHeaders handshakeHeaders,
+                                                               @Nullable StompHeaders connectHeaders, StompSessionHandler handler,
+                                                               Object... uriVariables) {
+        final Attempt attempt = new Attempt(handler);
+        attempts.add(attempt);
+        return attempt.future;
+    }
+
+    synchronized int getAttemptCount() {
+        return attempts.size();
+    }
+
+    synchronized Attempt getAttempt(int index) {
+        return attempts.get(index);
+    }
+}
@@ -0,0 +1,203 @@
+package com.looseboxes.websocket.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+/**
+ * Records the frames sent with it, instead of writing them to a connection.
+ * @author chinomso ikwuagwu
+ */
+class TestStompSession implements StompSession {
+
+    final class Frame implements StompSession.Subscription {
+
+        private final String command;
+        private final StompHeaders headers;
+        private final Object payload;
+        private final StompFrameHandler handler;
+        private final List<Runnable> receiptTasks = new ArrayList<>();
+        private final List<Runnable> receiptLostTasks = new ArrayList<>();
+
+        private Frame(String command, StompHeaders headers, Object payload, StompFrameHandler handler) {
+            this.command = command;
+            this.headers = headers;
+            this.payload = payload;
+            this.handler = handler;
+        }
+
+        String getCommand() {
+            return command;
+        }
+
+        StompHeaders getHeaders() {
+            return headers;
+        }
+
+        Object getPayload() {
+            return payload;
+        }
+
+        StompFrameHandler getHandler() {
+            return handler;
+        }
+
+        /**
+         * As if the receipt for this frame was received
+         */
+        void receipt() {
+            receiptTasks.forEach(Runnable::run);
+        }
+
+        /**
+         * As if the receipt for this frame was not received in time
+         */
+        void loseReceipt() {
+            receiptLostTasks.forEach(Runnable::run);
+        }
+
+        @Override
+        public String getReceiptId() {
+            return headers.getReceipt();
+        }
+
+        @Override
+        public void addReceiptTask(Runnable runnable) {
+            receiptTasks.add(runnable);
+        }
+
+        @Override
+        public void addReceiptLostTask(Runnable runnable) {
+            receiptLostTasks.add(runnable);
+        }
+
+        @Override
+        public String getSubscriptionId() {
+            return headers.getId();
+        }
+
+        @Override
+        public StompHeaders getSubscriptionHeaders() {
+            return headers;
+        }
+
+        @Override
+        public void unsubscribe() {
+            unsubscribe(null);
+        }
+
+        @Override
+        public void unsubscribe(StompHeaders headers) {
+            final StompHeaders unsubscribeHeaders = new StompHeaders();
+            unsubscribeHeaders.setId(getSubscriptionId());
+            // Destination not sent, but recorded to tell subscriptions apart
+            unsubscribeHeaders.setDestination(this.headers.getDestination());
+            add("UNSUBSCRIBE", unsubscribeHeaders, null, null);
+        }
+    }
+
+    private final String sessionId;
+
+    private volatile boolean connected = true;
+
+    private final List<Frame> frames = new ArrayList<>();
+
+    private int subscriptionIds;
+
+    TestStompSession(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @param command e.g {@code SEND} or {@code SUBSCRIBE}
+     * @return The frames with the command, in the order they were sent
+     */
+    synchronized List<Frame> getFrames(String command) {
+        return frames.stream().filter(frame -> frame.command.equals(command)).collect(Collectors.toList());
+    }
+
+    /**
+     * @return The destinations of the frames with the command, in the order they were sent
+     */
+    List<String> getDestinations(String command) {
+        return getFrames(command).stream().map(frame -> frame.headers.getDestination()).collect(Collectors.toList());
+    }
+
+    void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    @Override
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void setAutoReceipt(boolean enabled) { }
+
+    @Override
+    public Receiptable send(String destination, Object payload) {
+        final StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        return send(headers, payload);
+    }
+
+    @Override
+    public Receiptable send(StompHeaders headers, Object payload) {
+        return add("SEND", headers, payload, null);
+    }
+
+    @Override
+    public Subscription subscribe(String destination, StompFrameHandler handler) {
+        final StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        return subscribe(headers, handler);
+    }
+
+    @Override
+    public synchronized Subscription subscribe(StompHeaders headers, StompFrameHandler handler) {
+        if (headers.getId() == null) {
+            headers.setId(String.valueOf(subscriptionIds++));
+        }
+        return add("SUBSCRIBE", headers, null, handler);
+    }
+
+    @Override
+    public Receiptable acknowledge(String messageId, boolean consumed) {
+        final StompHeaders headers = new StompHeaders();
+        headers.setId(messageId);
+        return acknowledge(headers, consumed);
+    }
+
+    @Override
+    public Receiptable acknowledge(StompHeaders headers, boolean consumed) {
+        return add(consumed ? "ACK" : "NACK", headers, null, null);
+    }
+
+    @Override
+    public void disconnect() {
+        disconnect(null);
+    }
+
+    @Override
+    public void disconnect(StompHeaders headers) {
+        connected = false;
+    }
+
+    private synchronized Frame add(String command, StompHeaders headers, Object payload, StompFrameHandler handler) {
+        if (!connected) {
+            throw new IllegalStateException("Connection closed");
+        }
+        final Frame frame = new Frame(command, headers, payload, handler);
+        frames.add(frame);
+        return frame;
+    }
+}
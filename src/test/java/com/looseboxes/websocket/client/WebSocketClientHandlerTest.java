@@ -0,0 +1,147 @@
+package com.looseboxes.websocket.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.ConnectionLostException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebSocketClientHandlerTest {
+
+    private static final String URL = "ws://localhost/stomp";
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private final TestStompClient client = new TestStompClient();
+
+    private final WebSocketClientHandler handler = new WebSocketClientHandler(client);
+
+    @BeforeEach
+    public void setUp() {
+        taskScheduler.initialize();
+        client.setTaskScheduler(taskScheduler);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void connect_givenFirstAttemptFails_shouldRetry() throws Exception {
+        handler.setReconnectBackoff(new ReconnectBackoff(0, 0, 1.0, 0));
+
+        handler.connect(URL);
+        client.getAttempt(0).failed();
+
+        awaitAttempts(2);
+        assertFalse(handler.isConnected());
+
+        final TestStompSession session = new TestStompSession("s1");
+        client.getAttempt(1).connected(session);
+
+        assertTrue(handler.isConnected());
+        assertFalse(handler.isConnecting());
+    }
+
+    @Test
+    public void connect_givenEveryAttemptFails_shouldGiveUpAfterMaxAttempts() throws Exception {
+        handler.setReconnectBackoff(new ReconnectBackoff(0, 0, 1.0, 2));
+
+        handler.connect(URL);
+        client.getAttempt(0).failed();
+        awaitAttempts(2);
+        client.getAttempt(1).failed();
+        awaitAttempts(3);
+        client.getAttempt(2).failed();
+
+        // The first attempt, and 2 more
+        Thread.sleep(200);
+        assertEquals(3, client.getAttemptCount());
+    }
+
+    @Test
+    public void connect_givenNoBackoff_shouldNotRetry() throws Exception {
+        handler.setReconnectBackoff(null);
+
+        handler.connect(URL);
+        client.getAttempt(0).failed();
+
+        Thread.sleep(200);
+        assertEquals(1, client.getAttemptCount());
+    }
+
+    @Test
+    public void handleTransportError_givenLossReportedMoreThanOnce_shouldReconnectOnce() throws Exception {
+        handler.setReconnectBackoff(new ReconnectBackoff(0, 0, 1.0, 0));
+        final TestStompSession session = connect();
+
+        session.setConnected(false);
+        handler.handleTransportError(session, new ConnectionLostException("Expected"));
+        handler.handleTransportError(session, new ConnectionLostException("Expected"));
+
+        awaitAttempts(2);
+        Thread.sleep(200);
+        assertEquals(2, client.getAttemptCount());
+
+        final TestStompSession reconnected = new TestStompSession("s2");
+        client.getAttempt(1).connected(reconnected);
+        assertTrue(handler.isConnected());
+
+        // Reported late, for the session already replaced
+        handler.handleTransportError(session, new ConnectionLostException("Expected"));
+        Thread.sleep(200);
+        assertEquals(2, client.getAttemptCount());
+
+        // Lost again
+        reconnected.setConnected(false);
+        handler.handleTransportError(reconnected, new ConnectionLostException("Expected"));
+        awaitAttempts(3);
+    }
+
+    @Test
+    public void disconnect_givenReconnectPending_shouldCancelIt() throws Exception {
+        final AtomicInteger delays = new AtomicInteger();
+        handler.setReconnectBackoff(new ReconnectBackoff() {
+            @Override
+            public long getDelay(int attempt) {
+                delays.incrementAndGet();
+                return 300;
+            }
+        });
+        final TestStompSession session = connect();
+
+        session.setConnected(false);
+        handler.handleTransportError(session, new ConnectionLostException("Expected"));
+        assertEquals(1, delays.get());
+
+        handler.disconnect();
+
+        Thread.sleep(600);
+        assertEquals(1, client.getAttemptCount());
+    }
+
+    private TestStompSession connect() {
+        handler.connect(URL);
+        final TestStompSession session = new TestStompSession("s1");
+        client.getAttempt(0).connected(session);
+        assertTrue(handler.isConnected());
+        return session;
+    }
+
+    private void awaitAttempts(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (client.getAttemptCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, client.getAttemptCount());
+    }
+}
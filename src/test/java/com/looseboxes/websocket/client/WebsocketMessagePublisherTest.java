@@ -0,0 +1,183 @@
+package com.looseboxes.websocket.client;
+
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessagePublisherTest {
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private final TestStompSession session = new TestStompSession("s1");
+
+    @BeforeEach
+    public void setUp() {
+        taskScheduler.initialize();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void publish_givenWindowFull_shouldRejectAtOnceUntilAReceiptArrives() throws Exception {
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(taskScheduler, 2, 0, 1, 0);
+
+        final CompletableFuture<Void> first = publisher.publish(session, "/messaging/send/abc", message(1));
+        final CompletableFuture<Void> second = publisher.publish(session, "/messaging/send/abc", message(2));
+        final CompletableFuture<Void> rejected = publisher.publish(session, "/messaging/send/abc", message(3));
+
+        assertEquals(2, publisher.getInFlightCount());
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(0, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        assertEquals(2, session.getFrames("SEND").size());
+
+        session.getFrames("SEND").get(0).receipt();
+
+        assertNull(first.get(0, TimeUnit.SECONDS));
+        assertEquals(1, publisher.getInFlightCount());
+        assertFalse(publisher.publish(session, "/messaging/send/abc", message(4)).isDone());
+        assertEquals(2, publisher.getInFlightCount());
+    }
+
+    @Test
+    public void publish_givenMaxBlock_shouldWaitForRoomInTheWindow() throws Exception {
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(taskScheduler, 1, 5000, 1, 0);
+        publisher.publish(session, "/messaging/send/abc", message(1));
+
+        taskScheduler.execute(() -> {
+            sleep(200);
+            session.getFrames("SEND").get(0).receipt();
+        });
+
+        final long startedAt = System.currentTimeMillis();
+        final CompletableFuture<Void> future = publisher.publish(session, "/messaging/send/abc", message(2));
+
+        assertTrue(System.currentTimeMillis() - startedAt >= 150);
+        assertFalse(future.isDone());
+        assertEquals(2, session.getFrames("SEND").size());
+    }
+
+    @Test
+    public void publish_givenReceiptLost_shouldFailTheFutureWithATimeout() {
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(taskScheduler);
+
+        final CompletableFuture<Void> future = publisher.publish(session, "/messaging/send/abc", message(1));
+        final TestStompSession.Frame frame = session.getFrames("SEND").get(0);
+        assertNotNull(frame.getHeaders().getReceipt());
+
+        frame.loseReceipt();
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(0, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof TimeoutException);
+        assertEquals(0, publisher.getInFlightCount());
+    }
+
+    @Test
+    public void publish_givenNoTaskScheduler_shouldCompleteOnceWrittenWithoutRequestingAReceipt() throws Exception {
+        // Batching needs a scheduler to flush, so is disabled
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(null, 10, 0, 10, 1000);
+
+        final CompletableFuture<Void> future = publisher.publish(session, "/messaging/send/abc", message(1));
+
+        assertNull(future.get(0, TimeUnit.SECONDS));
+        assertEquals(0, publisher.getInFlightCount());
+        final TestStompSession.Frame frame = session.getFrames("SEND").get(0);
+        assertEquals("/messaging/send/abc", frame.getHeaders().getDestination());
+        assertNull(frame.getHeaders().getReceipt());
+    }
+
+    @Test
+    public void publish_givenSendFails_shouldFailTheFuture() {
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(taskScheduler);
+        session.setConnected(false);
+
+        final CompletableFuture<Void> future = publisher.publish(session, "/messaging/send/abc", message(1));
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(0, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        assertEquals(0, publisher.getInFlightCount());
+    }
+
+    @Test
+    public void publish_givenBatchSizeReached_shouldSendOneFrameToTheBatchDestination() throws Exception {
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(taskScheduler, 100, 0, 3, 60_000);
+
+        final List<CompletableFuture<Void>> futures = Arrays.asList(
+                publisher.publish(session, "/messaging/send/abc", message(1)),
+                publisher.publish(session, "/messaging/send/abc", message(2)),
+                publisher.publish(session, "/messaging/send/abc", message(3)));
+
+        final List<TestStompSession.Frame> frames = session.getFrames("SEND");
+        assertEquals(1, frames.size());
+        final TestStompSession.Frame frame = frames.get(0);
+        assertEquals("/messaging/send-batch/abc", frame.getHeaders().getDestination());
+        assertEquals("3", frame.getHeaders().getFirst(WebsocketHeaders.BATCH_SIZE));
+        assertEquals(Arrays.asList(message(1), message(2), message(3)), frame.getPayload());
+        futures.forEach(future -> assertFalse(future.isDone()));
+
+        frame.receipt();
+
+        for (CompletableFuture<Void> future : futures) {
+            assertNull(future.get(0, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void publish_givenBatchWindowElapsed_shouldSendWhatWasCollected() throws Exception {
+        final WebsocketMessagePublisher publisher = new WebsocketMessagePublisher(taskScheduler, 100, 0, 10, 100);
+
+        publisher.publish(session, "/messaging/send/abc", message(1));
+        publisher.publish(session, "/messaging/send/abc", message(2));
+        // Not sent to the controller's send endpoint, so not batched
+        publisher.publish(session, "/topic/abc", message(3));
+
+        assertEquals(Collections.singletonList("/topic/abc"), session.getDestinations("SEND"));
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (session.getFrames("SEND").size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(Arrays.asList("/topic/abc", "/messaging/send-batch/abc"), session.getDestinations("SEND"));
+        final TestStompSession.Frame frame = session.getFrames("SEND").get(1);
+        assertEquals("2", frame.getHeaders().getFirst(WebsocketHeaders.BATCH_SIZE));
+        assertEquals(Arrays.asList(message(1), message(2)), frame.getPayload());
+    }
+
+    private static WebsocketMessage<Long, String> message(long id) {
+        return new WebsocketMessage<Long, String>().id(id).content("message " + id);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.looseboxes.websocket.server;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketApplicationDestinationMessageInterceptorChainTest {
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private WebsocketApplicationDestinationMessageInterceptorChain chain;
+
+    @AfterEach
+    public void tearDown() {
+        if (chain != null) {
+            chain.destroy();
+        }
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void intercept_givenMessagesFromOneSession_shouldAcceptThemInOrder() throws Exception {
+        final int count = 500;
+        chain = chain(10_000, 5000, (path, headers, message) -> {
+            // Later messages are faster, so would overtake if not ordered
+            if ((Integer)message.getContent() % 50 == 0) {
+                sleep(5);
+            }
+            return message;
+        });
+        final List<Object> accepted = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(count);
+
+        for (int i = 0; i < count; i++) {
+            chain.intercept("/abc", headers("s1"), new WebsocketMessage<String, Integer>().content(i), message -> {
+                accepted.add(message.getContent());
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, accepted.get(i));
+        }
+    }
+
+    @Test
+    public void intercept_givenInterceptorTimedOut_shouldKeepItPendingUntilItReturns() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        chain = chain(1, 50, (path, headers, message) -> {
+            if ("slow".equals(message.getContent())) {
+                try {
+                    release.await();
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return message;
+        });
+        final BlockingQueue<Object> accepted = new LinkedBlockingQueue<>();
+
+        chain.intercept("/abc", headers("s1"), new WebsocketMessage<String, String>().content("slow"),
+                message -> accepted.add(message.getContent()));
+        // Timed out, but still running, so still pending
+        Thread.sleep(300);
+        chain.intercept("/abc", headers("s2"), new WebsocketMessage<String, String>().content("rejected"),
+                message -> accepted.add(message.getContent()));
+
+        release.countDown();
+        Thread.sleep(100);
+        chain.intercept("/abc", headers("s2"), new WebsocketMessage<String, String>().content("accepted"),
+                message -> accepted.add(message.getContent()));
+
+        assertEquals("accepted", accepted.poll(10, TimeUnit.SECONDS));
+        assertNull(accepted.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private WebsocketApplicationDestinationMessageInterceptorChain chain(
+            int maxPending, long timeout, WebsocketApplicationDestinationMessageInterceptor interceptor) {
+        taskScheduler.initialize();
+        final WebsocketProperties properties = new WebsocketProperties();
+        final WebsocketProperties.Interceptors interceptors = properties.getInterceptors();
+        interceptors.setAsync(true);
+        interceptors.setMaxConcurrency(4);
+        interceptors.setMaxPending(maxPending);
+        interceptors.setTimeout(timeout);
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("interceptor", interceptor);
+        return new WebsocketApplicationDestinationMessageInterceptorChain(properties,
+                beanFactory.getBeanProvider(WebsocketApplicationDestinationMessageInterceptor.class),
+                beanFactory.getBeanProvider(AsyncWebsocketApplicationDestinationMessageInterceptor.class),
+                taskScheduler, beanFactory.getBeanProvider(WebsocketMetrics.class));
+    }
+
+    private static SimpMessageHeaderAccessor headers(String sessionId) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        return accessor;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
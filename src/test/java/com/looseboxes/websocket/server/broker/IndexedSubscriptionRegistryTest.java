@@ -0,0 +1,150 @@
+package com.looseboxes.websocket.server.broker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class IndexedSubscriptionRegistryTest {
+
+    private static final List<String> DESTINATIONS = Arrays.asList(
+            "/topic/prices/abc", "/topic/prices/def", "/topic/prices/abc/bid", "/topic/chat",
+            "/topic/chat/room-1", "/topic/abc", "/topic/abcdef", "/topic/x/y/abc");
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            "/topic/prices/*", "/topic/prices/**", "/topic/*/abc", "/topic/**",
+            "/topic/abc*", "/topic/**/abc", "/topic/chat/room-?", "/topic/*");
+
+    private final IndexedSubscriptionRegistry indexed = new IndexedSubscriptionRegistry();
+
+    private final DefaultSubscriptionRegistry reference = new DefaultSubscriptionRegistry();
+
+    @Test
+    public void findSubscriptions_givenPatternAndExactSubscriptions_shouldFindBoth() {
+        subscribe("s1", "exact", "/topic/prices/abc");
+        subscribe("s1", "pattern", "/topic/prices/*");
+        subscribe("s2", "deep", "/topic/prices/**");
+        subscribe("s2", "other", "/topic/prices/def");
+
+        final Map<String, Set<String>> found = find(indexed, "/topic/prices/abc");
+
+        assertEquals(new HashSet<>(Arrays.asList("exact", "pattern")), found.get("s1"));
+        assertEquals(new HashSet<>(Arrays.asList("deep")), found.get("s2"));
+        assertEquals(find(reference, "/topic/prices/abc"), found);
+        assertEquals(4, indexed.getSubscriptionCount());
+    }
+
+    @Test
+    public void findSubscriptions_givenUnsubscribedAndSessionsUnregistered_shouldMatchDefaultRegistry() {
+        subscribe("s1", "exact", "/topic/prices/abc");
+        subscribe("s1", "pattern", "/topic/prices/*");
+        subscribe("s2", "exact", "/topic/prices/abc");
+        subscribe("s2", "pattern", "/topic/**/abc");
+
+        unsubscribe("s1", "pattern");
+        assertParity();
+        assertEquals(new HashSet<>(Arrays.asList("exact")), find(indexed, "/topic/prices/abc").get("s1"));
+
+        unregisterAll("s2");
+        assertParity();
+        assertNull(find(indexed, "/topic/prices/abc").get("s2"));
+        assertEquals(1, indexed.getSubscriptionCount());
+
+        unsubscribe("s1", "exact");
+        assertParity();
+        assertTrue(find(indexed, "/topic/prices/abc").isEmpty());
+        assertEquals(0, indexed.getSubscriptionCount());
+    }
+
+    @Test
+    public void findSubscriptions_givenRandomOperations_shouldMatchDefaultRegistry() {
+        final Random random = new Random(11);
+        final Map<String, List<String>> subscriptionIdsBySession = new HashMap<>();
+        int nextId = 0;
+
+        for (int i = 0; i < 3000; i++) {
+            final String sessionId = "s" + random.nextInt(8);
+            final List<String> subscriptionIds = subscriptionIdsBySession.computeIfAbsent(sessionId, k -> new ArrayList<>());
+            final int operation = random.nextInt(10);
+            if (operation < 6) {
+                final String destination = random.nextBoolean() ?
+                        DESTINATIONS.get(random.nextInt(DESTINATIONS.size())) :
+                        PATTERNS.get(random.nextInt(PATTERNS.size()));
+                final String subscriptionId = "sub-" + nextId++;
+                subscribe(sessionId, subscriptionId, destination);
+                subscriptionIds.add(subscriptionId);
+            }else if (operation < 9) {
+                if (!subscriptionIds.isEmpty()) {
+                    unsubscribe(sessionId, subscriptionIds.remove(random.nextInt(subscriptionIds.size())));
+                }
+            }else{
+                unregisterAll(sessionId);
+                subscriptionIds.clear();
+            }
+            assertParity();
+        }
+    }
+
+    private void assertParity() {
+        for (String destination : DESTINATIONS) {
+            assertEquals(find(reference, destination), find(indexed, destination), destination);
+        }
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        final Message<?> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        indexed.registerSubscription(message);
+        reference.registerSubscription(message);
+    }
+
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        final Message<?> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        indexed.unregisterSubscription(message);
+        reference.unregisterSubscription(message);
+    }
+
+    private void unregisterAll(String sessionId) {
+        indexed.unregisterAllSubscriptions(sessionId);
+        reference.unregisterAllSubscriptions(sessionId);
+    }
+
+    private static Map<String, Set<String>> find(SubscriptionRegistry registry, String destination) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        final MultiValueMap<String, String> found = registry.findSubscriptions(
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        final Map<String, Set<String>> result = new HashMap<>();
+        found.forEach((sessionId, subscriptionIds) -> {
+            if (!subscriptionIds.isEmpty()) {
+                result.put(sessionId, new HashSet<>(subscriptionIds));
+            }
+        });
+        return result;
+    }
+}
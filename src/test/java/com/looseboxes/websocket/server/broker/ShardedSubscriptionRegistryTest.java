@@ -0,0 +1,274 @@
+package com.looseboxes.websocket.server.broker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class ShardedSubscriptionRegistryTest {
+
+    private static final int SHARDS = 4;
+
+    private ShardedSubscriptionRegistry shards;
+
+    @AfterEach
+    public void tearDown() {
+        if (shards != null) {
+            shards.shutdown();
+        }
+    }
+
+    @Test
+    public void handleMessage_givenMessagesToManyDestinations_shouldSendEachDestinationsInOrder() throws Exception {
+        shards = new ShardedSubscriptionRegistry(SHARDS);
+        final int destinations = 16;
+        final int messagesPerDestination = 500;
+        final Map<String, List<Integer>> received = new HashMap<>();
+        final CountDownLatch done = new CountDownLatch(destinations * messagesPerDestination);
+        final MessageChannel clientOutboundChannel = (message, timeout) -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                return true;
+            }
+            final String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            final int sequence = Integer.parseInt(new String((byte[])message.getPayload(), StandardCharsets.UTF_8));
+            synchronized (received) {
+                received.computeIfAbsent(destination, k -> new ArrayList<>()).add(sequence);
+            }
+            done.countDown();
+            return true;
+        };
+        final ShardedBrokerMessageHandler broker = broker(clientOutboundChannel);
+
+        broker.handleMessage(connect("s1"));
+        for (int d = 0; d < destinations; d++) {
+            broker.handleMessage(subscribe("s1", "sub-" + d, "/topic/item-" + d));
+        }
+        // Interleaved, from two threads, each with its own destinations
+        final CompletableFuture<?>[] senders = new CompletableFuture<?>[2];
+        for (int t = 0; t < senders.length; t++) {
+            final int thread = t;
+            senders[t] = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < messagesPerDestination; i++) {
+                    for (int d = thread; d < destinations; d += senders.length) {
+                        broker.handleMessage(message("/topic/item-" + d, String.valueOf(i)));
+                    }
+                }
+            });
+        }
+        CompletableFuture.allOf(senders).get(10, TimeUnit.SECONDS);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(destinations, received.size());
+        for (Map.Entry<String, List<Integer>> entry : received.entrySet()) {
+            final List<Integer> sequences = entry.getValue();
+            assertEquals(messagesPerDestination, sequences.size(), entry.getKey());
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(i, sequences.get(i).intValue(), entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    public void registerSubscription_givenPattern_shouldMatchDestinationsOfEveryShard() throws Exception {
+        shards = new ShardedSubscriptionRegistry(SHARDS);
+        final Map<Integer, String> destinationByShard = new HashMap<>();
+        for (int i = 0; destinationByShard.size() < SHARDS; i++) {
+            final String destination = "/topic/prices/item-" + i;
+            destinationByShard.putIfAbsent(shards.getShard(destination), destination);
+        }
+
+        shards.registerSubscription(subscribe("s1", "prices", "/topic/prices/*"));
+        shards.registerSubscription(subscribe("s2", "one", destinationByShard.get(0)));
+
+        for (Map.Entry<Integer, String> entry : destinationByShard.entrySet()) {
+            final MultiValueMap<String, String> subscriptions = findSubscriptions(entry.getValue());
+            assertEquals(Collections.singletonList("prices"), subscriptions.get("s1"), "shard " + entry.getKey());
+            assertEquals(entry.getKey() == 0, subscriptions.containsKey("s2"), "shard " + entry.getKey());
+        }
+
+        shards.unregisterSubscription(unsubscribe("s1", "prices"));
+
+        for (String destination : destinationByShard.values()) {
+            assertFalse(findSubscriptions(destination).containsKey("s1"), destination);
+        }
+
+        shards.unregisterAllSubscriptions("s2");
+
+        assertTrue(findSubscriptions(destinationByShard.get(0)).isEmpty());
+    }
+
+    @Test
+    public void handleMessage_givenPatternSubscription_shouldFanOutAcrossShards() throws Exception {
+        shards = new ShardedSubscriptionRegistry(SHARDS);
+        final Set<String> received = Collections.synchronizedSet(new HashSet<>());
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        final int destinations = 32;
+        final CountDownLatch done = new CountDownLatch(destinations);
+        final ShardedBrokerMessageHandler broker = broker((message, timeout) -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                return true;
+            }
+            received.add(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            threads.add(Thread.currentThread().getName().substring(0, "websocketBrokerShard-0".length()));
+            done.countDown();
+            return true;
+        });
+
+        broker.handleMessage(connect("s1"));
+        broker.handleMessage(subscribe("s1", "prices", "/topic/prices/*"));
+        final Set<Integer> shardsSentTo = new HashSet<>();
+        for (int i = 0; i < destinations; i++) {
+            final String destination = "/topic/prices/item-" + i;
+            shardsSentTo.add(shards.getShard(destination));
+            broker.handleMessage(message(destination, "price"));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(destinations, received.size());
+        assertEquals(shardsSentTo.size(), threads.size());
+    }
+
+    @Test
+    public void execute_givenQueueFullAndDropPolicy_shouldDropMessagesButNotSubscriptions() throws Exception {
+        shards = new ShardedSubscriptionRegistry(1, 1, ShardOverflowPolicy.DROP);
+        final CountDownLatch release = blockShard("/topic/a");
+        shards.execute("/topic/a", () -> { });
+
+        shards.execute("/topic/a", () -> { });
+        assertEquals(1, shards.getDroppedCount());
+
+        // Waits for room, rather than being lost
+        final CompletableFuture<?> subscribing = CompletableFuture.runAsync(
+                () -> shards.registerSubscription(subscribe("s1", "sub", "/topic/a")));
+        assertWaiting(subscribing);
+
+        release.countDown();
+        subscribing.get(10, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("sub"), findSubscriptions("/topic/a").get("s1"));
+    }
+
+    @Test
+    public void execute_givenQueueFullAndBlockPolicy_shouldWaitForRoom() throws Exception {
+        shards = new ShardedSubscriptionRegistry(1, 1, ShardOverflowPolicy.BLOCK);
+        final CountDownLatch release = blockShard("/topic/a");
+        shards.execute("/topic/a", () -> { });
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        final CompletableFuture<?> sending = CompletableFuture.runAsync(() -> shards.execute("/topic/a", ran::countDown));
+        assertWaiting(sending);
+
+        release.countDown();
+        sending.get(10, TimeUnit.SECONDS);
+        assertTrue(ran.await(10, TimeUnit.SECONDS));
+        assertEquals(0, shards.getDroppedCount());
+    }
+
+    /**
+     * @return Released to let the shard of the destination run the tasks queued after
+     */
+    private CountDownLatch blockShard(String destination) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        shards.execute(destination, () -> {
+            started.countDown();
+            try {
+                release.await();
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private void assertWaiting(CompletableFuture<?> future) throws InterruptedException, ExecutionException {
+        try {
+            future.get(200, TimeUnit.MILLISECONDS);
+            throw new AssertionError("Did not wait");
+        }catch(TimeoutException expected) {
+            // Still waiting
+        }
+    }
+
+    private MultiValueMap<String, String> findSubscriptions(String destination) throws Exception {
+        final CompletableFuture<MultiValueMap<String, String>> result = new CompletableFuture<>();
+        final Message<?> message = message(destination, "");
+        final Runnable find = () -> {
+            final MultiValueMap<String, String> subscriptions = shards.findSubscriptions(message);
+            // A copy, as the result is only valid on the shard's thread
+            final MultiValueMap<String, String> copy = new LinkedMultiValueMap<>();
+            subscriptions.forEach((session, ids) -> copy.put(session, new ArrayList<>(ids)));
+            result.complete(copy);
+        };
+        // Given the DROP policy, retried until the shard's queue has room
+        final long deadline = System.currentTimeMillis() + 10_000;
+        long dropped = shards.getDroppedCount();
+        shards.execute(destination, find);
+        while (shards.getDroppedCount() > dropped && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            dropped = shards.getDroppedCount();
+            shards.execute(destination, find);
+        }
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    private ShardedBrokerMessageHandler broker(MessageChannel clientOutboundChannel) {
+        final ShardedBrokerMessageHandler broker = new ShardedBrokerMessageHandler(new ExecutorSubscribableChannel(),
+                clientOutboundChannel, new ExecutorSubscribableChannel(), Collections.singletonList("/topic"), shards);
+        broker.start();
+        return broker;
+    }
+
+    private static Message<?> connect(String sessionId) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> subscribe(String sessionId, String subscriptionId, String destination) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> unsubscribe(String sessionId, String subscriptionId) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> message(String destination, String payload) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
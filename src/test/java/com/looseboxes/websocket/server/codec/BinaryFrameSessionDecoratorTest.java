@@ -0,0 +1,95 @@
+package com.looseboxes.websocket.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class BinaryFrameSessionDecoratorTest {
+
+    private final TestWebSocketSession session = new TestWebSocketSession("s1");
+
+    private final BinaryFrameSessionDecorator decorator = new BinaryFrameSessionDecorator(session);
+
+    @Test
+    public void sendMessage_givenBinaryContentType_shouldSendBinaryMessage() throws Exception {
+        final byte[] frame = frame(new ObjectMapper(new CBORFactory()).writeValueAsBytes(Collections.singletonMap("a", 1)),
+                PayloadCodecs.APPLICATION_CBOR);
+
+        decorator.sendMessage(new TextMessage(frame));
+
+        assertEquals(1, session.getSent().size());
+        assertTrue(session.getSent().get(0) instanceof BinaryMessage);
+        final BinaryMessage sent = (BinaryMessage)session.getSent().get(0);
+        final byte[] bytes = new byte[sent.getPayloadLength()];
+        sent.getPayload().get(bytes);
+        assertArrayEquals(frame, bytes);
+    }
+
+    @Test
+    public void sendMessage_givenJsonContentType_shouldSendTextMessage() throws Exception {
+        final TextMessage message = new TextMessage(frame("{\"a\":1}".getBytes(StandardCharsets.UTF_8), MimeTypeUtils.APPLICATION_JSON));
+
+        decorator.sendMessage(message);
+
+        assertSame(message, session.getSent().get(0));
+    }
+
+    @Test
+    public void sendMessage_givenNoContentType_shouldSendTextMessage() throws Exception {
+        final StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setVersion("1.2");
+        final TextMessage message = new TextMessage(new StompEncoder().encode(
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+
+        decorator.sendMessage(message);
+
+        assertSame(message, session.getSent().get(0));
+    }
+
+    @Test
+    public void decorate_givenWebsocketSession_shouldSendBinaryPayloadsInBinaryMessages() throws Exception {
+        final AtomicReference<WebSocketSession> established = new AtomicReference<>();
+        final WebSocketHandler handler = new ContentNegotiationInterceptor().decorate(new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                established.set(session);
+            }
+        });
+
+        handler.afterConnectionEstablished(session);
+        established.get().sendMessage(new TextMessage(frame(new byte[]{(byte)0xa0}, PayloadCodecs.APPLICATION_CBOR)));
+
+        assertTrue(session.getSent().get(0) instanceof BinaryMessage);
+    }
+
+    private static byte[] frame(byte[] payload, MimeType contentType) {
+        final StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/abc");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId("1");
+        accessor.setContentType(contentType);
+        return new StompEncoder().encode(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+}
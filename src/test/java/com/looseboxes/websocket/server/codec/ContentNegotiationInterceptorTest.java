@@ -0,0 +1,139 @@
+package com.looseboxes.websocket.server.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class ContentNegotiationInterceptorTest {
+
+    private static final String JSON = "{\"id\":1,\"content\":\"abc\",\"tags\":[\"x\",\"y\"],\"price\":1.5}";
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    private final ContentNegotiationInterceptor interceptor = new ContentNegotiationInterceptor();
+
+    private final WebSocketHandler handler = interceptor.decorate(new AbstractWebSocketHandler() { });
+
+    @Test
+    public void preSend_givenSessionAcceptingCbor_shouldDeliverJsonAsCbor() throws Exception {
+        connect("s1", "application/cbor");
+
+        final Message<?> result = interceptor.preSend(message("s1", json(), MimeTypeUtils.APPLICATION_JSON), null);
+
+        assertEquals(PayloadCodecs.APPLICATION_CBOR, result.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        assertEquals(jsonMapper.readTree(JSON), cborMapper.readTree((byte[])result.getPayload()));
+        assertEquals("s1", SimpMessageHeaderAccessor.getSessionId(result.getHeaders()));
+    }
+
+    @Test
+    public void preSend_givenSessionWithoutAccept_shouldDeliverJsonUnchanged() throws Exception {
+        connect("s1", null);
+
+        final Message<?> message = message("s1", json(), MimeTypeUtils.APPLICATION_JSON);
+
+        assertSame(message, interceptor.preSend(message, null));
+    }
+
+    @Test
+    public void preSend_givenJsonPreferred_shouldDeliverJsonUnchanged() throws Exception {
+        connect("s1", "application/json, application/cbor");
+
+        final Message<?> message = message("s1", json(), MimeTypeUtils.APPLICATION_JSON);
+
+        assertSame(message, interceptor.preSend(message, null));
+    }
+
+    @Test
+    public void preSend_givenCborToSessionWithoutAccept_shouldDeliverJson() throws Exception {
+        connect("s1", null);
+
+        final byte[] cbor = cborMapper.writeValueAsBytes(jsonMapper.readTree(JSON));
+        final Message<?> result = interceptor.preSend(message("s1", cbor, PayloadCodecs.APPLICATION_CBOR), null);
+
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, result.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        assertEquals(jsonMapper.readTree(JSON), jsonMapper.readTree((byte[])result.getPayload()));
+    }
+
+    @Test
+    public void preSend_givenBroadcastToSessionsAcceptingCbor_shouldReEncodeOnce() throws Exception {
+        connect("s1", "application/cbor");
+        connect("s2", "application/cbor");
+
+        final byte[] payload = json();
+        final Message<?> first = interceptor.preSend(message("s1", payload, MimeTypeUtils.APPLICATION_JSON), null);
+        final Message<?> second = interceptor.preSend(message("s2", payload, MimeTypeUtils.APPLICATION_JSON), null);
+
+        assertSame(first.getPayload(), second.getPayload());
+        assertEquals("s2", SimpMessageHeaderAccessor.getSessionId(second.getHeaders()));
+    }
+
+    @Test
+    public void preSend_givenSessionClosed_shouldForgetWhatItAccepted() throws Exception {
+        final TestWebSocketSession session = connect("s1", "application/cbor");
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        final Message<?> message = message("s1", json(), MimeTypeUtils.APPLICATION_JSON);
+
+        assertSame(message, interceptor.preSend(message, null));
+    }
+
+    @Test
+    public void preSend_givenOtherThanMessage_shouldReturnItUnchanged() throws Exception {
+        connect("s1", "application/cbor");
+
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        accessor.setSessionId("s1");
+        final Message<?> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+        assertSame(message, interceptor.preSend(message, null));
+    }
+
+    private TestWebSocketSession connect(String sessionId, @Nullable String accept) throws Exception {
+        final TestWebSocketSession session = new TestWebSocketSession(sessionId);
+        handler.afterConnectionEstablished(session);
+        final StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setAcceptVersion("1.2");
+        if (accept != null) {
+            accessor.setNativeHeader("accept", accept);
+        }
+        final byte[] frame = new StompEncoder().encode(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        handler.handleMessage(session, new TextMessage(frame));
+        return session;
+    }
+
+    private static byte[] json() {
+        return JSON.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] payload, MimeType contentType) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/abc");
+        accessor.setContentType(contentType);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
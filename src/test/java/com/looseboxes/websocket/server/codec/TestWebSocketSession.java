@@ -0,0 +1,53 @@
+package com.looseboxes.websocket.server.codec;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Records the messages sent to it.
+ * @author chinomso ikwuagwu
+ */
+class TestWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<WebSocketMessage<?>> sent = new ArrayList<>();
+    private volatile boolean open = true;
+
+    TestWebSocketSession(String id) {
+        this.id = id;
+    }
+
+    List<WebSocketMessage<?>> getSent() {
+        return sent;
+    }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return null; }
+    @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return null; }
+    @Override public void setTextMessageSizeLimit(int messageSizeLimit) { }
+    @Override public int getTextMessageSizeLimit() { return 0; }
+    @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) { }
+    @Override public int getBinaryMessageSizeLimit() { return 0; }
+    @Override public List<WebSocketExtension> getExtensions() { return Collections.emptyList(); }
+    @Override public boolean isOpen() { return open; }
+    @Override public void close() { open = false; }
+    @Override public void close(CloseStatus status) { open = false; }
+    @Override public void sendMessage(WebSocketMessage<?> message) { sent.add(message); }
+}
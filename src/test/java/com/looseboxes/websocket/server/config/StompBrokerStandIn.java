@@ -0,0 +1,231 @@
+package com.looseboxes.websocket.server.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * A STOMP broker standing in for e.g RabbitMQ, sufficient for the broker relay:
+ * it accepts every CONNECT without heartbeats, and sends each SEND frame to the
+ * subscriptions of its exact destination, over every connection.
+ *
+ * @author chinomso ikwuagwu
+ */
+final class StompBrokerStandIn implements AutoCloseable {
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private static final class Subscription {
+        private final Connection connection;
+        private final String id;
+        private final String destination;
+        private Subscription(Connection connection, String id, String destination) {
+            this.connection = connection;
+            this.id = id;
+            this.destination = destination;
+        }
+    }
+
+    private final class Connection implements Runnable {
+
+        private final Socket socket;
+
+        private final OutputStream out;
+
+        private final StompDecoder decoder = new StompDecoder();
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            final byte[] bytes = new byte[8192];
+            try (InputStream in = socket.getInputStream()) {
+                int read;
+                while ((read = in.read(bytes)) != -1) {
+                    if (buffer.remaining() < read) {
+                        final ByteBuffer larger = ByteBuffer.allocate((buffer.position() + read) * 2);
+                        buffer.flip();
+                        larger.put(buffer);
+                        buffer = larger;
+                    }
+                    buffer.put(bytes, 0, read);
+                    buffer.flip();
+                    for (Message<byte[]> frame : decoder.decode(buffer)) {
+                        handle(frame);
+                    }
+                    // Any partly received frame is left in the buffer
+                    buffer.compact();
+                }
+            }catch(IOException ignored) {
+                // Closed
+            }finally{
+                subscriptions.removeIf(subscription -> subscription.connection == this);
+                connections.remove(this);
+            }
+        }
+
+        private void handle(Message<byte[]> frame) throws IOException {
+            final StompHeaderAccessor accessor = StompHeaderAccessor.wrap(frame);
+            if (accessor.getMessageType() == SimpMessageType.HEARTBEAT) {
+                return;
+            }
+            switch (Objects.requireNonNull(accessor.getCommand())) {
+                case CONNECT:
+                case STOMP:
+                    final StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+                    connected.setNativeHeader("version", "1.2");
+                    connected.setNativeHeader("heart-beat", "0,0");
+                    write(connected, EMPTY_PAYLOAD);
+                    connects.incrementAndGet();
+                    break;
+                case SUBSCRIBE:
+                    subscriptions.add(new Subscription(this, accessor.getSubscriptionId(), accessor.getDestination()));
+                    break;
+                case UNSUBSCRIBE:
+                    subscriptions.removeIf(subscription -> subscription.connection == this
+                            && subscription.id.equals(accessor.getSubscriptionId()));
+                    break;
+                case SEND:
+                    for (Subscription subscription : subscriptions) {
+                        if (subscription.destination.equals(accessor.getDestination())) {
+                            subscription.connection.deliver(subscription, accessor, frame.getPayload());
+                        }
+                    }
+                    receipt(accessor);
+                    break;
+                case DISCONNECT:
+                    receipt(accessor);
+                    socket.close();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void deliver(Subscription subscription, StompHeaderAccessor send, byte[] payload) {
+            final StompHeaderAccessor message = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            message.setNativeHeader("destination", subscription.destination);
+            message.setNativeHeader("subscription", subscription.id);
+            message.setNativeHeader("message-id", String.valueOf(messageIds.incrementAndGet()));
+            final String contentType = send.getFirstNativeHeader("content-type");
+            if (contentType != null) {
+                message.setNativeHeader("content-type", contentType);
+            }
+            try {
+                write(message, payload);
+            }catch(IOException ignored) {
+                // Closed, its subscriptions are removed by its reader
+            }
+        }
+
+        private void receipt(StompHeaderAccessor accessor) throws IOException {
+            if (accessor.getReceipt() != null) {
+                final StompHeaderAccessor receipt = StompHeaderAccessor.create(StompCommand.RECEIPT);
+                receipt.setNativeHeader("receipt-id", accessor.getReceipt());
+                write(receipt, EMPTY_PAYLOAD);
+            }
+        }
+
+        private void write(StompHeaderAccessor accessor, byte[] payload) throws IOException {
+            final byte[] bytes = encoder.encode(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+            synchronized (out) {
+                out.write(bytes);
+                out.flush();
+            }
+        }
+    }
+
+    private final StompEncoder encoder = new StompEncoder();
+
+    private final ServerSocket serverSocket;
+
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger connects = new AtomicInteger();
+
+    private final AtomicLong messageIds = new AtomicLong();
+
+    StompBrokerStandIn() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(this::accept, "stomp-broker-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return {@code true} if, within the timeout, there were as many subscriptions to the destination
+     */
+    boolean awaitSubscriptions(String destination, int count, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (subscriptions.stream().filter(subscription -> subscription.destination.equals(destination)).count() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if, within the timeout, there were as many connections accepted
+     */
+    boolean awaitConnects(int count, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (connects.get() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                final Thread reader = new Thread(connection, "stomp-broker-stand-in-connection");
+                reader.setDaemon(true);
+                reader.start();
+            }catch(IOException ignored) {
+                // Closed
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.socket.close();
+        }
+    }
+}
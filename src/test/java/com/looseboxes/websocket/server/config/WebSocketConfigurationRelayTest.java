@@ -0,0 +1,133 @@
+package com.looseboxes.websocket.server.config;
+
+import com.looseboxes.websocket.client.config.WebsocketClientConfigurationSource;
+import com.looseboxes.websocket.server.WebsocketServerLibBasePackageClass;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two servers relaying to one {@link StompBrokerStandIn}, as two nodes relaying to
+ * e.g RabbitMQ would, so that a message sent to either node reaches the
+ * subscribers of both.
+ *
+ * @author chinomso ikwuagwu
+ */
+public class WebSocketConfigurationRelayTest {
+
+    @SpringBootApplication(scanBasePackageClasses = WebsocketServerLibBasePackageClass.class, exclude = {
+            SecurityAutoConfiguration.class, SecurityFilterAutoConfiguration.class,
+            UserDetailsServiceAutoConfiguration.class, RabbitAutoConfiguration.class})
+    @EnableConfigurationProperties({WebsocketProperties.class})
+    static class RelayingServer { }
+
+    private static final String TOPIC = "/topic/prices";
+
+    private StompBrokerStandIn broker;
+
+    private final List<ConfigurableApplicationContext> servers = new ArrayList<>();
+
+    private final List<StompSession> sessions = new ArrayList<>();
+
+    private WebSocketStompClient stompClient;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        broker = new StompBrokerStandIn();
+        for (int i = 0; i < 2; i++) {
+            servers.add(new SpringApplicationBuilder(RelayingServer.class)
+                    .web(WebApplicationType.SERVLET)
+                    .properties("server.port=0",
+                            "looseboxes.websocket.broker.mode=relay",
+                            "looseboxes.websocket.broker.relay.host=127.0.0.1",
+                            "looseboxes.websocket.broker.relay.port=" + broker.getPort())
+                    .run());
+        }
+        stompClient = new WebsocketClientConfigurationSource().websocketStompClient();
+        // The system session of each server
+        assertTrue(broker.awaitConnects(2, 10, TimeUnit.SECONDS), "servers connected to the broker");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        sessions.forEach(StompSession::disconnect);
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+        servers.forEach(ConfigurableApplicationContext::close);
+        if (broker != null) {
+            broker.close();
+        }
+    }
+
+    @Test
+    public void send_givenSubscribersOnEachServer_shouldFanOutToEveryServer() throws Exception {
+
+        final StompSession first = connect(servers.get(0));
+        final StompSession second = connect(servers.get(1));
+
+        final BlockingQueue<WebsocketMessage> receivedByFirst = subscribe(first);
+        final BlockingQueue<WebsocketMessage> receivedBySecond = subscribe(second);
+        assertTrue(broker.awaitSubscriptions(TOPIC, 2, 10, TimeUnit.SECONDS), "subscriptions relayed");
+
+        second.send("/messaging/send/prices", new WebsocketMessage<String, String>().id("1").sender("second").content("100"));
+
+        final WebsocketMessage viaFirst = receivedByFirst.poll(10, TimeUnit.SECONDS);
+        assertNotNull(viaFirst, "received via the first server");
+        assertEquals("100", viaFirst.getContent());
+        assertEquals("second", viaFirst.getSender());
+
+        final WebsocketMessage viaSecond = receivedBySecond.poll(10, TimeUnit.SECONDS);
+        assertNotNull(viaSecond, "received via the second server");
+        assertEquals("100", viaSecond.getContent());
+    }
+
+    private StompSession connect(ConfigurableApplicationContext server) throws Exception {
+        final int port = ((WebServerApplicationContext)server).getWebServer().getPort();
+        final StompSession session = stompClient.connect("ws://localhost:" + port + "/ws",
+                new StompSessionHandlerAdapter() { }).get(10, TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    private BlockingQueue<WebsocketMessage> subscribe(StompSession session) {
+        final BlockingQueue<WebsocketMessage> received = new LinkedBlockingQueue<>();
+        session.subscribe(TOPIC, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return WebsocketMessage.class;
+            }
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((WebsocketMessage)payload);
+            }
+        });
+        return received;
+    }
+}
@@ -0,0 +1,79 @@
+package com.looseboxes.websocket.server.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketDestinationRouterTest {
+
+    @Test
+    public void route_givenAllowedDestinations_shouldRouteToTopic() {
+        final WebsocketDestinationRouter router = new WebsocketDestinationRouter(
+                new String[]{"/chat/*", "/prices/**"}, 16);
+
+        final WebsocketDestinationRouter.Route route = router.route("/send/chat/abc");
+        assertNotNull(route);
+        assertEquals("/chat/abc", route.getPath());
+        assertEquals("/topic/chat/abc", route.getDestination());
+
+        assertEquals("/topic/prices/a/b/c", router.route("/send/prices/a/b/c").getDestination());
+        assertNull(router.route("/send/chat/abc/def"));
+        assertNull(router.route("/send/other"));
+        assertNull(router.route("/send/chat//abc"));
+        assertNull(router.route("/join"));
+    }
+
+    @Test
+    public void route_givenRejectedDestinations_shouldNotCacheThem() {
+        final WebsocketDestinationRouter router = new WebsocketDestinationRouter(new String[]{"/chat/*"}, 16);
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(router.route("/send/other/" + i));
+        }
+
+        assertEquals(0, router.getCachedCount());
+    }
+
+    @Test
+    public void route_givenMoreDestinationsThanCacheSize_shouldStayBounded() {
+        final WebsocketDestinationRouter router = new WebsocketDestinationRouter(new String[]{"/**"}, 16);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("/topic/" + i, router.route("/send/" + i).getDestination());
+        }
+
+        assertEquals(16, router.getCachedCount());
+    }
+
+    @Test
+    public void route_givenCacheFull_shouldKeepRecentlyLookedUpRoutes() {
+        final WebsocketDestinationRouter router = new WebsocketDestinationRouter(new String[]{"/**"}, 4);
+        final WebsocketDestinationRouter.Route hot = router.route("/send/hot");
+        for (int i = 0; i < 3; i++) {
+            router.route("/send/cold-" + i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            // Looked up between each new route, so never evicted
+            assertSame(hot, router.route("/send/hot"));
+            router.route("/send/new-" + i);
+        }
+
+        assertSame(hot, router.route("/send/hot"));
+        assertEquals(4, router.getCachedCount());
+    }
+
+    @Test
+    public void route_givenCacheSizeZero_shouldRouteWithoutCaching() {
+        final WebsocketDestinationRouter router = new WebsocketDestinationRouter(new String[]{"/**"}, 0);
+
+        assertEquals("/topic/abc", router.route("/send/abc").getDestination());
+        assertEquals(0, router.getCachedCount());
+    }
+}
@@ -0,0 +1,191 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.looseboxes.websocket.client.UnbatchingStompFrameHandler;
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.model.WebsocketMessageModule;
+import com.looseboxes.websocket.server.replay.ReplayRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batches messages, as the server sends them, and unbatches the frames, as the client receives them.
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageBatcherTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new WebsocketMessageModule()).build();
+
+    private final List<Message<?>> frames = Collections.synchronizedList(new ArrayList<>());
+
+    private final MessageChannel brokerChannel = (message, timeout) -> frames.add(message);
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    private final List<WebsocketMessage<?, ?>> received = new ArrayList<>();
+
+    private final StompFrameHandler client = new UnbatchingStompFrameHandler(new StompFrameHandler() {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return WebsocketMessage.class;
+        }
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            received.add((WebsocketMessage<?, ?>)payload);
+        }
+    });
+
+    @BeforeEach
+    public void setUp() {
+        taskScheduler.initialize();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void add_givenMessagesWithinTheWindow_shouldSendOneFrameForTheClientToReceiveOneByOne() throws Exception {
+        final WebsocketMessageBatcher batcher = batcher(100, 100);
+        final List<WebsocketMessage<Long, String>> messages = messages(0, 5);
+
+        messages.forEach(message -> batcher.add("/topic/abc", message));
+
+        assertTrue(frames.isEmpty());
+        awaitFrames(1);
+        Thread.sleep(150);
+        assertEquals(1, frames.size());
+        assertEquals("5", batchSize(frames.get(0)));
+        assertEquals("/topic/abc", SimpMessageHeaderAccessor.getDestination(frames.get(0).getHeaders()));
+
+        receive(frames.get(0));
+
+        assertEquals(messages, received);
+        assertEquals(contents(messages), contents(received));
+    }
+
+    @Test
+    public void add_givenMaxSizeReached_shouldSendAtOnceAndBatchTheRestSeparately() throws Exception {
+        final WebsocketMessageBatcher batcher = batcher(60_000, 3);
+        final List<WebsocketMessage<Long, String>> messages = messages(0, 7);
+
+        messages.forEach(message -> batcher.add("/topic/abc", message));
+
+        // Without waiting for the window
+        assertEquals(2, frames.size());
+        assertEquals("3", batchSize(frames.get(0)));
+        assertEquals("3", batchSize(frames.get(1)));
+
+        // The last message is still pending, until flushed e.g on shutdown
+        batcher.destroy();
+
+        assertEquals(3, frames.size());
+        // A batch of one is sent as is
+        assertNull(batchSize(frames.get(2)));
+
+        frames.forEach(this::receive);
+
+        assertEquals(contents(messages), contents(received));
+    }
+
+    @Test
+    public void add_givenDestinations_shouldBatchEachSeparately() throws Exception {
+        final WebsocketMessageBatcher batcher = batcher(100, 100);
+
+        batcher.add("/topic/abc", message(0));
+        batcher.add("/topic/def", message(1));
+        batcher.add("/topic/abc", message(2));
+
+        awaitFrames(2);
+
+        final List<String> destinations = frames.stream()
+                .map(frame -> SimpMessageHeaderAccessor.getDestination(frame.getHeaders())).sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList("/topic/abc", "/topic/def"), destinations);
+        for (Message<?> frame : frames) {
+            final String expected = "/topic/abc".equals(SimpMessageHeaderAccessor.getDestination(frame.getHeaders())) ? "2" : null;
+            assertEquals(expected, batchSize(frame));
+        }
+    }
+
+    private WebsocketMessageBatcher batcher(long window, int maxSize) {
+        final WebsocketProperties properties = new WebsocketProperties();
+        properties.getBatching().setEnabled(true);
+        properties.getBatching().setWindow(window);
+        properties.getBatching().setMaxSize(maxSize);
+
+        final MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        final SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(converter);
+
+        return new WebsocketMessageBatcher(properties, messagingTemplate,
+                new ReplayRegistry(properties, messagingTemplate, brokerChannel), taskScheduler);
+    }
+
+    /**
+     * Converts the frame's payload to the type the client's handler asks for, as the STOMP client does
+     */
+    private void receive(Message<?> frame) {
+        final StompHeaders headers = new StompHeaders();
+        final String batchSize = batchSize(frame);
+        if (batchSize != null) {
+            headers.set(WebsocketHeaders.BATCH_SIZE, batchSize);
+        }
+        try {
+            client.handleFrame(headers, objectMapper.readValue((byte[])frame.getPayload(),
+                    objectMapper.constructType(client.getPayloadType(headers))));
+        }catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String batchSize(Message<?> frame) {
+        return SimpMessageHeaderAccessor.getFirstNativeHeader(WebsocketHeaders.BATCH_SIZE, frame.getHeaders());
+    }
+
+    private void awaitFrames(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (frames.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, frames.size());
+    }
+
+    private static List<WebsocketMessage<Long, String>> messages(int from, int to) {
+        return IntStream.range(from, to).mapToObj(WebsocketMessageBatcherTest::message).collect(Collectors.toList());
+    }
+
+    private static WebsocketMessage<Long, String> message(int id) {
+        return new WebsocketMessage<Long, String>().id((long)id).sender("user").content("message " + id);
+    }
+
+    private static List<Object> contents(List<? extends WebsocketMessage<?, ?>> messages) {
+        return messages.stream().map(WebsocketMessage::getContent).collect(Collectors.toList());
+    }
+}
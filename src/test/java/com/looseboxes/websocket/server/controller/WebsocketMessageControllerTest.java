@@ -0,0 +1,154 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.looseboxes.websocket.server.AsyncWebsocketApplicationDestinationMessageInterceptor;
+import com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptor;
+import com.looseboxes.websocket.server.WebsocketApplicationDestinationMessageInterceptorChain;
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import com.looseboxes.websocket.server.presence.PresenceRegistry;
+import com.looseboxes.websocket.server.ratelimit.InboundRateLimiter;
+import com.looseboxes.websocket.server.replay.ReplayRegistry;
+import com.looseboxes.websocket.server.session.SessionOutboxRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.handler.DestinationPatternsMessageCondition;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageControllerTest {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private final MessageChannel channel = (message, timeout) -> {
+        final StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        events.add(accessor.getCommand() == StompCommand.RECEIPT ?
+                "receipt:" + accessor.getReceiptId() : "published:" + accessor.getDestination());
+        return true;
+    };
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    @BeforeEach
+    public void setUp() {
+        taskScheduler.initialize();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void sendMessage_givenAcceptedMessage_shouldReceiptOncePublished() {
+        final WebsocketMessageController controller = controller(true);
+
+        controller.sendMessage(message(1L, "abc"), send("/send/chat/abc", "r1"));
+
+        assertEquals(Arrays.asList("published:/topic/chat/abc", "receipt:r1"), events);
+    }
+
+    @Test
+    public void sendMessage_givenUnroutedOrVetoedMessage_shouldNotReceipt() {
+        final WebsocketMessageController controller = controller(true);
+
+        controller.sendMessage(message(1L, "abc"), send("/send/other/abc", "r1"));
+        controller.sendMessage(message(2L, "veto"), send("/send/chat/abc", "r2"));
+
+        assertEquals(Collections.emptyList(), events);
+    }
+
+    @Test
+    public void sendMessage_givenDuplicate_shouldReceiptAsItWasAccepted() {
+        final WebsocketMessageController controller = controller(true);
+
+        controller.sendMessage(message(1L, "abc"), send("/send/chat/abc", "r1"));
+        controller.sendMessage(message(1L, "abc"), send("/send/chat/abc", "r2"));
+
+        assertEquals(Arrays.asList("published:/topic/chat/abc", "receipt:r1", "receipt:r2"), events);
+    }
+
+    @Test
+    public void sendMessage_givenReceiptsDisabledOrNotRequested_shouldNotReceipt() {
+        controller(false).sendMessage(message(1L, "abc"), send("/send/chat/abc", "r1"));
+        controller(true).sendMessage(message(2L, "abc"), send("/send/chat/abc", null));
+
+        assertEquals(Arrays.asList("published:/topic/chat/abc", "published:/topic/chat/abc"), events);
+    }
+
+    @Test
+    public void sendMessages_shouldReceiptOnlyOnceEveryMessageIsAccepted() {
+        final WebsocketMessageController controller = controller(true);
+
+        controller.sendMessages(new WebsocketMessage[]{message(1L, "abc"), message(2L, "def")},
+                send("/send-batch/chat/abc", "r1"));
+
+        assertEquals(Arrays.asList("published:/topic/chat/abc", "published:/topic/chat/abc", "receipt:r1"), events);
+        events.clear();
+
+        controller.sendMessages(new WebsocketMessage[]{message(3L, "abc"), message(4L, "veto")},
+                send("/send-batch/chat/abc", "r2"));
+
+        assertEquals(Collections.singletonList("published:/topic/chat/abc"), events);
+    }
+
+    private WebsocketMessageController controller(boolean sendReceipts) {
+        final WebsocketProperties properties = new WebsocketProperties();
+        properties.getRouting().setAllowedDestinations(new String[]{"/chat/*"});
+        properties.getTransport().setSendReceipts(sendReceipts);
+        properties.getDeduplication().setEnabled(true);
+
+        final SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(channel);
+        messagingTemplate.setMessageConverter(new MappingJackson2MessageConverter());
+
+        final WebsocketApplicationDestinationMessageInterceptor veto = (path, headers, message) ->
+                "veto".equals(message.getContent()) ? null : message;
+        final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Collections.singletonMap("veto", veto));
+
+        final ReplayRegistry replayRegistry = new ReplayRegistry(properties, messagingTemplate, channel);
+        return new WebsocketMessageController(messagingTemplate,
+                new WebsocketDestinationRouter(properties),
+                new WebsocketApplicationDestinationMessageInterceptorChain(properties,
+                        beanFactory.getBeanProvider(WebsocketApplicationDestinationMessageInterceptor.class),
+                        beanFactory.getBeanProvider(AsyncWebsocketApplicationDestinationMessageInterceptor.class),
+                        taskScheduler, beanFactory.getBeanProvider(WebsocketMetrics.class)),
+                new SessionOutboxRegistry(properties),
+                new WebsocketMessageBatcher(properties, messagingTemplate, replayRegistry, taskScheduler),
+                new WebsocketMessageDeduplicator(properties),
+                new PresenceRegistry(properties, messagingTemplate, taskScheduler),
+                replayRegistry,
+                new InboundRateLimiter(properties, beanFactory.getBeanProvider(WebsocketMetrics.class)),
+                new WebsocketMessageReceipts(properties, channel),
+                beanFactory.getBeanProvider(WebsocketMetrics.class));
+    }
+
+    private static WebsocketMessage<Long, String> message(Long id, String content) {
+        return new WebsocketMessage<Long, String>().id(id).sender("user").content(content);
+    }
+
+    private static StompHeaderAccessor send(String lookupDestination, String receipt) {
+        final StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination("/app" + lookupDestination);
+        accessor.setHeader(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER, lookupDestination);
+        accessor.setSessionId("s1");
+        if (receipt != null) {
+            accessor.setReceipt(receipt);
+        }
+        return accessor;
+    }
+}
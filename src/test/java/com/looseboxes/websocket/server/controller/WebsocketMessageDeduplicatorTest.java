@@ -0,0 +1,109 @@
+package com.looseboxes.websocket.server.controller;
+
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageDeduplicatorTest {
+
+    @Test
+    public void isDuplicate_givenSameSenderAndId_shouldDetectIt() {
+        final WebsocketMessageDeduplicator deduplicator = new WebsocketMessageDeduplicator(true, 60_000, 1000, 4);
+
+        assertFalse(deduplicator.isDuplicate(message("abc", 1L)));
+        assertTrue(deduplicator.isDuplicate(message("abc", 1L)));
+        assertFalse(deduplicator.isDuplicate(message("def", 1L)));
+        assertFalse(deduplicator.isDuplicate(message(null, 1L)));
+        assertTrue(deduplicator.isDuplicate(message(null, 1L)));
+        assertFalse(deduplicator.isDuplicate(message("", 1L)));
+        assertFalse(deduplicator.isDuplicate(message("abc", "1x")));
+        assertTrue(deduplicator.isDuplicate(message("abc", "1x")));
+    }
+
+    @Test
+    public void isDuplicate_givenNoIdOrDisabled_shouldNeverDetectIt() {
+        final WebsocketMessageDeduplicator deduplicator = new WebsocketMessageDeduplicator(true, 60_000, 1000, 4);
+        assertFalse(deduplicator.isDuplicate(message("abc", null)));
+        assertFalse(deduplicator.isDuplicate(message("abc", null)));
+
+        final WebsocketMessageDeduplicator disabled = new WebsocketMessageDeduplicator(false, 60_000, 1000, 4);
+        assertFalse(disabled.isDuplicate(message("abc", 1L)));
+        assertFalse(disabled.isDuplicate(message("abc", 1L)));
+    }
+
+    @Test
+    public void isDuplicate_givenMaxEntriesReached_shouldForgetTheOldest() {
+        final WebsocketMessageDeduplicator deduplicator = new WebsocketMessageDeduplicator(true, 60_000, 4, 1);
+        for (long id = 0; id < 5; id++) {
+            assertFalse(deduplicator.isDuplicate(message("abc", id)));
+        }
+
+        // 0 was forgotten to make room for 4, and remembering it again forgets 1
+        assertFalse(deduplicator.isDuplicate(message("abc", 0L)));
+        for (long id = 2; id < 5; id++) {
+            assertTrue(deduplicator.isDuplicate(message("abc", id)));
+        }
+        assertTrue(deduplicator.isDuplicate(message("abc", 0L)));
+        assertFalse(deduplicator.isDuplicate(message("abc", 1L)));
+    }
+
+    @Test
+    public void isDuplicate_givenManyMoreMessagesThanEntries_shouldRememberExactlyTheLatest() {
+        // Small table, so that probe sequences often wrap around its end, and removals shift entries back across it
+        final int maxEntries = 7;
+        final WebsocketMessageDeduplicator deduplicator = new WebsocketMessageDeduplicator(true, 60_000, maxEntries, 1);
+
+        for (int i = 0; i < 20_000; i++) {
+            final Object id = i % 2 == 0 ? (Object)(long)i : "id-" + i;
+            assertFalse(deduplicator.isDuplicate(message("abc", id)), "Message " + i);
+            // Duplicates are not added, so checking the latest leaves them as they were
+            for (int j = Math.max(0, i - maxEntries + 1); j <= i; j++) {
+                final Object latest = j % 2 == 0 ? (Object)(long)j : "id-" + j;
+                assertTrue(deduplicator.isDuplicate(message("abc", latest)), "Message " + j + " after " + i);
+            }
+        }
+    }
+
+    @Test
+    public void isDuplicate_givenWindowElapsed_shouldForgetIt() throws InterruptedException {
+        final WebsocketMessageDeduplicator deduplicator = new WebsocketMessageDeduplicator(true, 100, 1000, 1);
+
+        assertFalse(deduplicator.isDuplicate(message("abc", 1L)));
+        assertTrue(deduplicator.isDuplicate(message("abc", 1L)));
+
+        Thread.sleep(250);
+
+        assertFalse(deduplicator.isDuplicate(message("abc", 1L)));
+        assertTrue(deduplicator.isDuplicate(message("abc", 1L)));
+    }
+
+    @Test
+    public void isDuplicate_givenMaxEntriesLessThanStripes_shouldStayBounded() {
+        final WebsocketMessageDeduplicator deduplicator = new WebsocketMessageDeduplicator(true, 60_000, 3, 16);
+
+        for (long id = 0; id < 1000; id++) {
+            assertFalse(deduplicator.isDuplicate(message("abc", id)));
+            // Each stripe holds at least one entry
+            assertTrue(deduplicator.isDuplicate(message("abc", id)));
+        }
+
+        // Stripes are limited to the max entries, rounded down to a power of 2, so few are remembered
+        int remembered = 0;
+        for (long id = 999; id >= 990; id--) {
+            if (deduplicator.isDuplicate(message("abc", id))) {
+                ++remembered;
+            }
+        }
+        assertTrue(remembered <= 4, "Remembered: " + remembered);
+        assertFalse(deduplicator.isDuplicate(message("abc", 0L)));
+    }
+
+    private static WebsocketMessage<Object, String> message(String sender, Object id) {
+        return new WebsocketMessage<Object, String>().id(id).sender(sender).content("abc");
+    }
+}
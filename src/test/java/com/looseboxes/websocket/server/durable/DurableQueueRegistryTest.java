@@ -0,0 +1,136 @@
+package com.looseboxes.websocket.server.durable;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class DurableQueueRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<Message<?>> sent = new ArrayList<>();
+
+    private final MessageChannel clientOutboundChannel = (message, timeout) -> sent.add(message);
+
+    private final MessageChannel brokerChannel = (message, timeout) -> true;
+
+    private DurableQueueRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        final WebsocketProperties properties = new WebsocketProperties();
+        properties.getDurable().setEnabled(true);
+        properties.getDurable().setDirectory(directory.toString());
+        registry = new DurableQueueRegistry(properties, clientOutboundChannel);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        registry.destroy();
+    }
+
+    @Test
+    public void subscribe_givenUserWithMessagesRetained_shouldDeliverThem() {
+        publish("/user/alice/queue/inbox", "hello");
+
+        connect("s1", () -> "alice", null);
+        subscribe("s1", "/user/queue/inbox", () -> "alice", null);
+
+        assertEquals(1, sent.size());
+        assertEquals("hello", payload(sent.get(0)));
+        assertEquals("/user/queue/inbox", SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+    }
+
+    @Test
+    public void subscribe_givenAnonymousSessionJoinedAsAnotherUser_shouldNotReadThatUsersQueue() {
+        publish("/user/alice/queue/inbox", "for alice");
+
+        connect("s1", null, "alice");
+        subscribe("s1", "/user/queue/inbox", null, "alice");
+        publish("/user/alice/queue/inbox", "also for alice");
+
+        assertTrue(sent.isEmpty(), "sent: " + sent);
+
+        // Nor advanced alice's read position
+        connect("s2", () -> "alice", null);
+        subscribe("s2", "/user/queue/inbox", () -> "alice", null);
+
+        assertEquals(2, sent.size());
+        assertEquals("for alice", payload(sent.get(0)));
+        assertEquals("also for alice", payload(sent.get(1)));
+        assertEquals("s2", SimpMessageHeaderAccessor.getSessionId(sent.get(1).getHeaders()));
+    }
+
+    @Test
+    public void preSend_givenMessageToAnonymousSession_shouldLeaveItToBroker() {
+        connect("s1", null, "alice");
+
+        final Message<?> message = message("/user/s1/queue/inbox", "hello");
+        final Message<?> result = registry.preSend(message, brokerChannel);
+
+        assertEquals(SimpMessageType.MESSAGE, SimpMessageHeaderAccessor.getMessageType(result.getHeaders()));
+        assertEquals(0, registry.getRetainedCount("/user/s1/queue/inbox"));
+    }
+
+    private void publish(String destination, String payload) {
+        final Message<?> result = registry.preSend(message(destination, payload), brokerChannel);
+        assertEquals(SimpMessageType.OTHER, SimpMessageHeaderAccessor.getMessageType(result.getHeaders()));
+    }
+
+    private Message<?> message(String destination, String payload) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private void connect(String sessionId, @Nullable Principal user, @Nullable String joinedAs) {
+        registry.preSend(frame(SimpMessageType.CONNECT, sessionId, user, joinedAs), null);
+    }
+
+    private void subscribe(String sessionId, String destination, @Nullable Principal user, @Nullable String joinedAs) {
+        final Message<?> message = frame(SimpMessageType.SUBSCRIBE, sessionId, user, joinedAs);
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setDestination(destination);
+        accessor.setSubscriptionId("sub-" + sessionId);
+        registry.preSend(MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders()), null);
+    }
+
+    private Message<?> frame(SimpMessageType type, String sessionId, @Nullable Principal user, @Nullable String joinedAs) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setUser(user);
+        final Map<String, Object> sessionAttributes = new HashMap<>();
+        if (joinedAs != null) {
+            // As set when the session joins, see WebsocketMessageController
+            sessionAttributes.put("username", joinedAs);
+        }
+        accessor.setSessionAttributes(sessionAttributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private String payload(Message<?> message) {
+        return new String((byte[])message.getPayload(), StandardCharsets.UTF_8);
+    }
+}
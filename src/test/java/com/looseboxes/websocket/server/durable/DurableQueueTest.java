@@ -0,0 +1,103 @@
+package com.looseboxes.websocket.server.durable;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class DurableQueueTest {
+
+    @Test
+    public void add_givenArrayFull_shouldGrow() {
+        final DurableQueue queue = new DurableQueue("/queue/a", null);
+        for (int i = 0; i < 20; i++) {
+            queue.add(i * 10);
+        }
+
+        assertEquals(20, queue.size());
+        assertEquals(0, queue.indexOf(0));
+        assertEquals(20, queue.end());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i * 10, queue.get(queue.indexOf(i * 10)));
+        }
+    }
+
+    @Test
+    public void add_givenArrayFullAndMostPositionsTrimmed_shouldCompact() {
+        final DurableQueue queue = new DurableQueue("/queue/a", null);
+        for (int i = 0; i < 8; i++) {
+            queue.add(i * 10);
+        }
+        queue.trim(60);
+        assertEquals(6, queue.indexOf(60));
+
+        queue.add(80);
+
+        assertEquals(3, queue.size());
+        // Moved to the start of the array, which did not grow
+        assertEquals(0, queue.indexOf(60));
+        assertEquals(3, queue.end());
+        assertEquals(60, queue.get(0));
+        assertEquals(70, queue.get(1));
+        assertEquals(80, queue.get(2));
+    }
+
+    @Test
+    public void add_givenArrayFullAndFewPositionsTrimmed_shouldGrowAndKeepRetained() {
+        final DurableQueue queue = new DurableQueue("/queue/a", null);
+        for (int i = 0; i < 8; i++) {
+            queue.add(i * 10);
+        }
+        queue.trim(20);
+
+        queue.add(80);
+
+        assertEquals(7, queue.size());
+        assertEquals(0, queue.indexOf(20));
+        assertEquals(7, queue.end());
+        assertEquals(80, queue.get(6));
+    }
+
+    @Test
+    public void getFrom_shouldReturnFirstPositionAtOrAfter() {
+        final DurableQueue queue = new DurableQueue("/queue/a", null);
+        queue.add(10);
+        queue.add(20);
+
+        assertEquals(10, queue.getFrom(0));
+        assertEquals(20, queue.getFrom(11));
+        assertEquals(20, queue.getFrom(20));
+        assertEquals(-1, queue.getFrom(21));
+    }
+
+    @Test
+    public void trim_givenAllPositions_shouldEmpty() {
+        final DurableQueue queue = new DurableQueue("/queue/a", null);
+        queue.add(10);
+        queue.add(20);
+
+        queue.trim(30);
+
+        assertEquals(0, queue.size());
+        assertEquals(-1, queue.getFrom(0));
+        queue.add(30);
+        assertEquals(30, queue.getFrom(0));
+    }
+
+    @Test
+    public void unsubscribe_givenNoSubscriptionId_shouldRemoveAllOfSession() {
+        final DurableQueue queue = new DurableQueue("/queue/a", null);
+        queue.subscribe(new DurableQueue.Subscriber("s1", "1", "/queue/a", null));
+        queue.subscribe(new DurableQueue.Subscriber("s1", "2", "/queue/a", null));
+        queue.subscribe(new DurableQueue.Subscriber("s2", "1", "/queue/a", null));
+
+        queue.unsubscribe("s1", "2");
+        assertEquals(2, queue.getSubscribers().size());
+
+        queue.unsubscribe("s1", null);
+        assertEquals(1, queue.getSubscribers().size());
+        assertEquals("s2", queue.getSubscribers().get(0).getSessionId());
+    }
+}
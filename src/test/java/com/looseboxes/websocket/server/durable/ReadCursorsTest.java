@@ -0,0 +1,80 @@
+package com.looseboxes.websocket.server.durable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class ReadCursorsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void save_thenLoad_shouldRestorePositions() throws IOException {
+        final Path file = directory.resolve("cursors");
+        final ReadCursors cursors = new ReadCursors(file, 1000);
+        cursors.set("/user/alice/queue/a", "alice", 100);
+        cursors.set("/queue/b", "alice", 200);
+        cursors.set("/queue/b", "bob", 300);
+        cursors.save();
+
+        final ReadCursors loaded = new ReadCursors(file, 1000);
+
+        assertEquals(Long.valueOf(100), loaded.get("/user/alice/queue/a", "alice"));
+        final Map<String, Long> expected = new HashMap<>();
+        expected.put("alice", 200L);
+        expected.put("bob", 300L);
+        assertEquals(expected, loaded.getAll("/queue/b"));
+        assertNull(loaded.get("/queue/b", "carol"));
+        assertTrue(loaded.getAll("/queue/c").isEmpty());
+    }
+
+    @Test
+    public void load_givenPositionsPastEnd_shouldMoveThemBackToEnd() throws IOException {
+        final Path file = directory.resolve("cursors");
+        final ReadCursors cursors = new ReadCursors(file, 1000);
+        cursors.set("/queue/a", "alice", 100);
+        cursors.set("/queue/a", "bob", 900);
+        cursors.save();
+
+        final ReadCursors loaded = new ReadCursors(file, 500);
+
+        assertEquals(Long.valueOf(100), loaded.get("/queue/a", "alice"));
+        assertEquals(Long.valueOf(500), loaded.get("/queue/a", "bob"));
+    }
+
+    @Test
+    public void save_givenRemoved_shouldNotRestoreRemoved() throws IOException {
+        final Path file = directory.resolve("cursors");
+        final ReadCursors cursors = new ReadCursors(file, 1000);
+        cursors.set("/queue/a", "alice", 100);
+        cursors.set("/queue/b", "alice", 200);
+        cursors.save();
+        cursors.remove("/queue/a");
+        cursors.save();
+
+        final ReadCursors loaded = new ReadCursors(file, 1000);
+
+        assertNull(loaded.get("/queue/a", "alice"));
+        assertEquals(Long.valueOf(200), loaded.get("/queue/b", "alice"));
+    }
+
+    @Test
+    public void save_givenNoChanges_shouldNotWrite() throws IOException {
+        final Path file = directory.resolve("cursors");
+        new ReadCursors(file, 1000).save();
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,291 @@
+package com.looseboxes.websocket.server.durable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class SegmentedLogTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    // Header, timestamp, key, content type and batch size, with the payloads appended below
+    private static final int RECORD_OVERHEAD = 8 + 8 + 2 + "/queue/a".length() + 1 + 1;
+
+    @TempDir
+    Path directory;
+
+    private SegmentedLog log;
+
+    @AfterEach
+    public void tearDown() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    public void append_thenRead_shouldReturnRecord() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        final long position = log.append("/queue/a", "application/json", "3", bytes("abc"), 1000);
+
+        final SegmentedLog.Record record = log.read(position);
+
+        assertEquals(0, position);
+        assertEquals("/queue/a", record.getKey());
+        assertEquals("application/json", record.getContentType());
+        assertEquals("3", record.getBatchSize());
+        assertEquals(1000, record.getTimestamp());
+        assertArrayEquals(bytes("abc"), record.getPayload());
+        assertEquals(log.getEndPosition(), record.getNext());
+        assertNull(log.read(record.getNext()));
+    }
+
+    @Test
+    public void append_givenEmptyPayloadAndNoHeaders_shouldReturnRecord() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        final SegmentedLog.Record record = log.read(log.append("/queue/a", null, null, new byte[0], 1000));
+        assertNull(record.getContentType());
+        assertNull(record.getBatchSize());
+        assertEquals(0, record.getPayload().length);
+    }
+
+    @Test
+    public void append_givenRecordLargerThanSegment_shouldThrow() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        assertThrows(IllegalArgumentException.class,
+                () -> log.append("/queue/a", null, null, new byte[SEGMENT_SIZE], 1000));
+    }
+
+    @Test
+    public void append_givenRecordNotFittingInSegment_shouldRollAndReadAcrossSegments() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        final List<String> appended = appendAll(20, 40);
+
+        assertTrue(log.getSegmentCount() > 1, "segments: " + log.getSegmentCount());
+        assertEquals(appended, readAll());
+
+        log.close();
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(appended, readAll());
+    }
+
+    @Test
+    public void read_givenPositionBeforeStart_shouldReturnOldestRecord() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        appendAll(20, 40);
+        final long start = log.retain(firstPositionOfSegment(2), Long.MAX_VALUE, 0);
+
+        final SegmentedLog.Record record = log.read(0);
+
+        assertEquals(start, record.getPosition());
+    }
+
+    @Test
+    public void open_givenPartlyWrittenRecord_shouldEndLogBeforeIt() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        log.append("/queue/a", null, null, bytes("first"), 1000);
+        final long second = log.append("/queue/a", null, null, bytes("second"), 1000);
+        log.close();
+
+        // The length of the record written, but not all that follows
+        final int length = RECORD_OVERHEAD - 8 + "second".length();
+        write(0, second + 8 + 8, new byte[]{0, 0, 0, 0});
+        write(0, second, ByteBuffer.allocate(4).putInt(0, length).array());
+
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(second, log.getEndPosition());
+        assertEquals(Collections.singletonList("first"), readAll());
+        final long third = log.append("/queue/a", null, null, bytes("third"), 1000);
+        assertEquals(second, third);
+        assertEquals(Arrays.asList("first", "third"), readAll());
+    }
+
+    @Test
+    public void open_givenRecordWithoutLength_shouldEndLogBeforeIt() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        log.append("/queue/a", null, null, bytes("first"), 1000);
+        final long second = log.append("/queue/a", null, null, bytes("second"), 1000);
+        log.close();
+
+        // The length is written last
+        write(0, second, new byte[]{0, 0, 0, 0});
+
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(second, log.getEndPosition());
+        assertEquals(Collections.singletonList("first"), readAll());
+        log.append("/queue/a", null, null, bytes("2nd"), 1000);
+        log.close();
+
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(Arrays.asList("first", "2nd"), readAll());
+    }
+
+    @Test
+    public void open_givenLengthBeyondSegment_shouldEndLogBeforeIt() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        log.append("/queue/a", null, null, bytes("first"), 1000);
+        final long second = log.append("/queue/a", null, null, bytes("second"), 1000);
+        log.close();
+
+        write(0, second, ByteBuffer.allocate(4).putInt(0, SEGMENT_SIZE).array());
+
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(second, log.getEndPosition());
+        assertEquals(Collections.singletonList("first"), readAll());
+    }
+
+    @Test
+    public void open_givenChecksumMismatch_shouldEndLogAndDiscardLaterSegments() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        appendAll(20, 40);
+        final long second = log.read(log.read(0).getNext()).getPosition();
+        final int segments = log.getSegmentCount();
+        assertTrue(segments > 2, "segments: " + segments);
+        log.close();
+
+        // The first byte of the timestamp of the second record
+        write(0, second + 8, new byte[]{127});
+
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(second, log.getEndPosition());
+        assertEquals(1, log.getSegmentCount());
+        assertEquals(1, readAll().size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void retain_givenNeededFrom_shouldDeleteSegmentsEndingAtOrBeforeIt() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        appendAll(20, 40);
+        final int segments = log.getSegmentCount();
+        final long third = firstPositionOfSegment(2);
+
+        final long start = log.retain(third, Long.MAX_VALUE, 0);
+
+        assertEquals(third, start);
+        assertEquals(segments - 2, log.getSegmentCount());
+        assertEquals(third, log.read(start).getPosition());
+    }
+
+    @Test
+    public void retain_givenMaxBytes_shouldDeleteOldestSegmentsUntilLogFits() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        appendAll(20, 40);
+        final long size = log.getSize();
+
+        log.retain(0, size - 1, 0);
+
+        assertTrue(log.getSize() <= size - 1);
+        assertTrue(log.getSize() > size - SEGMENT_SIZE, "only the oldest segment deleted");
+
+        log.retain(0, 0, 0);
+
+        assertEquals(1, log.getSegmentCount(), "the current segment is never deleted");
+    }
+
+    @Test
+    public void retain_givenMinTimestamp_shouldDeleteSegmentsWhoseNewestRecordIsOlder() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 3; i++) {
+            final long timestamp = 1000 * (i + 1);
+            log.append("/queue/a", null, null, new byte[SEGMENT_SIZE - RECORD_OVERHEAD], timestamp);
+        }
+        assertEquals(3, log.getSegmentCount());
+
+        log.retain(0, Long.MAX_VALUE, 2000);
+
+        assertEquals(2, log.getSegmentCount());
+        assertEquals(2000, log.read(0).getTimestamp());
+
+        log.retain(0, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        assertEquals(1, log.getSegmentCount(), "the current segment is never deleted");
+    }
+
+    @Test
+    public void close_shouldForceEverySegmentAppendedTo() throws IOException {
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+        final List<String> appended = appendAll(20, 40);
+        log.close();
+
+        log = new SegmentedLog(directory, SEGMENT_SIZE);
+
+        assertEquals(appended, readAll());
+        assertNull(log.read(log.getEndPosition()));
+    }
+
+    private List<String> appendAll(int count, int payloadLength) {
+        final List<String> appended = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final StringBuilder payload = new StringBuilder(payloadLength).append(i).append('-');
+            while (payload.length() < payloadLength) {
+                payload.append('x');
+            }
+            log.append("/queue/a", null, null, bytes(payload.toString()), 1000 + i);
+            appended.add(payload.toString());
+        }
+        return appended;
+    }
+
+    private List<String> readAll() {
+        final List<String> read = new ArrayList<>();
+        long position = log.getStartPosition();
+        SegmentedLog.Record record;
+        while ((record = log.read(position)) != null) {
+            read.add(new String(record.getPayload(), StandardCharsets.UTF_8));
+            position = record.getNext();
+        }
+        return read;
+    }
+
+    private long firstPositionOfSegment(int index) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .map(name -> Long.parseLong(name.substring(0, name.indexOf('.'))))
+                    .sorted()
+                    .skip(index)
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError("No segment: " + index));
+        }
+    }
+
+    private void write(long segmentBase, long position, byte[] bytes) throws IOException {
+        final Path file = directory.resolve(String.format("%020d", segmentBase) + ".log");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position - segmentBase);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
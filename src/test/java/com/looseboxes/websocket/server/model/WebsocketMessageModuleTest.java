@@ -0,0 +1,152 @@
+package com.looseboxes.websocket.server.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class WebsocketMessageModuleTest {
+
+    public static class Item {
+        private String name;
+        private int quantity;
+        public Item() { }
+        public Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public int getQuantity() { return quantity; }
+        public void setQuantity(int quantity) { this.quantity = quantity; }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Item item = (Item)o;
+            return quantity == item.quantity && Objects.equals(name, item.name);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, quantity);
+        }
+    }
+
+    private static final Instant TIMESTAMP = Instant.parse("2024-10-18T08:00:00.123Z");
+
+    // As spring boot configures it, without the module
+    private final ObjectMapper databindMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new WebsocketMessageModule()).build();
+
+    private final ObjectMapper epochMillisMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new WebsocketMessageModule(true)).build();
+
+    @Test
+    public void write_byDefault_shouldWriteTimestampAsWithoutTheModule() throws Exception {
+        final WebsocketMessage<Long, String> message = message(42L, "abc");
+
+        final JsonNode written = mapper.readTree(mapper.writeValueAsBytes(message));
+
+        assertTrue(written.get("timestamp").isTextual());
+        assertEquals(databindMapper.readTree(databindMapper.writeValueAsBytes(message)), written);
+    }
+
+    @Test
+    public void write_givenTimestampsAsEpochMillis_shouldWriteNumber() throws Exception {
+        final JsonNode written = epochMillisMapper.readTree(epochMillisMapper.writeValueAsBytes(message(42L, "abc")));
+
+        assertTrue(written.get("timestamp").isIntegralNumber());
+        assertEquals(TIMESTAMP.toEpochMilli(), written.get("timestamp").longValue());
+    }
+
+    @Test
+    public void roundTrip_givenTypedIdAndContent_shouldReadThemAsDeclared() throws Exception {
+        for (ObjectMapper each : new ObjectMapper[]{mapper, epochMillisMapper}) {
+            final UUID id = UUID.randomUUID();
+            final WebsocketMessage<UUID, Item> message = new WebsocketMessage<UUID, Item>()
+                    .id(id).type(WebsocketMessage.MessageType.INFO).sender("abc").timestamp(TIMESTAMP)
+                    .content(new Item("def", 3));
+
+            final WebsocketMessage<UUID, Item> read = each.readValue(each.writeValueAsBytes(message),
+                    new TypeReference<WebsocketMessage<UUID, Item>>() {});
+
+            assertEquals(id, read.getId());
+            assertEquals(WebsocketMessage.MessageType.INFO, read.getType());
+            assertEquals("abc", read.getSender());
+            assertEquals(TIMESTAMP, read.getTimestamp());
+            assertEquals(new Item("def", 3), read.getContent());
+        }
+    }
+
+    @Test
+    public void roundTrip_givenUndeclaredIdType_shouldReadWholeNumbersAsLong() throws Exception {
+        final WebsocketMessage<?, ?> read = mapper.readValue(mapper.writeValueAsBytes(message(42L, "abc")), WebsocketMessage.class);
+
+        assertEquals(42L, read.getId());
+        assertEquals("abc", read.getContent());
+        assertEquals(TIMESTAMP, read.getTimestamp());
+    }
+
+    @Test
+    public void roundTrip_givenNullFields_shouldNotWriteThemAndReadThemAsNull() throws Exception {
+        final WebsocketMessage<Long, String> message = new WebsocketMessage<Long, String>().type(null).timestamp(null);
+
+        final byte[] written = mapper.writeValueAsBytes(message);
+        assertFalse(mapper.readTree(written).fieldNames().hasNext());
+
+        final WebsocketMessage<Long, String> read = mapper.readValue(written,
+                new TypeReference<WebsocketMessage<Long, String>>() {});
+        // Absent properties keep their defaults, as they do without the module
+        final WebsocketMessage<?, ?> databound = databindMapper.readValue(written, WebsocketMessage.class);
+        assertNull(read.getId());
+        assertEquals(databound.getType(), read.getType());
+        assertNull(read.getSender());
+        assertNotNull(databound.getTimestamp());
+        assertNotNull(read.getTimestamp());
+        assertNull(read.getContent());
+
+        final WebsocketMessage<?, ?> explicitNulls = mapper.readValue(
+                "{\"id\":null,\"type\":null,\"sender\":null,\"timestamp\":null,\"content\":null}", WebsocketMessage.class);
+        assertNull(explicitNulls.getId());
+        assertNull(explicitNulls.getType());
+        assertNull(explicitNulls.getSender());
+        assertNull(explicitNulls.getTimestamp());
+        assertNull(explicitNulls.getContent());
+    }
+
+    @Test
+    public void read_givenLegacyInput_shouldReadTimestamp() throws Exception {
+        // Written without the module, as an ISO-8601 string
+        final byte[] legacy = databindMapper.writeValueAsBytes(message(42L, "abc"));
+        assertEquals(TIMESTAMP, mapper.readValue(legacy, WebsocketMessage.class).getTimestamp());
+        assertEquals(TIMESTAMP, epochMillisMapper.readValue(legacy, WebsocketMessage.class).getTimestamp());
+
+        // Decimal epoch seconds, as written for an Instant by jackson's JavaTimeModule
+        assertEquals(TIMESTAMP, mapper.readValue("{\"timestamp\":1729238400.123}", WebsocketMessage.class).getTimestamp());
+
+        // Epoch millis, as written when opted into
+        assertEquals(TIMESTAMP, mapper.readValue("{\"timestamp\":" + TIMESTAMP.toEpochMilli() + "}", WebsocketMessage.class).getTimestamp());
+    }
+
+    private static <C> WebsocketMessage<Long, C> message(Long id, C content) {
+        return new WebsocketMessage<Long, C>().id(id).type(WebsocketMessage.MessageType.INFO)
+                .sender("sender").timestamp(TIMESTAMP).content(content);
+    }
+}
@@ -0,0 +1,152 @@
+package com.looseboxes.websocket.server.presence;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketEndpoints;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import com.looseboxes.websocket.server.model.WebsocketMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class PresenceRegistryTest {
+
+    private static final long GRACE_PERIOD = 100;
+
+    private final List<Message<?>> frames = Collections.synchronizedList(new ArrayList<>());
+
+    private final MessageChannel brokerChannel = (message, timeout) -> frames.add(message);
+
+    /**
+     * Broadcasts when the test calls for it, instead of at each interval
+     */
+    private Runnable broadcast;
+
+    @Test
+    public void leave_givenUserRejoinsWithinTheGracePeriod_shouldBroadcastNothing() throws Exception {
+        final PresenceRegistry registry = registry(GRACE_PERIOD);
+        registry.join("s1", "amy");
+        broadcast.run();
+        assertEquals(Collections.singleton("JOIN amy"), broadcasted(0));
+
+        registry.leave("s1");
+        assertTrue(registry.isOnline("amy"));
+        broadcast.run();
+        registry.join("s2", "amy");
+        Thread.sleep(GRACE_PERIOD * 2);
+        broadcast.run();
+
+        assertEquals(1, frames.size());
+        assertTrue(registry.isOnline("amy"));
+        assertEquals("amy", registry.getUsername("s2"));
+        assertNull(registry.getUsername("s1"));
+    }
+
+    @Test
+    public void leave_givenGracePeriodElapsed_shouldBroadcastLeave() throws Exception {
+        final PresenceRegistry registry = registry(GRACE_PERIOD);
+        registry.join("s1", "amy");
+        registry.join("s2", "amy");
+        broadcast.run();
+
+        // Still online by the other session
+        registry.leave("s1");
+        Thread.sleep(GRACE_PERIOD * 2);
+        broadcast.run();
+        assertEquals(1, frames.size());
+
+        registry.leave("s2");
+        broadcast.run();
+        assertEquals(1, frames.size());
+        assertTrue(registry.isOnline("amy"));
+
+        Thread.sleep(GRACE_PERIOD * 2);
+        broadcast.run();
+
+        assertEquals(Collections.singleton("LEAVE amy"), broadcasted(1));
+        assertFalse(registry.isOnline("amy"));
+        assertEquals(0, registry.getOnlineCount());
+    }
+
+    @Test
+    public void broadcast_givenJoinsAndLeaves_shouldSendOneBatchPerInterval() {
+        final PresenceRegistry registry = registry(0);
+        registry.join("s1", "amy");
+        registry.join("s2", "bob");
+        registry.join("s3", "cal");
+        broadcast.run();
+
+        assertEquals(1, frames.size());
+        assertEquals("3", batchSize(frames.get(0)));
+        assertEquals(new HashSet<>(Arrays.asList("JOIN amy", "JOIN bob", "JOIN cal")), broadcasted(0));
+
+        registry.leave("s1");
+        registry.leave("s2");
+        registry.join("s4", "dan");
+        broadcast.run();
+
+        assertEquals(2, frames.size());
+        assertEquals("3", batchSize(frames.get(1)));
+        assertEquals(new HashSet<>(Arrays.asList("LEAVE amy", "LEAVE bob", "JOIN dan")), broadcasted(1));
+        assertEquals(new HashSet<>(Arrays.asList("cal", "dan")), registry.getOnlineUsers());
+        assertEquals(WebsocketEndpoints.PUBLIC, SimpMessageHeaderAccessor.getDestination(frames.get(1).getHeaders()));
+    }
+
+    @Test
+    public void broadcast_givenUserJoinedAndLeftBetweenBroadcasts_shouldBroadcastNothing() {
+        final PresenceRegistry registry = registry(0);
+        registry.join("s1", "amy");
+        registry.leave("s1");
+        broadcast.run();
+
+        assertTrue(frames.isEmpty());
+        assertFalse(registry.isOnline("amy"));
+    }
+
+    private PresenceRegistry registry(long gracePeriod) {
+        final WebsocketProperties properties = new WebsocketProperties();
+        properties.getPresence().setEnabled(true);
+        properties.getPresence().setGracePeriod(gracePeriod);
+        final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler() {
+            @Override
+            public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+                broadcast = task;
+                return null;
+            }
+        };
+        return new PresenceRegistry(properties, new SimpMessagingTemplate(brokerChannel), taskScheduler);
+    }
+
+    private static String batchSize(Message<?> frame) {
+        return SimpMessageHeaderAccessor.getFirstNativeHeader(WebsocketHeaders.BATCH_SIZE, frame.getHeaders());
+    }
+
+    /**
+     * @return Each message of the frame, as its type and sender
+     */
+    private Set<String> broadcasted(int frame) {
+        final Object payload = frames.get(frame).getPayload();
+        final Collection<?> messages = payload instanceof Collection ? (Collection<?>)payload : Collections.singleton(payload);
+        return messages.stream().map(WebsocketMessage.class::cast)
+                .map(message -> message.getType() + " " + message.getSender()).collect(Collectors.toSet());
+    }
+}
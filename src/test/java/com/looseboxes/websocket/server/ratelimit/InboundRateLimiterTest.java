@@ -0,0 +1,84 @@
+package com.looseboxes.websocket.server.ratelimit;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.metrics.WebsocketMetrics;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class InboundRateLimiterTest {
+
+    @Test
+    public void preSend_givenSenderOverLimitAcrossSessions_shouldDrop() {
+        final InboundRateLimiter limiter = limiter(100);
+
+        assertNotNull(limiter.preSend(send("s1", () -> "alice", null), null));
+        assertNotNull(limiter.preSend(send("s1", () -> "alice", null), null));
+        assertNull(limiter.preSend(send("s2", () -> "alice", null), null), "same user, other session");
+        assertNotNull(limiter.preSend(send("s3", () -> "bob", null), null));
+    }
+
+    @Test
+    public void preSend_givenAnonymousSessionsJoinedWithSameName_shouldLimitEachSession() {
+        final InboundRateLimiter limiter = limiter(100);
+
+        assertNotNull(limiter.preSend(send("s1", null, "alice"), null));
+        assertNotNull(limiter.preSend(send("s1", null, "alice"), null));
+        assertNull(limiter.preSend(send("s1", null, "alice"), null));
+        assertNotNull(limiter.preSend(send("s2", null, "alice"), null), "another session, not another sender");
+
+        // Nor does joining as a user spend that user's limit
+        assertNotNull(limiter.preSend(send("s3", () -> "alice", null), null));
+        assertNotNull(limiter.preSend(send("s3", () -> "alice", null), null));
+    }
+
+    @Test
+    public void preSend_givenMaxSendersNotIdle_shouldLimitFurtherSendersTogether() {
+        final InboundRateLimiter limiter = limiter(2);
+        // Neither bucket full, so neither may be forgotten
+        limiter.preSend(send("s1", () -> "alice", null), null);
+        limiter.preSend(send("s2", () -> "bob", null), null);
+
+        assertNotNull(limiter.preSend(send("s3", () -> "carol", null), null));
+        assertNotNull(limiter.preSend(send("s4", () -> "dave", null), null));
+        assertNull(limiter.preSend(send("s5", () -> "erin", null), null), "sharing the overflow limit");
+    }
+
+    private InboundRateLimiter limiter(int maxSenders) {
+        final WebsocketProperties properties = new WebsocketProperties();
+        final WebsocketProperties.RateLimit rateLimit = properties.getRateLimit();
+        rateLimit.setEnabled(true);
+        rateLimit.getSession().setRate(0);
+        // 2 messages, then one each 1000 seconds
+        rateLimit.getSender().setRate(0.001);
+        rateLimit.getSender().setBurst(2);
+        rateLimit.setMaxSenders(maxSenders);
+        return new InboundRateLimiter(properties, new StaticListableBeanFactory().getBeanProvider(WebsocketMetrics.class));
+    }
+
+    private Message<?> send(String sessionId, @Nullable Principal user, @Nullable String joinedAs) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setUser(user);
+        accessor.setDestination("/app/chat");
+        final Map<String, Object> sessionAttributes = new HashMap<>();
+        if (joinedAs != null) {
+            sessionAttributes.put("username", joinedAs);
+        }
+        accessor.setSessionAttributes(sessionAttributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,125 @@
+package com.looseboxes.websocket.server.ratelimit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // 10 tokens per second, one token every 100 millis
+    private static final long INTERVAL = SECOND / 10;
+
+    @Test
+    public void tryAcquire_givenFullBucket_shouldAllowBurst() {
+        final TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(1, 0), "token " + i);
+        }
+        assertFalse(bucket.tryAcquire(1, 0));
+        assertFalse(bucket.isFull(0));
+    }
+
+    @Test
+    public void tryAcquire_afterInterval_shouldRefillOneTokenPerInterval() {
+        final TokenBucket bucket = new TokenBucket(10, 5, 0);
+        assertTrue(bucket.tryAcquire(5, 0));
+
+        assertFalse(bucket.tryAcquire(1, INTERVAL - 1));
+        assertTrue(bucket.tryAcquire(1, INTERVAL));
+        assertFalse(bucket.tryAcquire(1, INTERVAL));
+
+        // 3 more tokens refilled
+        assertTrue(bucket.tryAcquire(3, 4 * INTERVAL));
+        assertFalse(bucket.tryAcquire(1, 4 * INTERVAL));
+    }
+
+    @Test
+    public void tryAcquire_afterIdle_shouldRefillNoMoreThanBurst() {
+        final TokenBucket bucket = new TokenBucket(10, 5, 0);
+        assertTrue(bucket.tryAcquire(5, 0));
+
+        final long later = 60 * SECOND;
+        assertTrue(bucket.isFull(later));
+        assertTrue(bucket.tryAcquire(5, later));
+        assertFalse(bucket.tryAcquire(1, later));
+    }
+
+    @Test
+    public void tryAcquire_givenFewerTokensThanRequested_shouldAcquireNone() {
+        final TokenBucket bucket = new TokenBucket(10, 5, 0);
+        assertTrue(bucket.tryAcquire(3, 0));
+
+        assertFalse(bucket.tryAcquire(3, 0));
+        assertTrue(bucket.tryAcquire(2, 0));
+    }
+
+    @Test
+    public void tryAcquire_givenMoreThanBurst_shouldSucceedOnlyWhenFullAndLeaveDebt() {
+        final TokenBucket bucket = new TokenBucket(10, 5, 0);
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertFalse(bucket.tryAcquire(8, 0), "not full");
+
+        final long full = INTERVAL;
+        assertTrue(bucket.isFull(full));
+        assertTrue(bucket.tryAcquire(8, full));
+
+        // 8 tokens taken from 5, so 3 tokens of debt to repay before the next
+        assertFalse(bucket.tryAcquire(1, full + 3 * INTERVAL));
+        assertTrue(bucket.tryAcquire(1, full + 4 * INTERVAL));
+        assertFalse(bucket.isFull(full + 9 * INTERVAL - 1));
+        assertTrue(bucket.isFull(full + 9 * INTERVAL));
+    }
+
+    @Test
+    public void tryAcquire_givenConcurrentCallers_shouldAcquireExactlyTheBurst() throws InterruptedException {
+        final int burst = 1000;
+        final TokenBucket bucket = new TokenBucket(1, burst, 0);
+        final int threads = 4;
+        final AtomicInteger acquired = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    }catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < burst; i++) {
+                        // The same instant, so that no tokens are refilled
+                        if (bucket.tryAcquire(1, 0)) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+        }finally{
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(burst, acquired.get());
+    }
+
+    @Test
+    public void newTokenBucket_givenRateNotPositive_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 5, 0));
+    }
+}
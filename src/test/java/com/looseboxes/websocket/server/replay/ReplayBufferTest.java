@@ -0,0 +1,149 @@
+package com.looseboxes.websocket.server.replay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.MimeTypeUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class ReplayBufferTest {
+
+    @Test
+    public void append_givenMixedPayloadSizes_shouldRetainTheLatestMessagesIntactAcrossWraps() {
+        final int maxMessages = 16;
+        final int capacity = 256;
+        for (boolean direct : new boolean[]{false, true}) {
+            final ReplayBuffer buffer = new ReplayBuffer(maxMessages, capacity, direct);
+            final Random random = new Random(7);
+            final List<byte[]> appended = new ArrayList<>();
+
+            for (int i = 0; i < 5000; i++) {
+                // Mostly small, at times large, at times empty
+                final int length = i % 97 == 0 ? 200 + random.nextInt(57) : i % 13 == 0 ? 0 : random.nextInt(40);
+                final byte[] payload = payload(i, length);
+                assertEquals(i + 1, buffer.append(payload, null, null));
+                appended.add(payload);
+
+                assertRetained(buffer, appended, maxMessages, capacity);
+            }
+        }
+    }
+
+    @Test
+    public void append_givenMaxMessagesReached_shouldEvictTheOldest() {
+        final ReplayBuffer buffer = new ReplayBuffer(4, 1024, false);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(payload(i, 8), null, null);
+        }
+
+        assertEquals(4, buffer.size());
+        assertEquals(7, buffer.getFirstSequence());
+        assertEquals(11, buffer.getNextSequence());
+        final List<ReplayBuffer.Entry> entries = buffer.getFrom(1);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(7 + i, entries.get(i).getSequence());
+            assertArrayEquals(payload(6 + i, 8), entries.get(i).getPayload());
+        }
+        assertEquals(2, buffer.getFrom(9).size());
+        assertTrue(buffer.getFrom(11).isEmpty());
+    }
+
+    @Test
+    public void append_givenEmptyPayloads_shouldRetainThem() {
+        final ReplayBuffer buffer = new ReplayBuffer(8, 16, false);
+        buffer.append(payload(0, 16), null, null);
+        buffer.append(new byte[0], MimeTypeUtils.APPLICATION_JSON, "0");
+        buffer.append(new byte[0], null, null);
+
+        // Wraps, overwriting only the first payload, as the empty payloads after it occupy no bytes
+        buffer.append(payload(3, 4), null, null);
+
+        List<ReplayBuffer.Entry> entries = buffer.getFrom(1);
+        assertEquals(3, entries.size());
+        assertEquals(2, entries.get(0).getSequence());
+        assertEquals(0, entries.get(0).getPayload().length);
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, entries.get(0).getContentType());
+        assertEquals(0, entries.get(1).getPayload().length);
+
+        // Wraps again, past the empty payloads, evicting them, and the payload it overwrites
+        buffer.append(payload(4, 12), null, null);
+        buffer.append(payload(5, 1), null, null);
+        entries = buffer.getFrom(1);
+        assertEquals(2, entries.size());
+        assertEquals(5, entries.get(0).getSequence());
+
+        buffer.append(new byte[0], MimeTypeUtils.APPLICATION_JSON, "0");
+        final ReplayBuffer.Entry empty = buffer.getFrom(7).get(0);
+        assertEquals(0, empty.getPayload().length);
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, empty.getContentType());
+        assertEquals("0", empty.getBatchSize());
+        assertArrayEquals(payload(4, 12), buffer.getFrom(5).get(0).getPayload());
+        assertArrayEquals(payload(5, 1), buffer.getFrom(6).get(0).getPayload());
+    }
+
+    @Test
+    public void append_givenPayloadLargerThanCapacity_shouldRetainNothingBeforeIt() {
+        final ReplayBuffer buffer = new ReplayBuffer(8, 16, false);
+        buffer.append(payload(0, 4), null, null);
+        buffer.append(payload(1, 4), null, null);
+
+        assertEquals(3, buffer.append(payload(2, 17), null, null));
+
+        assertEquals(0, buffer.size());
+        assertEquals(4, buffer.getFirstSequence());
+        assertTrue(buffer.getFrom(1).isEmpty());
+
+        // Later messages are retained again, without a gap
+        assertEquals(4, buffer.append(payload(3, 16), null, null));
+        final List<ReplayBuffer.Entry> entries = buffer.getFrom(1);
+        assertEquals(1, entries.size());
+        assertEquals(4, entries.get(0).getSequence());
+        assertArrayEquals(payload(3, 16), entries.get(0).getPayload());
+        assertNull(entries.get(0).getContentType());
+    }
+
+    @Test
+    public void new_givenNoCapacity_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplayBuffer(0, 16, false));
+        assertThrows(IllegalArgumentException.class, () -> new ReplayBuffer(16, 0, false));
+    }
+
+    /**
+     * The retained messages are the latest, intact, without gaps, within the limits,
+     * and include at least the last message appended.
+     */
+    private static void assertRetained(ReplayBuffer buffer, List<byte[]> appended, int maxMessages, int capacity) {
+        final List<ReplayBuffer.Entry> entries = buffer.getFrom(0);
+        assertEquals(buffer.size(), entries.size());
+        assertEquals(appended.size() + 1, buffer.getNextSequence());
+        assertTrue(buffer.size() >= 1 && buffer.size() <= maxMessages, "Size: " + buffer.size());
+        int bytes = 0;
+        long expectedSequence = buffer.getFirstSequence();
+        for (ReplayBuffer.Entry entry : entries) {
+            assertEquals(expectedSequence++, entry.getSequence());
+            final byte[] expected = appended.get((int)entry.getSequence() - 1);
+            assertArrayEquals(expected, entry.getPayload(), "Sequence " + entry.getSequence());
+            bytes += entry.getPayload().length;
+        }
+        assertTrue(bytes <= capacity, "Bytes: " + bytes);
+    }
+
+    private static byte[] payload(int index, int length) {
+        final byte[] payload = new byte[length];
+        Arrays.fill(payload, (byte)index);
+        if (length > 1) {
+            payload[length - 1] = (byte)(index >>> 8);
+        }
+        return payload;
+    }
+}
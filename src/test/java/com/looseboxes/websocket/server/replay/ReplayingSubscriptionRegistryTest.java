@@ -0,0 +1,147 @@
+package com.looseboxes.websocket.server.replay;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class ReplayingSubscriptionRegistryTest {
+
+    private static final String DESTINATION = "/topic/prices/abc";
+
+    private final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+
+    private final MessageChannel clientOutboundChannel = (message, timeout) -> {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return true;
+        }
+        final String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        received.computeIfAbsent(sessionId, k -> Collections.synchronizedList(new ArrayList<>()))
+                .add(Integer.parseInt(new String((byte[])message.getPayload(), StandardCharsets.UTF_8)));
+        return true;
+    };
+
+    @Test
+    public void registerSubscription_givenFromSequenceWhileSending_shouldReplayThenSendLiveWithoutGapOrReordering() throws Exception {
+        final int count = 5000;
+        final int maxCount = 100_000;
+        final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        final SimpleBrokerMessageHandler broker = broker(brokerChannel);
+        final ReplayRegistry replayRegistry = replayRegistry(brokerChannel, maxCount);
+        broker.setSubscriptionRegistry(new ReplayingSubscriptionRegistry(new DefaultSubscriptionRegistry(), replayRegistry));
+        broker.start();
+        broker.handleMessage(connect("s1"));
+        broker.handleMessage(connect("s2"));
+
+        final CountDownLatch halfSent = new CountDownLatch(1);
+        final AtomicBoolean subscribed = new AtomicBoolean();
+        final AtomicInteger sent = new AtomicInteger();
+        final CompletableFuture<?> sender = CompletableFuture.runAsync(() -> {
+            // Until after the subscriptions, so that they are registered while sending
+            for (int i = 0; i < maxCount && (i < count || !subscribed.get()); i++) {
+                replayRegistry.convertAndSend(DESTINATION, String.valueOf(i), null, null);
+                sent.incrementAndGet();
+                if (i == count / 2) {
+                    halfSent.countDown();
+                }
+            }
+        });
+
+        assertTrue(halfSent.await(10, TimeUnit.SECONDS));
+        // s1 from the first message, s2 from the 11th
+        broker.handleMessage(subscribe("s1", "sub-1", DESTINATION, "1"));
+        broker.handleMessage(subscribe("s2", "sub-2", DESTINATION, "11"));
+        subscribed.set(true);
+        sender.get(30, TimeUnit.SECONDS);
+
+        assertTrue(sent.get() < maxCount);
+        assertSequence(0, sent.get(), received.get("s1"));
+        assertSequence(10, sent.get(), received.get("s2"));
+    }
+
+    @Test
+    public void registerSubscription_givenNoFromSequence_shouldSendOnlyLiveMessages() {
+        final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        final SimpleBrokerMessageHandler broker = broker(brokerChannel);
+        final ReplayRegistry replayRegistry = replayRegistry(brokerChannel, 100);
+        broker.setSubscriptionRegistry(new ReplayingSubscriptionRegistry(new DefaultSubscriptionRegistry(), replayRegistry));
+        broker.start();
+        broker.handleMessage(connect("s1"));
+
+        for (int i = 0; i < 10; i++) {
+            replayRegistry.convertAndSend(DESTINATION, String.valueOf(i), null, null);
+        }
+        broker.handleMessage(subscribe("s1", "sub-1", DESTINATION, null));
+        for (int i = 10; i < 20; i++) {
+            replayRegistry.convertAndSend(DESTINATION, String.valueOf(i), null, null);
+        }
+
+        assertSequence(10, 20, received.get("s1"));
+    }
+
+    private static void assertSequence(int from, int to, List<Integer> actual) {
+        assertEquals(to - from, actual.size(), "Received: " + actual.size());
+        for (int i = from; i < to; i++) {
+            assertEquals(i, actual.get(i - from).intValue());
+        }
+    }
+
+    private SimpleBrokerMessageHandler broker(ExecutorSubscribableChannel brokerChannel) {
+        return new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(),
+                clientOutboundChannel, brokerChannel, Collections.singletonList("/topic"));
+    }
+
+    private ReplayRegistry replayRegistry(ExecutorSubscribableChannel brokerChannel, int maxMessages) {
+        final WebsocketProperties properties = new WebsocketProperties();
+        final WebsocketProperties.Replay replay = properties.getReplay();
+        replay.setDestinations(new String[]{"/topic/prices/"});
+        replay.setMaxMessages(maxMessages);
+        replay.setCapacity(maxMessages * 8);
+        final SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(new StringMessageConverter());
+        return new ReplayRegistry(properties, messagingTemplate, clientOutboundChannel);
+    }
+
+    private static Message<?> connect(String sessionId) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> subscribe(String sessionId, String subscriptionId, String destination, String fromSequence) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        if (fromSequence != null) {
+            accessor.setNativeHeader(WebsocketHeaders.FROM_SEQUENCE, fromSequence);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
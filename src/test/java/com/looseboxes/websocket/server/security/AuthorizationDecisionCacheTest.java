@@ -0,0 +1,179 @@
+package com.looseboxes.websocket.server.security;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.messaging.access.expression.ExpressionBasedMessageSecurityMetadataSourceFactory;
+import org.springframework.security.messaging.access.intercept.MessageSecurityMetadataSource;
+import org.springframework.security.messaging.util.matcher.MessageMatcher;
+import org.springframework.security.messaging.util.matcher.SimpDestinationMessageMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class AuthorizationDecisionCacheTest {
+
+    private final AtomicInteger decisions = new AtomicInteger();
+
+    private volatile boolean grant = true;
+
+    private final AccessDecisionManager delegate = new AccessDecisionManager() {
+        @Override
+        public void decide(Authentication authentication, Object object, Collection<ConfigAttribute> configAttributes) {
+            decisions.incrementAndGet();
+            if (!grant) {
+                throw new AccessDeniedException("Denied");
+            }
+        }
+        @Override
+        public boolean supports(ConfigAttribute attribute) {
+            return true;
+        }
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return true;
+        }
+    };
+
+    private MessageSecurityMetadataSource metadataSource;
+
+    private AuthorizationDecisionCache cache;
+
+    private AccessDecisionManager decisionManager;
+
+    @BeforeEach
+    public void setUp() {
+        final LinkedHashMap<MessageMatcher<?>, String> rules = new LinkedHashMap<>();
+        rules.put(new SimpDestinationMessageMatcher("/app/**"), "hasRole('USER')");
+        rules.put(new SimpDestinationMessageMatcher("/admin/**"), "hasAnyAuthority('ROLE_ADMIN', 'ROLE_OPS')");
+        rules.put(new SimpDestinationMessageMatcher("/owner/{name}/**"), "#name == authentication.name");
+        metadataSource = ExpressionBasedMessageSecurityMetadataSourceFactory.createExpressionMessageMetadataSource(rules);
+        cache = new AuthorizationDecisionCache(16);
+        decisionManager = cache.decorate(delegate);
+    }
+
+    @Test
+    public void decide_givenRepeatMessages_shouldDecideOnce() {
+        final Authentication alice = user("alice");
+        connect("s1");
+
+        decide(alice, send("s1", "/app/chat"));
+        decide(alice, send("s1", "/app/chat"));
+        decide(alice, subscribe("s1", "/app/chat"));
+        decide(alice, subscribe("s1", "/app/chat"));
+
+        assertEquals(2, decisions.get(), "once per message type");
+    }
+
+    @Test
+    public void decide_givenDenied_shouldCacheDenial() {
+        final Authentication alice = user("alice");
+        connect("s1");
+        grant = false;
+
+        assertThrows(AccessDeniedException.class, () -> decide(alice, send("s1", "/app/chat")));
+        grant = true;
+        assertThrows(AccessDeniedException.class, () -> decide(alice, send("s1", "/app/chat")));
+
+        assertEquals(1, decisions.get());
+    }
+
+    @Test
+    public void decide_afterDisconnect_shouldNotUseCachedDecisions() {
+        final Authentication alice = user("alice");
+        connect("s1");
+        decide(alice, send("s1", "/app/chat"));
+        assertEquals(1, cache.getSessionCount());
+
+        cache.preSend(frame(SimpMessageType.DISCONNECT, "s1", null), null);
+
+        assertEquals(0, cache.getSessionCount());
+        decide(alice, send("s1", "/app/chat"));
+        decide(alice, send("s1", "/app/chat"));
+        assertEquals(3, decisions.get(), "not cached once disconnected");
+
+        connect("s1");
+        grant = false;
+        assertThrows(AccessDeniedException.class, () -> decide(alice, send("s1", "/app/chat")),
+                "decided again after reconnecting");
+    }
+
+    @Test
+    public void decide_givenAuthenticationChanged_shouldDecideAgain() {
+        connect("s1");
+        decide(user("alice"), send("s1", "/app/chat"));
+        grant = false;
+
+        assertThrows(AccessDeniedException.class, () -> decide(user("bob"), send("s1", "/app/chat")));
+        assertEquals(2, decisions.get());
+
+        final Authentication carol = user("carol");
+        grant = true;
+        decide(carol, send("s1", "/app/chat"));
+        decide(carol, send("s1", "/app/chat"));
+        assertEquals(3, decisions.get());
+    }
+
+    @Test
+    public void decide_givenExpressionDependingOnMoreThanPrincipal_shouldDecideEveryTime() {
+        final Authentication alice = user("alice");
+        connect("s1");
+
+        decide(alice, send("s1", "/owner/alice/inbox"));
+        decide(alice, send("s1", "/owner/alice/inbox"));
+
+        assertEquals(2, decisions.get());
+    }
+
+    @Test
+    public void isCacheable_givenKnownExpressions_shouldReturnTrue() {
+        assertTrue(AuthorizationDecisionCache.isCacheable(metadataSource.getAttributes(send("s1", "/app/chat"))));
+        assertTrue(AuthorizationDecisionCache.isCacheable(metadataSource.getAttributes(send("s1", "/admin/users"))));
+        assertFalse(AuthorizationDecisionCache.isCacheable(metadataSource.getAttributes(send("s1", "/owner/alice/inbox"))));
+    }
+
+    private void decide(Authentication authentication, Message<?> message) {
+        decisionManager.decide(authentication, message, metadataSource.getAttributes(message));
+    }
+
+    private void connect(String sessionId) {
+        cache.preSend(frame(SimpMessageType.CONNECT, sessionId, null), null);
+    }
+
+    private Message<?> send(String sessionId, String destination) {
+        return frame(SimpMessageType.MESSAGE, sessionId, destination);
+    }
+
+    private Message<?> subscribe(String sessionId, String destination) {
+        return frame(SimpMessageType.SUBSCRIBE, sessionId, destination);
+    }
+
+    private Message<?> frame(SimpMessageType type, String sessionId, String destination) {
+        final SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Authentication user(String name) {
+        return new TestingAuthenticationToken(name, "password", "ROLE_USER");
+    }
+}
@@ -0,0 +1,118 @@
+package com.looseboxes.websocket.server.session;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class PerMessageDeflateFilterTest {
+
+    private final PerMessageDeflateFilter disabled = new PerMessageDeflateFilter(false, true);
+
+    private final PerMessageDeflateFilter noContextTakeover = new PerMessageDeflateFilter(true, false);
+
+    @Test
+    public void rewrite_givenDisabled_shouldRemoveOnlyPermessageDeflate() {
+        assertEquals("x-webkit-deflate-frame",
+                disabled.rewrite("permessage-deflate; client_max_window_bits, x-webkit-deflate-frame"));
+        assertEquals("x-custom; a=1, x-other",
+                disabled.rewrite("x-custom; a=1, Permessage-Deflate, x-other"));
+    }
+
+    @Test
+    public void rewrite_givenNoContextTakeover_shouldAddBothParametersOnce() {
+        assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                noContextTakeover.rewrite("permessage-deflate"));
+        assertEquals("permessage-deflate; client_max_window_bits; server_no_context_takeover; client_no_context_takeover",
+                noContextTakeover.rewrite("permessage-deflate; client_max_window_bits"));
+        // Already requested, in any case, so not duplicated
+        assertEquals("permessage-deflate; Server_No_Context_Takeover; client_no_context_takeover",
+                noContextTakeover.rewrite("permessage-deflate; Server_No_Context_Takeover"));
+        assertEquals("permessage-deflate; client_no_context_takeover; server_no_context_takeover",
+                noContextTakeover.rewrite("permessage-deflate; client_no_context_takeover; server_no_context_takeover"));
+        // Other extensions are left as they are
+        assertEquals("x-webkit-deflate-frame", noContextTakeover.rewrite("x-webkit-deflate-frame"));
+    }
+
+    @Test
+    public void rewrite_givenSeveralOffersInOneHeader_shouldRewriteEach() {
+        assertEquals("permessage-deflate; client_max_window_bits; server_no_context_takeover; client_no_context_takeover, " +
+                        "permessage-deflate; server_no_context_takeover; client_no_context_takeover, x-other",
+                noContextTakeover.rewrite("permessage-deflate; client_max_window_bits, permessage-deflate ,, x-other"));
+        assertEquals("x-other", disabled.rewrite("permessage-deflate; client_max_window_bits, permessage-deflate, x-other"));
+    }
+
+    @Test
+    public void rewrite_givenNoOfferRemains_shouldReturnNull() {
+        assertNull(disabled.rewrite("permessage-deflate; client_max_window_bits, permessage-deflate"));
+        assertNull(disabled.rewrite(" , "));
+        assertNull(noContextTakeover.rewrite(""));
+    }
+
+    @Test
+    public void doFilter_givenSeveralHeaders_shouldRewriteEachAndDropThoseLeftEmpty() throws Exception {
+        final MockHttpServletRequest request = handshake("permessage-deflate; client_max_window_bits", "x-other, permessage-deflate");
+
+        final HttpServletRequest filtered = filter(disabled, request);
+
+        assertEquals(Collections.singletonList("x-other"), Collections.list(filtered.getHeaders("sec-websocket-extensions")));
+        assertEquals("x-other", filtered.getHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER));
+        assertEquals("13", filtered.getHeader("Sec-WebSocket-Version"));
+
+        final HttpServletRequest amended = filter(noContextTakeover,
+                handshake("permessage-deflate", "x-other, permessage-deflate; client_max_window_bits"));
+
+        assertEquals(Arrays.asList(
+                "permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                "x-other, permessage-deflate; client_max_window_bits; server_no_context_takeover; client_no_context_takeover"),
+                Collections.list(amended.getHeaders(PerMessageDeflateFilter.EXTENSIONS_HEADER)));
+    }
+
+    @Test
+    public void doFilter_givenNoOfferRemains_shouldRemoveTheHeader() throws Exception {
+        final HttpServletRequest filtered = filter(disabled, handshake("permessage-deflate", "permessage-deflate; client_max_window_bits"));
+
+        assertNull(filtered.getHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER));
+        assertFalse(filtered.getHeaders(PerMessageDeflateFilter.EXTENSIONS_HEADER).hasMoreElements());
+    }
+
+    @Test
+    public void doFilter_givenDefaultNegotiation_shouldNotRewrite() throws Exception {
+        final PerMessageDeflateFilter defaults = new PerMessageDeflateFilter(true, true);
+        assertFalse(defaults.isRewriting());
+        assertTrue(disabled.isRewriting());
+        assertTrue(noContextTakeover.isRewriting());
+
+        final MockHttpServletRequest request = handshake("permessage-deflate");
+
+        assertSame(request, filter(defaults, request));
+    }
+
+    private static MockHttpServletRequest handshake(String... extensions) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/websocket");
+        request.addHeader("Sec-WebSocket-Version", "13");
+        for (String extension : extensions) {
+            request.addHeader(PerMessageDeflateFilter.EXTENSIONS_HEADER, extension);
+        }
+        return request;
+    }
+
+    private static HttpServletRequest filter(PerMessageDeflateFilter filter, HttpServletRequest request) throws Exception {
+        final AtomicReference<HttpServletRequest> filtered = new AtomicReference<>();
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> filtered.set((HttpServletRequest)req));
+        return filtered.get();
+    }
+}
@@ -0,0 +1,168 @@
+package com.looseboxes.websocket.server.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class SendReceiptChannelInterceptorTest {
+
+    private static final String[] APPLICATION_PREFIXES = {"/app"};
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private final CountDownLatch receipted = new CountDownLatch(1);
+
+    private final MessageChannel clientOutboundChannel = (message, timeout) -> {
+        final StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (accessor.getCommand() == StompCommand.RECEIPT) {
+            events.add("receipt:" + accessor.getReceiptId());
+            receipted.countDown();
+        }
+        return true;
+    };
+
+    private final ExecutorSubscribableChannel clientInboundChannel = new ExecutorSubscribableChannel(executor);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void afterMessageHandled_givenApplicationDestination_shouldReceiptAfterTheControllerHandledIt() throws Exception {
+        subscribe(null);
+
+        clientInboundChannel.send(send("/app/abc", "r1"));
+
+        assertTrue(receipted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(Arrays.asList("controller:/app/abc", "receipt:r1"), events);
+    }
+
+    @Test
+    public void afterMessageHandled_givenControllerSendDestination_shouldLeaveTheReceiptToTheController() throws Exception {
+        subscribe(null);
+
+        clientInboundChannel.send(send("/app/send/abc", "r1"));
+        clientInboundChannel.send(send("/app/send-batch/abc", "r2"));
+
+        assertFalse(receipted.await(500, TimeUnit.MILLISECONDS));
+        // Handled in parallel
+        assertEquals(new HashSet<>(Arrays.asList("controller:/app/send/abc", "controller:/app/send-batch/abc")),
+                new HashSet<>(events));
+    }
+
+    @Test
+    public void afterMessageHandled_givenBrokerDestination_shouldReceiptOnceAfterTheBrokerHandledIt() throws Exception {
+        subscribe(null);
+
+        clientInboundChannel.send(send("/topic/abc", "r1"));
+
+        assertTrue(receipted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(Arrays.asList("broker:/topic/abc", "receipt:r1"), events);
+    }
+
+    @Test
+    public void afterMessageHandled_givenControllerFailed_shouldNotReceipt() throws Exception {
+        subscribe(new IllegalStateException("Expected"));
+
+        clientInboundChannel.send(send("/app/abc", "r1"));
+
+        assertFalse(receipted.await(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void afterMessageHandled_givenRelayedDestination_shouldNotReceipt() throws Exception {
+        subscribe(null, "/topic");
+
+        clientInboundChannel.send(send("/topic/abc", "r1"));
+
+        assertFalse(receipted.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(Collections.singletonList("broker:/topic/abc"), events);
+    }
+
+    @Test
+    public void afterMessageHandled_givenNoReceiptRequested_shouldNotReceipt() throws Exception {
+        subscribe(null);
+
+        clientInboundChannel.send(send("/app/abc", null));
+
+        assertFalse(receipted.await(500, TimeUnit.MILLISECONDS));
+    }
+
+    private void subscribe(RuntimeException controllerFailure, String... relayedPrefixes) {
+        clientInboundChannel.addInterceptor(new SendReceiptChannelInterceptor(
+                clientOutboundChannel, APPLICATION_PREFIXES, "/user/", relayedPrefixes));
+        // Each handler is slow, so that a receipt sent on handing over the frame would arrive first
+        clientInboundChannel.subscribe(new SimpAnnotationMethodMessageHandler(
+                clientInboundChannel, clientOutboundChannel, new SimpMessagingTemplate(clientOutboundChannel)) {
+            @Override
+            public void handleMessage(Message<?> message) {
+                final String destination = StompHeaderAccessor.wrap(message).getDestination();
+                if (destination.startsWith(APPLICATION_PREFIXES[0])) {
+                    sleep(100);
+                    if (controllerFailure != null) {
+                        throw controllerFailure;
+                    }
+                    events.add("controller:" + destination);
+                }
+            }
+        });
+        clientInboundChannel.subscribe(new SimpleBrokerMessageHandler(
+                clientInboundChannel, clientOutboundChannel, new ExecutorSubscribableChannel(), Collections.singletonList("/topic")) {
+            @Override
+            public void handleMessage(Message<?> message) {
+                final String destination = StompHeaderAccessor.wrap(message).getDestination();
+                if (destination.startsWith("/topic")) {
+                    sleep(100);
+                    events.add("broker:" + destination);
+                }
+            }
+        });
+    }
+
+    private static Message<byte[]> send(String destination, String receipt) {
+        final StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination(destination);
+        accessor.setSessionId("s1");
+        if (receipt != null) {
+            accessor.setReceipt(receipt);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
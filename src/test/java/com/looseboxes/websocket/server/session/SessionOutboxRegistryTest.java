@@ -0,0 +1,252 @@
+package com.looseboxes.websocket.server.session;
+
+import com.looseboxes.websocket.server.config.WebsocketProperties;
+import com.looseboxes.websocket.server.controller.WebsocketHeaders;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class SessionOutboxRegistryTest {
+
+    private static final int SEND_TIME_LIMIT = 200;
+
+    private static final String PRICES = "/topic/prices";
+
+    private static final class TestSession implements WebSocketSession {
+        private final String id;
+        private final boolean stalled;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final BlockingQueue<Object> written = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch writing = new CountDownLatch(1);
+        // Writes wait until this is counted down
+        private volatile CountDownLatch writable = new CountDownLatch(0);
+        private volatile CloseStatus closeStatus;
+        private TestSession(String id, boolean stalled) {
+            this.id = id;
+            this.stalled = stalled;
+        }
+        @Override public String getId() { return id; }
+        @Override public URI getUri() { return null; }
+        @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+        @Override public Map<String, Object> getAttributes() { return attributes; }
+        @Override public Principal getPrincipal() { return null; }
+        @Override public InetSocketAddress getLocalAddress() { return null; }
+        @Override public InetSocketAddress getRemoteAddress() { return null; }
+        @Override public String getAcceptedProtocol() { return null; }
+        @Override public void setTextMessageSizeLimit(int messageSizeLimit) { }
+        @Override public int getTextMessageSizeLimit() { return 0; }
+        @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) { }
+        @Override public int getBinaryMessageSizeLimit() { return 0; }
+        @Override public List<WebSocketExtension> getExtensions() { return Collections.emptyList(); }
+        @Override public boolean isOpen() { return closeStatus == null; }
+        @Override public void close() { close(CloseStatus.NORMAL); }
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+            closed.countDown();
+        }
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (stalled) {
+                // As a blocking write to a client which stopped reading, until the connection is closed
+                try {
+                    closed.await();
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Closed");
+            }
+            writing.countDown();
+            try {
+                writable.await();
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(message.getPayload());
+        }
+    }
+
+    private final BlockingQueue<WebSocketSession> established = new LinkedBlockingQueue<>();
+
+    private SessionOutboxRegistry registry;
+
+    @AfterEach
+    public void tearDown() {
+        if (registry != null) {
+            registry.destroy();
+        }
+    }
+
+    @Test
+    public void sendMessage_givenStalledClient_shouldDisconnectItWithinTheSendTimeLimitAndFreeTheWriter() throws Exception {
+        registry = registry(1);
+        final WebSocketHandler handler = registry.decorate(new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                established.add(session);
+            }
+        });
+        final TestSession stalled = new TestSession("stalled", true);
+        final TestSession healthy = new TestSession("healthy", false);
+        handler.afterConnectionEstablished(stalled);
+        handler.afterConnectionEstablished(healthy);
+        final WebSocketSession stalledOutbox = established.take();
+        final WebSocketSession healthyOutbox = established.take();
+
+        // Pins the only writer thread
+        stalledOutbox.sendMessage(new TextMessage("to stalled"));
+        Thread.sleep(50);
+        healthyOutbox.sendMessage(new TextMessage("to healthy"));
+
+        // Without any further message to the stalled client
+        assertTrue(stalled.closed.await(SEND_TIME_LIMIT * 5, TimeUnit.MILLISECONDS));
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, stalled.closeStatus);
+        // Counted once closed
+        for (int i = 0; i < 100 && registry.getDisconnectedCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, registry.getDisconnectedCount());
+
+        assertEquals("to healthy", healthy.written.poll(5, TimeUnit.SECONDS));
+        assertTrue(healthy.isOpen());
+    }
+
+    @Test
+    public void sendMessage_givenClientKeepingUp_shouldNotDisconnect() throws Exception {
+        registry = registry(1);
+        final WebSocketHandler handler = registry.decorate(new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                established.add(session);
+            }
+        });
+        final TestSession session = new TestSession("s1", false);
+        handler.afterConnectionEstablished(session);
+        final WebSocketSession outbox = established.take();
+
+        for (int i = 0; i < 10; i++) {
+            outbox.sendMessage(new TextMessage("message-" + i));
+            Thread.sleep(SEND_TIME_LIMIT / 4);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("message-" + i, session.written.poll(5, TimeUnit.SECONDS));
+        }
+        assertTrue(session.isOpen());
+        assertEquals(0, registry.getDisconnectedCount());
+    }
+
+    @Test
+    public void sendMessage_givenConflatedDestination_shouldReplacePendingFramesWithTheSameKey() throws Exception {
+        registry = registry(1, Collections.singletonMap(PRICES, OverflowPolicy.CONFLATE));
+        final TestSession session = new TestSession("s1", false);
+        final WebSocketSession outbox = connect(session);
+
+        // The writer is busy with the first frame, so the rest are pending
+        session.writable = new CountDownLatch(1);
+        outbox.sendMessage(message(PRICES + "/a", "1", "first"));
+        assertTrue(session.writing.await(5, TimeUnit.SECONDS));
+
+        outbox.sendMessage(message(PRICES + "/a", "1", "1-old"));
+        outbox.sendMessage(message(PRICES + "/a", "2", "2-latest"));
+        outbox.sendMessage(message(PRICES + "/a", "1", "1-latest"));
+        // Without a conflation-key, conflated per destination
+        outbox.sendMessage(message(PRICES + "/b", null, "b-old"));
+        outbox.sendMessage(message(PRICES + "/c", null, "c-latest"));
+        outbox.sendMessage(message(PRICES + "/b", null, "b-latest"));
+        // Not conflated
+        outbox.sendMessage(message("/topic/other", "1", "other-1"));
+        outbox.sendMessage(message("/topic/other", "1", "other-2"));
+
+        assertEquals(2, registry.getConflatedCount());
+
+        session.writable.countDown();
+
+        // Each replacement takes the place of the frame it replaced
+        for (String expected : new String[]{"first", "1-latest", "2-latest", "b-latest", "c-latest", "other-1", "other-2"}) {
+            assertEquals(expected, body(session.written.poll(5, TimeUnit.SECONDS)));
+        }
+        assertNull(session.written.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, registry.getBufferedBytes("s1"));
+    }
+
+    @Test
+    public void sendMessage_givenConflatedFrameAlreadyWritten_shouldNotReplaceIt() throws Exception {
+        registry = registry(1, Collections.singletonMap(PRICES, OverflowPolicy.CONFLATE));
+        final TestSession session = new TestSession("s1", false);
+        final WebSocketSession outbox = connect(session);
+
+        session.writable = new CountDownLatch(1);
+        outbox.sendMessage(message(PRICES + "/a", "1", "being written"));
+        assertTrue(session.writing.await(5, TimeUnit.SECONDS));
+        outbox.sendMessage(message(PRICES + "/a", "1", "pending"));
+        session.writable.countDown();
+
+        assertEquals("being written", body(session.written.poll(5, TimeUnit.SECONDS)));
+        assertEquals("pending", body(session.written.poll(5, TimeUnit.SECONDS)));
+        assertEquals(0, registry.getConflatedCount());
+    }
+
+    private WebSocketSession connect(TestSession session) throws Exception {
+        final WebSocketHandler handler = registry.decorate(new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                established.add(session);
+            }
+        });
+        handler.afterConnectionEstablished(session);
+        return established.take();
+    }
+
+    private static TextMessage message(String destination, String conflationKey, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:0\nmessage-id:1\n" +
+                (conflationKey == null ? "" : WebsocketHeaders.CONFLATION_KEY + ':' + conflationKey + '\n') +
+                "content-type:text/plain\n\n" + body + '\0');
+    }
+
+    private static String body(Object payload) {
+        final String frame = (String)payload;
+        return frame == null ? null : frame.substring(frame.indexOf("\n\n") + 2, frame.length() - 1);
+    }
+
+    private static SessionOutboxRegistry registry(int writerThreads) {
+        return registry(writerThreads, Collections.emptyMap());
+    }
+
+    private static SessionOutboxRegistry registry(int writerThreads, Map<String, OverflowPolicy> overflowPolicies) {
+        final WebsocketProperties properties = new WebsocketProperties();
+        final WebsocketProperties.Transport transport = properties.getTransport();
+        transport.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        transport.setOverflowPolicies(overflowPolicies);
+        transport.setSendTimeLimit(SEND_TIME_LIMIT);
+        transport.setWriterThreads(writerThreads);
+        return new SessionOutboxRegistry(properties);
+    }
+}
@@ -0,0 +1,65 @@
+package com.looseboxes.websocket.server.session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author chinomso ikwuagwu
+ */
+public class StompFramesTest {
+
+    private static final String FRAME = "MESSAGE\ndestination:/topic/a\\cb\nsubscription:0\n" +
+            "message-id:1\nconflation-key:k1\nconflation-key:k2\n\ndestination:/topic/body\0";
+
+    @Test
+    public void header_givenMessageFrame_shouldReturnTheFirstMatchingValueUnescaped() {
+        for (WebSocketMessage<?> message : new WebSocketMessage<?>[]{text(FRAME), binary(FRAME)}) {
+            assertEquals("/topic/a:b", StompFrames.header(message, "destination"));
+            assertEquals("0", StompFrames.header(message, "subscription"));
+            assertEquals("k1", StompFrames.header(message, "conflation-key"));
+            // Only whole names match
+            assertNull(StompFrames.header(message, "message"));
+            assertNull(StompFrames.header(message, "id"));
+        }
+    }
+
+    @Test
+    public void header_givenHeaderOnlyInTheBody_shouldReturnNull() {
+        final String frame = "MESSAGE\nsubscription:0\n\ndestination:/topic/body\0";
+        assertNull(StompFrames.header(text(frame), "destination"));
+        assertNull(StompFrames.header(binary(frame), "destination"));
+    }
+
+    @Test
+    public void header_givenBinaryFrameAtAnOffset_shouldReadFromThePosition() {
+        final ByteBuffer buffer = ByteBuffer.wrap(("xx" + FRAME).getBytes(StandardCharsets.UTF_8));
+        buffer.position(2);
+        assertEquals("/topic/a:b", StompFrames.header(new BinaryMessage(buffer), "destination"));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void header_givenOtherFrames_shouldReturnNull() {
+        final String frame = "RECEIPT\nreceipt-id:1\ndestination:/topic/a\n\n\0";
+        assertNull(StompFrames.header(text(frame), "destination"));
+        assertNull(StompFrames.header(binary(frame), "destination"));
+        assertNull(StompFrames.header(text("MESSAGE"), "destination"));
+        assertNull(StompFrames.header(new PingMessage(), "destination"));
+    }
+
+    private static TextMessage text(String frame) {
+        return new TextMessage(frame);
+    }
+
+    private static BinaryMessage binary(String frame) {
+        return new BinaryMessage(frame.getBytes(StandardCharsets.UTF_8));
+    }
+}